@@ -1,6 +1,7 @@
 package com.example.candles.client;
 
 import com.example.shared.dto.Candle;
+import com.example.shared.utils.CandleBatchCodec;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -24,7 +25,10 @@ public interface OkxFeignClient {
             @RequestParam(defaultValue = "100") int limit
     );
 
-    @PostMapping("/api/okx/candles/map")
+    /**
+     * Карта свечей приходит бинарным пакетом (CandleBatchCodec), если okx его поддерживает, иначе JSON
+     */
+    @PostMapping(value = "/api/okx/candles/map", headers = "Accept=" + CandleBatchCodec.ACCEPT_WITH_JSON_FALLBACK)
     Map<String, List<Candle>> getCandlesMap(
             @RequestBody List<String> symbols,
             @RequestParam(defaultValue = "15m") String timeFrame,
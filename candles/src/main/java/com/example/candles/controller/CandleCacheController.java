@@ -1,6 +1,7 @@
 package com.example.candles.controller;
 
 import com.example.candles.scheduler.CandleCacheScheduler;
+import com.example.candles.service.CandleArchive;
 import com.example.candles.service.CandleCacheService;
 import com.example.shared.dto.Candle;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +22,7 @@ public class CandleCacheController {
 
     private final CandleCacheService candleCacheService;
     private final CandleCacheScheduler candleCacheScheduler;
+    private final CandleArchive candleArchive;
 
     @Value("${app.candle-cache.default-exchange:OKX}")
     private String defaultExchange;
@@ -206,6 +208,52 @@ public class CandleCacheController {
         }
     }
 
+    /**
+     * Перестроение архива свечей на диске из БД для таймфрейма биржи
+     */
+    @PostMapping("/archive/rebuild")
+    public ResponseEntity<Map<String, String>> rebuildArchive(@RequestBody Map<String, Object> request) {
+        String exchange = (String) request.getOrDefault("exchange", defaultExchange);
+        String timeframe = (String) request.get("timeframe");
+        log.info("🎯 Ручной запуск перестроения архива свечей через API: {}/{}", exchange, timeframe);
+
+        Map<String, String> response = new HashMap<>();
+        if (timeframe == null || timeframe.isBlank()) {
+            response.put("status", "error");
+            response.put("message", "Не указан timeframe");
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (!candleArchive.isEnabled()) {
+            response.put("status", "error");
+            response.put("message", "Архив свечей выключен (app.candle-cache.archive.enabled)");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        try {
+            // Перестроение читает всю историю таймфрейма - в отдельном потоке
+            new Thread(() -> {
+                try {
+                    candleArchive.rebuild(exchange, timeframe);
+                } catch (Exception e) {
+                    log.error("❌ Ошибка в фоновом потоке перестроения архива: {}", e.getMessage(), e);
+                }
+            }, "archive-rebuild").start();
+
+            response.put("status", "started");
+            response.put("message", "Перестроение архива " + exchange + "/" + timeframe + " запущено в фоновом режиме");
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка запуска перестроения архива: {}", e.getMessage(), e);
+
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     /**
      * Очистка кэша
      */
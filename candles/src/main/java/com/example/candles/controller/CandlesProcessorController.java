@@ -2,8 +2,14 @@ package com.example.candles.controller;
 
 import com.example.candles.client.OkxFeignClient;
 import com.example.candles.service.CacheValidatedCandlesProcessor;
+import com.example.candles.service.CandleRequestExecutor;
 import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleBatch;
+import com.example.shared.dto.CandlesDelta;
+import com.example.shared.dto.CandlesDeltaRequest;
 import com.example.shared.dto.ExtendedCandlesRequest;
+import com.example.shared.utils.CandleSeriesValidator;
+import com.example.shared.utils.CandlesUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -14,10 +20,12 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongUnaryOperator;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -31,6 +39,7 @@ public class CandlesProcessorController {
 
     private static final String STANDARD_TICKER_BTC = "BTC-USDT-SWAP";
     private final CacheValidatedCandlesProcessor cacheValidatedCandlesProcessor;
+    private final CandleRequestExecutor candleRequestExecutor;
 //    private final CandlesLoaderProcessor candlesLoaderProcessor;
     private final OkxFeignClient okxFeignClient;
 
@@ -94,6 +103,7 @@ public class CandlesProcessorController {
             String untilDate = request.getUntilDate();
             double minVolume = request.getMinVolume(); // Уже в правильных единицах, не умножаем
             boolean useCache = request.getUseCache();
+            Boolean strictCompleteness = request.getStrictCompleteness();
 
             log.info("📋 ПАРАМЕТРЫ ЗАПРОСА:");
             log.info("  📅 exchange: {}", exchange);
@@ -102,6 +112,7 @@ public class CandlesProcessorController {
             log.info("  📅 untilDate: {}", untilDate);
             log.info("  📅 minVolume: {}", minVolume);
             log.info("  📅 useCache: {}", useCache);
+            log.info("  📅 strictCompleteness: {}", strictCompleteness);
             
             /*
              * БЛОК 2: ОПРЕДЕЛЕНИЕ СПИСКА ТИКЕРОВ
@@ -159,12 +170,12 @@ public class CandlesProcessorController {
             /*
              * БЛОК 3: МНОГОПОТОЧНАЯ ОБРАБОТКА ТИКЕРОВ  
              * Алгоритм:
-             * 1. Создаем пул из 5 потоков максимум
+             * 1. Задачи выполняются в общем пуле CandleRequestExecutor (чтения из БД ограничены по размеру пула Hikari)
              * 2. Для каждого тикера запускаем задачу: 
              *    - Вызываем CacheValidatedCandlesProcessor.getValidatedCandlesFromCache()
              *    - ЕСЛИ получили свечи → добавляем в результат
              *    - ЕСЛИ пустой результат → пропускаем тикер (неактивный/новый)
-             * 3. Ждем завершения всех задач (максимум 5 минут)
+             * 3. Ждем завершения всех задач (максимум 10 минут)
              */
             // Подготавливаем thread-safe коллекции для результатов
             Map<String, List<Candle>> result = new ConcurrentHashMap<>();
@@ -172,109 +183,78 @@ public class CandlesProcessorController {
             AtomicInteger processedTickers = new AtomicInteger(0);
             AtomicInteger successfulTickers = new AtomicInteger(0);
 
-            log.debug("🚀 МНОГОПОТОЧНОСТЬ: Запускаем обработку {} тикеров в {} потоках",
-                    tickersToProcess.size(), Math.min(5, tickersToProcess.size()));
+            log.debug("🚀 МНОГОПОТОЧНОСТЬ: Запускаем обработку {} тикеров в общем пуле обработки тикеров",
+                    tickersToProcess.size());
+
+            // Создаем задачи для каждого тикера
+            List<Callable<Void>> tasks = new ArrayList<>(tickersToProcess.size());
+            for (String ticker : tickersToProcess) {
+                List<String> finalTickersToProcess = tickersToProcess;
+                tasks.add(() -> {
+                    /*
+                     * ЗАДАЧА ПОТОКА: ОБРАБОТКА ОДНОГО ТИКЕРА
+                     * 1. Вызываем CacheValidatedCandlesProcessor → получаем валидированные свечи из кэша
+                     * 2. Процессор внутри делает:
+                     *    - Проверка кэша
+                     *    - Валидация по количеству и консистентности
+                     *    - При необходимости - догрузка с OKX (максимум 2 попытки)
+                     *    - Возврат валидных свечей ИЛИ пустого списка (если тикер проблемный)
+                     * 3. Добавляем результат в общую коллекцию
+                     */
+                    int tickerNumber = processedTickers.incrementAndGet();
+                    String threadName = Thread.currentThread().getName();
+
+                    log.debug("🔄 [{}/{}] Поток {}: Обрабатываем тикер {}",
+                            tickerNumber, finalTickersToProcess.size(), threadName, ticker);
 
-            // Создаем пул потоков (максимум 5 потоков)
-            ExecutorService executor = Executors.newFixedThreadPool(Math.min(5, tickersToProcess.size()));
-            try {
-                // Создаем задачи для каждого тикера
-                List<Future<Void>> futures = new ArrayList<>();
-
-                for (String ticker : tickersToProcess) {
-                    List<String> finalTickersToProcess = tickersToProcess;
-                    Future<Void> future = executor.submit(() -> {
-                        /*
-                         * ЗАДАЧА ПОТОКА: ОБРАБОТКА ОДНОГО ТИКЕРА
-                         * 1. Вызываем CacheValidatedCandlesProcessor → получаем валидированные свечи из кэша
-                         * 2. Процессор внутри делает:
-                         *    - Проверка кэша
-                         *    - Валидация по количеству и консистентности
-                         *    - При необходимости - догрузка с OKX (максимум 2 попытки)
-                         *    - Возврат валидных свечей ИЛИ пустого списка (если тикер проблемный)
-                         * 3. Добавляем результат в общую коллекцию
-                         */
-                        int tickerNumber = processedTickers.incrementAndGet();
-                        String threadName = Thread.currentThread().getName();
-
-                        log.debug("🔄 [{}/{}] Поток {}: Обрабатываем тикер {}",
-                                tickerNumber, finalTickersToProcess.size(), threadName, ticker);
-
-                        try {
-                            long startTime = System.currentTimeMillis();
-
-                            // ОСНОВНОЙ ВЫЗОВ: получение валидированных свечей из кэша с автоматической догрузкой
-                            List<Candle> candles = cacheValidatedCandlesProcessor.getValidatedCandlesFromCache(
-                                    exchange, ticker, untilDate, timeframe, period);
-
-                            long duration = System.currentTimeMillis() - startTime;
-
-                            if (!candles.isEmpty()) {
-                                // УСПЕХ: добавляем тикер в результат
-                                result.put(ticker, candles);
-                                totalCandlesCount.addAndGet(candles.size());
-                                successfulTickers.incrementAndGet();
-                                log.debug("✅ [{}/{}] Поток {}: Получено {} свечей для тикера {} за {} мс",
-                                        tickerNumber, finalTickersToProcess.size(), threadName, candles.size(), ticker, duration);
-                            } else {
-                                // ПРОПУСК: тикер не прошел валидацию (неактивный/новый/делистинг)
-                                log.debug("⚠️ [{}/{}] Поток {}: Пустой результат для тикера {} - возможно неактивный/делистингованный тикер за {} мс",
-                                        tickerNumber, finalTickersToProcess.size(), threadName, ticker, duration);
-                            }
-                        } catch (Exception e) {
-                            // ОШИБКА: логируем и пропускаем тикер
-                            log.error("❌ [{}/{}] Поток {}: Ошибка при получении свечей для тикера {}: {} - пропускаем тикер",
-                                    tickerNumber, finalTickersToProcess.size(), threadName, ticker, e.getMessage());
-                            // НЕ прерываем обработку - просто пропускаем проблемный тикер
-                        }
-
-                        return null;
-                    });
-
-                    futures.add(future);
-                }
-
-                /*
-                 * ОЖИДАНИЕ ЗАВЕРШЕНИЯ ВСЕХ ПОТОКОВ
-                 * - Максимум 5 минут на обработку всех тикеров
-                 * - Принудительное завершение при превышении таймаута
-                 */
-                executor.shutdown();
-                if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
-                    log.warn("⚠️ ТАЙМАУТ: Некоторые задачи не завершились за 10 минут, принудительно завершаем");
-                    executor.shutdownNow();
-                    // Даем время на корректное завершение
                     try {
-                        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
-                            log.error("❌ КРИТИЧНО: Не удалось корректно завершить все потоки");
-                        }
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        log.error("❌ Прервано при ожидании завершения потоков");
-                    }
-                }
-
-                // Собираем результаты выполненных задач
-                for (Future<Void> future : futures) {
-                    try {
-                        if (future.isDone()) {
-                            future.get(); // Получаем результат без таймаута для завершенных задач
+                        long startTime = System.currentTimeMillis();
+
+                        // ОСНОВНОЙ ВЫЗОВ: получение валидированных свечей из кэша с автоматической догрузкой
+                        List<Candle> candles = strictCompleteness == null
+                                ? cacheValidatedCandlesProcessor.getValidatedCandlesFromCache(
+                                exchange, ticker, untilDate, timeframe, period)
+                                : cacheValidatedCandlesProcessor.getValidatedCandlesFromCache(
+                                exchange, ticker, untilDate, timeframe, period, strictCompleteness);
+
+                        long duration = System.currentTimeMillis() - startTime;
+
+                        if (!candles.isEmpty()) {
+                            // УСПЕХ: добавляем тикер в результат
+                            result.put(ticker, candles);
+                            totalCandlesCount.addAndGet(candles.size());
+                            successfulTickers.incrementAndGet();
+                            log.debug("✅ [{}/{}] Поток {}: Получено {} свечей для тикера {} за {} мс",
+                                    tickerNumber, finalTickersToProcess.size(), threadName, candles.size(), ticker, duration);
                         } else {
-                            log.warn("⚠️ Задача не завершена после общего таймаута");
+                            // ПРОПУСК: тикер не прошел валидацию (неактивный/новый/делистинг)
+                            log.debug("⚠️ [{}/{}] Поток {}: Пустой результат для тикера {} - возможно неактивный/делистингованный тикер за {} мс",
+                                    tickerNumber, finalTickersToProcess.size(), threadName, ticker, duration);
                         }
-                    } catch (ExecutionException e) {
-                        log.error("❌ Критическая ошибка в задаче: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                    } catch (Exception e) {
+                        // ОШИБКА: логируем и пропускаем тикер
+                        log.error("❌ [{}/{}] Поток {}: Ошибка при получении свечей для тикера {}: {} - пропускаем тикер",
+                                tickerNumber, finalTickersToProcess.size(), threadName, ticker, e.getMessage());
+                        // НЕ прерываем обработку - просто пропускаем проблемный тикер
                     }
-                }
 
+                    return null;
+                });
+            }
+
+            /*
+             * ОЖИДАНИЕ ЗАВЕРШЕНИЯ ВСЕХ ЗАДАЧ
+             * - Максимум 10 минут на обработку всех тикеров
+             * - Задачи, не завершившиеся за это время, отменяются и не переживают запрос
+             */
+            try {
+                int cancelled = candleRequestExecutor.invokeAll(tasks, 10, TimeUnit.MINUTES);
+                if (cancelled > 0) {
+                    log.warn("⚠️ ТАЙМАУТ: {} задач не завершились за 10 минут и отменены", cancelled);
+                }
             } catch (InterruptedException e) {
                 log.error("❌ ПРЕРЫВАНИЕ: Обработка была прервана: {}", e.getMessage());
                 Thread.currentThread().interrupt();
-            } finally {
-                // Гарантированно закрываем executor
-                if (!executor.isShutdown()) {
-                    executor.shutdownNow();
-                }
             }
 
             /*
@@ -354,17 +334,113 @@ public class CandlesProcessorController {
                 });
             }
             
-            return ResponseEntity.ok(finalResult);
+            // CandleBatch: по Accept отдается бинарным пакетом свечей или JSON картой как раньше
+            return ResponseEntity.ok(new CandleBatch(finalResult));
 
         } catch (IllegalArgumentException e) {
             log.error("❌ ВАЛИДАЦИЯ ОШИБКА: Некорректные параметры запроса: {}", e.getMessage());
             return ResponseEntity.badRequest().body(Map.of("error", "Некорректные параметры: " + e.getMessage()));
         } catch (Exception e) {
             log.error("❌ API ОШИБКА: Ошибка при получении валидированных свечей (extended): {}", e.getMessage(), e);
-            return ResponseEntity.ok(Map.of());
+            return ResponseEntity.ok(new CandleBatch(Map.of()));
         }
     }
 
+    /**
+     * Инкрементальный вариант validated-cache-extended: по каждому тикеру возвращает только свечи
+     * новее последней свечи клиента + размер, границы и контрольную сумму актуального окна.
+     * Окна собираются той же логикой, что и в validated-cache-extended (кэш, догрузка, фильтрация
+     * консистентности), поэтому окно клиента после применения дельты совпадает с полным ответом.
+     * <p>
+     * POST /api/candles-processor/validated-cache-delta
+     */
+    @PostMapping("/validated-cache-delta")
+    public ResponseEntity<?> getValidatedCandlesDelta(@RequestBody CandlesDeltaRequest request) {
+        try {
+            Objects.requireNonNull(request, "Request body не может быть null");
+            Objects.requireNonNull(request.getExchange(), "exchange обязательное поле");
+            Objects.requireNonNull(request.getTimeframe(), "timeframe обязательное поле");
+            Objects.requireNonNull(request.getPeriod(), "period обязательное поле");
+            Objects.requireNonNull(request.getUntilDate(), "untilDate обязательное поле");
+            if (request.getLastTimestamps() == null || request.getLastTimestamps().isEmpty()) {
+                throw new IllegalArgumentException("lastTimestamps не может быть пустым");
+            }
+        } catch (NullPointerException | IllegalArgumentException e) {
+            log.error("❌ ВАЛИДАЦИЯ ОШИБКА: Некорректные параметры delta запроса: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", "Некорректные параметры: " + e.getMessage()));
+        }
+
+        ExtendedCandlesRequest extendedRequest = ExtendedCandlesRequest.builder()
+                .exchange(request.getExchange())
+                .timeframe(request.getTimeframe())
+                .period(request.getPeriod())
+                .untilDate(request.getUntilDate())
+                .tickers(new ArrayList<>(request.getLastTimestamps().keySet()))
+                .useCache(true)
+                .sorted(true)
+                .strictCompleteness(request.getStrictCompleteness())
+                .build();
+
+        ResponseEntity<?> windowsResponse = getValidatedCandlesExtended(extendedRequest);
+        if (!windowsResponse.getStatusCode().is2xxSuccessful() || !(windowsResponse.getBody() instanceof CandleBatch batch)) {
+            return windowsResponse;
+        }
+
+        Map<String, List<Candle>> windows = batch.getCandles();
+
+        Map<String, CandlesDelta> result = new HashMap<>();
+        int fullWindows = 0;
+        int sentCandles = 0;
+        for (Map.Entry<String, List<Candle>> entry : windows.entrySet()) {
+            CandlesDelta delta = buildDelta(entry.getValue(), request.getLastTimestamps().get(entry.getKey()));
+            result.put(entry.getKey(), delta);
+            if (delta.isFullWindow()) {
+                fullWindows++;
+            }
+            sentCandles += delta.getCandles().size();
+        }
+
+        log.info("📤 DELTA: {} тикеров, из них {} полных окон, отправлено {} свечей", result.size(), fullWindows, sentCandles);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Дельта окна относительно последней свечи клиента. Если клиентская свеча не найдена в окне
+     * (окна нет, оно старше окна или окно сервера отстает) - отдается все окно.
+     */
+    private CandlesDelta buildDelta(List<Candle> window, Long clientLastTimestamp) {
+        CandlesDelta.CandlesDeltaBuilder delta = CandlesDelta.builder()
+                .windowSize(window.size())
+                .firstTimestamp(window.isEmpty() ? 0 : window.get(0).getTimestamp())
+                .lastTimestamp(window.isEmpty() ? 0 : window.get(window.size() - 1).getTimestamp())
+                .checksum(CandlesUtil.windowChecksum(window));
+
+        int clientIndex = clientLastTimestamp == null ? -1 : indexOfTimestamp(window, clientLastTimestamp);
+        if (clientIndex < 0) {
+            return delta.fullWindow(true).candles(window).build();
+        }
+        return delta.fullWindow(false)
+                .candles(new ArrayList<>(window.subList(clientIndex + 1, window.size())))
+                .build();
+    }
+
+    private int indexOfTimestamp(List<Candle> window, long timestamp) {
+        int low = 0;
+        int high = window.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midTimestamp = window.get(mid).getTimestamp();
+            if (midTimestamp < timestamp) {
+                low = mid + 1;
+            } else if (midTimestamp > timestamp) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
 //    /**
 //     * Генерирует дату "до" как начало текущего дня в формате 2025-09-27T00:00:00Z
 //     */
@@ -688,46 +764,37 @@ public class CandlesProcessorController {
                 formatTimestamp(referenceLastTimestamp));
         
         // Второй проход: фильтруем тикеры по эталону
+        CandleSeriesValidator.Report report = CandleSeriesValidator.validateAgainstReference(tickerData,
+                new CandleSeriesValidator.Reference(maxCandlesCount, referenceFirstTimestamp, referenceLastTimestamp),
+                LongUnaryOperator.identity());
+
         Map<String, List<Candle>> validTickers = new ConcurrentHashMap<>();
         List<String> invalidTickers = new ArrayList<>();
         
-        for (Map.Entry<String, List<Candle>> entry : tickerData.entrySet()) {
-            String ticker = entry.getKey();
-            List<Candle> candles = entry.getValue();
+        for (int i = 0; i < report.size(); i++) {
+            String ticker = report.tickers().get(i);
+            int mismatches = report.mismatches(i);
             
-            if (candles.isEmpty()) {
+            if (report.isValid(i)) {
+                validTickers.put(ticker, tickerData.get(ticker));
+                continue;
+            }
+            if ((mismatches & CandleSeriesValidator.MISMATCH_EMPTY) != 0) {
                 invalidTickers.add(ticker + "(пустой)");
                 continue;
             }
             
-            boolean isValid = true;
             List<String> issues = new ArrayList<>();
-            
-            // Проверка количества свечей
-            if (candles.size() != maxCandlesCount) {
-                isValid = false;
-                issues.add("свечей:" + candles.size() + "≠" + maxCandlesCount);
-            }
-            
-            // Проверка временных диапазонов
-            long firstTimestamp = candles.get(0).getTimestamp();
-            long lastTimestamp = candles.get(candles.size() - 1).getTimestamp();
-            
-            if (firstTimestamp != referenceFirstTimestamp) {
-                isValid = false;
-                issues.add("начало:" + formatTimestamp(firstTimestamp) + "≠" + formatTimestamp(referenceFirstTimestamp));
+            if ((mismatches & CandleSeriesValidator.MISMATCH_COUNT) != 0) {
+                issues.add("свечей:" + report.count(i) + "≠" + maxCandlesCount);
             }
-            
-            if (lastTimestamp != referenceLastTimestamp) {
-                isValid = false;
-                issues.add("конец:" + formatTimestamp(lastTimestamp) + "≠" + formatTimestamp(referenceLastTimestamp));
+            if ((mismatches & CandleSeriesValidator.MISMATCH_FIRST) != 0) {
+                issues.add("начало:" + formatTimestamp(report.firstTimestamp(i)) + "≠" + formatTimestamp(referenceFirstTimestamp));
             }
-            
-            if (isValid) {
-                validTickers.put(ticker, candles);
-            } else {
-                invalidTickers.add(ticker + "(" + String.join(", ", issues) + ")");
+            if ((mismatches & CandleSeriesValidator.MISMATCH_LAST) != 0) {
+                issues.add("конец:" + formatTimestamp(report.lastTimestamp(i)) + "≠" + formatTimestamp(referenceLastTimestamp));
             }
+            invalidTickers.add(ticker + "(" + String.join(", ", issues) + ")");
         }
         
         log.debug("✅ ФИЛЬТРАЦИЯ РЕЗУЛЬТАТ: {} валидных тикеров из {}", validTickers.size(), tickerData.size());
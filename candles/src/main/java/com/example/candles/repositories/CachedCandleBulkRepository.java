@@ -0,0 +1,245 @@
+package com.example.candles.repositories;
+
+import com.example.shared.dto.Candle;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Пакетные операции со свечами через JDBC, минуя JPA-сущности.
+ * <p>
+ * Свечи лежат в компактной candle_bars: вместо строк (exchange, ticker, timeframe) каждая строка
+ * ссылается на серию по целочисленному id из словаря candle_series (CandleSeriesRepository).
+ * <p>
+ * Вставка: вместо INSERT на каждую свечу отправляет всю порцию одним запросом -
+ * колонки передаются массивами и разворачиваются на стороне Postgres через unnest().
+ * Дубликаты отсекаются первичным ключом (ON CONFLICT DO NOTHING),
+ * а update count запроса равен количеству реально добавленных строк.
+ * <p>
+ * Чтение: последние N свечей сразу для списка тикеров одним запросом
+ * и последние N свечей тикера до заданного момента.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class CachedCandleBulkRepository {
+
+    /**
+     * Максимум строк в одном INSERT - ограничивает размер массивов-параметров
+     */
+    public static final int MAX_ROWS_PER_STATEMENT = 5000;
+
+    private static final String BULK_INSERT_SQL =
+            "INSERT INTO candle_bars (timestamp, open_price, high_price, low_price, close_price, volume, " +
+                    "series_id, timeframe) " +
+                    "SELECT t.ts, t.o, t.h, t.l, t.c, t.v, ?, ? " +
+                    "FROM unnest(?::bigint[], ?::float8[], ?::float8[], ?::float8[], ?::float8[], ?::float8[]) " +
+                    "AS t(ts, o, h, l, c, v) " +
+                    "ON CONFLICT DO NOTHING";
+
+    /**
+     * Для каждой серии - обратный проход по первичному ключу (series_id, timeframe, timestamp)
+     * с LIMIT, поэтому стоимость не зависит от глубины истории
+     */
+    private static final String LATEST_WINDOWS_SQL =
+            "SELECT s.ticker, b.timestamp, b.open_price, b.high_price, b.low_price, b.close_price, b.volume " +
+                    "FROM candle_series s " +
+                    "CROSS JOIN LATERAL (" +
+                    "SELECT cb.timestamp, cb.open_price, cb.high_price, cb.low_price, cb.close_price, cb.volume " +
+                    "FROM candle_bars cb " +
+                    "WHERE cb.series_id = s.id AND cb.timeframe = ? " +
+                    "ORDER BY cb.timestamp DESC LIMIT ?) b " +
+                    "WHERE s.ticker = ANY(?::varchar[]) AND s.timeframe = ? AND s.exchange = ? " +
+                    "ORDER BY s.ticker, b.timestamp";
+
+    /**
+     * Ровно limit последних свечей серии до untilTimestamp: обратный проход по покрывающему первичному ключу
+     * (цены в INCLUDE - index-only scan) с LIMIT - стоимость не зависит от глубины истории,
+     * а условие по timeframe и timestamp оставляет только секции нужного таймфрейма до untilTimestamp
+     */
+    private static final String LAST_BEFORE_SQL =
+            "SELECT timestamp, open_price, high_price, low_price, close_price, volume " +
+                    "FROM candle_bars " +
+                    "WHERE series_id = ? AND timeframe = ? AND timestamp < ? " +
+                    "ORDER BY timestamp DESC LIMIT ?";
+
+    private static final String SERIES_STATS_SQL =
+            "SELECT count(*), min(timestamp), max(timestamp) FROM candle_bars WHERE series_id = ? AND timeframe = ?";
+
+    private static final String SERIES_SCAN_SQL =
+            "SELECT timestamp, open_price, high_price, low_price, close_price, volume " +
+                    "FROM candle_bars WHERE series_id = ? AND timeframe = ? ORDER BY timestamp";
+
+    /**
+     * Строк за одно обращение к БД при полном чтении серии - курсор вместо загрузки всей серии в драйвер
+     */
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CandleSeriesRepository candleSeriesRepository;
+
+    /**
+     * Вставляет свечи порциями по MAX_ROWS_PER_STATEMENT строк
+     *
+     * @return количество реально добавленных свечей (без дубликатов)
+     */
+    public int insertIgnoreDuplicates(String ticker, String timeframe, String exchange, List<Candle> candles) {
+        if (candles.isEmpty()) {
+            return 0;
+        }
+
+        int seriesId = candleSeriesRepository.getOrCreateId(exchange, ticker, timeframe);
+        int insertedCount = 0;
+        for (int from = 0; from < candles.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Candle> chunk = candles.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, candles.size()));
+            insertedCount += insertChunk(seriesId, timeframe, chunk);
+        }
+        return insertedCount;
+    }
+
+    private int insertChunk(int seriesId, String timeframe, List<Candle> chunk) {
+        int size = chunk.size();
+        long[] timestamps = new long[size];
+        double[] open = new double[size];
+        double[] high = new double[size];
+        double[] low = new double[size];
+        double[] close = new double[size];
+        double[] volume = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            Candle candle = chunk.get(i);
+            timestamps[i] = candle.getTimestamp();
+            open[i] = candle.getOpen();
+            high[i] = candle.getHigh();
+            low[i] = candle.getLow();
+            close[i] = candle.getClose();
+            volume[i] = candle.getVolume();
+        }
+
+        return jdbcTemplate.update(BULK_INSERT_SQL, ps -> {
+            ps.setInt(1, seriesId);
+            ps.setString(2, timeframe);
+            ps.setObject(3, timestamps);
+            ps.setObject(4, open);
+            ps.setObject(5, high);
+            ps.setObject(6, low);
+            ps.setObject(7, close);
+            ps.setObject(8, volume);
+        });
+    }
+
+    /**
+     * Последние limit свечей тикера строго до untilTimestamp
+     *
+     * @return изменяемый список свечей по возрастанию timestamp (не больше limit)
+     */
+    public List<Candle> findLastBefore(String exchange, String ticker, String timeframe, long untilTimestamp, int limit) {
+        Integer seriesId = candleSeriesRepository.findId(exchange, ticker, timeframe);
+        if (limit <= 0 || seriesId == null) {
+            return new ArrayList<>();
+        }
+
+        // Строки приходят по убыванию времени - заполняем массив с конца, чтобы не разворачивать список
+        Candle[] window = new Candle[limit];
+        int[] filled = {0};
+        jdbcTemplate.query(LAST_BEFORE_SQL, ps -> {
+            ps.setInt(1, seriesId);
+            ps.setString(2, timeframe);
+            ps.setLong(3, untilTimestamp);
+            ps.setInt(4, limit);
+        }, rs -> {
+            window[limit - 1 - filled[0]++] = new Candle(
+                    rs.getLong(1), rs.getDouble(2), rs.getDouble(3),
+                    rs.getDouble(4), rs.getDouble(5), rs.getDouble(6));
+        });
+
+        return new ArrayList<>(Arrays.asList(window).subList(limit - filled[0], limit));
+    }
+
+    /**
+     * Последние limit свечей для каждого тикера одним запросом
+     *
+     * @return тикер -> изменяемый список свечей по возрастанию timestamp (тикеры без свечей отсутствуют)
+     */
+    public Map<String, List<Candle>> findLatestWindows(String exchange, String timeframe,
+                                                       Collection<String> tickers, int limit) {
+        Map<String, List<Candle>> result = new HashMap<>();
+        if (tickers.isEmpty() || limit <= 0) {
+            return result;
+        }
+
+        jdbcTemplate.query(LATEST_WINDOWS_SQL, ps -> {
+            Array tickersArray = ps.getConnection().createArrayOf("varchar", tickers.toArray());
+            ps.setString(1, timeframe);
+            ps.setInt(2, limit);
+            ps.setArray(3, tickersArray);
+            ps.setString(4, timeframe);
+            ps.setString(5, exchange);
+        }, rs -> {
+            // Строки приходят сгруппированными по тикеру - кладем свечи сразу в список тикера
+            result.computeIfAbsent(rs.getString(1), k -> new ArrayList<>(limit)).add(new Candle(
+                    rs.getLong(2), rs.getDouble(3), rs.getDouble(4),
+                    rs.getDouble(5), rs.getDouble(6), rs.getDouble(7)));
+        });
+
+        return result;
+    }
+
+    /**
+     * Количество, первый и последний timestamp свечей серии
+     *
+     * @return {count, minTimestamp, maxTimestamp}; для серии без свечей - {0, -1, -1}
+     */
+    public long[] findSeriesStats(String exchange, String ticker, String timeframe) {
+        Integer seriesId = candleSeriesRepository.findId(exchange, ticker, timeframe);
+        if (seriesId == null) {
+            return new long[]{0, -1, -1};
+        }
+
+        return jdbcTemplate.queryForObject(SERIES_STATS_SQL, (rs, rowNum) -> {
+            long count = rs.getLong(1);
+            return count == 0 ? new long[]{0, -1, -1} : new long[]{count, rs.getLong(2), rs.getLong(3)};
+        }, seriesId, timeframe);
+    }
+
+    /**
+     * Все свечи серии по возрастанию timestamp, порциями по SCAN_FETCH_SIZE строк
+     * (курсор с fetch size Postgres держит только внутри транзакции)
+     *
+     * @return количество прочитанных свечей
+     */
+    @Transactional(readOnly = true)
+    public long scanSeries(String exchange, String ticker, String timeframe, Consumer<Candle> consumer) {
+        Integer seriesId = candleSeriesRepository.findId(exchange, ticker, timeframe);
+        if (seriesId == null) {
+            return 0;
+        }
+
+        long[] scanned = {0};
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SERIES_SCAN_SQL);
+            ps.setFetchSize(SCAN_FETCH_SIZE);
+            ps.setInt(1, seriesId);
+            ps.setString(2, timeframe);
+            return ps;
+        }, rs -> {
+            consumer.accept(new Candle(
+                    rs.getLong(1), rs.getDouble(2), rs.getDouble(3),
+                    rs.getDouble(4), rs.getDouble(5), rs.getDouble(6)));
+            scanned[0]++;
+        });
+        return scanned[0];
+    }
+}
\ No newline at end of file
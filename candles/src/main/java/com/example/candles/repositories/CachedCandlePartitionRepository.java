@@ -0,0 +1,60 @@
+package com.example.candles.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Управление секциями candle_bars (LIST по timeframe, внутри RANGE по timestamp).
+ * <p>
+ * Вся логика имен и границ секций живет в SQL функциях миграции V52__compact_candle_bars,
+ * здесь только их вызовы.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CachedCandlePartitionRepository {
+
+    private static final String IS_PARTITIONED_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('candle_bars'))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return true, если candle_bars создана и секционирована (миграция выполнена)
+     */
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Boolean.class));
+    }
+
+    /**
+     * Создает секцию периода (месяц, для 1D/1W/1M - год), содержащего timestamp
+     *
+     * @return true, если секция была создана
+     */
+    public boolean ensurePartition(String timeframe, long timestamp) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT candle_bars_ensure_partition(?, ?)", Boolean.class, timeframe, timestamp));
+    }
+
+    /**
+     * Удаляет секции таймфрейма, целиком лежащие до beforeTimestamp
+     *
+     * @return количество удаленных секций
+     */
+    public int dropPartitionsBefore(String timeframe, long beforeTimestamp) {
+        Integer dropped = jdbcTemplate.queryForObject(
+                "SELECT candle_bars_drop_partitions_before(?, ?)", Integer.class, timeframe, beforeTimestamp);
+        return dropped != null ? dropped : 0;
+    }
+
+    /**
+     * Удаляет все свечи таймфрейма биржи - секцией целиком, если в ней нет других бирж
+     *
+     * @return количество удаленных свечей (при удалении секции - оценка по статистике)
+     */
+    public long dropTimeframe(String exchange, String timeframe) {
+        Long removed = jdbcTemplate.queryForObject(
+                "SELECT candle_bars_drop_timeframe(?, ?)", Long.class, exchange, timeframe);
+        return removed != null ? removed : 0;
+    }
+}
@@ -8,12 +8,11 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CachedCandleRepository extends JpaRepository<CachedCandle, Long> {
+public interface CachedCandleRepository extends JpaRepository<CachedCandle, CachedCandle.Key> {
 
     List<CachedCandle> findByTickerAndTimeframeAndExchangeOrderByTimestampAsc(
             String ticker, String timeframe, String exchange);
@@ -21,9 +20,6 @@ public interface CachedCandleRepository extends JpaRepository<CachedCandle, Long
     List<CachedCandle> findByTickerAndTimeframeAndExchangeOrderByTimestampDesc(
             String ticker, String timeframe, String exchange);
 
-    List<CachedCandle> findByTickerAndTimeframeAndExchangeAndTimestampLessThanOrderByTimestampDesc(
-            String ticker, String timeframe, String exchange, Long untilTimestamp);
-
     List<CachedCandle> findByTickerAndTimeframeAndExchangeAndTimestampBetweenOrderByTimestampAsc(
             String ticker, String timeframe, String exchange, Long fromTimestamp, Long toTimestamp);
 
@@ -118,52 +114,48 @@ public interface CachedCandleRepository extends JpaRepository<CachedCandle, Long
     // УДАЛЕНО: deleteByTickerTimeframeExchange - больше не нужно удаление
     // УДАЛЕНО: deleteOldCandlesByExchangeTimeframe - оставляем все исторические данные
 
+    /**
+     * Построчная вставка (режим без пакетной вставки): id серии берется из словаря candle_series
+     */
     @Modifying
     @Transactional
-    @Query(value = "INSERT INTO cached_candles (ticker, timeframe, exchange, timestamp, open_price, " +
-            "high_price, low_price, close_price, volume, is_valid, created_at, updated_at) " +
-            "VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10, NOW(), NOW()) ON CONFLICT DO NOTHING",
+    @Query(value = "INSERT INTO candle_bars (timestamp, open_price, high_price, low_price, close_price, volume, " +
+            "series_id, timeframe) " +
+            "VALUES (?4, ?5, ?6, ?7, ?8, ?9, candle_series_id(?3, ?1, ?2), ?2) ON CONFLICT DO NOTHING",
             nativeQuery = true)
     void insertIgnoreDuplicates(String ticker, String timeframe, String exchange, Long timestamp,
                                 Double openPrice, Double highPrice, Double lowPrice,
-                                Double closePrice, Double volume, Boolean isValid);
-
-    @Modifying
-    @Transactional
-    @Query("UPDATE CachedCandle cc SET cc.isValid = false WHERE cc.updatedAt < :cutoffDate")
-    void markInvalidOldCandles(@Param("cutoffDate") LocalDateTime cutoffDate);
-
-    @Query("SELECT cc FROM CachedCandle cc WHERE cc.isValid = false")
-    List<CachedCandle> findInvalidCandles();
+                                Double closePrice, Double volume);
 
     @Query("SELECT cc.exchange, cc.timeframe, COUNT(cc) as totalCount " +
-            "FROM CachedCandle cc WHERE cc.isValid = true " +
+            "FROM CachedCandle cc " +
             "GROUP BY cc.exchange, cc.timeframe ORDER BY cc.exchange, cc.timeframe")
     List<Object[]> getCacheStatistics();
 
+    // Служебных дат у строк нет - "за сегодня" считаются свечи, время открытия которых попадает в текущие сутки
     @Query("SELECT cc.exchange, cc.timeframe, COUNT(cc) as todayCount " +
-            "FROM CachedCandle cc WHERE cc.isValid = true " +
-            "AND cc.createdAt >= :startOfDay AND cc.createdAt < :startOfNextDay " +
+            "FROM CachedCandle cc " +
+            "WHERE cc.timestamp >= :startOfDay AND cc.timestamp < :startOfNextDay " +
             "GROUP BY cc.exchange, cc.timeframe ORDER BY cc.exchange, cc.timeframe")
-    List<Object[]> getTodayCacheStatistics(@Param("startOfDay") LocalDateTime startOfDay,
-                                           @Param("startOfNextDay") LocalDateTime startOfNextDay);
+    List<Object[]> getTodayCacheStatistics(@Param("startOfDay") Long startOfDay,
+                                           @Param("startOfNextDay") Long startOfNextDay);
 
     /**
      * Оптимизированная статистика - объединяет общую и сегодняшнюю статистику в один запрос
      */
     @Query("SELECT cc.exchange, cc.timeframe, " +
             "COUNT(cc) as totalCount, " +
-            "COUNT(CASE WHEN cc.createdAt >= :startOfDay AND cc.createdAt < :startOfNextDay THEN 1 END) as todayCount " +
-            "FROM CachedCandle cc WHERE cc.isValid = true " +
+            "COUNT(CASE WHEN cc.timestamp >= :startOfDay AND cc.timestamp < :startOfNextDay THEN 1 END) as todayCount " +
+            "FROM CachedCandle cc " +
             "GROUP BY cc.exchange, cc.timeframe ORDER BY cc.exchange, cc.timeframe")
-    List<Object[]> getOptimizedCacheStatistics(@Param("startOfDay") LocalDateTime startOfDay,
-                                              @Param("startOfNextDay") LocalDateTime startOfNextDay);
+    List<Object[]> getOptimizedCacheStatistics(@Param("startOfDay") Long startOfDay,
+                                              @Param("startOfNextDay") Long startOfNextDay);
 
     /**
      * Оптимизированная статистика по таймфреймам для биржи - заменяет цикл COUNT запросов
      */
     @Query("SELECT cc.timeframe, COUNT(cc) as count " +
-            "FROM CachedCandle cc WHERE cc.exchange = :exchange AND cc.isValid = true " +
+            "FROM CachedCandle cc WHERE cc.exchange = :exchange " +
             "GROUP BY cc.timeframe ORDER BY cc.timeframe")
     List<Object[]> getTimeframeStatistics(@Param("exchange") String exchange);
 
@@ -181,10 +173,12 @@ public interface CachedCandleRepository extends JpaRepository<CachedCandle, Long
     java.util.Set<String> findDistinctTimeframes(@Param("exchange") String exchange);
 
     /**
-     * Удалить все свечи для определенной биржи и таймфрейма
+     * Удалить все свечи для определенной биржи и таймфрейма (по id серий из словаря)
      */
     @Modifying
     @Transactional
-    @Query("DELETE FROM CachedCandle cc WHERE cc.exchange = :exchange AND cc.timeframe = :timeframe")
+    @Query(value = "DELETE FROM candle_bars WHERE timeframe = :timeframe AND series_id IN " +
+            "(SELECT id FROM candle_series WHERE exchange = :exchange AND timeframe = :timeframe)",
+            nativeQuery = true)
     int deleteByExchangeAndTimeframe(@Param("exchange") String exchange, @Param("timeframe") String timeframe);
 }
\ No newline at end of file
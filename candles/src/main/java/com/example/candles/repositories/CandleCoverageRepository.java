@@ -0,0 +1,74 @@
+package com.example.candles.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Карта покрытия серий свечей (таблица candle_coverage, миграция V54 в core)
+ */
+@Repository
+@RequiredArgsConstructor
+public class CandleCoverageRepository {
+
+    private static final String FIND_SQL =
+            "SELECT start_timestamp, end_timestamp FROM candle_coverage WHERE series_id = ? ORDER BY start_timestamp";
+
+    private static final String DELETE_TIMEFRAME_SQL =
+            "DELETE FROM candle_coverage " +
+                    "WHERE series_id IN (SELECT id FROM candle_series WHERE exchange = ? AND timeframe = ?)";
+
+    private static final String DELETE_BEFORE_SQL =
+            "DELETE FROM candle_coverage " +
+                    "WHERE end_timestamp < ? AND series_id IN (SELECT id FROM candle_series WHERE timeframe = ?)";
+
+    private static final String TRIM_BEFORE_SQL =
+            "UPDATE candle_coverage SET start_timestamp = ? " +
+                    "WHERE start_timestamp < ? AND series_id IN (SELECT id FROM candle_series WHERE timeframe = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CandleSeriesRepository candleSeriesRepository;
+
+    /**
+     * @return интервалы {start, end} по возрастанию
+     */
+    public List<long[]> find(String exchange, String ticker, String timeframe) {
+        Integer seriesId = candleSeriesRepository.findId(exchange, ticker, timeframe);
+        if (seriesId == null) {
+            return List.of();
+        }
+        return jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, seriesId);
+    }
+
+    /**
+     * Заменяет покрытие серии целиком
+     */
+    @Transactional
+    public void replace(String exchange, String ticker, String timeframe, List<long[]> intervals) {
+        int seriesId = candleSeriesRepository.getOrCreateId(exchange, ticker, timeframe);
+        jdbcTemplate.update("DELETE FROM candle_coverage WHERE series_id = ?", seriesId);
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO candle_coverage (series_id, start_timestamp, end_timestamp) VALUES (?, ?, ?)",
+                intervals, intervals.size(), (ps, interval) -> {
+                    ps.setInt(1, seriesId);
+                    ps.setLong(2, interval[0]);
+                    ps.setLong(3, interval[1]);
+                });
+    }
+
+    public int deleteTimeframe(String exchange, String timeframe) {
+        return jdbcTemplate.update(DELETE_TIMEFRAME_SQL, exchange, timeframe);
+    }
+
+    /**
+     * Обрезает покрытие таймфрейма до beforeTimestamp (свечи удалены по сроку хранения)
+     */
+    @Transactional
+    public void trimBefore(String timeframe, long beforeTimestamp) {
+        jdbcTemplate.update(DELETE_BEFORE_SQL, beforeTimestamp, timeframe);
+        jdbcTemplate.update(TRIM_BEFORE_SQL, beforeTimestamp, beforeTimestamp, timeframe);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.candles.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Контрольные точки предзагрузки свечей (таблица candle_preload_checkpoints, миграция V53 в core)
+ */
+@Repository
+@RequiredArgsConstructor
+public class CandlePreloadCheckpointRepository {
+
+    private static final String FIND_SQL =
+            "SELECT from_timestamp, oldest_timestamp, newest_timestamp, completed " +
+                    "FROM candle_preload_checkpoints WHERE series_id = ?";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO candle_preload_checkpoints " +
+                    "(series_id, from_timestamp, oldest_timestamp, newest_timestamp, completed, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, now()) " +
+                    "ON CONFLICT (series_id) DO UPDATE SET " +
+                    "from_timestamp = EXCLUDED.from_timestamp, " +
+                    "oldest_timestamp = EXCLUDED.oldest_timestamp, " +
+                    "newest_timestamp = EXCLUDED.newest_timestamp, " +
+                    "completed = EXCLUDED.completed, " +
+                    "updated_at = now()";
+
+    private static final String DELETE_TIMEFRAME_SQL =
+            "DELETE FROM candle_preload_checkpoints " +
+                    "WHERE series_id IN (SELECT id FROM candle_series WHERE exchange = ? AND timeframe = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CandleSeriesRepository candleSeriesRepository;
+
+    /**
+     * Прогресс серии: непрерывный загруженный участок [oldestTimestamp, newestTimestamp],
+     * completed - история загружена до fromTimestamp
+     */
+    public record Checkpoint(long fromTimestamp, Long oldestTimestamp, Long newestTimestamp, boolean completed) {
+    }
+
+    public Optional<Checkpoint> find(String exchange, String ticker, String timeframe) {
+        Integer seriesId = candleSeriesRepository.findId(exchange, ticker, timeframe);
+        if (seriesId == null) {
+            return Optional.empty();
+        }
+
+        List<Checkpoint> found = jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> new Checkpoint(
+                rs.getLong("from_timestamp"),
+                rs.getObject("oldest_timestamp", Long.class),
+                rs.getObject("newest_timestamp", Long.class),
+                rs.getBoolean("completed")), seriesId);
+        return found.stream().findFirst();
+    }
+
+    public void save(String exchange, String ticker, String timeframe, Checkpoint checkpoint) {
+        int seriesId = candleSeriesRepository.getOrCreateId(exchange, ticker, timeframe);
+        jdbcTemplate.update(UPSERT_SQL, seriesId, checkpoint.fromTimestamp(), checkpoint.oldestTimestamp(),
+                checkpoint.newestTimestamp(), checkpoint.completed());
+    }
+
+    public void delete(String exchange, String ticker, String timeframe) {
+        Integer seriesId = candleSeriesRepository.findId(exchange, ticker, timeframe);
+        if (seriesId != null) {
+            jdbcTemplate.update("DELETE FROM candle_preload_checkpoints WHERE series_id = ?", seriesId);
+        }
+    }
+
+    /**
+     * @return количество удаленных контрольных точек
+     */
+    public int deleteTimeframe(String exchange, String timeframe) {
+        return jdbcTemplate.update(DELETE_TIMEFRAME_SQL, exchange, timeframe);
+    }
+}
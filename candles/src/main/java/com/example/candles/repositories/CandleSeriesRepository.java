@@ -0,0 +1,88 @@
+package com.example.candles.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь серий candle_series: (exchange, ticker, timeframe) -> целочисленный id, которым
+ * строки candle_bars ссылаются на серию вместо трех строк.
+ * <p>
+ * id серии не меняется, поэтому найденные id кэшируются в памяти на все время работы сервиса.
+ * Внутри транзакции id попадает в кэш только после ее коммита: откат не оставит в кэше
+ * id серии, созданной этой транзакцией.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CandleSeriesRepository {
+
+    private static final String FIND_ID_SQL =
+            "SELECT id FROM candle_series WHERE exchange = ? AND ticker = ? AND timeframe = ?";
+
+    private static final String GET_OR_CREATE_ID_SQL = "SELECT candle_series_id(?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * id серии; новая серия создается функцией candle_series_id() в транзакции вызывающего
+     * (на том же соединении, как и при построчной вставке)
+     */
+    public int getOrCreateId(String exchange, String ticker, String timeframe) {
+        String key = key(exchange, ticker, timeframe);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        Integer created = jdbcTemplate.queryForObject(GET_OR_CREATE_ID_SQL, Integer.class, exchange, ticker, timeframe);
+        if (created == null) {
+            throw new IllegalStateException("Не удалось получить id серии " + key);
+        }
+        cache(key, created);
+        return created;
+    }
+
+    /**
+     * @return id серии или null, если свечей такой серии еще не сохраняли
+     */
+    public Integer findId(String exchange, String ticker, String timeframe) {
+        String key = key(exchange, ticker, timeframe);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        List<Integer> found = jdbcTemplate.queryForList(FIND_ID_SQL, Integer.class, exchange, ticker, timeframe);
+        if (found.isEmpty()) {
+            return null;
+        }
+        // Серию могла создать еще не закоммиченная текущая транзакция
+        cache(key, found.get(0));
+        return found.get(0);
+    }
+
+    private void cache(String key, int id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.put(key, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.put(key, id);
+            }
+        });
+    }
+
+    private static String key(String exchange, String ticker, String timeframe) {
+        return exchange + "|" + ticker + "|" + timeframe;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.candles.scheduler;
 
 import com.example.candles.service.CandleCacheService;
+import com.example.candles.service.CandlePartitionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,6 +21,7 @@ import java.util.Map;
 public class CandleCacheScheduler {
 
     private final CandleCacheService candleCacheService;
+    private final CandlePartitionService candlePartitionService;
 
     @Value("${app.candle-cache.default-exchange:OKX}")
     private String defaultExchange;
@@ -39,6 +41,9 @@ public class CandleCacheScheduler {
     @EventListener(ApplicationReadyEvent.class)
     @Async // Делаем метод асинхронным чтобы не блокировать UI при запуске
     public void onApplicationReady() {
+        // Секции нужны до первой записи свечей, иначе свечи осядут в DEFAULT секции
+        maintainPartitions();
+
         if (startupCheckEnabled) {
             log.debug("🚀 Приложение готово. Асинхронно проверяем состояние кэша свечей...");
 
@@ -115,6 +120,14 @@ public class CandleCacheScheduler {
         }
     }
 
+    /**
+     * Ежедневное обслуживание секций candle_bars в 2:30 - до обновления кэша в 3:00
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    public void scheduledPartitionMaintenance() {
+        maintainPartitions();
+    }
+
     /**
      * Дополнительное обновление каждые 4 часа (только новые свечи)
      */
@@ -250,6 +263,14 @@ public class CandleCacheScheduler {
         }
     }
 
+    private void maintainPartitions() {
+        try {
+            candlePartitionService.maintainPartitions();
+        } catch (Exception e) {
+            log.error("❌ Ошибка обслуживания секций candle_bars: {}", e.getMessage(), e);
+        }
+    }
+
     private void notifySchedulerError(Exception e) {
         // TODO: Здесь можно добавить отправку уведомлений в Telegram или по email
         log.error("🔔 КРИТИЧЕСКАЯ ОШИБКА ШЕДУЛЛЕРА КЭША: {}", e.getMessage());
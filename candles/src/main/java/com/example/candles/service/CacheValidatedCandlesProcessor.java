@@ -1,18 +1,23 @@
 package com.example.candles.service;
 
-import com.example.candles.repositories.CachedCandleRepository;
+import com.example.candles.repositories.CachedCandleBulkRepository;
+import com.example.candles.service.CandleCoverage.Range;
 import com.example.candles.utils.CandleCalculatorUtil;
 import com.example.shared.dto.Candle;
-import com.example.shared.models.CachedCandle;
+import com.example.shared.utils.CandleSeriesValidator;
+import com.example.shared.utils.CandleSeriesValidator.Gap;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Сервис-процессор для получения свечей из кэша с расширенной валидацией
@@ -28,32 +33,51 @@ import java.util.stream.Collectors;
  * 1. Валидация по количеству свечей (с учетом допустимых отклонений)
  * 2. Валидация консистентности таймштампов (проверка временных интервалов между свечами)
  * <p>
- * При обнаружении проблем автоматически догружает недостающие данные:
- * - Для проблем с количеством: стандартная догрузка всего диапазона
- * - Для пропусков в таймштампах: специальная догрузка с повторными попытками до восстановления консистентности
+ * При обнаружении проблем вычисляет недостающие диапазоны окна и передает их фоновой догрузке
+ * (CandleGapRepairService). Поток запроса ждет догрузку только при строгой полноте данных,
+ * иначе тикер пропускается до завершения догрузки.
  * <p>
- * Гарантирует 100% консистентность и непрерывность временных рядов свечей.
+ * Одинаковые параллельные запросы окна (конец окна выравнивается по закрытию свечи) выполняются один раз
+ * и коротко кэшируются в CandleWindowCache до сохранения новой свечи серии.
+ * <p>
+ * Возвращает только консистентные и непрерывные временные ряды свечей.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class CacheValidatedCandlesProcessor {
 
-    private final CachedCandleRepository cachedCandleRepository;
-    private final CandlesLoaderProcessor candlesLoaderProcessor;
-    
-    // Синхронизация догрузки по тикерам для избежания дублирования запросов в многопоточной среде
-    private final ConcurrentHashMap<String, Object> tickerLocks = new ConcurrentHashMap<>();
+    private final CachedCandleBulkRepository cachedCandleBulkRepository;
+    private final CandleArchive candleArchive;
+    private final CandleGapRepairService candleGapRepairService;
+    private final CandleWindowCache candleWindowCache;
+    private final CandleRequestExecutor candleRequestExecutor;
+
+    @Value("${app.candle-cache.gap-repair.strict-by-default:false}")
+    private boolean strictByDefault;
+
+    @Value("${app.candle-cache.gap-repair.strict-timeout-seconds:120}")
+    private long strictTimeoutSeconds;
 
     /**
      * Главный публичный метод для получения валидированных свечей из кэша
+     * (строгая полнота - по настройке app.candle-cache.gap-repair.strict-by-default)
+     */
+    public List<Candle> getValidatedCandlesFromCache(String exchange, String ticker, String untilDate, String timeframe, String period) {
+        return getValidatedCandlesFromCache(exchange, ticker, untilDate, timeframe, period, strictByDefault);
+    }
+
+    /**
+     * Получение валидированных свечей из кэша с фоновой догрузкой пропусков
      * 
      * ПСЕВДОКОД ЛОГИКИ:
      * {
      *   БЛОК 1: ПОДГОТОВКА И РАСЧЕТЫ
      *   {
      *     1.1. Вычисляем ожидаемое количество свечей для данного периода до untilDate
-     *     1.2. Парсим untilDate в миллисекунды для работы с БД
+     *     1.2. Парсим untilDate в миллисекунды для работы с БД (с выравниванием до закрытия свечи)
+     *     1.3. Одинаковые параллельные запросы окна ждут одно вычисление блоков 2-5 (CandleWindowCache),
+     *          свежий результат окна отдается из короткого кэша
      *   }
      *   
      *   БЛОК 2: ПОЛУЧЕНИЕ ДАННЫХ ИЗ КЭША
@@ -66,21 +90,17 @@ public class CacheValidatedCandlesProcessor {
      *   {
      *     3.1. Валидация по количеству: сравниваем полученное vs ожидаемое количество
      *     3.2. Валидация консистентности: проверяем отсутствие пропусков во временных интервалах
+     *     3.3. ЕСЛИ валидация прошла → окно отмечается покрытым в карте покрытия серии
      *   }
      *   
-     *   БЛОК 4: СИСТЕМА RETRY С DOGРУЗКОЙ (максимум 2 попытки)
+     *   БЛОК 4: ФОНОВАЯ ДОГРУЗКА НЕДОСТАЮЩИХ ДИАПАЗОНОВ
      *   {
-     *     ПОКА (валидация провалена И попытки остались) {
-     *       4.1. Логируем причину провала валидации
-     *       4.2. ЕСЛИ последняя попытка → возвращаем пустой список (тикер неактивный)
-     *       4.3. СИНХРОНИЗАЦИЯ: блокируем догрузку по ключу ticker:timeframe:exchange
-     *       4.4. ВЫБОР ТИПА ДОГРУЗКИ:
-     *            ЕСЛИ есть пропуски в timestamps → специальная догрузка для gaps
-     *            ИНАЧЕ → обычная полная догрузка с OKX API
-     *       4.5. Повторно запрашиваем данные из кэша после догрузки
-     *       4.6. Повторно валидируем количество и консистентность
-     *       4.7. ЕСЛИ догрузка провалена → возвращаем пустой список
-     *     }
+     *     4.1. Вычисляем недостающие диапазоны окна: до первой свечи, пропуски, после последней
+     *     4.2. Передаем их в CandleGapRepairService - он вычитает уже загруженное с биржи
+     *          и объединяет запросы параллельных вызывающих в один план загрузки
+     *     4.3. ЕСЛИ загружать нечего → биржа больше свечей не отдает, возвращаем пустой список (тикер неактивный)
+     *     4.4. ЕСЛИ строгая полнота не нужна → не ждем догрузку, возвращаем пустой список (тикер пропускается)
+     *     4.5. ИНАЧЕ ждем догрузку, повторно читаем и валидируем окно
      *   }
      *   
      *   БЛОК 5: ВОЗВРАТ РЕЗУЛЬТАТА
@@ -89,12 +109,13 @@ public class CacheValidatedCandlesProcessor {
      *     5.2. При любой ошибке → возвращаем пустой список
      *   }
      * }
+     *
+     * @param strictCompleteness true - дождаться догрузки недостающих свечей (не дольше strict-timeout-seconds)
      */
-    public List<Candle> getValidatedCandlesFromCache(String exchange, String ticker, String untilDate, String timeframe, String period) {
+    public List<Candle> getValidatedCandlesFromCache(String exchange, String ticker, String untilDate, String timeframe,
+                                                     String period, boolean strictCompleteness) {
         log.debug("🔍 КЭШ ЗАПРОС: Получаем свечи для тикера {} на бирже {}", ticker, exchange);
-        log.debug("📊 ПАРАМЕТРЫ: untilDate={}, timeframe={}, period={}", untilDate, timeframe, period);
-
-        // Таймфрейм передается напрямую в методы для избежания race condition
+        log.debug("📊 ПАРАМЕТРЫ: untilDate={}, timeframe={}, period={}, strict={}", untilDate, timeframe, period, strictCompleteness);
 
         try {
             /*
@@ -106,13 +127,28 @@ public class CacheValidatedCandlesProcessor {
             int expectedCandlesCount = CandleCalculatorUtil.calculateCandlesCountUntilDate(ticker, timeframe, period, untilDate);
             log.debug("🎯 ОЖИДАНИЯ: {} свечей для периода '{}' с таймфреймом {} до {}", expectedCandlesCount, period, timeframe, untilDate);
 
-            // Шаг 1.2: Парсим untilDate в миллисекунды
-            long untilTimestamp = parseUntilDate(untilDate);
-            
+            // Шаг 1.2: Парсим untilDate в миллисекунды и выравниваем вверх до закрытия свечи:
+            // в окно попадают те же свечи (timestamp < untilDate), а одинаковые окна получают один ключ
+            long untilTimestamp = alignToBarClose(parseUntilDate(untilDate), getTimeframeDurationInMillis(timeframe));
+
+            return candleWindowCache.getOrCompute(exchange, ticker, timeframe, expectedCandlesCount, untilTimestamp,
+                    strictCompleteness, () -> loadValidatedWindow(exchange, ticker, timeframe,
+                            expectedCandlesCount, untilTimestamp, strictCompleteness));
+
+        } catch (Exception e) {
+            log.error("💥 КЭШ ОШИБКА: Ошибка при получении свечей для тикера {}: {}", ticker, e.getMessage(), e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Чтение, валидация и при необходимости догрузка одного окна (блоки 2-5)
+     */
+    private List<Candle> loadValidatedWindow(String exchange, String ticker, String timeframe, int expectedCandlesCount,
+                                             long untilTimestamp, boolean strictCompleteness) {
+        try {
             /*
              * БЛОК 2: ПОЛУЧЕНИЕ ДАННЫХ ИЗ КЭША
-             * - Запрашиваем из PostgreSQL последние N свечей ДО указанной даты
-             * - Сортируем по возрастанию времени для корректного анализа
              */
             // Шаг 2.1: Получаем свечи ДО untilDate из кэша (PostgreSQL)
             List<Candle> cachedCandles = getCandlesFromCacheByActualRange(exchange, ticker, timeframe, expectedCandlesCount, untilTimestamp);
@@ -122,111 +158,71 @@ public class CacheValidatedCandlesProcessor {
              * Этап 1: Проверка количества (достаточно ли свечей)
              * Этап 2: Проверка консистентности временных интервалов (нет ли пропусков)
              */
-            // Шаг 3.1: Валидируем полученные свечи по количеству
             ValidationResult validationResult = validateCandlesByCount(cachedCandles, expectedCandlesCount, ticker, timeframe);
-
-            // Шаг 3.2: Валидируем консистентность таймштампов свечей (проверяем пропуски)
             TimestampValidationResult timestampValidation = validateCandlesConsistency(cachedCandles, timeframe, ticker);
 
+            if (validationResult.isValid && timestampValidation.isValid) {
+                markWindowCovered(exchange, ticker, timeframe, cachedCandles);
+                log.debug("✅ КЭШ РЕЗУЛЬТАТ: Возвращаем {} валидированных свечей для тикера {}", cachedCandles.size(), ticker);
+                return cachedCandles;
+            }
+
+            if (!validationResult.isValid) {
+                log.debug("⚠️ ВАЛИДАЦИЯ КОЛИЧЕСТВА ПРОВАЛЕНА: {} {}", ticker, validationResult.reason);
+            }
+            if (!timestampValidation.isValid) {
+                log.debug("⚠️ ВАЛИДАЦИЯ КОНСИСТЕНТНОСТИ ПРОВАЛЕНА: {} {}", ticker, timestampValidation.reason);
+            }
+
             /*
-             * БЛОК 4: СИСТЕМА RETRY С ДОГРУЗКОЙ (максимум 2 попытки)
-             * Алгоритм:
-             * 1. ЕСЛИ валидация прошла → выходим из цикла
-             * 2. ЕСЛИ валидация провалена → пытаемся догрузить недостающие данные
-             * 3. Максимум 2 попытки, после чего считаем тикер неактивным
-             * 4. Синхронизация по тикеру для избежания параллельных догрузок
+             * БЛОК 4: ФОНОВАЯ ДОГРУЗКА НЕДОСТАЮЩИХ ДИАПАЗОНОВ
+             * - Запросы параллельных вызывающих по одной серии объединяются в CandleGapRepairService
+             * - Поток запроса ждет догрузку только при строгой полноте
              */
-            // Шаг 4: Система retry с догрузкой (максимум 2 попытки)
-            final int MAX_VALIDATION_ATTEMPTS = 2;
-            for (int attempt = 1; attempt <= MAX_VALIDATION_ATTEMPTS; attempt++) {
-                
-                if (!validationResult.isValid || !timestampValidation.isValid) {
-                    // Логируем причины провала валидации
-                    if (!validationResult.isValid) {
-                        log.debug("⚠️ ВАЛИДАЦИЯ КОЛИЧЕСТВА ПРОВАЛЕНА (попытка {}/{}): {} {}", attempt, MAX_VALIDATION_ATTEMPTS, ticker, validationResult.reason);
-                    }
-                    if (!timestampValidation.isValid) {
-                        log.debug("⚠️ ВАЛИДАЦИЯ КОНСИСТЕНТНОСТИ ПРОВАЛЕНА (попытка {}/{}): {} {}", attempt, MAX_VALIDATION_ATTEMPTS, ticker, timestampValidation.reason);
-                    }
-                    
-                    // Если это последняя попытка - не делаем догрузку, возвращаем пустой список
-                    if (attempt == MAX_VALIDATION_ATTEMPTS) {
-                        log.debug("⚠️ ИСЧЕРПАНЫ ПОПЫТКИ: {} Максимум {} попыток валидации - возможно неактивный тикер", ticker, MAX_VALIDATION_ATTEMPTS);
-                        return List.of();
-                    }
-                    
-                    log.debug("🔄 ДОГРУЗКА (попытка {}/{}): Запускаем загрузку свежих данных для тикера {}", attempt, MAX_VALIDATION_ATTEMPTS, ticker);
-
-                    /*
-                     * СИНХРОНИЗАЦИЯ ПО ТИКЕРУ
-                     * - Создаем уникальный ключ блокировки для каждого ticker:timeframe:exchange
-                     * - Предотвращаем одновременную догрузку одного и того же тикера в разных потоках
-                     * - Избегаем дублирующих API запросов к OKX
-                     */
-                    // Синхронизируем догрузку по тикеру для избежания дублирующих запросов к OKX API
-                    String lockKey = ticker + ":" + timeframe + ":" + exchange;
-                    Object lock = tickerLocks.computeIfAbsent(lockKey, k -> new Object());
-                    
-                    int loadedCount;
-                    synchronized (lock) {
-                        log.debug("🔒 СИНХРОНИЗАЦИЯ: Захватили блокировку для догрузки тикера {}", ticker);
-                        
-                        /*
-                         * ВЫБОР ТИПА ДОГРУЗКИ В ЗАВИСИМОСТИ ОТ ПРОБЛЕМЫ:
-                         * Случай 1: Есть пропуски в таймштампах → специальная догрузка для заполнения gaps
-                         * Случай 2: Недостаточно свечей → полная догрузка всего диапазона
-                         */
-                        // Если есть пропуски в таймштампах - используем специальную догрузку
-                        if (!timestampValidation.isValid && !timestampValidation.gaps.isEmpty()) {
-                            loadedCount = loadMissingCandlesForGaps(timestampValidation.gaps, exchange, ticker, timeframe, period, untilDate);
-                        } else {
-                            // Обычная догрузка для проблем с количеством
-                            loadedCount = candlesLoaderProcessor.loadAndSaveCandles(exchange, ticker, untilDate, timeframe, period);
-                        }
-                        
-                        log.debug("🔓 СИНХРОНИЗАЦИЯ: Освободили блокировку для тикера {} (загружено {} свечей)", ticker, loadedCount);
-                    }
-                    
-                    /*
-                     * ОБРАБОТКА РЕЗУЛЬТАТА ДОГРУЗКИ:
-                     * Успех: повторно валидируем данные из кэша
-                     * Провал: возвращаем пустой список (тикер неактивный)
-                     */
-                    if (loadedCount > 0) {
-                        log.debug("✅ ДОГРУЗКА ЗАВЕРШЕНА (попытка {}/{}): Загружено {} свечей, повторно получаем из кэша", attempt, MAX_VALIDATION_ATTEMPTS, loadedCount);
-
-                        // Повторно получаем из кэша после догрузки ДО untilDate
-                        cachedCandles = getCandlesFromCacheByActualRange(exchange, ticker, timeframe, expectedCandlesCount, untilTimestamp);
-                        validationResult = validateCandlesByCount(cachedCandles, expectedCandlesCount, ticker, timeframe);
-                        timestampValidation = validateCandlesConsistency(cachedCandles, timeframe, ticker);
-
-                        // Проверяем результат повторной валидации - если все хорошо, цикл прервется на следующей итерации
-                        // Если плохо - попробуем еще раз (если есть попытки)
-                    } else {
-                        log.error("❌ ДОГРУЗКА ПРОВАЛЕНА (попытка {}/{}): Не удалось загрузить данные для тикера {} - возможно неактивный тикер", attempt, MAX_VALIDATION_ATTEMPTS, ticker);
-                        return List.of(); // Возвращаем пустой список сразу
-                    }
-                } else {
-                    /*
-                     * УСПЕШНАЯ ВАЛИДАЦИЯ:
-                     * - Количество свечей соответствует ожидаемому
-                     * - Временные интервалы консистентны
-                     * - Выходим из цикла retry
-                     */
-                    // Валидация прошла успешно - выходим из цикла
-                    break;
-                }
+            List<Range> missingRanges = findMissingRanges(cachedCandles, timestampValidation.gaps,
+                    expectedCandlesCount, untilTimestamp, timeframe);
+            CompletableFuture<Integer> repair = candleGapRepairService.requestRepair(exchange, ticker, timeframe, missingRanges);
+
+            if (repair.isDone() && !repair.isCompletedExceptionally() && repair.join() == 0) {
+                log.debug("⚠️ НЕТ ДАННЫХ НА БИРЖЕ: {} недостающие диапазоны уже загружались - возможно неактивный тикер", ticker);
+                return List.of();
+            }
+            if (!strictCompleteness) {
+                log.debug("🩹 ДОГРУЗКА В ФОНЕ: {} - {} недостающих диапазонов, тикер пропускается до догрузки",
+                        ticker, missingRanges.size());
+                return List.of();
+            }
+
+            try {
+                int loadedCount = repair.get(strictTimeoutSeconds, TimeUnit.SECONDS);
+                log.debug("✅ ДОГРУЗКА ЗАВЕРШЕНА: Загружено {} свечей для тикера {}, повторно получаем из кэша", loadedCount, ticker);
+            } catch (TimeoutException e) {
+                log.warn("⚠️ ДОГРУЗКА НЕ УСПЕЛА за {} сек для тикера {} - продолжится в фоне", strictTimeoutSeconds, ticker);
+                return List.of();
+            } catch (ExecutionException e) {
+                log.error("❌ ДОГРУЗКА ПРОВАЛЕНА для тикера {}: {}", ticker, e.getCause().getMessage());
+                return List.of();
+            }
+
+            // Повторно получаем из кэша после догрузки ДО untilDate
+            cachedCandles = getCandlesFromCacheByActualRange(exchange, ticker, timeframe, expectedCandlesCount, untilTimestamp);
+            validationResult = validateCandlesByCount(cachedCandles, expectedCandlesCount, ticker, timeframe);
+            timestampValidation = validateCandlesConsistency(cachedCandles, timeframe, ticker);
+            if (!validationResult.isValid || !timestampValidation.isValid) {
+                log.debug("⚠️ ВАЛИДАЦИЯ ПОСЛЕ ДОГРУЗКИ ПРОВАЛЕНА: {} - возможно неактивный тикер", ticker);
+                return List.of();
             }
 
             /*
              * БЛОК 5: ВОЗВРАТ РЕЗУЛЬТАТА
-             * - Возвращаем список валидированных свечей
-             * - Все свечи прошли проверку количества и консистентности
              */
-            // Шаг 5: Возвращаем валидированные свечи
+            markWindowCovered(exchange, ticker, timeframe, cachedCandles);
             log.debug("✅ КЭШ РЕЗУЛЬТАТ: Возвращаем {} валидированных свечей для тикера {}", cachedCandles.size(), ticker);
             return cachedCandles;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
         } catch (Exception e) {
             /*
              * ОБРАБОТКА КРИТИЧЕСКИХ ОШИБОК:
@@ -238,6 +234,43 @@ public class CacheValidatedCandlesProcessor {
         }
     }
 
+    /**
+     * Недостающие диапазоны окна [untilTimestamp - expectedCount свечей, untilTimestamp):
+     * до первой свечи, внутри пропусков и после последней свечи
+     */
+    private List<Range> findMissingRanges(List<Candle> candles, List<Gap> gaps, int expectedCount,
+                                          long untilTimestamp, String timeframe) {
+        long step = getTimeframeDurationInMillis(timeframe);
+        long windowFrom = untilTimestamp - expectedCount * step;
+        long windowTo = untilTimestamp - step;
+
+        List<Range> missing = new ArrayList<>();
+        if (candles.isEmpty()) {
+            missing.add(new Range(windowFrom, windowTo));
+            return missing;
+        }
+
+        long first = candles.get(0).getTimestamp();
+        long last = candles.get(candles.size() - 1).getTimestamp();
+        if (first > windowFrom) {
+            missing.add(new Range(windowFrom, first - 1));
+        }
+        for (Gap gap : gaps) {
+            missing.add(new Range(gap.startTimestamp() + 1, gap.endTimestamp() - 1));
+        }
+        if (last < windowTo) {
+            missing.add(new Range(last + 1, windowTo));
+        }
+        return missing;
+    }
+
+    private void markWindowCovered(String exchange, String ticker, String timeframe, List<Candle> candles) {
+        if (!candles.isEmpty()) {
+            candleGapRepairService.markCovered(exchange, ticker, timeframe,
+                    candles.get(0).getTimestamp(), candles.get(candles.size() - 1).getTimestamp());
+        }
+    }
+
 //    /**
 //     * Вычисляет ожидаемые параметры для валидации
 //     */
@@ -260,6 +293,13 @@ public class CacheValidatedCandlesProcessor {
 //        return new ExpectedParameters(candlesCount, expectedOldestTime, expectedNewestTime);
 //    }
 
+    /**
+     * Округляет момент вверх до границы свечи
+     */
+    private static long alignToBarClose(long timestamp, long step) {
+        return Math.floorDiv(timestamp + step - 1, step) * step;
+    }
+
     /**
      * Парсит дату в формате 2025-09-27T00:00:00Z в миллисекунды
      */
@@ -304,31 +344,22 @@ public class CacheValidatedCandlesProcessor {
     /**
      * Получает последние свечи из кэша по реальному диапазону, отталкиваясь от untilDate
      */
-    private List<Candle> getCandlesFromCacheByActualRange(String exchange, String ticker, String timeframe, int expectedCount, long untilTimestamp) {
+    private List<Candle> getCandlesFromCacheByActualRange(String exchange, String ticker, String timeframe, int expectedCount,
+                                                          long untilTimestamp) throws InterruptedException {
         log.debug("🗃️ КЭШ ЗАПРОС: Получаем последние {} свечей для тикера {} ДО даты {}",
                 expectedCount, ticker, formatTimestamp(untilTimestamp));
 
         try {
-            // Получаем все свечи для данного тикера ДО untilDate, отсортированные по убыванию времени
-            List<CachedCandle> cachedCandles = cachedCandleRepository
-                    .findByTickerAndTimeframeAndExchangeAndTimestampLessThanOrderByTimestampDesc(
-                            ticker, timeframe, exchange, untilTimestamp);
-
-            log.debug("🔍 КЭШ ПОИСК: Найдено {} свечей в БД для тикера {} ДО даты {}",
-                    cachedCandles.size(), ticker, formatTimestamp(untilTimestamp));
-
-            // Берем только нужное количество последних свечей (ДО untilDate)
-            List<CachedCandle> limitedCandles = cachedCandles.stream()
-                    .limit(expectedCount)
-                    .collect(Collectors.toList());
-
-            // Сортируем обратно по возрастанию времени для корректного порядка
-            limitedCandles.sort((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
-
-            // Конвертируем в Candle
-            List<Candle> candles = limitedCandles.stream()
-                    .map(CachedCandle::toCandle)
-                    .collect(Collectors.toList());
+            // Читаем ровно expectedCount последних свечей ДО untilDate (по возрастанию времени),
+            // а не всю историю тикера: из сверенного с БД архива на диске, иначе из БД
+            // (не больше одновременных чтений, чем свободных соединений Hikari)
+            List<Candle> candles = candleArchive
+                    .findLastBefore(exchange, ticker, timeframe, untilTimestamp, expectedCount)
+                    .orElse(null);
+            if (candles == null) {
+                candles = candleRequestExecutor.withDatabasePermit(() -> cachedCandleBulkRepository
+                        .findLastBefore(exchange, ticker, timeframe, untilTimestamp, expectedCount));
+            }
 
             log.debug("✅ КЭШ ОТВЕТ: Получено {} свечей для тикера {} из кэша ДО untilDate", candles.size(), ticker);
 
@@ -344,6 +375,8 @@ public class CacheValidatedCandlesProcessor {
 
             return candles;
 
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("❌ КЭШ ОШИБКА: Ошибка получения свечей для тикера {}: {}", ticker, e.getMessage(), e);
             return List.of();
@@ -461,128 +494,33 @@ public class CacheValidatedCandlesProcessor {
             return new TimestampValidationResult(true, "Недостаточно свечей для проверки", List.of());
         }
         
-        long timeframeDurationMs = getTimeframeDurationInMillis(timeframe);
-        List<TimestampGap> gaps = new ArrayList<>();
-        
-        // Проверяем интервалы между соседними свечами
-        for (int i = 1; i < candles.size(); i++) {
-            long previousTimestamp = candles.get(i - 1).getTimestamp();
-            long currentTimestamp = candles.get(i).getTimestamp();
-            long actualInterval = currentTimestamp - previousTimestamp;
-            
-            // Проверяем, что интервал соответствует таймфрейму (с небольшой погрешностью)
-            if (Math.abs(actualInterval - timeframeDurationMs) > timeframeDurationMs * 0.1) { // 10% погрешность
-                long missedCandles = (actualInterval / timeframeDurationMs) - 1;
-                if (missedCandles > 0) {
-                    TimestampGap gap = new TimestampGap(
-                            previousTimestamp, 
-                            currentTimestamp, 
-                            (int) missedCandles,
-                            i - 1, // позиция предыдущей свечи
-                            i      // позиция текущей свечи
-                    );
-                    gaps.add(gap);
-                    
-                    log.warn("⚠️ ПРОПУСК СВЕЧЕЙ: Между позициями {} и {} найден пропуск в {} свечей. " +
-                            "Предыдущая: {}, текущая: {}, ожидаемый интервал: {} мс, фактический: {} мс",
-                            i - 1, i, missedCandles,
-                            formatTimestamp(previousTimestamp), formatTimestamp(currentTimestamp),
-                            timeframeDurationMs, actualInterval);
-                }
-            }
-        }
+        // Проверяем интервалы между соседними свечами одним проходом по массиву таймштампов
+        // (интервал должен соответствовать таймфрейму с погрешностью 10%)
+        List<Gap> gaps = CandleSeriesValidator.findGaps(
+                CandleSeriesValidator.timestamps(candles), getTimeframeDurationInMillis(timeframe));
         
         if (gaps.isEmpty()) {
             log.debug("✅ ВАЛИДАЦИЯ ТАЙМШТАМПОВ: Свечи для тикера {} прошли проверку консистентности. " +
                     "Временные интервалы соответствуют таймфрейму {}", ticker, timeframe);
             return new TimestampValidationResult(true, "Консистентность таймштампов корректна", gaps);
         } else {
-            int totalMissedCandles = gaps.stream().mapToInt(TimestampGap::getMissedCandlesCount).sum();
+            int totalMissedCandles = gaps.stream().mapToInt(Gap::missedCandles).sum();
             String reason = String.format("Найдено %d пропусков с общим количеством недостающих свечей: %d", 
                     gaps.size(), totalMissedCandles);
             log.warn("⚠️ ВАЛИДАЦИЯ ТАЙМШТАМПОВ: {}", reason);
             
             // Детальное логирование каждого пропуска
             for (int i = 0; i < gaps.size(); i++) {
-                TimestampGap gap = gaps.get(i);
+                Gap gap = gaps.get(i);
                 log.warn("⚠️ ПРОПУСК #{}: {} недостающих свечей между {} и {}", 
-                        i + 1, gap.getMissedCandlesCount(),
-                        formatTimestamp(gap.getStartTimestamp()), formatTimestamp(gap.getEndTimestamp()));
+                        i + 1, gap.missedCandles(),
+                        formatTimestamp(gap.startTimestamp()), formatTimestamp(gap.endTimestamp()));
             }
             
             return new TimestampValidationResult(false, reason, gaps);
         }
     }
 
-    /**
-     * Догружает недостающие свечи для заполнения пропусков в таймштампах
-     * @param gaps список пропусков для заполнения
-     * @param exchange биржа
-     * @param ticker тикер
-     * @param timeframe таймфрейм
-     * @param period период
-     * @param untilDate дата до которой загружать
-     * @return общее количество догруженных свечей
-     */
-    private int loadMissingCandlesForGaps(List<TimestampGap> gaps, String exchange, String ticker, 
-                                         String timeframe, String period, String untilDate) {
-        if (gaps.isEmpty()) {
-            log.info("✅ ДОГРУЗКА ПРОПУСКОВ: Нет пропусков для догрузки тикера {}", ticker);
-            return 0;
-        }
-        
-        log.info("🔄 ДОГРУЗКА ПРОПУСКОВ: Начинаем догрузку для {} пропусков в тикере {}", gaps.size(), ticker);
-        
-        int totalLoadedCandles = 0;
-        int maxRetries = 3; // Максимальное количество попыток догрузки
-        
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            log.info("🔄 ПОПЫТКА #{}: Догрузка недостающих свечей для тикера {}", attempt, ticker);
-            
-            // Делаем общую догрузку всего диапазона - это проще и надёжнее
-            // чем пытаться догружать каждый пропуск отдельно
-            int loadedCount = candlesLoaderProcessor.loadAndSaveCandles(exchange, ticker, untilDate, timeframe, period);
-            
-            if (loadedCount > 0) {
-                log.info("✅ ПОПЫТКА #{}: Загружено {} свечей для тикера {}", attempt, loadedCount, ticker);
-                totalLoadedCandles += loadedCount;
-                
-                // Повторно проверяем консистентность после догрузки
-                long untilTimestamp = parseUntilDate(untilDate);
-                int expectedCandlesCount = CandleCalculatorUtil.calculateCandlesCountUntilDate(ticker, timeframe, period, untilDate);
-                List<Candle> reloadedCandles = getCandlesFromCacheByActualRange(exchange, ticker, timeframe, expectedCandlesCount, untilTimestamp);
-                
-                TimestampValidationResult revalidationResult = validateCandlesConsistency(reloadedCandles, timeframe, ticker);
-                
-                if (revalidationResult.isValid) {
-                    log.info("✅ ПОПЫТКА #{}: Консистентность восстановлена для тикера {} после догрузки", attempt, ticker);
-                    break;
-                } else {
-                    log.warn("⚠️ ПОПЫТКА #{}: Остались пропуски после догрузки для тикера {}: {}", 
-                            attempt, ticker, revalidationResult.reason);
-                    
-                    if (attempt == maxRetries) {
-                        log.error("❌ ДОГРУЗКА ПРОПУСКОВ: Исчерпаны попытки восстановления консистентности для тикера {}. " +
-                                "Остается {} пропусков", ticker, revalidationResult.gaps.size());
-                    } else {
-                        log.info("🔄 ПОВТОРНАЯ ПОПЫТКА: Будет выполнена повторная догрузка для тикера {}", ticker);
-                    }
-                }
-            } else {
-                log.warn("⚠️ ПОПЫТКА #{}: Не удалось догрузить свечи для тикера {} (получено 0 свечей)", attempt, ticker);
-                
-                if (attempt == maxRetries) {
-                    log.error("❌ ДОГРУЗКА ПРОПУСКОВ: Не удалось догрузить свечи для тикера {} за {} попыток", ticker, maxRetries);
-                }
-            }
-        }
-        
-        log.info("📊 ИТОГО ДОГРУЗКА ПРОПУСКОВ: Загружено {} свечей для тикера {} за {} попыток", 
-                totalLoadedCandles, ticker, Math.min(maxRetries, totalLoadedCandles > 0 ? 1 : maxRetries));
-        
-        return totalLoadedCandles;
-    }
-
     /**
      * Валидирует свечи только по количеству (упрощенная версия без проверки временного диапазона)
      * Использует увеличенную погрешность для случаев с untilDate
@@ -712,51 +650,12 @@ public class CacheValidatedCandlesProcessor {
     private static class TimestampValidationResult {
         final boolean isValid;
         final String reason;
-        final List<TimestampGap> gaps;
+        final List<Gap> gaps;
 
-        TimestampValidationResult(boolean isValid, String reason, List<TimestampGap> gaps) {
+        TimestampValidationResult(boolean isValid, String reason, List<Gap> gaps) {
             this.isValid = isValid;
             this.reason = reason;
             this.gaps = gaps;
         }
     }
-
-    /**
-     * Класс для описания пропуска во временных интервалах свечей
-     */
-    private static class TimestampGap {
-        final long startTimestamp;
-        final long endTimestamp;
-        final int missedCandlesCount;
-        final int startPosition;
-        final int endPosition;
-
-        TimestampGap(long startTimestamp, long endTimestamp, int missedCandlesCount, int startPosition, int endPosition) {
-            this.startTimestamp = startTimestamp;
-            this.endTimestamp = endTimestamp;
-            this.missedCandlesCount = missedCandlesCount;
-            this.startPosition = startPosition;
-            this.endPosition = endPosition;
-        }
-
-        public long getStartTimestamp() {
-            return startTimestamp;
-        }
-
-        public long getEndTimestamp() {
-            return endTimestamp;
-        }
-
-        public int getMissedCandlesCount() {
-            return missedCandlesCount;
-        }
-
-        public int getStartPosition() {
-            return startPosition;
-        }
-
-        public int getEndPosition() {
-            return endPosition;
-        }
-    }
-}
\ No newline at end of file
+}
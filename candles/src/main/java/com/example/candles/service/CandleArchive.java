@@ -0,0 +1,239 @@
+package com.example.candles.service;
+
+import com.example.candles.repositories.CachedCandleBulkRepository;
+import com.example.candles.repositories.CachedCandleRepository;
+import com.example.shared.dto.Candle;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный архив истории свечей на диске: файл на серию (exchange, ticker, timeframe),
+ * записи фиксированной длины, отображенные в память (CandleArchiveFile).
+ * <p>
+ * Postgres остается источником истины. Серия отдается из архива только после сверки с БД в текущем запуске
+ * (количество, первый и последний timestamp); при расхождении файл перестраивается из БД. Дальше архив
+ * поддерживается write-through из CandleTransactionService; свеча, которую нельзя дописать в конец
+ * (догрузка старой истории), снимает отметку сверки - при следующем чтении серия перестраивается.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CandleArchive {
+
+    private final CachedCandleBulkRepository cachedCandleBulkRepository;
+    private final CachedCandleRepository cachedCandleRepository;
+
+    @Value("${app.candle-cache.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.candle-cache.archive.dir:./candle-archive}")
+    private String archiveDir;
+
+    private final Map<String, CandleArchiveFile> files = new ConcurrentHashMap<>();
+    private final Set<String> verified = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong appends = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Последние limit свечей серии строго до untilTimestamp (аналог CachedCandleBulkRepository.findLastBefore)
+     *
+     * @return пусто, если архив выключен или серию не удалось сверить с БД
+     */
+    public Optional<List<Candle>> findLastBefore(String exchange, String ticker, String timeframe,
+                                                 long untilTimestamp, int limit) {
+        return verifiedFile(exchange, ticker, timeframe).map(file -> {
+            hits.incrementAndGet();
+            return file.lastBefore(untilTimestamp, limit);
+        });
+    }
+
+    /**
+     * Последние limit свечей серии по возрастанию времени
+     */
+    public Optional<List<Candle>> findLatest(String exchange, String ticker, String timeframe, int limit) {
+        return verifiedFile(exchange, ticker, timeframe).map(file -> {
+            hits.incrementAndGet();
+            return file.latest(limit);
+        });
+    }
+
+    /**
+     * Свечи серии в диапазоне [fromTimestamp, toTimestamp) по возрастанию времени
+     */
+    public Optional<List<Candle>> findRange(String exchange, String ticker, String timeframe,
+                                            long fromTimestamp, long toTimestamp) {
+        return verifiedFile(exchange, ticker, timeframe).map(file -> {
+            hits.incrementAndGet();
+            return file.range(fromTimestamp, toTimestamp);
+        });
+    }
+
+    /**
+     * Write-through после фиксации вставки в БД: дописывает свечи в открытые серии.
+     * Дописывание ждет идущую сверку серии, поэтому свечи, сохраненные во время перестроения, не теряются
+     */
+    public void onCandlesSaved(String exchange, String ticker, String timeframe, List<Candle> candles) {
+        if (!enabled || candles.isEmpty()) {
+            return;
+        }
+
+        String key = key(exchange, ticker, timeframe);
+        CandleArchiveFile file = files.get(key);
+        if (file == null) {
+            return; // файл серии еще не открывался - будет сверен с БД при первом чтении
+        }
+
+        try {
+            if (file.append(candles)) {
+                appends.incrementAndGet();
+            } else {
+                verified.remove(key);
+                log.debug("🗄️ АРХИВ: {} - сохранены свечи старше конца архива, серия будет перестроена", key);
+            }
+        } catch (Exception e) {
+            verified.remove(key);
+            log.warn("⚠️ АРХИВ: ошибка дописывания {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Перестраивает архив всех тикеров таймфрейма из БД
+     *
+     * @return количество перестроенных серий
+     */
+    public int rebuild(String exchange, String timeframe) {
+        if (!enabled) {
+            log.warn("⚠️ АРХИВ: выключен (app.candle-cache.archive.enabled) - перестроение пропущено");
+            return 0;
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<String> tickers = cachedCandleRepository.findDistinctTickersByExchangeAndTimeframe(exchange, timeframe);
+        int rebuilt = 0;
+        long candles = 0;
+        for (String ticker : tickers) {
+            try {
+                candles += rebuildSeries(exchange, ticker, timeframe);
+                rebuilt++;
+            } catch (Exception e) {
+                log.warn("⚠️ АРХИВ: не удалось перестроить {}/{}/{}: {}", exchange, ticker, timeframe, e.getMessage());
+            }
+        }
+
+        log.info("🗄️ АРХИВ: перестроено {} из {} серий {}/{} ({} свечей) за {} мс",
+                rebuilt, tickers.size(), exchange, timeframe, candles, System.currentTimeMillis() - startTime);
+        return rebuilt;
+    }
+
+    /**
+     * Сбрасывает сверку серий таймфрейма (например, после удаления свечей из БД)
+     */
+    public void invalidateTimeframe(String exchange, String timeframe) {
+        String suffix = "|" + timeframe;
+        verified.removeIf(k -> k.startsWith(exchange + "|") && k.endsWith(suffix));
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("openSeries", files.size());
+        stats.put("verifiedSeries", verified.size());
+        stats.put("sizeBytes", files.values().stream().mapToLong(CandleArchiveFile::sizeBytes).sum());
+        stats.put("hits", hits.get());
+        stats.put("rebuilds", rebuilds.get());
+        stats.put("appends", appends.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        files.values().forEach(CandleArchiveFile::close);
+    }
+
+    private Optional<CandleArchiveFile> verifiedFile(String exchange, String ticker, String timeframe) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        String key = key(exchange, ticker, timeframe);
+        try {
+            CandleArchiveFile file = file(exchange, ticker, timeframe);
+            if (!verified.contains(key)) {
+                synchronized (file) {
+                    if (!verified.contains(key)) {
+                        verify(exchange, ticker, timeframe, file);
+                        verified.add(key);
+                    }
+                }
+            }
+            return Optional.of(file);
+        } catch (Exception e) {
+            log.warn("⚠️ АРХИВ: серия {} недоступна, читаем из БД: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Сверяет файл с БД и перестраивает его при расхождении
+     */
+    private void verify(String exchange, String ticker, String timeframe, CandleArchiveFile file) {
+        long[] stats = cachedCandleBulkRepository.findSeriesStats(exchange, ticker, timeframe);
+        if (stats[0] == file.size() && stats[1] == file.firstTimestamp() && stats[2] == file.lastTimestamp()) {
+            return;
+        }
+        log.debug("🗄️ АРХИВ: {}/{}/{} расходится с БД (БД {} свечей, архив {}) - перестраиваем",
+                exchange, ticker, timeframe, stats[0], file.size());
+        rebuildSeries(exchange, ticker, timeframe);
+    }
+
+    private long rebuildSeries(String exchange, String ticker, String timeframe) {
+        CandleArchiveFile file = file(exchange, ticker, timeframe);
+        String key = key(exchange, ticker, timeframe);
+        synchronized (file) {
+            long written = file.rewrite(consumer -> cachedCandleBulkRepository.scanSeries(exchange, ticker, timeframe, consumer));
+            verified.add(key);
+            rebuilds.incrementAndGet();
+            return written;
+        }
+    }
+
+    private CandleArchiveFile file(String exchange, String ticker, String timeframe) {
+        return files.computeIfAbsent(key(exchange, ticker, timeframe), k -> new CandleArchiveFile(path(exchange, ticker, timeframe)));
+    }
+
+    /**
+     * archiveDir/OKX/15m/BTC-USDT-SWAP.bin. Таймфреймы 1m и 1M различаются только регистром, который файловая
+     * система может не различать, поэтому каталог таймфрейма с заглавными буквами получает суффикс _u
+     */
+    private Path path(String exchange, String ticker, String timeframe) {
+        String timeframeDir = timeframe.equals(timeframe.toLowerCase()) ? timeframe : timeframe.toLowerCase() + "_u";
+        return Paths.get(archiveDir, sanitize(exchange), sanitize(timeframeDir), sanitize(ticker) + ".bin");
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static String key(String exchange, String ticker, String timeframe) {
+        return exchange + "|" + ticker + "|" + timeframe;
+    }
+}
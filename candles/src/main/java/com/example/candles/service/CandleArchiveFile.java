@@ -0,0 +1,358 @@
+package com.example.candles.service;
+
+import com.example.shared.dto.Candle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Файл архива одной серии (exchange, ticker, timeframe): свечи записями фиксированной длины
+ * (timestamp, open, high, low, close, volume) по возрастанию времени, только дописывание в конец.
+ * <p>
+ * Файл отображен в память (FileChannel.map), поэтому чтение диапазона идет из отображения без копирования
+ * файла в кучу. Дописанные после отображения записи хранятся еще и в небольшом хвосте в куче: файл
+ * переотображается, только когда хвост вырастает больше четверти отображения (но не больше TAIL_MAX_RECORDS),
+ * а не на каждое дописывание. Поиск по времени: разреженный индекс (timestamp каждой INDEX_STEP-й записи)
+ * в памяти, затем бинарный поиск внутри блока.
+ */
+final class CandleArchiveFile implements AutoCloseable {
+
+    /**
+     * Байт на одну запись: timestamp + 5 цен/объем
+     */
+    static final int RECORD_BYTES = Long.BYTES + 5 * Double.BYTES;
+
+    /**
+     * Шаг разреженного индекса в записях
+     */
+    private static final int INDEX_STEP = 256;
+
+    /**
+     * Максимум записей в хвосте в куче до переотображения файла
+     */
+    static final int TAIL_MAX_RECORDS = INDEX_STEP * 16;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int mappedCount; // записи [0, mappedCount) читаются из отображения
+    private ByteBuffer tail = newTail(INDEX_STEP); // записи [mappedCount, count)
+    private int count;
+    private int remaps;
+    private long[] sparseIndex = new long[0];
+
+    CandleArchiveFile(Path path) {
+        this.path = path;
+        try {
+            Files.createDirectories(path.getParent());
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть архив свечей " + path, e);
+        }
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized long firstTimestamp() {
+        return count == 0 ? -1L : timestampAt(0);
+    }
+
+    synchronized long lastTimestamp() {
+        return count == 0 ? -1L : timestampAt(count - 1);
+    }
+
+    synchronized long sizeBytes() {
+        return (long) count * RECORD_BYTES;
+    }
+
+    /**
+     * Сколько раз файл отображался в память с момента открытия (для тестов и статистики)
+     */
+    synchronized int remaps() {
+        return remaps;
+    }
+
+    /**
+     * Дописывает свечи новее последней записи. Свечи с уже записанным timestamp игнорируются.
+     *
+     * @return false, если среди свечей есть отсутствующая в архиве свеча старше последней записи -
+     * дописать ее нельзя, архив нужно перестроить
+     */
+    synchronized boolean append(List<Candle> candles) {
+        List<Candle> sorted = new ArrayList<>(candles);
+        sorted.sort((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+
+        long last = lastTimestamp();
+        ByteBuffer records = ByteBuffer.allocate(sorted.size() * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (Candle candle : sorted) {
+            long timestamp = candle.getTimestamp();
+            if (timestamp <= last) {
+                if (indexOf(timestamp) < 0) {
+                    return false;
+                }
+                continue;
+            }
+            putRecord(records, candle);
+            last = timestamp;
+        }
+
+        if (records.position() == 0) {
+            return true;
+        }
+        records.flip();
+        try {
+            long position = (long) count * RECORD_BYTES;
+            while (records.hasRemaining()) {
+                position += channel.write(records, position);
+            }
+            records.rewind();
+            appendToTail(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка записи архива свечей " + path, e);
+        }
+        return true;
+    }
+
+    /**
+     * Полностью перезаписывает файл: свечи пишутся во временный файл, который затем атомарно заменяет архив
+     *
+     * @param source источник свечей по возрастанию timestamp (передает каждую свечу в consumer)
+     * @return количество записанных свечей
+     */
+    synchronized long rewrite(Consumer<Consumer<Candle>> source) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long[] written = {0};
+        long[] last = {Long.MIN_VALUE};
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer chunk = ByteBuffer.allocate(INDEX_STEP * 16 * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            source.accept(candle -> {
+                if (candle.getTimestamp() <= last[0]) {
+                    return; // источник отсортирован, повтор timestamp пропускаем
+                }
+                if (!chunk.hasRemaining()) {
+                    flush(out, chunk);
+                }
+                putRecord(chunk, candle);
+                last[0] = candle.getTimestamp();
+                written[0]++;
+            });
+            flush(out, chunk);
+            out.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка перестроения архива свечей " + path, e);
+        }
+
+        try {
+            closeChannel();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка замены архива свечей " + path, e);
+        }
+        return written[0];
+    }
+
+    /**
+     * Последние limit свечей строго до untilTimestamp по возрастанию времени
+     */
+    synchronized List<Candle> lastBefore(long untilTimestamp, int limit) {
+        int end = lowerBound(untilTimestamp);
+        return read(Math.max(0, end - limit), end);
+    }
+
+    /**
+     * Последние limit свечей по возрастанию времени
+     */
+    synchronized List<Candle> latest(int limit) {
+        return read(Math.max(0, count - limit), count);
+    }
+
+    /**
+     * Свечи с fromTimestamp (включительно) до toTimestamp (не включительно)
+     */
+    synchronized List<Candle> range(long fromTimestamp, long toTimestamp) {
+        return read(lowerBound(fromTimestamp), lowerBound(toTimestamp));
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            closeChannel();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private List<Candle> read(int from, int to) {
+        List<Candle> candles = new ArrayList<>(Math.max(0, to - from));
+        for (int index = from; index < to; index++) {
+            ByteBuffer buffer = bufferOf(index);
+            int offset = offsetOf(index);
+            candles.add(new Candle(buffer.getLong(offset),
+                    buffer.getDouble(offset + Long.BYTES),
+                    buffer.getDouble(offset + Long.BYTES + Double.BYTES),
+                    buffer.getDouble(offset + Long.BYTES + 2 * Double.BYTES),
+                    buffer.getDouble(offset + Long.BYTES + 3 * Double.BYTES),
+                    buffer.getDouble(offset + Long.BYTES + 4 * Double.BYTES)));
+        }
+        return candles;
+    }
+
+    /**
+     * Индекс первой записи с timestamp >= value (count, если таких нет)
+     */
+    private int lowerBound(long value) {
+        // Разреженный индекс сужает поиск до одного блока из INDEX_STEP записей
+        int block = Arrays.binarySearch(sparseIndex, value);
+        if (block >= 0) {
+            return block * INDEX_STEP;
+        }
+        int insertion = -block - 1;
+        if (insertion == 0) {
+            return 0;
+        }
+
+        int low = (insertion - 1) * INDEX_STEP;
+        int high = Math.min(count, insertion * INDEX_STEP);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int indexOf(long timestamp) {
+        int index = lowerBound(timestamp);
+        return index < count && timestampAt(index) == timestamp ? index : -1;
+    }
+
+    private long timestampAt(int index) {
+        return bufferOf(index).getLong(offsetOf(index));
+    }
+
+    private ByteBuffer bufferOf(int index) {
+        return index < mappedCount ? mapped : tail;
+    }
+
+    private int offsetOf(int index) {
+        return (index < mappedCount ? index : index - mappedCount) * RECORD_BYTES;
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Хвост от незавершенной записи (сбой посреди append) отбрасывается
+        long size = channel.size();
+        if (size % RECORD_BYTES != 0) {
+            channel.truncate(size - size % RECORD_BYTES);
+        }
+        count = 0;
+        sparseIndex = new long[0];
+        remaps = 0;
+        remap();
+    }
+
+    /**
+     * Дописывает записи в хвост в куче; когда хвост становится слишком большим - переотображает файл
+     */
+    private void appendToTail(ByteBuffer records) throws IOException {
+        int threshold = Math.min(TAIL_MAX_RECORDS, Math.max(INDEX_STEP, mappedCount / 4));
+        int tailCount = count - mappedCount + records.remaining() / RECORD_BYTES;
+        if (tailCount > threshold) {
+            remap();
+            return;
+        }
+
+        if (tail.remaining() < records.remaining()) {
+            ByteBuffer grown = newTail(Math.max(tailCount, tail.capacity() / RECORD_BYTES * 2));
+            tail.flip();
+            grown.put(tail);
+            tail = grown;
+        }
+        tail.put(records);
+        count = tailCount + mappedCount;
+        extendSparseIndex();
+    }
+
+    private void remap() throws IOException {
+        long size = channel.size();
+        if (size / RECORD_BYTES > Integer.MAX_VALUE / RECORD_BYTES) {
+            throw new IOException("архив свечей слишком велик для отображения: " + size + " байт");
+        }
+        // Прежнее отображение освобождается сборщиком мусора - поэтому переотображений немного (см. appendToTail)
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        remaps++;
+
+        count = (int) (size / RECORD_BYTES);
+        mappedCount = count;
+        if (tail.capacity() > INDEX_STEP * RECORD_BYTES) {
+            tail = newTail(INDEX_STEP);
+        }
+        tail.clear();
+        extendSparseIndex();
+    }
+
+    private void extendSparseIndex() {
+        // Дописываем в разреженный индекс только новые блоки
+        int blocks = (count + INDEX_STEP - 1) / INDEX_STEP;
+        if (blocks != sparseIndex.length) {
+            long[] index = Arrays.copyOf(sparseIndex, blocks);
+            for (int block = sparseIndex.length; block < blocks; block++) {
+                index[block] = timestampAt(block * INDEX_STEP);
+            }
+            sparseIndex = index;
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        mapped = null;
+        mappedCount = 0;
+        tail.clear();
+        if (channel != null && channel.isOpen()) {
+            channel.close();
+        }
+    }
+
+    private static ByteBuffer newTail(int records) {
+        return ByteBuffer.allocate(records * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putRecord(ByteBuffer buffer, Candle candle) {
+        buffer.putLong(candle.getTimestamp());
+        buffer.putDouble(candle.getOpen());
+        buffer.putDouble(candle.getHigh());
+        buffer.putDouble(candle.getLow());
+        buffer.putDouble(candle.getClose());
+        buffer.putDouble(candle.getVolume());
+    }
+
+    private static void flush(FileChannel out, ByteBuffer chunk) {
+        chunk.flip();
+        try {
+            while (chunk.hasRemaining()) {
+                out.write(chunk);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+    }
+}
@@ -4,6 +4,7 @@ import com.example.candles.client.OkxFeignClient;
 import com.example.candles.repositories.CachedCandleRepository;
 import com.example.shared.dto.Candle;
 import com.example.shared.models.CachedCandle;
+import com.example.shared.utils.CandleSeriesValidator;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +28,13 @@ public class CandleCacheService {
     private final CachedCandleRepository cachedCandleRepository;
     private final OkxFeignClient okxFeignClient;
     private final CandleTransactionService candleTransactionService;
+    private final CandleMemoryStore candleMemoryStore;
+    private final CandleArchive candleArchive;
+    private final CandlePartitionService candlePartitionService;
+    private final CandlePreloadPipeline candlePreloadPipeline;
+    private final CandleGapRepairService candleGapRepairService;
+    private final CandleWindowCache candleWindowCache;
+    private final CandleRequestExecutor candleRequestExecutor;
 
     @Value("${app.candle-cache.default-exchange:OKX}")
     private String defaultExchange;
@@ -172,24 +180,38 @@ public class CandleCacheService {
             expectedLastTimestamp = Long.MAX_VALUE;
         }
 
-        // Проходим по всем тикерам и собираем статистику
-        for (Map.Entry<String, List<Candle>> entry : candlesMap.entrySet()) {
-            String ticker = entry.getKey();
-            List<Candle> candles = entry.getValue();
+        // ❌ УБИРАЕМ РЕЗЕРВНЫЙ ЭТАЛОН - эталон должен быть ТОЛЬКО BTC с точным количеством!
+        // Если BTC не найден или невалиден, НЕ используем другие тикеры как эталон
+        if (expectedFirstTimestamp == -1) {
+            // Эталон не установлен = все тикеры невалидны
+            log.error("❌ НЕТ ВАЛИДНОГО ЭТАЛОНА: BTC-USDT-SWAP должен иметь {} свечей для корректной валидации других тикеров!", expectedLimit);
+        }
 
-            if (candles == null || candles.isEmpty()) {
-                invalidTickers.add(ticker + "(пустой)");
-                continue;
+        // Сортируем свечи по timestamp для корректной валидации
+        for (List<Candle> candles : candlesMap.values()) {
+            if (candles != null && candles.size() > 1) {
+                candles.sort(Comparator.comparingLong(Candle::getTimestamp));
             }
+        }
 
-            // Сортируем свечи по timestamp для корректной валидации
-            candles.sort(Comparator.comparingLong(Candle::getTimestamp));
+        // 🎯 ВАЖНО: Границы тикеров обрезаются до начала дня для сравнения с эталоном
+        CandleSeriesValidator.Report report = CandleSeriesValidator.validateAgainstReference(candlesMap,
+                new CandleSeriesValidator.Reference(expectedCandleCount, expectedFirstTimestamp, expectedLastTimestamp),
+                this::truncateToStartOfDay);
 
-            int candleCount = candles.size();
-            long originalFirstTimestamp = candles.get(0).getTimestamp();
-            long originalLastTimestamp = candles.get(candles.size() - 1).getTimestamp();
+        // Проходим по результатам сверки и собираем статистику
+        for (int i = 0; i < report.size(); i++) {
+            String ticker = report.tickers().get(i);
+            int mismatches = report.mismatches(i);
 
-            // 🎯 ВАЖНО: Обрезаем временные границы тикера до начала дня для сравнения с эталоном
+            if ((mismatches & CandleSeriesValidator.MISMATCH_EMPTY) != 0) {
+                invalidTickers.add(ticker + "(пустой)");
+                continue;
+            }
+
+            int candleCount = report.count(i);
+            long originalFirstTimestamp = report.firstTimestamp(i);
+            long originalLastTimestamp = report.lastTimestamp(i);
             long firstTimestamp = truncateToStartOfDay(originalFirstTimestamp);
             long lastTimestamp = truncateToStartOfDay(originalLastTimestamp);
 
@@ -198,34 +220,22 @@ public class CandleCacheService {
             firstTimestampDistribution.merge(firstTimestamp, 1, Integer::sum);
             lastTimestampDistribution.merge(lastTimestamp, 1, Integer::sum);
 
-            // ❌ УБИРАЕМ РЕЗЕРВНЫЙ ЭТАЛОН - эталон должен быть ТОЛЬКО BTC с точным количеством!
-            // Если BTC не найден или невалиден, НЕ используем другие тикеры как эталон
-            if (expectedFirstTimestamp == -1) {
-                // Эталон не установлен = все тикеры невалидны
-                log.error("❌ НЕТ ВАЛИДНОГО ЭТАЛОНА: BTC-USDT-SWAP должен иметь {} свечей для корректной валидации других тикеров!", expectedLimit);
-            }
-
-            // Проверяем соответствие эталону
-            boolean isValid = (candleCount == expectedCandleCount &&
-                    firstTimestamp == expectedFirstTimestamp &&
-                    lastTimestamp == expectedLastTimestamp);
-
-            if (isValid) {
+            if (report.isValid(i)) {
                 validTickers.add(ticker);
-                validCandlesMap.put(ticker, candles); // ✅ Добавляем только валидные тикеры
+                validCandlesMap.put(ticker, candlesMap.get(ticker)); // ✅ Добавляем только валидные тикеры
             } else {
                 // Формируем детальное описание только для различающихся параметров
                 List<String> differences = new ArrayList<>();
 
-                if (candleCount != expectedCandleCount) {
+                if ((mismatches & CandleSeriesValidator.MISMATCH_COUNT) != 0) {
                     differences.add(String.format("свечей:%d≠%d", candleCount, expectedCandleCount));
                 }
-                if (firstTimestamp != expectedFirstTimestamp) {
+                if ((mismatches & CandleSeriesValidator.MISMATCH_FIRST) != 0) {
                     differences.add(String.format("начало:%s≠%s (оригинал %s)",
                             formatTimestamp(firstTimestamp), formatTimestamp(expectedFirstTimestamp),
                             formatTimestamp(originalFirstTimestamp)));
                 }
-                if (lastTimestamp != expectedLastTimestamp) {
+                if ((mismatches & CandleSeriesValidator.MISMATCH_LAST) != 0) {
                     differences.add(String.format("конец:%s≠%s (оригинал %s)",
                             formatTimestamp(lastTimestamp), formatTimestamp(expectedLastTimestamp),
                             formatTimestamp(originalLastTimestamp)));
@@ -613,15 +623,9 @@ public class CandleCacheService {
 
                                 log.info("💾 ПОТОК: {} - сохранено {} свечей в БД", ticker, savedCount);
 
-                                // ✅ КРИТИЧНО: Получаем обновленные данные из БД для валидации!
-                                List<CachedCandle> updatedCachedCandles = cachedCandleRepository
-                                        .findLatestByTickerTimeframeExchange(ticker, timeframe, exchange,
-                                                PageRequest.of(0, candleLimit));
-
-                                List<Candle> updatedCandles = updatedCachedCandles.stream()
-                                        .map(CachedCandle::toCandle)
-                                        .sorted(Comparator.comparing(Candle::getTimestamp))
-                                        .collect(Collectors.toList());
+                                // ✅ КРИТИЧНО: Получаем обновленные данные из кэша для валидации!
+                                List<Candle> updatedCandles = candleMemoryStore
+                                        .getLatestCandles(exchange, ticker, timeframe, candleLimit);
 
                                 result.put(ticker, updatedCandles);
                                 if (!updatedCandles.isEmpty()) {
@@ -715,17 +719,18 @@ public class CandleCacheService {
         final String btcTicker = "BTC-USDT-SWAP";
         log.info("🎯 ЭТАЛОН: Обрабатываем BTC эталон в ПЕРВУЮ ОЧЕРЕДЬ для таймфрейма {} с обрезкой до начала дня", timeframe);
 
+        // Окна последних candleLimit свечей для всех тикеров и эталона - одним пакетным чтением
+        Set<String> windowTickers = new LinkedHashSet<>(tickers);
+        windowTickers.add(btcTicker);
+        Map<String, List<Candle>> cachedWindows = candleMemoryStore
+                .getLatestCandles(exchange, windowTickers, timeframe, candleLimit);
+
         // Сначала загружаем BTC из кэша если есть, или создаем запись для догрузки
         boolean btcProcessed = false;
-        List<CachedCandle> btcCachedCandles = cachedCandleRepository
-                .findLatestByTickerTimeframeExchange(btcTicker, timeframe, exchange,
-                        PageRequest.of(0, candleLimit));
+        List<Candle> btcCachedCandles = cachedWindows.get(btcTicker);
 
         if (!btcCachedCandles.isEmpty()) {
-            List<Candle> btcCandles = btcCachedCandles.stream()
-                    .map(CachedCandle::toCandle)
-                    .sorted(Comparator.comparing(Candle::getTimestamp))
-                    .collect(Collectors.toList());
+            List<Candle> btcCandles = btcCachedCandles;
 
             result.put(btcTicker, btcCandles);
 
@@ -859,13 +864,13 @@ public class CandleCacheService {
         int debugCount = 0; // Для отладки - покажем первые 5 тикеров
         for (String ticker : tickers) {
             if (debugCount < 5) debugCount++;
-            // Проверяем последние N свечей для этого тикера
-            List<CachedCandle> latestCandles = cachedCandleRepository
-                    .findLatestByTickerTimeframeExchange(ticker, timeframe, exchange,
-                            PageRequest.of(0, candleLimit));
+            // Проверяем последние N свечей для этого тикера (эталон мог быть догружен выше - перечитываем)
+            List<Candle> latestCandles = btcTicker.equals(ticker)
+                    ? candleMemoryStore.getLatestCandles(exchange, ticker, timeframe, candleLimit)
+                    : cachedWindows.get(ticker);
 
             if (!latestCandles.isEmpty()) {
-                long latestTimestamp = latestCandles.get(0).getTimestamp();
+                long latestTimestamp = latestCandles.get(latestCandles.size() - 1).getTimestamp();
                 log.info("🔍 DEBUG: Для {} найдено {} последних свечей в кэше (запрошено {}), последняя свеча: {}",
                         ticker, latestCandles.size(), candleLimit, formatTimestamp(latestTimestamp));
             } else {
@@ -873,11 +878,8 @@ public class CandleCacheService {
             }
 
             if (!latestCandles.isEmpty()) {
-                // Есть данные в кэше - всегда их берем
-                List<Candle> candlesList = latestCandles.stream()
-                        .map(CachedCandle::toCandle)
-                        .sorted(Comparator.comparing(Candle::getTimestamp))
-                        .collect(Collectors.toList());
+                // Есть данные в кэше - всегда их берем (уже отсортированы по возрастанию)
+                List<Candle> candlesList = latestCandles;
 
                 result.put(ticker, candlesList);
                 cacheHits++; // Увеличиваем счетчик кэш-хитов
@@ -906,10 +908,7 @@ public class CandleCacheService {
                     }
                 } else {
                     if (debugCount <= 5) {
-                        List<Candle> hitCandlesList = latestCandles.stream()
-                                .map(CachedCandle::toCandle)
-                                .sorted(Comparator.comparing(Candle::getTimestamp))
-                                .collect(Collectors.toList());
+                        List<Candle> hitCandlesList = candlesList;
                         if (!hitCandlesList.isEmpty()) {
                             long oldestTime = hitCandlesList.get(0).getTimestamp();
                             long newestTime = hitCandlesList.get(hitCandlesList.size() - 1).getTimestamp();
@@ -986,7 +985,7 @@ public class CandleCacheService {
                 log.info("⏰ Предзагрузка таймфрейма {} ({} дней) для {} тикеров",
                         timeframe, periodDays, allTickers.size());
 
-                int addedForTimeframe = preloadTimeframeForTickers(allTickers, timeframe, exchange, periodDays);
+                int addedForTimeframe = preloadTimeframe(allTickers, timeframe, exchange, periodDays);
                 totalCandlesAdded += addedForTimeframe;
 
                 log.info("📊 Таймфрейм {} завершен: добавлено {} свечей в БД", timeframe, addedForTimeframe);
@@ -1038,9 +1037,10 @@ public class CandleCacheService {
         Map<String, Object> stats = new HashMap<>();
 
         try {
-            // Вычисляем начало и конец текущего дня
-            java.time.LocalDateTime startOfDay = java.time.LocalDate.now().atStartOfDay();
-            java.time.LocalDateTime startOfNextDay = startOfDay.plusDays(1);
+            // Вычисляем начало и конец текущего дня (мс, как timestamp свечей)
+            java.time.ZonedDateTime dayStart = java.time.LocalDate.now().atStartOfDay(java.time.ZoneId.systemDefault());
+            long startOfDay = dayStart.toInstant().toEpochMilli();
+            long startOfNextDay = dayStart.plusDays(1).toInstant().toEpochMilli();
 
             // 🚀 ОПТИМИЗАЦИЯ: Один запрос вместо двух для общей статистики
             List<Object[]> optimizedStats = cachedCandleRepository.getOptimizedCacheStatistics(startOfDay, startOfNextDay);
@@ -1061,6 +1061,12 @@ public class CandleCacheService {
 
             stats.put("byExchange", exchangeStats);
             stats.put("todayByExchange", exchangeTodayStats);
+            stats.put("memoryStore", candleMemoryStore.getStatistics());
+            stats.put("archive", candleArchive.getStatistics());
+            stats.put("preload", candlePreloadPipeline.getStatistics());
+            stats.put("gapRepair", candleGapRepairService.getStatistics());
+            stats.put("windowCache", candleWindowCache.getStatistics());
+            stats.put("requestExecutor", candleRequestExecutor.getStatistics());
 
             // Дополнительная статистика для конкретной биржи
             if (exchange != null) {
@@ -1110,7 +1116,7 @@ public class CandleCacheService {
                         timeframe, targetTickers.size());
 
                 int candleLimit = calculateCandleLimit(timeframe, periodDays != null ? periodDays : 365);
-                int addedForTimeframe = preloadTimeframeForTickers(targetTickers, timeframe, exchange, periodDays != null ? periodDays : 365);
+                int addedForTimeframe = preloadTimeframe(targetTickers, timeframe, exchange, periodDays != null ? periodDays : 365);
                 totalCandlesAdded += addedForTimeframe;
 
                 log.info("📊 Таймфрейм {} завершен: добавлено {} свечей в БД", timeframe, addedForTimeframe);
@@ -1127,6 +1133,17 @@ public class CandleCacheService {
         }
     }
 
+    /**
+     * Предзагрузка таймфрейма: конвейером CandlePreloadPipeline (загрузка, разбор и запись параллельно,
+     * с контрольными точками) или прежней пакетной загрузкой, если конвейер выключен
+     */
+    private int preloadTimeframe(List<String> tickers, String timeframe, String exchange, int periodDays) {
+        if (candlePreloadPipeline.isEnabled()) {
+            return candlePreloadPipeline.preload(exchange, tickers, timeframe, periodDays);
+        }
+        return preloadTimeframeForTickers(tickers, timeframe, exchange, periodDays);
+    }
+
     private int preloadTimeframeForTickers(List<String> tickers, String timeframe,
                                            String exchange, int periodDays) {
         int candleLimit = calculateCandleLimit(timeframe, periodDays);
@@ -1305,14 +1322,8 @@ public class CandleCacheService {
                             }
 
                             // ПОЛУЧАЕМ АКТУАЛЬНЫЕ ДАННЫЕ ИЗ КЭША ПОСЛЕ СОХРАНЕНИЯ
-                            List<CachedCandle> updatedCachedCandles = cachedCandleRepository
-                                    .findLatestByTickerTimeframeExchange(ticker, timeframe, exchange,
-                                            PageRequest.of(0, missingCount + existingCandles.size()));
-
-                            List<Candle> finalCandles = updatedCachedCandles.stream()
-                                    .map(CachedCandle::toCandle)
-                                    .sorted(Comparator.comparing(Candle::getTimestamp))
-                                    .collect(Collectors.toList());
+                            List<Candle> finalCandles = candleMemoryStore.getLatestCandles(
+                                    exchange, ticker, timeframe, missingCount + existingCandles.size());
 
                             result.put(ticker, finalCandles);
 
@@ -1877,10 +1888,15 @@ public class CandleCacheService {
 
             log.info("🗑️ Неактивные таймфреймы для удаления: {}", inactiveTimeframes);
 
-            // Удаляем свечи неактивных таймфреймов
+            // Удаляем свечи неактивных таймфреймов (секцией таймфрейма целиком, без построчного DELETE)
             for (String timeframe : inactiveTimeframes) {
-                int timeframeDeletedCount = cachedCandleRepository.deleteByExchangeAndTimeframe(exchange, timeframe);
+                long timeframeDeletedCount = candlePartitionService.dropTimeframe(exchange, timeframe);
                 deletedCount += timeframeDeletedCount;
+                candleMemoryStore.invalidateTimeframe(exchange, timeframe);
+                candleArchive.invalidateTimeframe(exchange, timeframe);
+                candlePreloadPipeline.invalidateTimeframe(exchange, timeframe);
+                candleGapRepairService.invalidateTimeframe(exchange, timeframe);
+                candleWindowCache.invalidateTimeframe(exchange, timeframe);
 
                 log.info("🗑️ Удалено {} свечей для таймфрейма {} на бирже {}",
                         timeframeDeletedCount, timeframe, exchange);
@@ -0,0 +1,110 @@
+package com.example.candles.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Множество покрытых интервалов времени одной серии свечей (timestamp начала свечи, границы включительно).
+ * Интервалы, между которыми меньше одной свечи, склеиваются. Не потокобезопасно - синхронизирует владелец.
+ */
+final class CandleCoverage {
+
+    /**
+     * Интервал [from, to] в мс
+     */
+    record Range(long from, long to) {
+    }
+
+    private final long step;
+    private final TreeMap<Long, Long> intervals = new TreeMap<>();
+
+    CandleCoverage(long step) {
+        this.step = step;
+    }
+
+    /**
+     * @return true, если покрытие изменилось
+     */
+    boolean add(long from, long to) {
+        if (from > to) {
+            return false;
+        }
+
+        Map.Entry<Long, Long> floor = intervals.floorEntry(from);
+        if (floor != null && floor.getValue() >= to) {
+            return false; // уже покрыто
+        }
+        if (floor != null && floor.getValue() + step >= from) {
+            from = floor.getKey();
+            to = Math.max(to, floor.getValue());
+        }
+
+        // Поглощаем интервалы, начинающиеся внутри нового или вплотную за ним
+        Map.Entry<Long, Long> next = intervals.ceilingEntry(from);
+        while (next != null && next.getKey() <= to + step) {
+            to = Math.max(to, next.getValue());
+            intervals.remove(next.getKey());
+            next = intervals.ceilingEntry(from);
+        }
+        intervals.put(from, to);
+        return true;
+    }
+
+    boolean covers(long from, long to) {
+        Map.Entry<Long, Long> floor = intervals.floorEntry(from);
+        return floor != null && floor.getValue() >= to;
+    }
+
+    /**
+     * Непокрытые части интервала [from, to]
+     */
+    List<Range> missing(long from, long to) {
+        List<Range> missing = new ArrayList<>();
+        long cursor = from;
+
+        Map.Entry<Long, Long> floor = intervals.floorEntry(from);
+        if (floor != null && floor.getValue() >= cursor) {
+            cursor = floor.getValue() + 1;
+        }
+        for (Map.Entry<Long, Long> interval : intervals.subMap(from, false, to, true).entrySet()) {
+            if (interval.getKey() > cursor) {
+                missing.add(new Range(cursor, interval.getKey() - 1));
+            }
+            cursor = Math.max(cursor, interval.getValue() + 1);
+        }
+        if (cursor <= to) {
+            missing.add(new Range(cursor, to));
+        }
+        return missing;
+    }
+
+    /**
+     * Отбрасывает покрытие до timestamp (свечи удалены по сроку хранения)
+     *
+     * @return true, если покрытие изменилось
+     */
+    boolean removeBefore(long timestamp) {
+        boolean changed = false;
+        Map.Entry<Long, Long> first;
+        while ((first = intervals.firstEntry()) != null && first.getKey() < timestamp) {
+            intervals.remove(first.getKey());
+            if (first.getValue() >= timestamp) {
+                intervals.put(timestamp, first.getValue());
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+
+    List<Range> ranges() {
+        List<Range> ranges = new ArrayList<>(intervals.size());
+        intervals.forEach((from, to) -> ranges.add(new Range(from, to)));
+        return ranges;
+    }
+}
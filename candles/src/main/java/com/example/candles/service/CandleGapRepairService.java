@@ -0,0 +1,307 @@
+package com.example.candles.service;
+
+import com.example.candles.client.OkxFeignClient;
+import com.example.candles.repositories.CandleCoverageRepository;
+import com.example.candles.service.CandleCoverage.Range;
+import com.example.candles.utils.CandleCalculatorUtil;
+import com.example.shared.dto.Candle;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая догрузка пропусков в кэше свечей.
+ * <p>
+ * Для каждой серии (exchange, ticker, timeframe) хранится карта покрытия (CandleCoverage, таблица candle_coverage) -
+ * интервалы, уже загруженные с биржи или подтвержденные непрерывными в БД. По запрошенному окну вычисляются ровно
+ * непокрытые диапазоны, запросы параллельных вызывающих для одной серии объединяются в один план загрузки
+ * (диапазоны ближе страницы OKX склеиваются), а план выполняет пул фоновых потоков в рамках OkxRequestBudget.
+ * <p>
+ * Чтение не ждет догрузку: вызывающий получает CompletableFuture и ждет его только при строгой полноте данных.
+ * Загруженный диапазон отмечается покрытым, даже если биржа вернула не все свечи - пропуск есть и на бирже,
+ * повторно его не запрашиваем.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CandleGapRepairService {
+
+    private static final int PAGE_SIZE = 300; // Максимум для OKX API
+
+    private final OkxFeignClient okxFeignClient;
+    private final CandleTransactionService candleTransactionService;
+    private final CandleCoverageRepository candleCoverageRepository;
+    private final OkxRequestBudget okxRequestBudget;
+
+    @Value("${app.candle-cache.gap-repair.threads:2}")
+    private int threads;
+
+    private ExecutorService executorService;
+
+    private final Map<String, SeriesRepair> series = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong fetchedRanges = new AtomicLong();
+    private final AtomicLong loadedCandles = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Состояние серии, все поля под монитором объекта
+     */
+    private static final class SeriesRepair {
+        final CandleCoverage coverage;
+        CandleCoverage pending;
+        CompletableFuture<Integer> pendingFuture = new CompletableFuture<>();
+        CandleCoverage inFlight;
+        CompletableFuture<Integer> inFlightFuture;
+        boolean scheduled;
+
+        SeriesRepair(long step) {
+            this.coverage = new CandleCoverage(step);
+            this.pending = new CandleCoverage(step);
+        }
+    }
+
+    @PostConstruct
+    public void initializeExecutorService() {
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "candle-gap-repair");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("🔧 Инициализирована фоновая догрузка пропусков свечей: {} потоков", threads);
+    }
+
+    @PreDestroy
+    public void shutdownExecutorService() {
+        if (executorService != null && !executorService.isShutdown()) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Ставит непокрытые части диапазонов в план фоновой загрузки серии
+     *
+     * @return завершается после загрузки (количество добавленных свечей); сразу 0, если загружать нечего
+     */
+    public CompletableFuture<Integer> requestRepair(String exchange, String ticker, String timeframe, List<Range> ranges) {
+        SeriesRepair repair = series(exchange, ticker, timeframe);
+        requests.incrementAndGet();
+
+        synchronized (repair) {
+            List<Range> missing = new ArrayList<>();
+            for (Range range : ranges) {
+                missing.addAll(repair.coverage.missing(range.from(), range.to()));
+            }
+            if (missing.isEmpty()) {
+                return CompletableFuture.completedFuture(0);
+            }
+
+            // Все уже загружается - ждем текущую загрузку
+            if (repair.inFlight != null && missing.stream().allMatch(r -> repair.inFlight.covers(r.from(), r.to()))) {
+                coalesced.incrementAndGet();
+                return repair.inFlightFuture;
+            }
+
+            if (!repair.pending.isEmpty()) {
+                coalesced.incrementAndGet();
+            }
+            for (Range range : missing) {
+                repair.pending.add(range.from(), range.to());
+            }
+            if (!repair.scheduled) {
+                repair.scheduled = true;
+                executorService.execute(() -> repairSeries(exchange, ticker, timeframe, repair));
+            }
+            return repair.pendingFuture;
+        }
+    }
+
+    /**
+     * Отмечает диапазон, подтвержденный непрерывным в БД, как покрытый
+     */
+    public void markCovered(String exchange, String ticker, String timeframe, long from, long to) {
+        SeriesRepair repair = series(exchange, ticker, timeframe);
+        boolean changed;
+        synchronized (repair) {
+            changed = repair.coverage.add(from, to);
+        }
+        if (changed) {
+            executorService.execute(() -> persist(exchange, ticker, timeframe, repair));
+        }
+    }
+
+    /**
+     * Сбрасывает покрытие таймфрейма (после удаления его свечей)
+     */
+    public void invalidateTimeframe(String exchange, String timeframe) {
+        candleCoverageRepository.deleteTimeframe(exchange, timeframe);
+        String prefix = exchange + "|";
+        String suffix = "|" + timeframe;
+        series.keySet().removeIf(key -> key.startsWith(prefix) && key.endsWith(suffix));
+    }
+
+    /**
+     * Обрезает покрытие таймфрейма до beforeTimestamp (секции удалены по сроку хранения)
+     */
+    public void trimBefore(String timeframe, long beforeTimestamp) {
+        candleCoverageRepository.trimBefore(timeframe, beforeTimestamp);
+        String suffix = "|" + timeframe;
+        series.forEach((key, repair) -> {
+            if (key.endsWith(suffix)) {
+                synchronized (repair) {
+                    repair.coverage.removeBefore(beforeTimestamp);
+                }
+            }
+        });
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("series", series.size());
+        stats.put("requests", requests.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("fetchedRanges", fetchedRanges.get());
+        stats.put("loadedCandles", loadedCandles.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    /**
+     * Выполняет план серии, пока в нем есть диапазоны: накопленные за время загрузки запросы
+     * уходят следующим планом
+     */
+    private void repairSeries(String exchange, String ticker, String timeframe, SeriesRepair repair) {
+        long step = CandleCalculatorUtil.getTimeframeDurationInMillis(timeframe);
+
+        while (true) {
+            List<Range> plan;
+            CompletableFuture<Integer> future;
+            synchronized (repair) {
+                if (repair.pending.isEmpty()) {
+                    repair.scheduled = false;
+                    repair.inFlight = null;
+                    repair.inFlightFuture = null;
+                    return;
+                }
+                plan = coalescePlan(repair.pending.ranges(), step);
+                future = repair.pendingFuture;
+                repair.inFlight = repair.pending;
+                repair.inFlightFuture = future;
+                repair.pending = new CandleCoverage(step);
+                repair.pendingFuture = new CompletableFuture<>();
+            }
+
+            int loaded = 0;
+            try {
+                for (Range range : plan) {
+                    loaded += fetchRange(exchange, ticker, timeframe, range);
+                    fetchedRanges.incrementAndGet();
+                    // Еще не закрытые свечи покрытыми не считаем - биржа их пока не отдает
+                    long coveredTo = Math.min(range.to(), System.currentTimeMillis() - step);
+                    synchronized (repair) {
+                        repair.coverage.add(range.from(), coveredTo);
+                    }
+                }
+                loadedCandles.addAndGet(loaded);
+                log.debug("🩹 ДОГРУЗКА ПРОПУСКОВ: {}/{}/{} - {} диапазонов, добавлено {} свечей",
+                        exchange, ticker, timeframe, plan.size(), loaded);
+                future.complete(loaded);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+                return;
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                log.warn("⚠️ ДОГРУЗКА ПРОПУСКОВ: ошибка {}/{}/{} (добавлено {} свечей): {}",
+                        exchange, ticker, timeframe, loaded, e.getMessage());
+                future.completeExceptionally(e);
+            } finally {
+                persist(exchange, ticker, timeframe, repair);
+            }
+        }
+    }
+
+    /**
+     * Склеивает диапазоны, между которыми меньше страницы OKX: одна лишняя страница дешевле отдельного прохода
+     */
+    private static List<Range> coalescePlan(List<Range> ranges, long step) {
+        List<Range> plan = new ArrayList<>();
+        for (Range range : ranges) {
+            Range last = plan.isEmpty() ? null : plan.get(plan.size() - 1);
+            if (last != null && range.from() - last.to() <= PAGE_SIZE * step) {
+                plan.set(plan.size() - 1, new Range(last.from(), Math.max(last.to(), range.to())));
+            } else {
+                plan.add(range);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Листает историю назад от конца диапазона до его начала и сохраняет свечи диапазона
+     *
+     * @return количество добавленных в БД свечей
+     */
+    private int fetchRange(String exchange, String ticker, String timeframe, Range range) throws InterruptedException {
+        int added = 0;
+        long cursor = range.to() + 1;
+
+        while (true) {
+            okxRequestBudget.awaitSlot();
+            List<Candle> page = okxFeignClient.getCandlesBefore(ticker, timeframe, PAGE_SIZE, cursor);
+            if (page == null || page.isEmpty()) {
+                return added; // раньше истории нет (листинг тикера)
+            }
+
+            long oldest = Long.MAX_VALUE;
+            List<Candle> inRange = new ArrayList<>(page.size());
+            for (Candle candle : page) {
+                oldest = Math.min(oldest, candle.getTimestamp());
+                if (candle.getTimestamp() >= range.from() && candle.getTimestamp() <= range.to()) {
+                    inRange.add(candle);
+                }
+            }
+            inRange.sort(Comparator.comparingLong(Candle::getTimestamp));
+            added += candleTransactionService.saveCandlesBatch(ticker, timeframe, exchange, inRange);
+
+            if (oldest <= range.from() || oldest >= cursor) {
+                return added;
+            }
+            cursor = oldest;
+        }
+    }
+
+    private void persist(String exchange, String ticker, String timeframe, SeriesRepair repair) {
+        List<long[]> intervals = new ArrayList<>();
+        synchronized (repair) {
+            for (Range range : repair.coverage.ranges()) {
+                intervals.add(new long[]{range.from(), range.to()});
+            }
+        }
+        try {
+            candleCoverageRepository.replace(exchange, ticker, timeframe, intervals);
+        } catch (Exception e) {
+            log.warn("⚠️ ДОГРУЗКА ПРОПУСКОВ: не удалось сохранить покрытие {}/{}/{}: {}",
+                    exchange, ticker, timeframe, e.getMessage());
+        }
+    }
+
+    private SeriesRepair series(String exchange, String ticker, String timeframe) {
+        return series.computeIfAbsent(exchange + "|" + ticker + "|" + timeframe, key -> {
+            SeriesRepair repair = new SeriesRepair(CandleCalculatorUtil.getTimeframeDurationInMillis(timeframe));
+            for (long[] interval : candleCoverageRepository.find(exchange, ticker, timeframe)) {
+                repair.coverage.add(interval[0], interval[1]);
+            }
+            return repair;
+        });
+    }
+}
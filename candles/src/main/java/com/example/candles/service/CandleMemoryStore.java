@@ -0,0 +1,391 @@
+package com.example.candles.service;
+
+import com.example.candles.repositories.CachedCandleBulkRepository;
+import com.example.candles.repositories.CachedCandleRepository;
+import com.example.shared.dto.Candle;
+import com.example.shared.models.CachedCandle;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Резидентное колоночное хранилище последних свечей по ключу (exchange, ticker, timeframe).
+ * <p>
+ * Каждая серия - кольцевой буфер до N свечей (long[] таймштампы + double[] OHLCV), который
+ * загружается из cached_candles при первом обращении (или при прогреве на старте) и далее
+ * поддерживается в актуальном состоянии через write-through из CandleTransactionService.
+ * Таким образом буфер всегда содержит последние min(N, count) свечей серии из БД.
+ * <p>
+ * Буфер выделяется под число загруженных свечей и растет до N; серии без свечей в БД не хранятся.
+ * Число серий ограничено max-series: сверх него вытесняются давно не запрашиваемые серии.
+ * Загрузка из БД идет вне блокировок карты; write-through по серии, которая сейчас загружается,
+ * ждет окончания загрузки, чтобы не потерять свечи, сохраненные после чтения из БД.
+ * <p>
+ * Запросы с лимитом больше емкости буфера идут напрямую в БД.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CandleMemoryStore {
+
+    /**
+     * Сколько тикеров загружать из БД одним запросом при пакетной загрузке серий
+     */
+    private static final int BATCH_LOAD_TICKERS = 50;
+
+    private final CachedCandleRepository cachedCandleRepository;
+    private final CachedCandleBulkRepository cachedCandleBulkRepository;
+    private final CandleArchive candleArchive;
+
+    @Value("${app.candle-cache.memory-store.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.candle-cache.memory-store.capacity:5000}")
+    private int capacity;
+
+    @Value("${app.candle-cache.memory-store.max-series:1000}")
+    private int maxSeries;
+
+    @Value("${app.candle-cache.memory-store.warmup-timeframes:15m}")
+    private List<String> warmupTimeframes;
+
+    @Value("${app.candle-cache.default-exchange:OKX}")
+    private String defaultExchange;
+
+    private final Map<String, CandleRingBuffer> series = new ConcurrentHashMap<>();
+
+    // Серии, которые сейчас загружаются из БД (результат - буфер или null, если свечей нет)
+    private final Map<String, CompletableFuture<CandleRingBuffer>> loading = new ConcurrentHashMap<>();
+
+    private final Object evictionLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypasses = new AtomicLong();
+    private final AtomicLong writeThroughs = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Прогрев хранилища из БД для настроенных таймфреймов
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Async
+    public void warmUp() {
+        if (!enabled || warmupTimeframes == null || warmupTimeframes.isEmpty()) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int warmedSeries = 0;
+
+        try {
+            for (String timeframe : warmupTimeframes) {
+                List<String> tickers = cachedCandleRepository.findDistinctTickersByExchangeAndTimeframe(defaultExchange, timeframe);
+                log.info("🔥 ПРОГРЕВ ПАМЯТИ: {} тикеров для таймфрейма {}", tickers.size(), timeframe);
+
+                loadAbsent(defaultExchange, tickers, timeframe);
+                warmedSeries += tickers.size();
+            }
+
+            log.info("✅ ПРОГРЕВ ПАМЯТИ завершен: {} серий за {} мс, занято ~{} МБ",
+                    warmedSeries, System.currentTimeMillis() - startTime, getAllocatedBytes() / (1024 * 1024));
+
+        } catch (Exception e) {
+            log.error("❌ Ошибка прогрева хранилища свечей в памяти: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Последние limit свечей серии по возрастанию времени (аналог findLatestByTickerTimeframeExchange)
+     *
+     * @return изменяемый список, отсортированный по возрастанию timestamp
+     */
+    public List<Candle> getLatestCandles(String exchange, String ticker, String timeframe, int limit) {
+        if (!enabled || limit > capacity) {
+            bypasses.incrementAndGet();
+            return candleArchive.findLatest(exchange, ticker, timeframe, limit)
+                    .orElseGet(() -> loadLatestFromDb(exchange, ticker, timeframe, limit));
+        }
+
+        CandleRingBuffer buffer = series.get(key(exchange, ticker, timeframe));
+        if (buffer != null) {
+            hits.incrementAndGet();
+        } else {
+            buffer = getOrLoad(exchange, ticker, timeframe);
+        }
+
+        return buffer != null ? buffer.latest(limit) : new ArrayList<>();
+    }
+
+    /**
+     * Пакетный вариант getLatestCandles: загруженные серии отдаются из памяти,
+     * отсутствующие догружаются из БД одним запросом на группу тикеров
+     *
+     * @return тикер -> изменяемый список по возрастанию timestamp (для тикеров без свечей - пустой список)
+     */
+    public Map<String, List<Candle>> getLatestCandles(String exchange, Collection<String> tickers,
+                                                      String timeframe, int limit) {
+        Map<String, List<Candle>> result = new HashMap<>();
+
+        if (!enabled || limit > capacity) {
+            bypasses.addAndGet(tickers.size());
+            // Длинные окна сначала из архива на диске, оставшиеся тикеры - одним запросом к БД
+            List<String> notArchived = new ArrayList<>();
+            for (String ticker : tickers) {
+                candleArchive.findLatest(exchange, ticker, timeframe, limit)
+                        .ifPresentOrElse(candles -> result.put(ticker, candles), () -> notArchived.add(ticker));
+            }
+            if (!notArchived.isEmpty()) {
+                Map<String, List<Candle>> fromDb = cachedCandleBulkRepository.findLatestWindows(exchange, timeframe, notArchived, limit);
+                for (String ticker : notArchived) {
+                    result.put(ticker, fromDb.getOrDefault(ticker, new ArrayList<>()));
+                }
+            }
+            return result;
+        }
+
+        List<String> absentTickers = new ArrayList<>();
+        for (String ticker : tickers) {
+            CandleRingBuffer buffer = series.get(key(exchange, ticker, timeframe));
+            if (buffer != null) {
+                hits.incrementAndGet();
+                result.put(ticker, buffer.latest(limit));
+            } else {
+                absentTickers.add(ticker);
+            }
+        }
+
+        if (!absentTickers.isEmpty()) {
+            Map<String, CandleRingBuffer> loaded = loadAbsent(exchange, absentTickers, timeframe);
+            for (String ticker : absentTickers) {
+                // Серии, которые загружал другой поток (или уже загруженные), берем через getOrLoad
+                CandleRingBuffer buffer = loaded.containsKey(ticker) ? loaded.get(ticker) : getOrLoad(exchange, ticker, timeframe);
+                result.put(ticker, buffer != null ? buffer.latest(limit) : new ArrayList<>());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Write-through: вызывается после фиксации вставки свечей в БД.
+     * Обновляются только уже загруженные серии - незагруженные будут прочитаны из БД целиком при первом запросе.
+     */
+    public void onCandlesSaved(String exchange, String ticker, String timeframe, List<Candle> candles) {
+        if (!enabled || candles.isEmpty()) {
+            return;
+        }
+
+        String key = key(exchange, ticker, timeframe);
+        CompletableFuture<CandleRingBuffer> pending = loading.get(key);
+        if (pending != null) {
+            // Серия загружается: чтение из БД могло пройти до сохранения этих свечей - дописываем после загрузки.
+            // Если загрузка упала, серии в памяти нет и дописывать некуда
+            pending.exceptionally(e -> null).join();
+        }
+
+        series.computeIfPresent(key, (k, buffer) -> {
+            buffer.merge(candles);
+            return buffer;
+        });
+        writeThroughs.incrementAndGet();
+    }
+
+    /**
+     * Сбрасывает все серии таймфрейма (например, после удаления свечей из БД)
+     */
+    public void invalidateTimeframe(String exchange, String timeframe) {
+        String suffix = "|" + timeframe;
+        series.keySet().removeIf(k -> k.startsWith(exchange + "|") && k.endsWith(suffix));
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+
+        stats.put("enabled", enabled);
+        stats.put("capacityPerSeries", capacity);
+        stats.put("maxSeries", maxSeries);
+        stats.put("series", series.size());
+        stats.put("candles", series.values().stream().mapToLong(CandleRingBuffer::size).sum());
+        stats.put("allocatedBytes", getAllocatedBytes());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("bypasses", bypasses.get());
+        stats.put("writeThroughs", writeThroughs.get());
+        stats.put("evictions", evictions.get());
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("seriesByTimeframe", series.keySet().stream()
+                .collect(Collectors.groupingBy(k -> k.substring(k.lastIndexOf('|') + 1), Collectors.counting())));
+
+        return stats;
+    }
+
+    /**
+     * Буфер серии: из памяти, из идущей загрузки или из БД.
+     *
+     * @return null, если у серии нет свечей в БД
+     */
+    private CandleRingBuffer getOrLoad(String exchange, String ticker, String timeframe) {
+        String key = key(exchange, ticker, timeframe);
+        CandleRingBuffer buffer = series.get(key);
+        if (buffer != null) {
+            return buffer;
+        }
+
+        CompletableFuture<CandleRingBuffer> load = new CompletableFuture<>();
+        CompletableFuture<CandleRingBuffer> pending = loading.putIfAbsent(key, load);
+        if (pending != null) {
+            return awaitLoad(pending);
+        }
+
+        try {
+            // Повторная проверка: загрузка могла завершиться между series.get и регистрацией своей
+            buffer = series.get(key);
+            if (buffer == null) {
+                misses.incrementAndGet();
+                buffer = install(key, loadLatestFromDb(exchange, ticker, timeframe, capacity));
+                evictIfNeeded();
+            }
+            load.complete(buffer);
+            return buffer;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Загружает из БД серии, которых еще нет в памяти, группами по BATCH_LOAD_TICKERS тикеров
+     *
+     * @return тикер -> буфер (null - у серии нет свечей) для серий, загруженных этим вызовом
+     */
+    private Map<String, CandleRingBuffer> loadAbsent(String exchange, Collection<String> tickers, String timeframe) {
+        Map<String, CandleRingBuffer> result = new HashMap<>();
+        List<String> pending = new ArrayList<>(tickers);
+        for (int from = 0; from < pending.size(); from += BATCH_LOAD_TICKERS) {
+            List<String> group = pending.subList(from, Math.min(from + BATCH_LOAD_TICKERS, pending.size()));
+
+            // Регистрируем загрузку только тех серий, которые никто не хранит и не загружает
+            Map<String, CompletableFuture<CandleRingBuffer>> ownLoads = new LinkedHashMap<>();
+            for (String ticker : group) {
+                String key = key(exchange, ticker, timeframe);
+                if (series.containsKey(key)) {
+                    continue;
+                }
+                CompletableFuture<CandleRingBuffer> load = new CompletableFuture<>();
+                if (loading.putIfAbsent(key, load) == null) {
+                    if (series.containsKey(key)) {
+                        loading.remove(key, load);
+                        load.complete(series.get(key));
+                    } else {
+                        ownLoads.put(ticker, load);
+                    }
+                }
+            }
+            if (ownLoads.isEmpty()) {
+                continue;
+            }
+
+            try {
+                Map<String, List<Candle>> loaded = cachedCandleBulkRepository
+                        .findLatestWindows(exchange, timeframe, new ArrayList<>(ownLoads.keySet()), capacity);
+
+                for (Map.Entry<String, CompletableFuture<CandleRingBuffer>> entry : ownLoads.entrySet()) {
+                    misses.incrementAndGet();
+                    String key = key(exchange, entry.getKey(), timeframe);
+                    CandleRingBuffer buffer = install(key, loaded.getOrDefault(entry.getKey(), List.of()));
+                    result.put(entry.getKey(), buffer);
+                    entry.getValue().complete(buffer);
+                }
+            } catch (RuntimeException e) {
+                ownLoads.values().forEach(load -> load.completeExceptionally(e));
+                throw e;
+            } finally {
+                ownLoads.forEach((ticker, load) -> loading.remove(key(exchange, ticker, timeframe), load));
+            }
+            evictIfNeeded();
+        }
+        return result;
+    }
+
+    /**
+     * Кладет загруженную серию в память; серии без свечей не хранятся
+     */
+    private CandleRingBuffer install(String key, List<Candle> candles) {
+        if (candles.isEmpty()) {
+            return null;
+        }
+        CandleRingBuffer buffer = new CandleRingBuffer(candles.size(), capacity);
+        buffer.merge(candles);
+        CandleRingBuffer existing = series.putIfAbsent(key, buffer);
+        return existing != null ? existing : buffer;
+    }
+
+    /**
+     * Вытесняет давно не запрашиваемые серии сверх max-series
+     */
+    private void evictIfNeeded() {
+        if (series.size() <= maxSeries) {
+            return;
+        }
+        synchronized (evictionLock) {
+            int excess = series.size() - maxSeries;
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<String, CandleRingBuffer>> entries = new ArrayList<>(series.entrySet());
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccessNanos()));
+            for (int i = 0; i < excess && i < entries.size(); i++) {
+                if (series.remove(entries.get(i).getKey(), entries.get(i).getValue())) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private CandleRingBuffer awaitLoad(CompletableFuture<CandleRingBuffer> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            // Ошибку загрузки получит и залогирует поток, который ее выполнял
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    private List<Candle> loadLatestFromDb(String exchange, String ticker, String timeframe, int limit) {
+        List<CachedCandle> latest = cachedCandleRepository
+                .findLatestByTickerTimeframeExchange(ticker, timeframe, exchange, PageRequest.of(0, limit));
+
+        // Из БД свечи приходят по убыванию времени - разворачиваем без повторной сортировки
+        List<Candle> candles = new ArrayList<>(latest.size());
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            candles.add(latest.get(i).toCandle());
+        }
+        return candles;
+    }
+
+    private long getAllocatedBytes() {
+        return series.values().stream().mapToLong(CandleRingBuffer::allocatedLength).sum()
+                * CandleRingBuffer.BYTES_PER_CANDLE;
+    }
+
+    private static String key(String exchange, String ticker, String timeframe) {
+        return exchange + "|" + ticker + "|" + timeframe;
+    }
+}
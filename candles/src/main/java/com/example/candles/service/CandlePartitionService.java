@@ -0,0 +1,119 @@
+package com.example.candles.service;
+
+import com.example.candles.repositories.CachedCandlePartitionRepository;
+import com.example.candles.repositories.CachedCandleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Обслуживание секций candle_bars: заранее создает секции периодов для каждого таймфрейма
+ * и удаляет целые секции старше срока хранения таймфрейма - вместо построчных DELETE.
+ * <p>
+ * Срок хранения задается в app.candle-cache.partitions.retention-months в виде "таймфрейм:месяцев,...",
+ * 0 - хранить бессрочно. Срок должен покрывать период предзагрузки таймфрейма, иначе старые свечи
+ * будут оседать в DEFAULT секции.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CandlePartitionService {
+
+    private final CachedCandlePartitionRepository partitionRepository;
+    private final CachedCandleRepository cachedCandleRepository;
+    private final CandleGapRepairService candleGapRepairService;
+
+    @Value("${app.candle-cache.partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.candle-cache.partitions.months-ahead:2}")
+    private int monthsAhead;
+
+    @Value("${app.candle-cache.partitions.retention-months:1m:13,5m:13,15m:13,1H:37,4H:37,1D:61,1W:61,1M:61}")
+    private String retentionMonths;
+
+    /**
+     * Создает недостающие секции от начала срока хранения до monthsAhead месяцев вперед
+     * и удаляет секции, вышедшие за срок хранения
+     */
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        if (!partitionRepository.isPartitioned()) {
+            log.warn("⚠️ Таблица candle_bars не секционирована (миграция V52 не выполнена) - обслуживание секций пропущено");
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+        int created = 0;
+        int dropped = 0;
+
+        for (Map.Entry<String, Integer> entry : parseRetention().entrySet()) {
+            String timeframe = entry.getKey();
+            int retention = entry.getValue();
+            YearMonth firstMonth = retention > 0 ? currentMonth.minusMonths(retention - 1L) : currentMonth;
+
+            try {
+                for (YearMonth month = firstMonth; !month.isAfter(currentMonth.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+                    if (partitionRepository.ensurePartition(timeframe, toEpochMillis(month))) {
+                        created++;
+                    }
+                }
+                if (retention > 0) {
+                    int droppedForTimeframe = partitionRepository.dropPartitionsBefore(timeframe, toEpochMillis(firstMonth));
+                    if (droppedForTimeframe > 0) {
+                        // Удаленные свечи больше не покрыты - при запросе их окна они будут догружены заново
+                        candleGapRepairService.trimBefore(timeframe, toEpochMillis(firstMonth));
+                    }
+                    dropped += droppedForTimeframe;
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Ошибка обслуживания секций таймфрейма {}: {}", timeframe, e.getMessage());
+            }
+        }
+
+        log.info("🗂️ Секции candle_bars: создано {}, удалено по сроку хранения {} ({} мс)",
+                created, dropped, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Удаляет все свечи таймфрейма биржи: для секционированной таблицы - удалением секции
+     *
+     * @return количество удаленных свечей (при удалении секции - оценка по статистике Postgres)
+     */
+    public long dropTimeframe(String exchange, String timeframe) {
+        if (enabled && partitionRepository.isPartitioned()) {
+            return partitionRepository.dropTimeframe(exchange, timeframe);
+        }
+        return cachedCandleRepository.deleteByExchangeAndTimeframe(exchange, timeframe);
+    }
+
+    private Map<String, Integer> parseRetention() {
+        Map<String, Integer> retention = new LinkedHashMap<>();
+        for (String item : retentionMonths.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length != 2) {
+                log.warn("⚠️ Некорректный элемент срока хранения секций: '{}'", item);
+                continue;
+            }
+            try {
+                retention.put(parts[0].trim(), Math.max(0, Integer.parseInt(parts[1].trim())));
+            } catch (NumberFormatException e) {
+                log.warn("⚠️ Некорректный срок хранения для таймфрейма {}: '{}'", parts[0].trim(), parts[1].trim());
+            }
+        }
+        return retention;
+    }
+
+    private static long toEpochMillis(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
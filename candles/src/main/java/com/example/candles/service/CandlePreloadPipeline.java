@@ -0,0 +1,503 @@
+package com.example.candles.service;
+
+import com.example.candles.client.OkxFeignClient;
+import com.example.candles.repositories.CachedCandleBulkRepository;
+import com.example.candles.repositories.CandlePreloadCheckpointRepository;
+import com.example.candles.repositories.CandlePreloadCheckpointRepository.Checkpoint;
+import com.example.shared.dto.Candle;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Конвейерная предзагрузка истории свечей таймфрейма для списка тикеров.
+ * <p>
+ * Три стадии, связанные ограниченными очередями:
+ * 1. загрузка - fetchers потоков листают историю тикеров страницами по 300 свечей (максимум OKX),
+ * общий темп запросов ограничен бюджетом OkxRequestBudget, без пауз между страницами одного тикера;
+ * 2. разбор - сортирует страницу, отбрасывает повторы и свечи вне запрошенного диапазона;
+ * 3. запись - writers потоков склеивают накопившиеся страницы одной серии и пишут их одной пакетной вставкой.
+ * Полная очередь блокирует предыдущую стадию (backpressure), поэтому при медленной БД загрузка
+ * притормаживает, а не копит историю в памяти.
+ * <p>
+ * Серия всегда пишется одним писателем в порядке загрузки страниц, поэтому после каждой записи сдвигается
+ * контрольная точка серии (candle_preload_checkpoints): прерванная предзагрузка продолжается с самой старой
+ * записанной свечи, а завершенная - догружает только свечи новее последней.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CandlePreloadPipeline {
+
+    private static final int PAGE_SIZE = 300; // Максимум для OKX API
+    private static final int MAX_PAGE_ATTEMPTS = 3;
+    private static final long PROGRESS_LOG_INTERVAL_MS = 30_000;
+
+    private final OkxFeignClient okxFeignClient;
+    private final CandleTransactionService candleTransactionService;
+    private final CandlePreloadCheckpointRepository checkpointRepository;
+    private final CachedCandleBulkRepository cachedCandleBulkRepository;
+    private final OkxRequestBudget okxRequestBudget;
+
+    @Value("${app.candle-cache.preload.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.candle-cache.preload.fetchers:8}")
+    private int fetchers;
+
+    @Value("${app.candle-cache.preload.writers:2}")
+    private int writers;
+
+    @Value("${app.candle-cache.preload.queue-capacity:64}")
+    private int queueCapacity;
+
+    /**
+     * Прогресс по "биржа/таймфрейм" (последний запуск)
+     */
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+
+    private enum Segment {
+        /**
+         * От текущего момента назад до самой новой уже загруженной свечи
+         */
+        HEAD,
+        /**
+         * От самой старой загруженной свечи (или от текущего момента) назад до начала периода
+         */
+        TAIL
+    }
+
+    /**
+     * Страница свечей серии. lowerBound - свечи старше отбрасываются при разборе,
+     * last - последняя страница участка, headTop - самая новая свеча участка HEAD
+     */
+    private record Page(String ticker, Segment segment, List<Candle> candles, long lowerBound,
+                        boolean last, long headTop) {
+    }
+
+    private static final Page END = new Page(null, null, List.of(), 0, true, -1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Загружает историю за periodDays для всех тикеров таймфрейма
+     *
+     * @return количество добавленных в БД свечей
+     */
+    public int preload(String exchange, List<String> tickers, String timeframe, int periodDays) {
+        long fromTimestamp = System.currentTimeMillis() - periodDays * 24L * 3600 * 1000;
+        Run run = new Run(exchange, timeframe, fromTimestamp, new Progress(tickers.size()),
+                Math.max(1, writers), Math.max(1, queueCapacity));
+        progress.put(exchange + "/" + timeframe, run.progress);
+
+        int fetcherCount = Math.max(1, Math.min(fetchers, tickers.size()));
+        log.info("🏭 ПРЕДЗАГРУЗКА {}/{}: {} тикеров за {} дней - {} загрузчиков ({} запр/сек), {} писателей",
+                exchange, timeframe, tickers.size(), periodDays, fetcherCount, okxRequestBudget.getRequestsPerSecond(),
+                run.writerQueues.size());
+
+        Queue<String> pendingTickers = new ConcurrentLinkedQueue<>(tickers);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(fetcherCount + 1 + run.writerQueues.size(), r -> {
+            Thread thread = new Thread(r, "candle-preload-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<?>> fetchTasks = new ArrayList<>();
+            for (int i = 0; i < fetcherCount; i++) {
+                fetchTasks.add(pool.submit(() -> fetchLoop(run, pendingTickers)));
+            }
+            Future<?> parseTask = pool.submit(() -> parseLoop(run));
+            List<Future<?>> writeTasks = new ArrayList<>();
+            for (BlockingQueue<Page> queue : run.writerQueues) {
+                writeTasks.add(pool.submit(() -> writeLoop(run, queue)));
+            }
+
+            awaitAll(fetchTasks, run);
+            run.parseQueue.put(END);
+            awaitAll(List.of(parseTask), run);
+            awaitAll(writeTasks, run);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("⚠️ ПРЕДЗАГРУЗКА {}/{} прервана - продолжится с контрольных точек", exchange, timeframe);
+        } finally {
+            pool.shutdownNow();
+            run.progress.finishedAt = System.currentTimeMillis();
+        }
+
+        logProgress(run);
+        return (int) run.progress.candlesWritten.get();
+    }
+
+    /**
+     * Удаляет контрольные точки таймфрейма (после удаления его свечей)
+     */
+    public void invalidateTimeframe(String exchange, String timeframe) {
+        int removed = checkpointRepository.deleteTimeframe(exchange, timeframe);
+        progress.remove(exchange + "/" + timeframe);
+        log.debug("🏭 ПРЕДЗАГРУЗКА: удалено {} контрольных точек {}/{}", removed, exchange, timeframe);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("fetchers", fetchers);
+        stats.put("writers", writers);
+        stats.put("requestsPerSecond", okxRequestBudget.getRequestsPerSecond());
+        Map<String, Object> byTimeframe = new TreeMap<>();
+        progress.forEach((key, value) -> byTimeframe.put(key, value.toMap()));
+        stats.put("progress", byTimeframe);
+        return stats;
+    }
+
+    // ---------- Стадия 1: загрузка страниц ----------
+
+    private void fetchLoop(Run run, Queue<String> pendingTickers) {
+        String ticker;
+        while ((ticker = pendingTickers.poll()) != null && !Thread.currentThread().isInterrupted()) {
+            try {
+                if (fetchSeries(run, ticker)) {
+                    run.progress.tickersFetched.incrementAndGet();
+                } else {
+                    run.progress.tickersFailed.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                run.progress.tickersFailed.incrementAndGet();
+                log.warn("⚠️ ПРЕДЗАГРУЗКА: ошибка загрузки {}/{}: {}", ticker, run.timeframe, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Участки загрузки серии по контрольной точке: без точки - вся история от текущего момента,
+     * иначе свежие свечи до точки и, если история не догружена, продолжение от самой старой свечи
+     *
+     * @return false, если участок не удалось загрузить
+     */
+    private boolean fetchSeries(Run run, String ticker) throws InterruptedException {
+        Checkpoint checkpoint = validCheckpoint(run, ticker);
+        if (checkpoint == null) {
+            return fetchSegment(run, ticker, Segment.TAIL, null, run.fromTimestamp);
+        }
+
+        run.checkpoints.put(ticker, checkpoint);
+        boolean fetched = fetchSegment(run, ticker, Segment.HEAD, null, checkpoint.newestTimestamp());
+        if (!checkpoint.completed() || checkpoint.fromTimestamp() > run.fromTimestamp) {
+            fetched &= fetchSegment(run, ticker, Segment.TAIL, checkpoint.oldestTimestamp(), run.fromTimestamp);
+        }
+        return fetched;
+    }
+
+    /**
+     * Контрольная точка серии, если свечи ее участка все еще в БД (их не удалили очисткой или по сроку хранения)
+     */
+    private Checkpoint validCheckpoint(Run run, String ticker) {
+        Checkpoint checkpoint = checkpointRepository.find(run.exchange, ticker, run.timeframe).orElse(null);
+        if (checkpoint == null || checkpoint.oldestTimestamp() == null || checkpoint.newestTimestamp() == null) {
+            return null;
+        }
+
+        long[] stats = cachedCandleBulkRepository.findSeriesStats(run.exchange, ticker, run.timeframe);
+        boolean present = stats[0] > 0 && stats[1] <= checkpoint.oldestTimestamp() && stats[2] >= checkpoint.newestTimestamp();
+        return present ? checkpoint : null;
+    }
+
+    /**
+     * Листает историю назад от before (null - от текущего момента) до stopAt
+     */
+    private boolean fetchSegment(Run run, String ticker, Segment segment, Long before, long stopAt)
+            throws InterruptedException {
+        Long cursor = before;
+        long headTop = -1;
+
+        while (true) {
+            List<Candle> candles = fetchPage(run, ticker, cursor);
+            if (candles == null) {
+                return false;
+            }
+            run.progress.pages.incrementAndGet();
+
+            long oldest = Long.MAX_VALUE;
+            long newest = Long.MIN_VALUE;
+            for (Candle candle : candles) {
+                oldest = Math.min(oldest, candle.getTimestamp());
+                newest = Math.max(newest, candle.getTimestamp());
+            }
+            if (segment == Segment.HEAD && headTop < 0 && !candles.isEmpty()) {
+                headTop = newest;
+            }
+
+            // Конец участка: история кончилась (листинг тикера), дошли до границы или курсор не сдвигается
+            boolean last = candles.isEmpty() || oldest <= stopAt || (cursor != null && oldest >= cursor);
+            run.parseQueue.put(new Page(ticker, segment, candles, stopAt, last, headTop));
+            if (last) {
+                return true;
+            }
+            cursor = oldest;
+        }
+    }
+
+    /**
+     * @return страница свечей (пустая - истории больше нет) или null после MAX_PAGE_ATTEMPTS неудачных попыток
+     */
+    private List<Candle> fetchPage(Run run, String ticker, Long before) throws InterruptedException {
+        for (int attempt = 1; attempt <= MAX_PAGE_ATTEMPTS; attempt++) {
+            okxRequestBudget.awaitSlot();
+            try {
+                List<Candle> candles = before == null
+                        ? okxFeignClient.getCandles(ticker, run.timeframe, PAGE_SIZE)
+                        : okxFeignClient.getCandlesBefore(ticker, run.timeframe, PAGE_SIZE, before);
+                return candles != null ? candles : List.of();
+            } catch (Exception e) {
+                log.warn("⚠️ ПРЕДЗАГРУЗКА: {}/{} страница before={} - попытка {}/{}: {}",
+                        ticker, run.timeframe, before, attempt, MAX_PAGE_ATTEMPTS, e.getMessage());
+                Thread.sleep(1000L * attempt);
+            }
+        }
+        return null;
+    }
+
+    // ---------- Стадия 2: разбор ----------
+
+    private void parseLoop(Run run) {
+        try {
+            while (true) {
+                Page page = run.parseQueue.take();
+                if (page == END) {
+                    break;
+                }
+                run.writerQueue(page.ticker()).put(normalize(page));
+            }
+            for (BlockingQueue<Page> queue : run.writerQueues) {
+                queue.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Свечи страницы по возрастанию времени, без повторов и без свечей старше lowerBound
+     */
+    private static Page normalize(Page page) {
+        List<Candle> candles = new ArrayList<>(page.candles().size());
+        for (Candle candle : page.candles()) {
+            if (candle != null && candle.getTimestamp() >= page.lowerBound()) {
+                candles.add(candle);
+            }
+        }
+        candles.sort(Comparator.comparingLong(Candle::getTimestamp));
+
+        int unique = 0;
+        for (int i = 0; i < candles.size(); i++) {
+            if (unique == 0 || candles.get(i).getTimestamp() != candles.get(unique - 1).getTimestamp()) {
+                candles.set(unique++, candles.get(i));
+            }
+        }
+        return new Page(page.ticker(), page.segment(), new ArrayList<>(candles.subList(0, unique)),
+                page.lowerBound(), page.last(), page.headTop());
+    }
+
+    // ---------- Стадия 3: запись ----------
+
+    private void writeLoop(Run run, BlockingQueue<Page> queue) {
+        List<Page> drained = new ArrayList<>();
+        try {
+            while (true) {
+                drained.clear();
+                drained.add(queue.take());
+                queue.drainTo(drained);
+
+                // Накопившиеся страницы одной серии пишутся одной вставкой, порядок серий сохраняется
+                boolean end = false;
+                Map<String, List<Page>> bySeries = new LinkedHashMap<>();
+                for (Page page : drained) {
+                    if (page == END) {
+                        end = true;
+                    } else {
+                        bySeries.computeIfAbsent(page.ticker(), k -> new ArrayList<>()).add(page);
+                    }
+                }
+                bySeries.forEach((ticker, pages) -> writeSeries(run, ticker, pages));
+
+                if (end) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeSeries(Run run, String ticker, List<Page> pages) {
+        List<Candle> candles = new ArrayList<>();
+        for (Page page : pages) {
+            candles.addAll(page.candles());
+        }
+
+        try {
+            int added = candleTransactionService.saveCandlesBatch(ticker, run.timeframe, run.exchange, candles);
+            run.progress.candlesWritten.addAndGet(added);
+        } catch (Exception e) {
+            // Контрольная точка серии больше не сдвигается - следующий запуск догрузит с последней записанной
+            run.failedSeries.add(ticker);
+            run.progress.writeErrors.incrementAndGet();
+            log.warn("⚠️ ПРЕДЗАГРУЗКА: ошибка записи {}/{} ({} свечей): {}",
+                    ticker, run.timeframe, candles.size(), e.getMessage());
+            return;
+        }
+
+        if (run.failedSeries.contains(ticker)) {
+            return;
+        }
+        Checkpoint checkpoint = run.checkpoints.get(ticker);
+        for (Page page : pages) {
+            checkpoint = advance(checkpoint, page, run.fromTimestamp);
+        }
+        if (checkpoint == null) {
+            return;
+        }
+        run.checkpoints.put(ticker, checkpoint);
+        try {
+            checkpointRepository.save(run.exchange, ticker, run.timeframe, checkpoint);
+        } catch (Exception e) {
+            log.warn("⚠️ ПРЕДЗАГРУЗКА: не удалось сохранить контрольную точку {}/{}: {}",
+                    ticker, run.timeframe, e.getMessage());
+        }
+    }
+
+    /**
+     * Контрольная точка после записи страницы: TAIL сдвигает самую старую свечу вниз (и завершает историю
+     * на последней странице), HEAD на последней странице поднимает самую новую свечу
+     */
+    private static Checkpoint advance(Checkpoint checkpoint, Page page, long runFromTimestamp) {
+        long from = checkpoint != null ? checkpoint.fromTimestamp() : runFromTimestamp;
+        Long oldest = checkpoint != null ? checkpoint.oldestTimestamp() : null;
+        Long newest = checkpoint != null ? checkpoint.newestTimestamp() : null;
+        boolean completed = checkpoint != null && checkpoint.completed();
+        List<Candle> candles = page.candles();
+
+        if (page.segment() == Segment.TAIL) {
+            from = runFromTimestamp;
+            if (!candles.isEmpty()) {
+                long pageOldest = candles.get(0).getTimestamp();
+                oldest = oldest == null ? pageOldest : Math.min(oldest, pageOldest);
+                if (newest == null) {
+                    newest = candles.get(candles.size() - 1).getTimestamp();
+                }
+            }
+            completed = page.last();
+        } else if (page.last() && page.headTop() >= 0) {
+            newest = newest == null ? page.headTop() : Math.max(newest, page.headTop());
+        }
+
+        if (checkpoint == null && oldest == null) {
+            return null; // у серии нет ни одной свечи
+        }
+        return new Checkpoint(from, oldest, newest, completed);
+    }
+
+    // ---------- Прогресс ----------
+
+    private void awaitAll(List<Future<?>> futures, Run run) throws InterruptedException {
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get(PROGRESS_LOG_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    logProgress(run);
+                } catch (ExecutionException e) {
+                    log.error("❌ ПРЕДЗАГРУЗКА: ошибка стадии конвейера: {}", e.getCause().getMessage(), e.getCause());
+                    break;
+                }
+            }
+        }
+    }
+
+    private void logProgress(Run run) {
+        Progress p = run.progress;
+        log.info("📦 ПРЕДЗАГРУЗКА {}/{}: тикеров {}/{} (ошибок {}), страниц {}, записано {} свечей ({} свечей/сек)",
+                run.exchange, run.timeframe, p.tickersFetched.get(), p.tickersTotal, p.tickersFailed.get(),
+                p.pages.get(), p.candlesWritten.get(), p.candlesPerSecond());
+    }
+
+    /**
+     * Состояние одного запуска: очереди между стадиями и контрольные точки серий
+     */
+    private static final class Run {
+        final String exchange;
+        final String timeframe;
+        final long fromTimestamp;
+        final Progress progress;
+        final BlockingQueue<Page> parseQueue;
+        final List<BlockingQueue<Page>> writerQueues = new ArrayList<>();
+        final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+        final Set<String> failedSeries = ConcurrentHashMap.newKeySet();
+
+        Run(String exchange, String timeframe, long fromTimestamp, Progress progress, int writers, int queueCapacity) {
+            this.exchange = exchange;
+            this.timeframe = timeframe;
+            this.fromTimestamp = fromTimestamp;
+            this.progress = progress;
+            this.parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+            for (int i = 0; i < writers; i++) {
+                writerQueues.add(new ArrayBlockingQueue<>(queueCapacity));
+            }
+        }
+
+        /**
+         * Серия закреплена за одним писателем - страницы серии пишутся в порядке загрузки
+         */
+        BlockingQueue<Page> writerQueue(String ticker) {
+            return writerQueues.get(Math.floorMod(ticker.hashCode(), writerQueues.size()));
+        }
+    }
+
+    private static final class Progress {
+        final int tickersTotal;
+        final long startedAt = System.currentTimeMillis();
+        volatile long finishedAt;
+        final AtomicInteger tickersFetched = new AtomicInteger();
+        final AtomicInteger tickersFailed = new AtomicInteger();
+        final AtomicLong pages = new AtomicLong();
+        final AtomicLong candlesWritten = new AtomicLong();
+        final AtomicInteger writeErrors = new AtomicInteger();
+
+        Progress(int tickersTotal) {
+            this.tickersTotal = tickersTotal;
+        }
+
+        long candlesPerSecond() {
+            long elapsed = Math.max(1, (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt);
+            return candlesWritten.get() * 1000 / elapsed;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("status", finishedAt > 0 ? "finished" : "running");
+            map.put("tickersTotal", tickersTotal);
+            map.put("tickersFetched", tickersFetched.get());
+            map.put("tickersFailed", tickersFailed.get());
+            map.put("pages", pages.get());
+            map.put("candlesWritten", candlesWritten.get());
+            map.put("writeErrors", writeErrors.get());
+            map.put("candlesPerSecond", candlesPerSecond());
+            map.put("startedAt", startedAt);
+            return map;
+        }
+    }
+}
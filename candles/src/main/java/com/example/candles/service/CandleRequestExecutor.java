@@ -0,0 +1,124 @@
+package com.example.candles.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Общий пул обработки тикеров для запросов CandlesProcessorController вместо пула на каждый запрос.
+ * <p>
+ * Параллельность ограничивается не числом потоков, а ресурсами, на которых задачи реально ждут:
+ * чтения из БД проходят через семафор по размеру пула Hikari (за вычетом соединений для фоновых
+ * писателей), запросы к OKX в фоне ограничивает OkxRequestBudget. Пока задача ждет разрешение,
+ * соединение Hikari не занимается, а другие задачи, которые читают из архива или кэша окон, идут дальше.
+ * <p>
+ * Задачи одного запроса живут не дольше запроса: по таймауту незавершенные задачи отменяются.
+ */
+@Component
+@Slf4j
+public class CandleRequestExecutor {
+
+    @Value("${app.candle-cache.request-executor.threads:32}")
+    private int threads;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int hikariPoolSize;
+
+    // Соединения Hikari, оставляемые фоновой предзагрузке и догрузке пропусков
+    @Value("${app.candle-cache.request-executor.reserved-connections:2}")
+    private int reservedConnections;
+
+    private ExecutorService executorService;
+    private Semaphore databasePermits;
+
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final AtomicLong completedTasks = new AtomicLong();
+    private final AtomicLong cancelledTasks = new AtomicLong();
+    private final AtomicLong databaseWaitNanos = new AtomicLong();
+
+    @PostConstruct
+    public void initializeExecutorService() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "candles-request-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.databasePermits = new Semaphore(Math.max(1, hikariPoolSize - reservedConnections), true);
+        log.info("🔧 Инициализирован пул обработки тикеров: {} потоков, {} одновременных чтений из БД",
+                threads, databasePermits.availablePermits());
+    }
+
+    @PreDestroy
+    public void shutdownExecutorService() {
+        if (executorService != null && !executorService.isShutdown()) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Выполняет задачи запроса в общем пуле и ждет их не дольше timeout
+     *
+     * @return количество задач, отмененных по таймауту
+     */
+    public int invokeAll(List<? extends Callable<?>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+        List<Callable<Object>> tracked = new ArrayList<>(tasks.size());
+        for (Callable<?> task : tasks) {
+            tracked.add(() -> {
+                activeTasks.incrementAndGet();
+                try {
+                    return task.call();
+                } finally {
+                    activeTasks.decrementAndGet();
+                    completedTasks.incrementAndGet();
+                }
+            });
+        }
+
+        int cancelled = 0;
+        for (Future<Object> future : executorService.invokeAll(tracked, timeout, unit)) {
+            if (future.isCancelled()) {
+                cancelled++;
+            }
+        }
+        cancelledTasks.addAndGet(cancelled);
+        return cancelled;
+    }
+
+    /**
+     * Выполняет чтение из БД, не превышая число одновременных чтений
+     */
+    public <T> T withDatabasePermit(Supplier<T> query) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        databasePermits.acquire();
+        databaseWaitNanos.addAndGet(System.nanoTime() - startNanos);
+        try {
+            return query.get();
+        } finally {
+            databasePermits.release();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threads", threads);
+        stats.put("activeTasks", activeTasks.get());
+        stats.put("completedTasks", completedTasks.get());
+        stats.put("cancelledTasks", cancelledTasks.get());
+        stats.put("availableDatabasePermits", databasePermits.availablePermits());
+        stats.put("queuedForDatabase", databasePermits.getQueueLength());
+        stats.put("databaseWaitMs", databaseWaitNanos.get() / 1_000_000);
+        return stats;
+    }
+}
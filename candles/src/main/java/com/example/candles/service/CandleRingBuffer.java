@@ -0,0 +1,234 @@
+package com.example.candles.service;
+
+import com.example.shared.dto.Candle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Кольцевой буфер последних свечей одной серии (exchange, ticker, timeframe) в колоночном виде.
+ * Таймштампы хранятся в long[], OHLCV - в double[], свечи всегда упорядочены по возрастанию времени.
+ * Массивы выделяются под фактическое число свечей и растут (удвоением) до capacity;
+ * при заполнении capacity вытесняются самые старые свечи.
+ */
+final class CandleRingBuffer {
+
+    /**
+     * Байт на одну свечу: timestamp + 5 цен/объем
+     */
+    static final int BYTES_PER_CANDLE = Long.BYTES + 5 * Double.BYTES;
+
+    private final int capacity;
+    private long[] timestamps;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private double[] volume;
+
+    private int head; // физический индекс самой старой свечи
+    private int size;
+
+    // Время последнего чтения (System.nanoTime) - для вытеснения давно не запрашиваемых серий
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    /**
+     * @param initialLength сколько свечей выделить сразу (обычно - сколько загружено из БД)
+     * @param capacity      максимум свечей в буфере
+     */
+    CandleRingBuffer(int initialLength, int capacity) {
+        this.capacity = capacity;
+        allocate(Math.max(1, Math.min(initialLength, capacity)));
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Сколько свечей помещается в уже выделенные массивы
+     */
+    synchronized int allocatedLength() {
+        return timestamps.length;
+    }
+
+    long lastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    synchronized long lastTimestamp() {
+        return size == 0 ? -1L : timestamps[physical(size - 1)];
+    }
+
+    /**
+     * Добавляет свечи в буфер. Свечи с уже существующим таймштампом игнорируются
+     * (как ON CONFLICT DO NOTHING в БД).
+     */
+    synchronized void merge(List<Candle> candles) {
+        if (candles.isEmpty()) {
+            return;
+        }
+
+        List<Candle> sorted = new ArrayList<>(candles);
+        sorted.sort(Comparator.comparingLong(Candle::getTimestamp));
+
+        // Быстрый путь: все новые свечи свежее последней - просто дописываем в хвост
+        if (size == 0 || sorted.get(0).getTimestamp() > lastTimestamp()) {
+            for (Candle candle : sorted) {
+                if (size == 0 || candle.getTimestamp() > lastTimestamp()) {
+                    append(candle.getTimestamp(), candle.getOpen(), candle.getHigh(),
+                            candle.getLow(), candle.getClose(), candle.getVolume());
+                }
+            }
+            return;
+        }
+
+        // Буфер заполнен и все свечи старше окна - в буфер они не попадут
+        if (size == capacity && sorted.get(sorted.size() - 1).getTimestamp() < timestamps[head]) {
+            return;
+        }
+
+        mergeSorted(sorted);
+    }
+
+    /**
+     * Возвращает последние limit свечей по возрастанию времени
+     */
+    synchronized List<Candle> latest(int limit) {
+        lastAccessNanos = System.nanoTime();
+        int count = Math.min(limit, size);
+        List<Candle> result = new ArrayList<>(count);
+        for (int i = size - count; i < size; i++) {
+            int p = physical(i);
+            result.add(new Candle(timestamps[p], open[p], high[p], low[p], close[p], volume[p]));
+        }
+        return result;
+    }
+
+    private void append(long timestamp, double o, double h, double l, double c, double v) {
+        if (size == timestamps.length && size < capacity) {
+            resize(Math.min(capacity, size * 2));
+        }
+
+        int p;
+        if (size < timestamps.length) {
+            p = physical(size);
+            size++;
+        } else {
+            p = head;
+            head = (head + 1) % timestamps.length;
+        }
+        timestamps[p] = timestamp;
+        open[p] = o;
+        high[p] = h;
+        low[p] = l;
+        close[p] = c;
+        volume[p] = v;
+    }
+
+    /**
+     * Слияние двух упорядоченных последовательностей (буфер + новые свечи) с сохранением
+     * последних capacity свечей. При совпадении таймштампа остается свеча из буфера.
+     */
+    private void mergeSorted(List<Candle> sorted) {
+        int total = size + sorted.size();
+        long[] ts = new long[total];
+        double[] o = new double[total];
+        double[] h = new double[total];
+        double[] l = new double[total];
+        double[] c = new double[total];
+        double[] v = new double[total];
+
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < size || j < sorted.size()) {
+            long existingTs = i < size ? timestamps[physical(i)] : Long.MAX_VALUE;
+            long incomingTs = j < sorted.size() ? sorted.get(j).getTimestamp() : Long.MAX_VALUE;
+
+            if (n > 0 && Math.min(existingTs, incomingTs) == ts[n - 1]) {
+                // дубликат уже записан - пропускаем
+                if (existingTs <= incomingTs) i++;
+                else j++;
+                continue;
+            }
+
+            if (existingTs <= incomingTs) {
+                int p = physical(i++);
+                ts[n] = timestamps[p];
+                o[n] = open[p];
+                h[n] = high[p];
+                l[n] = low[p];
+                c[n] = close[p];
+                v[n] = volume[p];
+            } else {
+                Candle candle = sorted.get(j++);
+                ts[n] = candle.getTimestamp();
+                o[n] = candle.getOpen();
+                h[n] = candle.getHigh();
+                l[n] = candle.getLow();
+                c[n] = candle.getClose();
+                v[n] = candle.getVolume();
+            }
+            n++;
+        }
+
+        int from = Math.max(0, n - capacity);
+        int kept = n - from;
+        if (kept > timestamps.length) {
+            allocate(Math.min(capacity, Math.max(kept, timestamps.length * 2)));
+        }
+        System.arraycopy(ts, from, timestamps, 0, kept);
+        System.arraycopy(o, from, open, 0, kept);
+        System.arraycopy(h, from, high, 0, kept);
+        System.arraycopy(l, from, low, 0, kept);
+        System.arraycopy(c, from, close, 0, kept);
+        System.arraycopy(v, from, volume, 0, kept);
+        head = 0;
+        size = kept;
+    }
+
+    /**
+     * Переносит свечи в массивы длины length в логическом порядке (head = 0)
+     */
+    private void resize(int length) {
+        long[] ts = timestamps;
+        double[] o = open;
+        double[] h = high;
+        double[] l = low;
+        double[] c = close;
+        double[] v = volume;
+        int oldHead = head;
+        int oldLength = ts.length;
+
+        allocate(length);
+        for (int i = 0; i < size; i++) {
+            int p = (oldHead + i) % oldLength;
+            timestamps[i] = ts[p];
+            open[i] = o[p];
+            high[i] = h[p];
+            low[i] = l[p];
+            close[i] = c[p];
+            volume[i] = v[p];
+        }
+        head = 0;
+    }
+
+    private void allocate(int length) {
+        timestamps = new long[length];
+        open = new double[length];
+        high = new double[length];
+        low = new double[length];
+        close = new double[length];
+        volume = new double[length];
+    }
+
+    private int physical(int logicalIndex) {
+        return (head + logicalIndex) % timestamps.length;
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.candles.service;
 
+import com.example.candles.repositories.CachedCandleBulkRepository;
 import com.example.candles.repositories.CachedCandleRepository;
 import com.example.shared.dto.Candle;
 import com.example.shared.models.CachedCandle;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,6 +25,14 @@ import java.util.stream.Collectors;
 public class CandleTransactionService {
 
     private final CachedCandleRepository cachedCandleRepository;
+    private final CachedCandleBulkRepository cachedCandleBulkRepository;
+    private final CandleMemoryStore candleMemoryStore;
+    private final CandleArchive candleArchive;
+    private final CandleWindowCache candleWindowCache;
+
+    // true - пакетная вставка одним запросом на порцию, false - старый построчный INSERT
+    @Value("${app.candle-cache.bulk-insert-enabled:true}")
+    private boolean bulkInsertEnabled;
 
     /**
      * Транзакционное сохранение свечей в кэш
@@ -33,6 +45,10 @@ public class CandleTransactionService {
             log.debug("💾 ДОБАВЛЯЕМ: {} свечей для {}/{}/{}",
                     candles.size(), ticker, timeframe, exchange);
 
+            if (bulkInsertEnabled) {
+                return bulkInsert(ticker, timeframe, exchange, candles);
+            }
+
             // Убираем подсчет записей для избежания проблем с Hibernate session
 
             // Сохраняем порциями для экономии памяти
@@ -63,8 +79,7 @@ public class CandleTransactionService {
                                     cachedCandle.getHighPrice(),
                                     cachedCandle.getLowPrice(),
                                     cachedCandle.getClosePrice(),
-                                    cachedCandle.getVolume(),
-                                    cachedCandle.getIsValid()
+                                    cachedCandle.getVolume()
                             );
                             processedCount++;
                         } catch (Exception ex) {
@@ -92,6 +107,7 @@ public class CandleTransactionService {
             // Возвращаем количество успешно обработанных свечей
             if (totalProcessedCount > 0) {
                 log.debug("💾 ДОБАВЛЕНО: {} свечей для {}/{}/{}", totalProcessedCount, ticker, timeframe, exchange);
+                writeThroughAfterCommit(ticker, timeframe, exchange, candles);
             }
 
             return totalProcessedCount;
@@ -102,6 +118,16 @@ public class CandleTransactionService {
         }
     }
 
+    /**
+     * Пакетное сохранение для писателя конвейерной предзагрузки: всегда одной пакетной вставкой
+     * и, в отличие от saveCandlesToCache, с пробросом ошибки - по результату сдвигается контрольная точка серии
+     * @return количество реально добавленных свечей в БД
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int saveCandlesBatch(String ticker, String timeframe, String exchange, List<Candle> candles) {
+        return candles.isEmpty() ? 0 : bulkInsert(ticker, timeframe, exchange, candles);
+    }
+
     /**
      * Транзакционное обновление свечей в кэше
      * @return количество реально добавленных свечей в БД
@@ -115,6 +141,13 @@ public class CandleTransactionService {
 
             // Убираем подсчет записей для избежания проблем с Hibernate session
 
+            if (bulkInsertEnabled) {
+                List<Candle> newCandles = candles.stream()
+                        .filter(candle -> candle.getTimestamp() >= fromTimestamp)
+                        .toList();
+                return newCandles.isEmpty() ? 0 : bulkInsert(ticker, timeframe, exchange, newCandles);
+            }
+
             // Только добавляем новые свечи, уникальный индекс предотвратит дубли
             List<CachedCandle> newCandles = candles.stream()
                     .filter(candle -> candle.getTimestamp() >= fromTimestamp)
@@ -135,8 +168,7 @@ public class CandleTransactionService {
                                 cachedCandle.getHighPrice(),
                                 cachedCandle.getLowPrice(),
                                 cachedCandle.getClosePrice(),
-                                cachedCandle.getVolume(),
-                                cachedCandle.getIsValid()
+                                cachedCandle.getVolume()
                         );
                         addedCount++; // Считаем успешные вставки
                     } catch (Exception e) {
@@ -147,6 +179,7 @@ public class CandleTransactionService {
 
             if (addedCount > 0) {
                 log.debug("💾 ДОБАВЛЕНО: {} новых свечей при обновлении {}/{}/{}", addedCount, ticker, timeframe, exchange);
+                writeThroughAfterCommit(ticker, timeframe, exchange, newCandles.stream().map(CachedCandle::toCandle).toList());
             }
 
             return addedCount;
@@ -156,4 +189,47 @@ public class CandleTransactionService {
             return 0; // Возвращаем 0 вместо исключения
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Пакетная вставка через CachedCandleBulkRepository
+     * @return количество реально добавленных свечей (дубликаты не учитываются)
+     */
+    private int bulkInsert(String ticker, String timeframe, String exchange, List<Candle> candles) {
+        long startNanos = System.nanoTime();
+        int insertedCount = cachedCandleBulkRepository.insertIgnoreDuplicates(ticker, timeframe, exchange, candles);
+        long elapsedMicros = Math.max(1, (System.nanoTime() - startNanos) / 1000);
+
+        log.debug("💾 BULK: {}/{}/{} - добавлено {}, дубликатов {}, {} строк/сек",
+                ticker, timeframe, exchange, insertedCount, candles.size() - insertedCount,
+                candles.size() * 1_000_000L / elapsedMicros);
+
+        if (insertedCount > 0) {
+            writeThroughAfterCommit(ticker, timeframe, exchange, candles);
+        }
+        return insertedCount;
+    }
+
+    /**
+     * Обновляет CandleMemoryStore и архив на диске и сбрасывает кэш окон серии только после фиксации транзакции,
+     * чтобы память и архив не расходились с БД при откате
+     */
+    private void writeThroughAfterCommit(String ticker, String timeframe, String exchange, List<Candle> candles) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCandlesCommitted(ticker, timeframe, exchange, candles);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                onCandlesCommitted(ticker, timeframe, exchange, candles);
+            }
+        });
+    }
+
+    private void onCandlesCommitted(String ticker, String timeframe, String exchange, List<Candle> candles) {
+        candleMemoryStore.onCandlesSaved(exchange, ticker, timeframe, candles);
+        candleArchive.onCandlesSaved(exchange, ticker, timeframe, candles);
+        candleWindowCache.onCandlesSaved(exchange, ticker, timeframe);
+    }
+}
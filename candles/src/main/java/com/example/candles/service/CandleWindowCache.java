@@ -0,0 +1,158 @@
+package com.example.candles.service;
+
+import com.example.shared.dto.Candle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одинаковых запросов окна свечей (single-flight) и короткий кэш их результатов.
+ * <p>
+ * Ключ окна - (exchange, ticker, timeframe, количество свечей, конец окна, выровненный по закрытию свечи, строгость).
+ * Параллельные одинаковые запросы ждут одно вычисление, а его результат отдается повторным запросам
+ * в течение result-ttl-ms. Сохранение новых свечей серии (write-through из CandleTransactionService)
+ * сбрасывает ее результаты, поэтому кэш не отдает окно без только что сохраненной свечи.
+ * <p>
+ * Результаты общие для всех вызывающих и возвращаются неизменяемыми списками.
+ */
+@Component
+public class CandleWindowCache {
+
+    @Value("${app.candle-cache.single-flight.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.candle-cache.single-flight.result-ttl-ms:5000}")
+    private long resultTtlMs;
+
+    private final Map<String, SeriesWindows> series = new ConcurrentHashMap<>();
+
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Окна одной серии. version растет при каждом сохранении свечей серии: результат, вычисление которого
+     * началось до сохранения, в кэш не попадает
+     */
+    private static final class SeriesWindows {
+        final AtomicLong version = new AtomicLong();
+        final Map<String, CompletableFuture<List<Candle>>> inFlight = new ConcurrentHashMap<>();
+        final Map<String, CachedWindow> results = new ConcurrentHashMap<>();
+    }
+
+    private record CachedWindow(List<Candle> candles, long expiresAt) {
+    }
+
+    /**
+     * Возвращает результат окна из кэша, результат уже идущего вычисления того же окна
+     * или вычисляет его через loader
+     */
+    public List<Candle> getOrCompute(String exchange, String ticker, String timeframe, int expectedCount,
+                                     long windowEnd, boolean strict, Supplier<List<Candle>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        SeriesWindows windows = series.computeIfAbsent(seriesKey(exchange, ticker, timeframe), key -> new SeriesWindows());
+        String windowKey = expectedCount + "|" + windowEnd + "|" + strict;
+
+        CachedWindow cached = windows.results.get(windowKey);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return cached.candles();
+        }
+
+        CompletableFuture<List<Candle>> own = new CompletableFuture<>();
+        CompletableFuture<List<Candle>> running = windows.inFlight.putIfAbsent(windowKey, own);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        }
+
+        computations.incrementAndGet();
+        long version = windows.version.get();
+        try {
+            List<Candle> candles = List.copyOf(loader.get());
+            // Прерванное вычисление могло вернуть неполный результат - его не кэшируем
+            if (resultTtlMs > 0 && windows.version.get() == version && !Thread.currentThread().isInterrupted()) {
+                windows.results.put(windowKey, new CachedWindow(candles, System.currentTimeMillis() + resultTtlMs));
+            }
+            own.complete(candles);
+            return candles;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            windows.inFlight.remove(windowKey, own);
+        }
+    }
+
+    /**
+     * Сбрасывает результаты серии после сохранения ее свечей
+     */
+    public void onCandlesSaved(String exchange, String ticker, String timeframe) {
+        SeriesWindows windows = series.get(seriesKey(exchange, ticker, timeframe));
+        if (windows == null) {
+            return;
+        }
+        windows.version.incrementAndGet();
+        if (!windows.results.isEmpty()) {
+            windows.results.clear();
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Сбрасывает результаты таймфрейма (после удаления его свечей)
+     */
+    public void invalidateTimeframe(String exchange, String timeframe) {
+        String prefix = exchange + "|";
+        String suffix = "|" + timeframe;
+        series.forEach((key, windows) -> {
+            if (key.startsWith(prefix) && key.endsWith(suffix)) {
+                windows.version.incrementAndGet();
+                windows.results.clear();
+            }
+        });
+    }
+
+    /**
+     * Удаляет истекшие результаты, чтобы кэш не рос по уже не запрашиваемым окнам
+     */
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        series.values().forEach(windows -> windows.results.values().removeIf(cached -> cached.expiresAt() <= now));
+        series.values().removeIf(windows -> windows.results.isEmpty() && windows.inFlight.isEmpty());
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("resultTtlMs", resultTtlMs);
+        stats.put("series", series.size());
+        stats.put("computations", computations.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("hits", hits.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private static String seriesKey(String exchange, String ticker, String timeframe) {
+        return exchange + "|" + ticker + "|" + timeframe;
+    }
+}
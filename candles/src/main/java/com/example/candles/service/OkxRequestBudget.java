@@ -0,0 +1,43 @@
+package com.example.candles.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общий бюджет запросов свечей к okx-сервису для фоновых загрузок candles
+ * (конвейерная предзагрузка, догрузка пропусков): запросы всех потоков равномерно
+ * распределяются по requests-per-second, вместо фиксированных пауз после каждой страницы.
+ */
+@Component
+public class OkxRequestBudget {
+
+    @Value("${app.candle-cache.okx-requests-per-second:9}")
+    private double requestsPerSecond;
+
+    /**
+     * Время, не раньше которого можно отправить следующий запрос
+     */
+    private long nextRequestNanos;
+
+    /**
+     * Ждет своей очереди на отправку запроса
+     */
+    public void awaitSlot() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextRequestNanos);
+            nextRequestNanos = slot + (long) (1_000_000_000L / Math.max(0.1, requestsPerSecond));
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+}
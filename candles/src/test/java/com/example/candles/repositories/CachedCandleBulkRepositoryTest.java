@@ -0,0 +1,235 @@
+package com.example.candles.repositories;
+
+import com.example.shared.dto.Candle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Пакетная вставка свечей: порции по MAX_ROWS_PER_STATEMENT строк, колонки массивами в одном INSERT ... unnest()
+ * на порцию, количество добавленных свечей - сумма update count без дубликатов.
+ * Чтение последних N свечей до момента: LIMIT в запросе, строки по убыванию времени разворачиваются в окно по возрастанию
+ */
+class CachedCandleBulkRepositoryTest {
+
+    private static final String EXCHANGE = "OKX";
+    private static final String TICKER = "BTC-USDT-SWAP";
+    private static final String TIMEFRAME = "1H";
+    private static final int SERIES_ID = 7;
+
+    private JdbcTemplate jdbcTemplate;
+    private CandleSeriesRepository candleSeriesRepository;
+    private CachedCandleBulkRepository repository;
+
+    /**
+     * Параметры каждого выполненного INSERT: {seriesId, timeframe, timestamps, open, high, low, close, volume}
+     */
+    private final List<Object[]> statements = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        candleSeriesRepository = mock(CandleSeriesRepository.class);
+        repository = new CachedCandleBulkRepository(jdbcTemplate, candleSeriesRepository);
+        when(candleSeriesRepository.getOrCreateId(EXCHANGE, TICKER, TIMEFRAME)).thenReturn(SERIES_ID);
+    }
+
+    @Test
+    void splitsCandlesIntoStatementsOfMaxRows() {
+        int total = 2 * CachedCandleBulkRepository.MAX_ROWS_PER_STATEMENT + 3;
+        givenInsertedRows(row -> row); // дубликатов нет
+        List<Candle> candles = candles(0, total);
+
+        int inserted = repository.insertIgnoreDuplicates(TICKER, TIMEFRAME, EXCHANGE, candles);
+
+        assertEquals(total, inserted);
+        assertEquals(3, statements.size());
+        int from = 0;
+        for (Object[] statement : statements) {
+            long[] timestamps = (long[]) statement[2];
+            assertEquals(SERIES_ID, statement[0]);
+            assertEquals(TIMEFRAME, statement[1]);
+            assertTrue(timestamps.length <= CachedCandleBulkRepository.MAX_ROWS_PER_STATEMENT);
+            assertArrayEquals(timestampsOf(candles.subList(from, from + timestamps.length)), timestamps);
+            from += timestamps.length;
+        }
+        assertEquals(total, from);
+        verify(candleSeriesRepository).getOrCreateId(EXCHANGE, TICKER, TIMEFRAME);
+    }
+
+    @Test
+    void passesAllColumnsOfChunkAsArrays() {
+        givenInsertedRows(row -> row);
+        List<Candle> candles = List.of(new Candle(100, 1.0, 2.0, 0.5, 1.5, 10.0), new Candle(200, 1.5, 2.5, 1.0, 2.0, Double.NaN));
+
+        repository.insertIgnoreDuplicates(TICKER, TIMEFRAME, EXCHANGE, candles);
+
+        Object[] statement = statements.get(0);
+        assertArrayEquals(new long[]{100, 200}, (long[]) statement[2]);
+        assertArrayEquals(new double[]{1.0, 1.5}, (double[]) statement[3]);
+        assertArrayEquals(new double[]{2.0, 2.5}, (double[]) statement[4]);
+        assertArrayEquals(new double[]{0.5, 1.0}, (double[]) statement[5]);
+        assertArrayEquals(new double[]{1.5, 2.0}, (double[]) statement[6]);
+        assertArrayEquals(new double[]{10.0, Double.NaN}, (double[]) statement[7]);
+    }
+
+    @Test
+    void returnsInsertedRowsWithoutDuplicates() {
+        // ON CONFLICT DO NOTHING: update count каждого INSERT - только реально добавленные строки
+        givenInsertedRows(row -> row - 2);
+
+        int inserted = repository.insertIgnoreDuplicates(TICKER, TIMEFRAME, EXCHANGE,
+                candles(0, CachedCandleBulkRepository.MAX_ROWS_PER_STATEMENT + 10));
+
+        assertEquals(CachedCandleBulkRepository.MAX_ROWS_PER_STATEMENT + 10 - 4, inserted);
+    }
+
+    @Test
+    void emptyBatchDoesNotTouchDatabase() {
+        assertEquals(0, repository.insertIgnoreDuplicates(TICKER, TIMEFRAME, EXCHANGE, List.of()));
+
+        verify(candleSeriesRepository, never()).getOrCreateId(anyString(), anyString(), anyString());
+        verify(jdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    @Test
+    void findLastBeforeReturnsAscendingWindowFromDescendingRows() throws SQLException {
+        when(candleSeriesRepository.findId(EXCHANGE, TICKER, TIMEFRAME)).thenReturn(SERIES_ID);
+        List<Candle> stored = candles(0, 10);
+        PreparedStatement ps = givenRowsBefore(stored);
+
+        List<Candle> window = repository.findLastBefore(EXCHANGE, TICKER, TIMEFRAME, stored.get(7).getTimestamp(), 4);
+
+        assertEquals(stored.subList(3, 7), window);
+        verifyLastBeforeParameters(ps, stored.get(7).getTimestamp(), 4);
+
+        // Результат изменяемый - вызывающий код дописывает в него свечи
+        window.add(stored.get(7));
+        assertEquals(5, window.size());
+    }
+
+    @Test
+    void findLastBeforeReturnsShortWindowWhenHistoryEndsEarlier() {
+        when(candleSeriesRepository.findId(EXCHANGE, TICKER, TIMEFRAME)).thenReturn(SERIES_ID);
+        List<Candle> stored = candles(0, 3);
+        givenRowsBefore(stored);
+
+        assertEquals(stored, repository.findLastBefore(EXCHANGE, TICKER, TIMEFRAME, Long.MAX_VALUE, 100));
+        assertEquals(List.of(), repository.findLastBefore(EXCHANGE, TICKER, TIMEFRAME, stored.get(0).getTimestamp(), 100));
+    }
+
+    @Test
+    void findLastBeforeSkipsQueryForUnknownSeriesOrEmptyLimit() {
+        when(candleSeriesRepository.findId(EXCHANGE, TICKER, TIMEFRAME)).thenReturn(null);
+        assertEquals(List.of(), repository.findLastBefore(EXCHANGE, TICKER, TIMEFRAME, Long.MAX_VALUE, 10));
+
+        when(candleSeriesRepository.findId(EXCHANGE, TICKER, TIMEFRAME)).thenReturn(SERIES_ID);
+        assertEquals(List.of(), repository.findLastBefore(EXCHANGE, TICKER, TIMEFRAME, Long.MAX_VALUE, 0));
+
+        verify(jdbcTemplate, never()).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+    }
+
+    /**
+     * Эмулирует LAST_BEFORE_SQL над stored: timestamp < until, ORDER BY timestamp DESC LIMIT limit
+     *
+     * @return PreparedStatement, в который запросы выставляют параметры
+     */
+    private PreparedStatement givenRowsBefore(List<Candle> stored) {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        doAnswer(invocation -> {
+            invocation.<PreparedStatementSetter>getArgument(1).setValues(ps);
+            ArgumentCaptor<Long> until = ArgumentCaptor.forClass(Long.class);
+            verify(ps, atLeastOnce()).setLong(eq(3), until.capture());
+            ArgumentCaptor<Integer> limit = ArgumentCaptor.forClass(Integer.class);
+            verify(ps, atLeastOnce()).setInt(eq(4), limit.capture());
+
+            RowCallbackHandler handler = invocation.getArgument(2);
+            int rows = 0;
+            for (int i = stored.size() - 1; i >= 0 && rows < limit.getValue(); i--) {
+                Candle candle = stored.get(i);
+                if (candle.getTimestamp() >= until.getValue()) {
+                    continue;
+                }
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn(candle.getTimestamp());
+                when(rs.getDouble(2)).thenReturn(candle.getOpen());
+                when(rs.getDouble(3)).thenReturn(candle.getHigh());
+                when(rs.getDouble(4)).thenReturn(candle.getLow());
+                when(rs.getDouble(5)).thenReturn(candle.getClose());
+                when(rs.getDouble(6)).thenReturn(candle.getVolume());
+                handler.processRow(rs);
+                rows++;
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+        return ps;
+    }
+
+    private static void verifyLastBeforeParameters(PreparedStatement ps, long untilTimestamp, int limit) throws SQLException {
+        verify(ps).setInt(1, SERIES_ID);
+        verify(ps).setString(2, TIMEFRAME);
+        verify(ps).setLong(3, untilTimestamp);
+        verify(ps).setInt(4, limit);
+    }
+
+    /**
+     * Каждый INSERT: параметры снимаются с PreparedStatement, update count = insertedRows(размер порции)
+     */
+    private void givenInsertedRows(IntUnaryOperator insertedRows) {
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(invocation -> {
+            PreparedStatement ps = mock(PreparedStatement.class);
+            invocation.<PreparedStatementSetter>getArgument(1).setValues(ps);
+
+            Object[] statement = new Object[8];
+            ArgumentCaptor<Integer> setInt = ArgumentCaptor.forClass(Integer.class);
+            verify(ps).setInt(eq(1), setInt.capture());
+            statement[0] = setInt.getValue();
+            ArgumentCaptor<String> setString = ArgumentCaptor.forClass(String.class);
+            verify(ps).setString(eq(2), setString.capture());
+            statement[1] = setString.getValue();
+            for (int index = 3; index <= 8; index++) {
+                ArgumentCaptor<Object> setObject = ArgumentCaptor.forClass(Object.class);
+                verify(ps).setObject(eq(index), setObject.capture());
+                statement[index - 1] = setObject.getValue();
+            }
+            statements.add(statement);
+            return insertedRows.applyAsInt(((long[]) statement[2]).length);
+        });
+    }
+
+    private static List<Candle> candles(long from, int count) {
+        List<Candle> candles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double price = 100.0 + i;
+            candles.add(new Candle((from + i) * 60_000L, price, price, price, price, 1.0));
+        }
+        return candles;
+    }
+
+    private static long[] timestampsOf(List<Candle> candles) {
+        return candles.stream().mapToLong(Candle::getTimestamp).toArray();
+    }
+}
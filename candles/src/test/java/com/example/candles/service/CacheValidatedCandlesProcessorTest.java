@@ -0,0 +1,147 @@
+package com.example.candles.service;
+
+import com.example.candles.repositories.CachedCandleBulkRepository;
+import com.example.candles.service.CandleCoverage.Range;
+import com.example.candles.utils.CandleCalculatorUtil;
+import com.example.shared.dto.Candle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Окно с пропуском: без строгой полноты тикер пропускается до фоновой догрузки,
+ * со строгой - поток ждет догрузку и возвращает полное окно
+ */
+class CacheValidatedCandlesProcessorTest {
+
+    private static final String EXCHANGE = "OKX";
+    private static final String TICKER = "BTC-USDT-SWAP";
+    private static final String TIMEFRAME = "1D";
+    private static final String PERIOD = "1year";
+    private static final String UNTIL_DATE = "2025-09-28T00:00:00Z";
+    private static final long STEP = 24 * 60 * 60 * 1000L;
+
+    private CachedCandleBulkRepository repository;
+    private CandleGapRepairService gapRepairService;
+    private CacheValidatedCandlesProcessor processor;
+
+    private List<Candle> fullWindow;
+    private List<Candle> gappedWindow;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = mock(CachedCandleBulkRepository.class);
+        gapRepairService = mock(CandleGapRepairService.class);
+
+        CandleArchive archive = mock(CandleArchive.class);
+        when(archive.findLastBefore(anyString(), anyString(), anyString(), anyLong(), anyInt())).thenReturn(Optional.empty());
+
+        CandleRequestExecutor executor = mock(CandleRequestExecutor.class);
+        when(executor.withDatabasePermit(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+
+        // single-flight выключен (enabled=false по умолчанию вне Spring) - каждый вызов идет в loader
+        processor = new CacheValidatedCandlesProcessor(repository, archive, gapRepairService, new CandleWindowCache(), executor);
+        ReflectionTestUtils.setField(processor, "strictByDefault", false);
+        ReflectionTestUtils.setField(processor, "strictTimeoutSeconds", 5L);
+
+        int expectedCount = CandleCalculatorUtil.calculateCandlesCountUntilDate(TICKER, TIMEFRAME, PERIOD, UNTIL_DATE);
+        long untilTimestamp = Instant.parse(UNTIL_DATE).toEpochMilli();
+        fullWindow = new ArrayList<>(expectedCount);
+        for (int i = expectedCount; i > 0; i--) {
+            fullWindow.add(candle(untilTimestamp - i * STEP));
+        }
+        // Пропуск из трех свечей в середине окна
+        gappedWindow = new ArrayList<>(fullWindow);
+        gappedWindow.subList(expectedCount / 2, expectedCount / 2 + 3).clear();
+    }
+
+    @Test
+    void gappedWindowWithoutStrictIsSkippedUntilRepair() {
+        when(repository.findLastBefore(anyString(), anyString(), anyString(), anyLong(), anyInt())).thenReturn(gappedWindow);
+        when(gapRepairService.requestRepair(anyString(), anyString(), anyString(), anyList()))
+                .thenReturn(new CompletableFuture<>());
+
+        List<Candle> candles = processor.getValidatedCandlesFromCache(EXCHANGE, TICKER, UNTIL_DATE, TIMEFRAME, PERIOD);
+
+        assertTrue(candles.isEmpty());
+        verify(gapRepairService).requestRepair(eq(EXCHANGE), eq(TICKER), eq(TIMEFRAME), anyList());
+        verify(repository, times(1)).findLastBefore(anyString(), anyString(), anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    void gappedWindowWithStrictWaitsForRepairAndReturnsFullWindow() {
+        when(repository.findLastBefore(anyString(), anyString(), anyString(), anyLong(), anyInt()))
+                .thenReturn(gappedWindow, fullWindow);
+        CompletableFuture<Integer> repair = CompletableFuture.supplyAsync(() -> 3,
+                CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+        when(gapRepairService.requestRepair(anyString(), anyString(), anyString(), anyList())).thenReturn(repair);
+
+        List<Candle> candles = processor.getValidatedCandlesFromCache(EXCHANGE, TICKER, UNTIL_DATE, TIMEFRAME, PERIOD, true);
+
+        assertTrue(repair.isDone());
+        assertEquals(fullWindow, candles);
+        verify(repository, times(2)).findLastBefore(anyString(), anyString(), anyString(), anyLong(), anyInt());
+        verify(gapRepairService).markCovered(EXCHANGE, TICKER, TIMEFRAME,
+                fullWindow.get(0).getTimestamp(), fullWindow.get(fullWindow.size() - 1).getTimestamp());
+    }
+
+    @Test
+    void strictRequestsOnlyMissingRangeOfGap() {
+        when(repository.findLastBefore(anyString(), anyString(), anyString(), anyLong(), anyInt()))
+                .thenReturn(gappedWindow, fullWindow);
+        when(gapRepairService.requestRepair(anyString(), anyString(), anyString(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(3));
+
+        processor.getValidatedCandlesFromCache(EXCHANGE, TICKER, UNTIL_DATE, TIMEFRAME, PERIOD, true);
+
+        int gapStart = fullWindow.size() / 2;
+        List<Range> expected = List.of(new Range(fullWindow.get(gapStart - 1).getTimestamp() + 1,
+                fullWindow.get(gapStart + 3).getTimestamp() - 1));
+        verify(gapRepairService).requestRepair(EXCHANGE, TICKER, TIMEFRAME, expected);
+    }
+
+    @Test
+    void completeWindowIsReturnedWithoutRepair() {
+        when(repository.findLastBefore(anyString(), anyString(), anyString(), anyLong(), anyInt())).thenReturn(fullWindow);
+
+        List<Candle> candles = processor.getValidatedCandlesFromCache(EXCHANGE, TICKER, UNTIL_DATE, TIMEFRAME, PERIOD, true);
+
+        assertFalse(candles.isEmpty());
+        assertEquals(fullWindow, candles);
+        verify(gapRepairService, never()).requestRepair(anyString(), anyString(), anyString(), anyList());
+    }
+
+    private static Candle candle(long timestamp) {
+        return Candle.builder()
+                .timestamp(timestamp)
+                .open(1.0)
+                .high(1.0)
+                .low(1.0)
+                .close(1.0)
+                .volume(1.0)
+                .build();
+    }
+}
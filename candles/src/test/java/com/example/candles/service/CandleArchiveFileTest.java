@@ -0,0 +1,229 @@
+package com.example.candles.service;
+
+import com.example.shared.dto.Candle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Файл архива серии: поиск по разреженному индексу на границах блоков, дописывание через хвост в куче
+ * без переотображения на каждую запись, отказ дописать пропущенную старую свечу и перестроение файла
+ * с недописанной последней записью
+ */
+class CandleArchiveFileTest {
+
+    private static final int BLOCK = 256; // CandleArchiveFile.INDEX_STEP
+    private static final long STEP = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void lowerBoundAcrossSparseIndexBlockEdges() {
+        int records = 3 * BLOCK + 10;
+        try (CandleArchiveFile file = new CandleArchiveFile(dir.resolve("series.bin"))) {
+            file.rewrite(source(timestamps(0, records)));
+            assertEquals(records, file.size());
+
+            assertSearchMatchesReference(file, records);
+        }
+    }
+
+    @Test
+    void lowerBoundAcrossBlockEdgesWithAppendedTail() {
+        try (CandleArchiveFile file = new CandleArchiveFile(dir.resolve("series.bin"))) {
+            int records = 0;
+            // Пачки разного размера: записи попадают то в отображение, то в хвост в куче
+            int[] batches = {1, 300, 5, 250, 1, 1, 64, 200, 3, 7};
+            for (int batch : batches) {
+                assertTrue(file.append(candles(timestamps(records, batch))));
+                records += batch;
+                assertEquals(records, file.size());
+                assertSearchMatchesReference(file, records);
+            }
+        }
+    }
+
+    @Test
+    void appendDoesNotRemapOnEveryWrite() {
+        int appends = 2_000;
+        try (CandleArchiveFile file = new CandleArchiveFile(dir.resolve("series.bin"))) {
+            file.rewrite(source(timestamps(0, 4 * BLOCK)));
+            int remapsBefore = file.remaps();
+
+            for (int i = 0; i < appends; i++) {
+                assertTrue(file.append(List.of(candle((4L * BLOCK + i) * STEP))));
+            }
+
+            int remaps = file.remaps() - remapsBefore;
+            assertTrue(remaps <= 10, "переотображений: " + remaps);
+            assertEquals(4 * BLOCK + appends, file.size());
+            assertArrayEquals(timestamps(0, 4 * BLOCK + appends), timestampsOf(file.latest(Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void appendedCandlesSurviveReopen() {
+        Path path = dir.resolve("series.bin");
+        try (CandleArchiveFile file = new CandleArchiveFile(path)) {
+            file.append(candles(timestamps(0, 100)));
+            file.append(candles(timestamps(100, 3)));
+        }
+        try (CandleArchiveFile file = new CandleArchiveFile(path)) {
+            assertEquals(103, file.size());
+            assertArrayEquals(timestamps(0, 103), timestampsOf(file.latest(1_000)));
+            List<Candle> last = file.latest(1);
+            assertEquals(102 * STEP + 0.5, last.get(0).getClose());
+        }
+    }
+
+    @Test
+    void appendReturnsFalseForOlderMissingCandle() {
+        try (CandleArchiveFile file = new CandleArchiveFile(dir.resolve("series.bin"))) {
+            assertTrue(file.append(candles(10, 20, 30)));
+
+            assertFalse(file.append(candles(15)));
+            assertFalse(file.append(candles(25, 40)));
+            assertEquals(3, file.size());
+            assertEquals(30, file.lastTimestamp());
+
+            // Уже записанные свечи игнорируются, новые дописываются
+            assertTrue(file.append(candles(20, 30)));
+            assertTrue(file.append(candles(40, 20)));
+            assertArrayEquals(new long[]{10, 20, 30, 40}, timestampsOf(file.latest(10)));
+        }
+    }
+
+    @Test
+    void openDropsTrailingPartialRecord() throws IOException {
+        Path path = dir.resolve("series.bin");
+        try (CandleArchiveFile file = new CandleArchiveFile(path)) {
+            file.append(candles(10, 20, 30));
+        }
+        Files.write(path, new byte[7], StandardOpenOption.APPEND);
+
+        try (CandleArchiveFile file = new CandleArchiveFile(path)) {
+            assertEquals(3, file.size());
+            assertEquals(3L * CandleArchiveFile.RECORD_BYTES, Files.size(path));
+            assertTrue(file.append(candles(40)));
+            assertArrayEquals(new long[]{10, 20, 30, 40}, timestampsOf(file.latest(10)));
+        }
+    }
+
+    @Test
+    void rewriteReplacesFileWithTrailingPartialRecord() throws IOException {
+        Path path = dir.resolve("series.bin");
+        try (CandleArchiveFile file = new CandleArchiveFile(path)) {
+            file.append(candles(10, 20, 30));
+            // Сбой посреди дописывания: в файле и в оставшемся от прошлого перестроения .tmp - неполная запись
+            Files.write(path, new byte[CandleArchiveFile.RECORD_BYTES - 1], StandardOpenOption.APPEND);
+            Files.write(path.resolveSibling(path.getFileName() + ".tmp"), new byte[CandleArchiveFile.RECORD_BYTES + 3]);
+
+            long written = file.rewrite(source(new long[]{5, 10, 10, 20, 30, 35}));
+
+            assertEquals(5, written);
+            assertEquals(5, file.size());
+            assertEquals(5L * CandleArchiveFile.RECORD_BYTES, Files.size(path));
+            assertFalse(Files.exists(path.resolveSibling(path.getFileName() + ".tmp")));
+            assertArrayEquals(new long[]{5, 10, 20, 30, 35}, timestampsOf(file.latest(10)));
+            assertArrayEquals(new long[]{10, 20}, timestampsOf(file.range(10, 30)));
+
+            assertTrue(file.append(candles(40)));
+            assertEquals(6, file.size());
+        }
+    }
+
+    @Test
+    void emptyFile() {
+        try (CandleArchiveFile file = new CandleArchiveFile(dir.resolve("series.bin"))) {
+            assertEquals(0, file.size());
+            assertEquals(-1, file.firstTimestamp());
+            assertEquals(-1, file.lastTimestamp());
+            assertEquals(0, file.lastBefore(100, 10).size());
+            assertEquals(0, file.range(0, 100).size());
+            assertTrue(file.append(List.of()));
+        }
+    }
+
+    /**
+     * lastBefore/range на границах блоков разреженного индекса и между таймштампами против линейного эталона
+     */
+    private static void assertSearchMatchesReference(CandleArchiveFile file, int records) {
+        List<Long> probes = new ArrayList<>();
+        for (int block = 0; block <= records / BLOCK + 1; block++) {
+            for (int delta = -2; delta <= 2; delta++) {
+                long index = (long) block * BLOCK + delta;
+                probes.add(index * STEP);
+                probes.add(index * STEP + STEP / 2);
+            }
+        }
+        probes.add(records * STEP);
+        probes.add((records - 1) * STEP);
+
+        for (long probe : probes) {
+            int expectedEnd = referenceLowerBound(records, probe);
+            List<Candle> before = file.lastBefore(probe, 3);
+            assertArrayEquals(timestamps(Math.max(0, expectedEnd - 3), expectedEnd - Math.max(0, expectedEnd - 3)),
+                    timestampsOf(before), "lastBefore " + probe);
+
+            List<Candle> range = file.range(probe, probe + BLOCK * STEP);
+            int expectedTo = referenceLowerBound(records, probe + BLOCK * STEP);
+            assertArrayEquals(timestamps(expectedEnd, expectedTo - expectedEnd), timestampsOf(range), "range " + probe);
+        }
+    }
+
+    /**
+     * Первая запись с timestamp >= value для записей с таймштампами 0, STEP, 2*STEP...
+     */
+    private static int referenceLowerBound(int records, long value) {
+        int index = 0;
+        while (index < records && index * STEP < value) {
+            index++;
+        }
+        return index;
+    }
+
+    private static long[] timestamps(int from, int count) {
+        long[] timestamps = new long[Math.max(0, count)];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = (from + i) * STEP;
+        }
+        return timestamps;
+    }
+
+    private static Consumer<Consumer<Candle>> source(long[] timestamps) {
+        return consumer -> {
+            for (long timestamp : timestamps) {
+                consumer.accept(candle(timestamp));
+            }
+        };
+    }
+
+    private static List<Candle> candles(long... timestamps) {
+        List<Candle> candles = new ArrayList<>(timestamps.length);
+        for (long timestamp : timestamps) {
+            candles.add(candle(timestamp));
+        }
+        return candles;
+    }
+
+    private static Candle candle(long timestamp) {
+        return new Candle(timestamp, timestamp + 0.1, timestamp + 0.2, timestamp + 0.3, timestamp + 0.5, 1.0);
+    }
+
+    private static long[] timestampsOf(List<Candle> candles) {
+        return candles.stream().mapToLong(Candle::getTimestamp).toArray();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.candles.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Общий пул обработки тикеров: одновременных чтений из БД не больше пула Hikari за вычетом резерва,
+ * разрешение возвращается и при ошибке запроса, задачи запроса отменяются по таймауту, а запросы делят один пул потоков
+ */
+class CandleRequestExecutorTest {
+
+    private CandleRequestExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.shutdownExecutorService();
+        }
+    }
+
+    @Test
+    void databaseReadsAreBoundedByHikariPoolMinusReserve() throws Exception {
+        executor = executor(16, 6, 2);
+        AtomicInteger concurrentReads = new AtomicInteger();
+        AtomicInteger maxConcurrentReads = new AtomicInteger();
+
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            tasks.add(() -> executor.withDatabasePermit(() -> {
+                maxConcurrentReads.accumulateAndGet(concurrentReads.incrementAndGet(), Math::max);
+                sleep(30);
+                concurrentReads.decrementAndGet();
+                return null;
+            }));
+        }
+
+        assertEquals(0, executor.invokeAll(tasks, 10, TimeUnit.SECONDS));
+        assertEquals(4, maxConcurrentReads.get());
+        assertEquals(4, executor.getStatistics().get("availableDatabasePermits"));
+        assertEquals(16L, executor.getStatistics().get("completedTasks"));
+    }
+
+    @Test
+    void reserveLargerThanPoolLeavesOnePermit() {
+        executor = executor(2, 2, 5);
+
+        assertEquals(1, executor.getStatistics().get("availableDatabasePermits"));
+    }
+
+    @Test
+    void permitIsReleasedWhenQueryFails() {
+        executor = executor(2, 3, 1);
+
+        assertThrows(IllegalStateException.class, () -> executor.withDatabasePermit(() -> {
+            throw new IllegalStateException("ошибка запроса");
+        }));
+        assertEquals(2, executor.getStatistics().get("availableDatabasePermits"));
+    }
+
+    @Test
+    void unfinishedTasksAreCancelledAndInterruptedAtDeadline() throws Exception {
+        executor = executor(4, 10, 2);
+        CountDownLatch never = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(2);
+
+        List<Callable<Object>> tasks = new ArrayList<>();
+        tasks.add(() -> "быстрая задача");
+        for (int i = 0; i < 2; i++) {
+            tasks.add(() -> {
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return null;
+            });
+        }
+
+        int cancelled = executor.invokeAll(tasks, 200, TimeUnit.MILLISECONDS);
+
+        assertEquals(2, cancelled);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "задачи не прерваны после таймаута запроса");
+        assertEquals(2L, executor.getStatistics().get("cancelledTasks"));
+        waitUntilIdle();
+        assertEquals(0, executor.getStatistics().get("activeTasks"));
+    }
+
+    @Test
+    void concurrentRequestsShareOneThreadPool() throws Exception {
+        executor = executor(3, 10, 2);
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+        List<Thread> requests = new ArrayList<>();
+        for (int request = 0; request < 4; request++) {
+            Thread thread = new Thread(() -> {
+                List<Callable<Object>> tasks = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    tasks.add(() -> {
+                        threadNames.add(Thread.currentThread().getName());
+                        sleep(5);
+                        return null;
+                    });
+                }
+                try {
+                    executor.invokeAll(tasks, 10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            requests.add(thread);
+            thread.start();
+        }
+        for (Thread thread : requests) {
+            thread.join(10_000);
+        }
+
+        assertTrue(threadNames.size() <= 3, "потоков: " + threadNames);
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("candles-request-")), threadNames.toString());
+        assertEquals(40L, executor.getStatistics().get("completedTasks"));
+    }
+
+    private static CandleRequestExecutor executor(int threads, int hikariPoolSize, int reservedConnections) {
+        CandleRequestExecutor executor = new CandleRequestExecutor();
+        ReflectionTestUtils.setField(executor, "threads", threads);
+        ReflectionTestUtils.setField(executor, "hikariPoolSize", hikariPoolSize);
+        ReflectionTestUtils.setField(executor, "reservedConnections", reservedConnections);
+        executor.initializeExecutorService();
+        return executor;
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((int) executor.getStatistics().get("activeTasks") > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
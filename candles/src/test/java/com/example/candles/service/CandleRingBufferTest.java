@@ -0,0 +1,226 @@
+package com.example.candles.service;
+
+import com.example.shared.dto.Candle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Кольцевой буфер свечей: дописывание в хвост с вращением head, слияние с вытеснением старых свечей,
+ * рост массивов до capacity и чтение последних свечей после оборота кольца
+ */
+class CandleRingBufferTest {
+
+    @Test
+    void fastPathAppendAtCapacityRotatesHead() {
+        CandleRingBuffer buffer = new CandleRingBuffer(4, 4);
+        buffer.merge(candles(1, 2, 3, 4));
+        assertEquals(4, buffer.allocatedLength());
+
+        buffer.merge(candles(5, 6));
+
+        assertEquals(4, buffer.size());
+        assertEquals(4, buffer.allocatedLength());
+        assertEquals(6, buffer.lastTimestamp());
+        assertArrayEquals(new long[]{3, 4, 5, 6}, timestamps(buffer.latest(10)));
+    }
+
+    @Test
+    void fastPathGrowsArraysByDoublingUpToCapacity() {
+        CandleRingBuffer buffer = new CandleRingBuffer(2, 5);
+        buffer.merge(candles(1, 2));
+        buffer.merge(candles(3));
+        assertEquals(4, buffer.allocatedLength());
+
+        buffer.merge(candles(4, 5, 6));
+
+        assertEquals(5, buffer.allocatedLength());
+        assertArrayEquals(new long[]{2, 3, 4, 5, 6}, timestamps(buffer.latest(10)));
+    }
+
+    @Test
+    void fastPathSkipsDuplicatesOfIncomingBatch() {
+        CandleRingBuffer buffer = new CandleRingBuffer(4, 8);
+        buffer.merge(List.of(candle(1, 1.0), candle(3, 3.0), candle(2, 2.0), candle(3, 30.0), candle(2, 20.0)));
+
+        List<Candle> latest = buffer.latest(10);
+        assertArrayEquals(new long[]{1, 2, 3}, timestamps(latest));
+        assertEquals(2.0, latest.get(1).getClose());
+        assertEquals(3.0, latest.get(2).getClose());
+    }
+
+    @Test
+    void mergeSortedKeepsBufferCandleOnDuplicateTimestamps() {
+        CandleRingBuffer buffer = new CandleRingBuffer(8, 8);
+        buffer.merge(List.of(candle(10, 1.0), candle(20, 1.0), candle(30, 1.0)));
+
+        // Не по порядку, с совпадениями с буфером и между собой
+        buffer.merge(List.of(candle(25, 2.0), candle(20, 2.0), candle(5, 2.0), candle(25, 3.0), candle(40, 2.0), candle(10, 2.0)));
+
+        List<Candle> latest = buffer.latest(10);
+        assertArrayEquals(new long[]{5, 10, 20, 25, 30, 40}, timestamps(latest));
+        assertArrayEquals(new double[]{2.0, 1.0, 1.0, 2.0, 1.0, 2.0}, closes(latest));
+    }
+
+    @Test
+    void mergeSortedGrowsPastAllocatedLengthButNotPastCapacity() {
+        CandleRingBuffer buffer = new CandleRingBuffer(3, 6);
+        buffer.merge(candles(10, 20, 30));
+        assertEquals(3, buffer.allocatedLength());
+
+        buffer.merge(candles(5, 15, 25));
+
+        assertEquals(6, buffer.allocatedLength());
+        assertEquals(6, buffer.size());
+        assertArrayEquals(new long[]{5, 10, 15, 20, 25, 30}, timestamps(buffer.latest(10)));
+
+        buffer.merge(candles(1, 12, 22, 35));
+
+        assertEquals(6, buffer.allocatedLength());
+        assertEquals(6, buffer.size());
+        assertArrayEquals(new long[]{15, 20, 22, 25, 30, 35}, timestamps(buffer.latest(10)));
+    }
+
+    @Test
+    void mergeSortedAfterWrapKeepsLogicalOrder() {
+        CandleRingBuffer buffer = new CandleRingBuffer(4, 4);
+        buffer.merge(candles(10, 20, 30, 40));
+        buffer.merge(candles(50, 60)); // head смещен на 2
+
+        buffer.merge(candles(35, 45));
+
+        assertArrayEquals(new long[]{40, 45, 50, 60}, timestamps(buffer.latest(10)));
+        buffer.merge(candles(70));
+        assertArrayEquals(new long[]{45, 50, 60, 70}, timestamps(buffer.latest(10)));
+    }
+
+    @Test
+    void olderCandlesAreIgnoredWhenBufferIsFull() {
+        CandleRingBuffer buffer = new CandleRingBuffer(4, 4);
+        buffer.merge(candles(10, 20, 30, 40, 50)); // head смещен на 1
+        int allocated = buffer.allocatedLength();
+
+        buffer.merge(candles(1, 2, 3));
+
+        assertEquals(allocated, buffer.allocatedLength());
+        assertArrayEquals(new long[]{20, 30, 40, 50}, timestamps(buffer.latest(10)));
+    }
+
+    @Test
+    void olderCandlesAreKeptWhileBufferIsNotFull() {
+        CandleRingBuffer buffer = new CandleRingBuffer(2, 4);
+        buffer.merge(candles(10, 20));
+
+        buffer.merge(candles(1, 2, 3));
+
+        assertArrayEquals(new long[]{2, 3, 10, 20}, timestamps(buffer.latest(10)));
+    }
+
+    @Test
+    void latestAfterWrapReturnsNewestInAscendingOrder() {
+        CandleRingBuffer buffer = new CandleRingBuffer(5, 5);
+        for (long t = 1; t <= 13; t++) {
+            buffer.merge(candles(t));
+        }
+
+        assertArrayEquals(new long[]{9, 10, 11, 12, 13}, timestamps(buffer.latest(5)));
+        assertArrayEquals(new long[]{11, 12, 13}, timestamps(buffer.latest(3)));
+        assertArrayEquals(new long[]{13}, timestamps(buffer.latest(1)));
+        assertArrayEquals(new long[]{9, 10, 11, 12, 13}, timestamps(buffer.latest(100)));
+        assertEquals(0, buffer.latest(0).size());
+    }
+
+    @Test
+    void emptyBuffer() {
+        CandleRingBuffer buffer = new CandleRingBuffer(0, 4);
+
+        assertEquals(0, buffer.size());
+        assertEquals(-1, buffer.lastTimestamp());
+        assertEquals(0, buffer.latest(10).size());
+
+        buffer.merge(List.of());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void randomMergesMatchReference() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            int capacity = 1 + random.nextInt(20);
+            CandleRingBuffer buffer = new CandleRingBuffer(random.nextInt(capacity + 1), capacity);
+            TreeMap<Long, Double> reference = new TreeMap<>();
+
+            for (int batch = 0; batch < 10; batch++) {
+                List<Candle> candles = new ArrayList<>();
+                int batchSize = random.nextInt(6);
+                for (int k = 0; k < batchSize; k++) {
+                    candles.add(candle(random.nextInt(60), batch * 10 + k));
+                }
+                buffer.merge(candles);
+                mergeReference(reference, candles, capacity);
+
+                List<Candle> latest = buffer.latest(capacity);
+                assertEquals(reference.size(), latest.size());
+                int i = 0;
+                for (var entry : reference.entrySet()) {
+                    assertEquals(entry.getKey().longValue(), latest.get(i).getTimestamp());
+                    assertEquals(entry.getValue().doubleValue(), latest.get(i).getClose());
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Эталон: первая свеча с таймштампом побеждает (ON CONFLICT DO NOTHING), остаются последние capacity свечей,
+     * в заполненный буфер свечи старше самой старой не попадают
+     */
+    private static void mergeReference(TreeMap<Long, Double> reference, List<Candle> candles, int capacity) {
+        List<Candle> sorted = new ArrayList<>(candles);
+        sorted.sort((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+        boolean full = reference.size() == capacity;
+        Long oldest = reference.isEmpty() ? null : reference.firstKey();
+        for (Candle candle : sorted) {
+            if (full && candle.getTimestamp() < oldest) {
+                continue;
+            }
+            reference.putIfAbsent(candle.getTimestamp(), candle.getClose());
+        }
+        while (reference.size() > capacity) {
+            reference.pollFirstEntry();
+        }
+    }
+
+    private static List<Candle> candles(long... timestamps) {
+        List<Candle> candles = new ArrayList<>(timestamps.length);
+        for (long timestamp : timestamps) {
+            candles.add(candle(timestamp, timestamp));
+        }
+        return candles;
+    }
+
+    private static Candle candle(long timestamp, double close) {
+        return Candle.builder()
+                .timestamp(timestamp)
+                .open(close)
+                .high(close)
+                .low(close)
+                .close(close)
+                .volume(1.0)
+                .build();
+    }
+
+    private static long[] timestamps(List<Candle> candles) {
+        return candles.stream().mapToLong(Candle::getTimestamp).toArray();
+    }
+
+    private static double[] closes(List<Candle> candles) {
+        return candles.stream().mapToDouble(Candle::getClose).toArray();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.candles.service;
+
+import com.example.candles.repositories.CachedCandleBulkRepository;
+import com.example.candles.repositories.CachedCandleRepository;
+import com.example.shared.dto.Candle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Сохранение и обновление кэша через пакетную вставку: одна вставка на пакет вместо INSERT на свечу,
+ * при обновлении - только свечи с timestamp >= fromTimestamp, память и архив обновляются только если что-то добавлено
+ */
+class CandleTransactionServiceTest {
+
+    private static final String EXCHANGE = "OKX";
+    private static final String TICKER = "BTC-USDT-SWAP";
+    private static final String TIMEFRAME = "1H";
+
+    private CachedCandleRepository cachedCandleRepository;
+    private CachedCandleBulkRepository bulkRepository;
+    private CandleMemoryStore memoryStore;
+    private CandleTransactionService service;
+
+    @BeforeEach
+    void setUp() {
+        cachedCandleRepository = mock(CachedCandleRepository.class);
+        bulkRepository = mock(CachedCandleBulkRepository.class);
+        memoryStore = mock(CandleMemoryStore.class);
+        service = new CandleTransactionService(cachedCandleRepository, bulkRepository, memoryStore,
+                mock(CandleArchive.class), mock(CandleWindowCache.class));
+        ReflectionTestUtils.setField(service, "bulkInsertEnabled", true);
+    }
+
+    @Test
+    void saveSendsWholeBatchToBulkInsertAndReturnsInsertedCount() {
+        List<Candle> candles = List.of(candle(100), candle(200), candle(300));
+        when(bulkRepository.insertIgnoreDuplicates(TICKER, TIMEFRAME, EXCHANGE, candles)).thenReturn(2);
+
+        int inserted = service.saveCandlesToCache(TICKER, TIMEFRAME, EXCHANGE, candles);
+
+        assertEquals(2, inserted);
+        verify(memoryStore).onCandlesSaved(EXCHANGE, TICKER, TIMEFRAME, candles);
+        verifyNoInteractions(cachedCandleRepository);
+    }
+
+    @Test
+    void updateInsertsOnlyCandlesFromTimestamp() {
+        List<Candle> candles = List.of(candle(100), candle(200), candle(300));
+        List<Candle> newCandles = List.of(candle(200), candle(300));
+        when(bulkRepository.insertIgnoreDuplicates(TICKER, TIMEFRAME, EXCHANGE, newCandles)).thenReturn(2);
+
+        int inserted = service.updateCandlesInCache(TICKER, TIMEFRAME, EXCHANGE, candles, 200);
+
+        assertEquals(2, inserted);
+        verify(bulkRepository).insertIgnoreDuplicates(TICKER, TIMEFRAME, EXCHANGE, newCandles);
+        verify(memoryStore).onCandlesSaved(EXCHANGE, TICKER, TIMEFRAME, newCandles);
+    }
+
+    @Test
+    void onlyDuplicatesLeaveMemoryStoreUntouched() {
+        List<Candle> candles = List.of(candle(100), candle(200));
+        when(bulkRepository.insertIgnoreDuplicates(TICKER, TIMEFRAME, EXCHANGE, candles)).thenReturn(0);
+
+        assertEquals(0, service.saveCandlesToCache(TICKER, TIMEFRAME, EXCHANGE, candles));
+        verify(memoryStore, never()).onCandlesSaved(anyString(), anyString(), anyString(), anyList());
+    }
+
+    @Test
+    void updateWithNothingNewSkipsDatabase() {
+        assertEquals(0, service.updateCandlesInCache(TICKER, TIMEFRAME, EXCHANGE, List.of(candle(100)), 200));
+
+        verify(bulkRepository, never()).insertIgnoreDuplicates(anyString(), anyString(), anyString(), anyList());
+    }
+
+    @Test
+    void disabledBulkInsertFallsBackToRowByRowInsert() {
+        ReflectionTestUtils.setField(service, "bulkInsertEnabled", false);
+
+        int inserted = service.updateCandlesInCache(TICKER, TIMEFRAME, EXCHANGE, List.of(candle(100), candle(200)), 0);
+
+        assertEquals(2, inserted);
+        verify(cachedCandleRepository, times(2)).insertIgnoreDuplicates(anyString(), anyString(), anyString(),
+                anyLong(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+        verify(bulkRepository, never()).insertIgnoreDuplicates(anyString(), anyString(), anyString(), any());
+    }
+
+    private static Candle candle(long timestamp) {
+        return Candle.builder()
+                .timestamp(timestamp)
+                .open(1.0)
+                .high(1.0)
+                .low(1.0)
+                .close(1.0)
+                .volume(1.0)
+                .build();
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.core.client;
 
 import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandlesDelta;
+import com.example.shared.dto.CandlesDeltaRequest;
 import com.example.shared.dto.ExtendedCandlesRequest;
+import com.example.shared.utils.CandleBatchCodec;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -26,10 +29,19 @@ public interface CandlesFeignClient {
      * Получить валидированные свечи из кэша для множества тикеров (новый улучшенный метод)
      * Возвращает данные в том же формате что и getAllCandlesExtended для совместимости
      * Догружает и сохраняет в КЭШ
+     * Свечи приходят бинарным пакетом (CandleBatchCodec), если candles его поддерживает, иначе JSON
      */
-    @PostMapping("/api/candles-processor/validated-cache-extended")
+    @PostMapping(value = "/api/candles-processor/validated-cache-extended",
+            headers = "Accept=" + CandleBatchCodec.ACCEPT_WITH_JSON_FALLBACK)
     Map<String, List<Candle>> getValidatedCacheExtended(@RequestBody ExtendedCandlesRequest request);
 
+    /**
+     * Инкрементальный вариант getValidatedCacheExtended: только свечи новее последних известных клиенту,
+     * плюс размер, границы и контрольная сумма окна для проверки
+     */
+    @PostMapping("/api/candles-processor/validated-cache-delta")
+    Map<String, CandlesDelta> getValidatedCacheDelta(@RequestBody CandlesDeltaRequest request);
+
     // ============= МЕТОДЫ ДЛЯ УПРАВЛЕНИЯ КЭШЕМ СВЕЧЕЙ =============
 
     /**
@@ -5,6 +5,7 @@ import com.example.shared.dto.ZScoreData;
 import com.example.shared.dto.ZScoreParam;
 import com.example.shared.dto.cointegration.*;
 import com.example.shared.models.Settings;
+import com.example.shared.utils.CandleBatchCodec;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -13,6 +14,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
@@ -20,10 +22,14 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -32,9 +38,28 @@ public class PythonRestClient {
 
     private static final ObjectMapper objectMapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
 
+    /**
+     * Тело запроса: [int длина JSON][JSON запроса без свечей][пакет свечей CandleBatchCodec (только close)]
+     */
+    private static final String BINARY_CANDLES_CONTENT_TYPE = CandleBatchCodec.MEDIA_TYPE + ";envelope=json";
+
+    /**
+     * Статусы, которыми Python API отвечает на незнакомый формат тела - переходим на JSON
+     */
+    private static final Set<Integer> BINARY_REJECTED_STATUSES = Set.of(400, 404, 415, 422);
+
     @Value("${cointegration.api.url}")
     private String baseUrl;
 
+    /**
+     * Выключено по умолчанию: Python API (вне этого репозитория) пока не разбирает бинарный пакет свечей.
+     * Включать только после того, как на стороне Python появится чтение CandleBatchCodec
+     */
+    @Value("${cointegration.api.binary-candles.enabled:false}")
+    private boolean binaryCandlesEnabled;
+
+    private final AtomicBoolean binaryCandlesUnsupported = new AtomicBoolean();
+
     public List<ZScoreData> fetchZScoreData(Settings settings, Map<String, List<Candle>> candlesMap) {
         return discoverPairs(candlesMap, settings);
     }
@@ -42,22 +67,20 @@ public class PythonRestClient {
     public List<ZScoreData> discoverPairs(Map<String, List<Candle>> candlesMap, Settings settings) {
         Map<String, Object> settingsMap = convertSettingsToMap(settings);
         log.debug("settingsMap перед получением ZScoreData: {}", settingsMap);
-        Map<String, List<ApiCandle>> apiCandlesMap = convertCandlesMap(candlesMap);
-        DiscoveryRequest requestBody = new DiscoveryRequest(apiCandlesMap, settingsMap);
 
-        DiscoveryResponse response = sendRequestWithRestTemplate("/discover-pairs", requestBody, new TypeReference<>() {
-        });
+        DiscoveryResponse response = sendCandlesRequest("/discover-pairs", candlesMap,
+                apiCandlesMap -> new DiscoveryRequest(apiCandlesMap, settingsMap), new TypeReference<>() {
+                });
         return response.getResults();
     }
 
     public ZScoreData analyzePair(Map<String, List<Candle>> candlesMap, Settings settings, boolean includeFullZScoreHistory) {
         log.debug("🐍 Отправляем запрос в Python API для анализа пары: {}", candlesMap.keySet());
         Map<String, Object> settingsMap = convertSettingsToMap(settings);
-        Map<String, List<ApiCandle>> apiPair = convertCandlesMap(candlesMap);
-        PairAnalysisRequest requestBody = new PairAnalysisRequest(apiPair, settingsMap, includeFullZScoreHistory);
 
         try {
-            PairAnalysisResponse response = sendRequestWithRestTemplate("/analyze-pair", requestBody, new TypeReference<>() {});
+            PairAnalysisResponse response = sendCandlesRequest("/analyze-pair", candlesMap,
+                    apiPair -> new PairAnalysisRequest(apiPair, settingsMap, includeFullZScoreHistory), new TypeReference<>() {});
 
             if (response.isSuccess()) {
                 log.debug("✅ Python API успешно проанализировал пару: {}", candlesMap.keySet());
@@ -105,6 +128,62 @@ public class PythonRestClient {
                 ));
     }
 
+    /**
+     * Запрос со свечами: бинарным пакетом, если он включен и Python API его принимает, иначе JSON.
+     * Отказ Python API от бинарного формата запоминается - дальше запросы сразу идут в JSON.
+     *
+     * @param requestFactory строит тело запроса из свечей в формате API (null - свечи передаются отдельно)
+     */
+    private <T> T sendCandlesRequest(String endpoint, Map<String, List<Candle>> candlesMap,
+                                     Function<Map<String, List<ApiCandle>>, Object> requestFactory,
+                                     TypeReference<T> responseType) {
+        if (binaryCandlesEnabled && !binaryCandlesUnsupported.get()) {
+            try {
+                return sendBinaryCandlesRequest(endpoint, requestFactory.apply(null), candlesMap, responseType);
+            } catch (HttpClientErrorException e) {
+                if (!BINARY_REJECTED_STATUSES.contains(e.getStatusCode().value())) {
+                    throw new RuntimeException("❌ Ошибка при выполнении запроса: " + e.getMessage(), e);
+                }
+                binaryCandlesUnsupported.set(true);
+                log.warn("⚠️ Python API не принимает бинарный пакет свечей ({}) - переходим на JSON", e.getStatusCode());
+            }
+        }
+        return sendRequestWithRestTemplate(endpoint, requestFactory.apply(convertCandlesMap(candlesMap)), responseType);
+    }
+
+    private <T> T sendBinaryCandlesRequest(String endpoint, Object envelopeRequest, Map<String, List<Candle>> candlesMap,
+                                           TypeReference<T> responseType) {
+        try {
+            // Свечи в запросе = null и не попадают в JSON (NON_NULL)
+            byte[] envelope = objectMapper.writeValueAsBytes(envelopeRequest);
+            byte[] batch = CandleBatchCodec.encode(candlesMap, CandleBatchCodec.FLAG_CLOSE_ONLY);
+            byte[] body = ByteBuffer.allocate(Integer.BYTES + envelope.length + batch.length)
+                    .putInt(envelope.length)
+                    .put(envelope)
+                    .put(batch)
+                    .array();
+            log.debug("📤 Отправляю бинарный запрос в {}: {} тикеров, {} байт", baseUrl + endpoint, candlesMap.size(), body.length);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType(BINARY_CANDLES_CONTENT_TYPE));
+            headers.set("Accept", "application/json");
+
+            RestTemplate restTemplate = new RestTemplate();
+            ResponseEntity<String> response = restTemplate.exchange(
+                    baseUrl + endpoint,
+                    HttpMethod.POST,
+                    new HttpEntity<>(body, headers),
+                    String.class
+            );
+
+            log.debug("📥 Ответ от {}: статус={}", baseUrl + endpoint, response.getStatusCode());
+            return objectMapper.readValue(response.getBody(), responseType);
+
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("❌ Ошибка обработки JSON", e);
+        }
+    }
+
     private <T> T sendRequestWithRestTemplate(String endpoint, Object requestBody, TypeReference<T> responseType) {
         try {
             String json = objectMapper.writeValueAsString(requestBody);
@@ -4,6 +4,7 @@ import com.example.core.messaging.SendEventService;
 import com.example.core.processors.StartNewTradeProcessor;
 import com.example.core.services.EventSendService;
 import com.example.core.services.SettingsService;
+import com.example.core.repositories.PairHistoryRepository;
 import com.example.core.repositories.PairRepository;
 import com.example.core.trading.services.OkxPortfolioManager;
 import com.example.shared.dto.StartNewTradeRequest;
@@ -33,6 +34,7 @@ public class NewCointPairsEventHandler {
     private final EventSendService eventSendService;
     private final SettingsService settingsService;
     private final PairRepository tradingPairRepository;
+    private final PairHistoryRepository pairHistoryRepository;
     private final OkxPortfolioManager okxPortfolioManager;
     private final SendEventService sendEventService;
 
@@ -91,6 +93,7 @@ public class NewCointPairsEventHandler {
                     pair.setMinVolMln(BigDecimal.valueOf(settings.getMinVolume()));
                 });
                 tradingPairRepository.saveAll(remainingCointPairs);
+                pairHistoryRepository.saveAll(remainingCointPairs);
                 log.info("💾 Сохранили {} оставшихся коинтеграционных пар для работы через UI", remainingCointPairs.size());
             }
 
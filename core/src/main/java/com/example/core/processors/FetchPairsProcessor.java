@@ -80,13 +80,7 @@ public class FetchPairsProcessor {
     }
 
     private List<String> getUsedTickers() {
-        List<Pair> activePairs = pairService.findAllByStatusOrderByEntryTimeDesc(TradeStatus.TRADING);
-        List<String> tickers = new ArrayList<>();
-        for (Pair pair : activePairs) {
-            tickers.add(pair.getLongTicker());
-            tickers.add(pair.getShortTicker());
-        }
-        return tickers;
+        return pairService.findTickersByStatus(TradeStatus.TRADING);
     }
 
     private Map<String, List<Candle>> getCandles(Settings settings, List<String> tradingTickers) {
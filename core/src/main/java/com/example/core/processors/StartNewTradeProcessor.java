@@ -27,13 +27,24 @@ public class StartNewTradeProcessor {
     private final ZScoreService zScoreService;
     private final TradingIntegrationService tradingIntegrationService;
     private final TradeHistoryService tradeHistoryService;
+    private final StatisticsService statisticsService;
     private final StartNewTradeValidationService startNewTradeValidationService;
     private final CandlesFeignClient candlesFeignClient;
+    private final TickerLockService tickerLockService;
 
+    /**
+     * Открытие трейда под блокировками тикеров пары - общими с обновлением/закрытием/усреднением
+     */
     @Transactional
     public Pair startNewTrade(StartNewTradeRequest request) {
         startNewTradeValidationService.validateRequest(request);
 
+        final Pair requestPair = request.getTradingPair();
+        return tickerLockService.callWithTickerLocks(requestPair.getLongTicker(), requestPair.getShortTicker(),
+                () -> startNewTradeLocked(request));
+    }
+
+    private Pair startNewTradeLocked(StartNewTradeRequest request) {
         final Pair pair = request.getTradingPair();
         final Settings settings = settingsService.getSettings();
 
@@ -153,6 +164,7 @@ public class StartNewTradeProcessor {
         pairService.save(pair);
 
         tradeHistoryService.updateTradeLog(pair, settings);
+        statisticsService.onPairStatusChanged(pair);
 
         return pair;
     }
@@ -170,6 +182,7 @@ public class StartNewTradeProcessor {
         pair.setStatus(TradeStatus.ERROR);
         pair.setErrorDescription(errorType.getDescription());
         pairService.save(pair);
+        statisticsService.onPairStatusChanged(pair);
         return pair;
     }
 
@@ -14,7 +14,6 @@ import com.example.shared.events.rabbit.CoreEvent;
 import com.example.shared.models.Pair;
 import com.example.shared.models.Settings;
 import com.example.shared.utils.FormatUtil;
-import com.example.shared.utils.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -31,6 +30,7 @@ public class UpdateTradeProcessor {
     private final PairService pairService;
     private final SettingsService settingsService;
     private final TradeHistoryService tradeHistoryService;
+    private final StatisticsService statisticsService;
     private final ZScoreService zScoreService;
     private final TradingIntegrationService tradingIntegrationService;
     private final ExitStrategyService exitStrategyService;
@@ -40,6 +40,8 @@ public class UpdateTradeProcessor {
     private final TradingProviderFactory tradingProviderFactory;
     private final CandlesFeignClient candlesFeignClient;
     private final UpdateZScoreDataCurrentService updateZScoreDataCurrentService;
+    private final CycleCandlesSnapshotService cycleCandlesSnapshotService;
+    private final TickerLockService tickerLockService;
 
 
     //todo сделать проверку zScore - что он пересекал +3 и -3 несколько раз - говорит о том что пара гуляет туда-сюда
@@ -70,10 +72,19 @@ public class UpdateTradeProcessor {
     // + todo Position в бд а не в мапу - чтобы не терять трейды при перезапуске
     // + todo точка на чарте профита что бы было лучше видно где последнее значение
 
+    /**
+     * Обновление (и закрытие) торговой пары под блокировками ее тикеров - общими для всех точек входа
+     */
     @Transactional
     public Pair updateTrade(UpdateTradeRequest request) {
         validateRequest(request);
 
+        final Pair requestPair = request.getTradingPair();
+        return tickerLockService.callWithTickerLocks(requestPair.getLongTicker(), requestPair.getShortTicker(),
+                () -> updateTradeLocked(request));
+    }
+
+    private Pair updateTradeLocked(UpdateTradeRequest request) {
         final Pair tradingPair = loadFreshPairData(request.getTradingPair());
         if (tradingPair == null) {
             return request.getTradingPair();
@@ -202,42 +213,13 @@ public class UpdateTradeProcessor {
 
     private Map<String, Object> updateZScoreDataForExistingPair(Pair tradingPair, Settings settings) {
 
-        // Создаем ExtendedCandlesRequest для получения свечей через пагинацию
-        ExtendedCandlesRequest extendedRequest = ExtendedCandlesRequest.builder()
-                .timeframe(settings.getTimeframe())
-                .candleLimit((int) settings.getCandleLimit()) //todo check
-                .minVolume(0.001) //todo для уже торгуемой пары просто обновляем без фильтра по объему - сетим минималку
-                .tickers(List.of(tradingPair.getLongTicker(), tradingPair.getShortTicker()))
-                .period(settings.calculateCurrentPeriod()) //todo берем из настроек
-                .untilDate(StringUtils.getCurrentDateTimeWithZ())
-                .excludeTickers(null)
-                .exchange("OKX")
-                .useCache(true)
-                .useMinVolumeFilter(true)
-                .minimumLotBlacklist(null)
-                .sorted(true)
-                .build();
-
-        // Получаем все свечи через расширенный эндпоинт с пагинацией
-        Map<String, List<Candle>> allCandlesMap = candlesFeignClient.getValidatedCacheExtended(extendedRequest);
-
-        // Проверяем, что получены данные свечей
-        if (allCandlesMap == null || allCandlesMap.isEmpty()) {
-            log.warn("⚠️ Данные свечей не получены для пары {} — пропуск обновления", tradingPair.getPairName());
-            throw new RuntimeException("Данные свечей не получены — пропуск анализа");
-        }
-
-        // Фильтруем только нужные тикеры для данной пары
-        Map<String, List<Candle>> candlesMap = new HashMap<>();
         String longTicker = tradingPair.getLongTicker();
         String shortTicker = tradingPair.getShortTicker();
 
-        if (allCandlesMap.containsKey(longTicker)) {
-            candlesMap.put(longTicker, allCandlesMap.get(longTicker));
-        }
-        if (allCandlesMap.containsKey(shortTicker)) {
-            candlesMap.put(shortTicker, allCandlesMap.get(shortTicker));
-        }
+        // Свечи из снимка цикла UpdateTradesScheduler, если он есть - иначе запрос только по тикерам пары
+        Map<String, List<Candle>> candlesMap = cycleCandlesSnapshotService
+                .getPairCandles(longTicker, shortTicker, settings)
+                .orElseGet(() -> fetchPairCandles(tradingPair, settings));
 
         // Проверяем, что получены свечи для обоих тикеров
         if (!candlesMap.containsKey(longTicker) ||
@@ -252,13 +234,38 @@ public class UpdateTradeProcessor {
         }
         
         //Критично! Нужно обновлять zScore каждый раз независимо от ТФ
-        ZScoreData zScoreData = zScoreService.calculateZScoreData(settings, candlesMap);
+        ZScoreData zScoreData = zScoreService.calculateZScoreDataForTradingPair(settings, candlesMap, longTicker, shortTicker);
         Map<String, Object> result = new HashMap<>();
         result.put("candlesMap", candlesMap);
         result.put("zScoreData", zScoreData);
         return result;
     }
 
+    private Map<String, List<Candle>> fetchPairCandles(Pair tradingPair, Settings settings) {
+        String longTicker = tradingPair.getLongTicker();
+        String shortTicker = tradingPair.getShortTicker();
+
+        // Получаем все свечи через расширенный эндпоинт с пагинацией
+        Map<String, List<Candle>> allCandlesMap = candlesFeignClient.getValidatedCacheExtended(
+                CycleCandlesSnapshotService.buildRequest(List.of(longTicker, shortTicker), settings));
+
+        // Проверяем, что получены данные свечей
+        if (allCandlesMap == null || allCandlesMap.isEmpty()) {
+            log.warn("⚠️ Данные свечей не получены для пары {} — пропуск обновления", tradingPair.getPairName());
+            throw new RuntimeException("Данные свечей не получены — пропуск анализа");
+        }
+
+        // Фильтруем только нужные тикеры для данной пары
+        Map<String, List<Candle>> candlesMap = new HashMap<>();
+        if (allCandlesMap.containsKey(longTicker)) {
+            candlesMap.put(longTicker, allCandlesMap.get(longTicker));
+        }
+        if (allCandlesMap.containsKey(shortTicker)) {
+            candlesMap.put(shortTicker, allCandlesMap.get(shortTicker));
+        }
+        return candlesMap;
+    }
+
     private void logPairInfo(ZScoreData zScoreData, Settings settings) {
         if (zScoreData == null) {
             log.warn("ZScoreData is null, cannot log pair info.");
@@ -326,6 +333,7 @@ public class UpdateTradeProcessor {
         tradingIntegrationService.deletePositions(tradingPair);
         pairService.save(tradingPair);
         tradeHistoryService.updateTradeLog(tradingPair, settings);
+        statisticsService.onPairStatusChanged(tradingPair); // пересчет статистики закрытых трейдов пары
     }
 
     private Pair handleNoOpenPositions(Pair tradingPair) {
@@ -379,6 +387,7 @@ public class UpdateTradeProcessor {
         tradingPair.setStatus(TradeStatus.ERROR);
         tradingPair.setErrorDescription(errorType.getDescription());
         pairService.save(tradingPair);
+        statisticsService.onPairStatusChanged(tradingPair);
         // не обновляем другие данные тк нужны реальные данные по сделкам!
         return tradingPair;
     }
@@ -399,8 +408,9 @@ public class UpdateTradeProcessor {
 
         // Получаем timestamp последней точки из истории или используем текущее время
         long lastTimestamp = System.currentTimeMillis();
-        if (pair.getZScoreHistory() != null && !pair.getZScoreHistory().isEmpty()) {
-            lastTimestamp = pair.getZScoreHistory().get(pair.getZScoreHistory().size() - 1).getTimestamp();
+        ZScoreParam lastPoint = pair.getLastZScorePoint();
+        if (lastPoint != null) {
+            lastTimestamp = lastPoint.getTimestamp();
             log.debug("📋 Используем timestamp последней точки истории: {}", lastTimestamp);
         } else {
             log.debug("📋 История пустая, используем текущее время: {}", lastTimestamp);
@@ -0,0 +1,284 @@
+package com.example.core.repositories;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.CorrelationHistoryItem;
+import com.example.shared.dto.ProfitHistoryItem;
+import com.example.shared.dto.ZScoreParam;
+import com.example.shared.models.Pair;
+import com.example.shared.models.PairHistorySource;
+import com.example.shared.models.PairHistoryTrack;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Временные ряды пар (таблицы pair_zscore_history, pair_profit_history, pair_correlation_history
+ * и pair_candles, миграция V55).
+ * <p>
+ * Строки ключуются (pair_uuid, timestamp) и удаляются вместе с парой (ON DELETE CASCADE).
+ * При сохранении пары пишутся только изменения ее рядов: новые точки истории вставляются,
+ * окно свечей сдвигается удалением вышедших из окна свечей и дозаписью новых.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PairHistoryRepository implements PairHistorySource {
+
+    private static final String ZSCORE_COLUMNS =
+            "timestamp, zscore, pvalue, adf_pvalue, correlation, alpha, beta, spread, mean, std";
+
+    private static final String UPSERT_ZSCORE_SQL =
+            "INSERT INTO pair_zscore_history (pair_uuid, " + ZSCORE_COLUMNS + ") " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (pair_uuid, timestamp) DO UPDATE SET " +
+                    "zscore = EXCLUDED.zscore, pvalue = EXCLUDED.pvalue, adf_pvalue = EXCLUDED.adf_pvalue, " +
+                    "correlation = EXCLUDED.correlation, alpha = EXCLUDED.alpha, beta = EXCLUDED.beta, " +
+                    "spread = EXCLUDED.spread, mean = EXCLUDED.mean, std = EXCLUDED.std";
+
+    private static final String UPSERT_PROFIT_SQL =
+            "INSERT INTO pair_profit_history (pair_uuid, timestamp, profit_percent) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (pair_uuid, timestamp) DO UPDATE SET profit_percent = EXCLUDED.profit_percent";
+
+    private static final String UPSERT_CORRELATION_SQL =
+            "INSERT INTO pair_correlation_history (pair_uuid, timestamp, correlation) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (pair_uuid, timestamp) DO UPDATE SET correlation = EXCLUDED.correlation";
+
+    private static final String UPSERT_CANDLE_SQL =
+            "INSERT INTO pair_candles (pair_uuid, long_ticker, timestamp, open, high, low, close, volume) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (pair_uuid, long_ticker, timestamp) DO UPDATE SET " +
+                    "open = EXCLUDED.open, high = EXCLUDED.high, low = EXCLUDED.low, " +
+                    "close = EXCLUDED.close, volume = EXCLUDED.volume";
+
+    private static final RowMapper<ZScoreParam> ZSCORE_MAPPER = (rs, rowNum) -> ZScoreParam.builder()
+            .timestamp(rs.getLong("timestamp"))
+            .zscore(rs.getDouble("zscore"))
+            .pvalue(rs.getDouble("pvalue"))
+            .adfpvalue(rs.getDouble("adf_pvalue"))
+            .correlation(rs.getDouble("correlation"))
+            .alpha(rs.getDouble("alpha"))
+            .beta(rs.getDouble("beta"))
+            .spread(rs.getDouble("spread"))
+            .mean(rs.getDouble("mean"))
+            .std(rs.getDouble("std"))
+            .build();
+
+    private static final RowMapper<ProfitHistoryItem> PROFIT_MAPPER = (rs, rowNum) -> ProfitHistoryItem.builder()
+            .timestamp(rs.getLong("timestamp"))
+            .profitPercent(rs.getDouble("profit_percent"))
+            .build();
+
+    private static final RowMapper<CorrelationHistoryItem> CORRELATION_MAPPER = (rs, rowNum) -> CorrelationHistoryItem.builder()
+            .timestamp(rs.getLong("timestamp"))
+            .correlation(rs.getDouble("correlation"))
+            .build();
+
+    private static final RowMapper<Candle> CANDLE_MAPPER = (rs, rowNum) -> Candle.builder()
+            .timestamp(rs.getLong("timestamp"))
+            .open(rs.getDouble("open"))
+            .high(rs.getDouble("high"))
+            .low(rs.getDouble("low"))
+            .close(rs.getDouble("close"))
+            .volume(rs.getDouble("volume"))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // ======== ЧТЕНИЕ ========
+
+    @Override
+    public List<ZScoreParam> findZScoreHistory(UUID pairUuid, long fromTimestamp, long toTimestamp) {
+        return jdbcTemplate.query("SELECT " + ZSCORE_COLUMNS + " FROM pair_zscore_history " +
+                "WHERE pair_uuid = ? AND timestamp BETWEEN ? AND ? ORDER BY timestamp", ZSCORE_MAPPER,
+                pairUuid, fromTimestamp, toTimestamp);
+    }
+
+    @Override
+    public ZScoreParam findLastZScore(UUID pairUuid) {
+        return findLast("SELECT " + ZSCORE_COLUMNS + " FROM pair_zscore_history " +
+                "WHERE pair_uuid = ? ORDER BY timestamp DESC LIMIT 1", ZSCORE_MAPPER, pairUuid);
+    }
+
+    @Override
+    public List<ProfitHistoryItem> findProfitHistory(UUID pairUuid, long fromTimestamp, long toTimestamp) {
+        return jdbcTemplate.query("SELECT timestamp, profit_percent FROM pair_profit_history " +
+                "WHERE pair_uuid = ? AND timestamp BETWEEN ? AND ? ORDER BY timestamp", PROFIT_MAPPER,
+                pairUuid, fromTimestamp, toTimestamp);
+    }
+
+    @Override
+    public ProfitHistoryItem findLastProfit(UUID pairUuid) {
+        return findLast("SELECT timestamp, profit_percent FROM pair_profit_history " +
+                "WHERE pair_uuid = ? ORDER BY timestamp DESC LIMIT 1", PROFIT_MAPPER, pairUuid);
+    }
+
+    @Override
+    public List<CorrelationHistoryItem> findCorrelationHistory(UUID pairUuid, long fromTimestamp, long toTimestamp) {
+        return jdbcTemplate.query("SELECT timestamp, correlation FROM pair_correlation_history " +
+                "WHERE pair_uuid = ? AND timestamp BETWEEN ? AND ? ORDER BY timestamp", CORRELATION_MAPPER,
+                pairUuid, fromTimestamp, toTimestamp);
+    }
+
+    @Override
+    public CorrelationHistoryItem findLastCorrelation(UUID pairUuid) {
+        return findLast("SELECT timestamp, correlation FROM pair_correlation_history " +
+                "WHERE pair_uuid = ? ORDER BY timestamp DESC LIMIT 1", CORRELATION_MAPPER, pairUuid);
+    }
+
+    @Override
+    public List<Candle> findCandles(UUID pairUuid, boolean longTicker) {
+        return jdbcTemplate.query("SELECT timestamp, open, high, low, close, volume FROM pair_candles " +
+                "WHERE pair_uuid = ? AND long_ticker = ? ORDER BY timestamp", CANDLE_MAPPER, pairUuid, longTicker);
+    }
+
+    // ======== ЗАПИСЬ ========
+
+    /**
+     * Записывает несохраненные изменения рядов пары (пара уже должна быть сохранена)
+     */
+    @Transactional
+    public void save(Pair pair) {
+        UUID pairUuid = pair.getUuid();
+        if (pairUuid == null) {
+            return;
+        }
+
+        saveTrack(pair.zScoreHistoryTrack(), pairUuid, "pair_zscore_history", UPSERT_ZSCORE_SQL, (ps, item) -> {
+            ps.setObject(1, pairUuid);
+            ps.setLong(2, item.getTimestamp());
+            ps.setDouble(3, item.getZscore());
+            ps.setDouble(4, item.getPvalue());
+            ps.setDouble(5, item.getAdfpvalue());
+            ps.setDouble(6, item.getCorrelation());
+            ps.setDouble(7, item.getAlpha());
+            ps.setDouble(8, item.getBeta());
+            ps.setDouble(9, item.getSpread());
+            ps.setDouble(10, item.getMean());
+            ps.setDouble(11, item.getStd());
+        });
+        saveTrack(pair.profitHistoryTrack(), pairUuid, "pair_profit_history", UPSERT_PROFIT_SQL, (ps, item) -> {
+            ps.setObject(1, pairUuid);
+            ps.setLong(2, item.getTimestamp());
+            ps.setDouble(3, item.getProfitPercent());
+        });
+        saveTrack(pair.correlationHistoryTrack(), pairUuid, "pair_correlation_history", UPSERT_CORRELATION_SQL, (ps, item) -> {
+            ps.setObject(1, pairUuid);
+            ps.setLong(2, item.getTimestamp());
+            ps.setDouble(3, item.getCorrelation());
+        });
+        saveCandles(pair.longTickerCandlesTrack(), pairUuid, true);
+        saveCandles(pair.shortTickerCandlesTrack(), pairUuid, false);
+    }
+
+    @Transactional
+    public void saveAll(List<Pair> pairs) {
+        pairs.forEach(this::save);
+    }
+
+    /**
+     * Ряд истории: после замены перезаписывается целиком, иначе удаляются замененные точки и вставляются новые
+     */
+    private <T> void saveTrack(PairHistoryTrack<T> track, UUID pairUuid, String table, String upsertSql,
+                               ParameterizedPreparedStatementSetter<T> setter) {
+        if (!track.hasChanges()) {
+            return;
+        }
+
+        if (track.isReplaced()) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE pair_uuid = ?", pairUuid);
+        } else if (!track.removedTimestamps().isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM " + table + " WHERE pair_uuid = ? AND timestamp = ?",
+                    track.removedTimestamps(), track.removedTimestamps().size(), (ps, timestamp) -> {
+                        ps.setObject(1, pairUuid);
+                        ps.setLong(2, timestamp);
+                    });
+        }
+
+        List<T> pending = track.pending();
+        if (!pending.isEmpty()) {
+            jdbcTemplate.batchUpdate(upsertSql, pending, pending.size(), setter);
+        }
+        track.markSaved();
+    }
+
+    /**
+     * Окно свечей заменяется целиком на каждом обновлении, но сдвигается на несколько свечей:
+     * удаляем свечи вне нового окна и дописываем хвост после последней сохраненной свечи.
+     * Если сохраненная часть не совпадает с началом нового окна - перезаписываем окно полностью
+     */
+    private void saveCandles(PairHistoryTrack<Candle> track, UUID pairUuid, boolean longTicker) {
+        if (!track.hasChanges()) {
+            return;
+        }
+
+        List<Candle> candles = track.pending();
+        int tailFrom = 0;
+        if (track.isReplaced()) {
+            tailFrom = candles.isEmpty() ? -1 : storedPrefixLength(candles, pairUuid, longTicker);
+            if (tailFrom < 0) {
+                jdbcTemplate.update("DELETE FROM pair_candles WHERE pair_uuid = ? AND long_ticker = ?", pairUuid, longTicker);
+                tailFrom = 0;
+            }
+        }
+
+        List<Candle> tail = candles.subList(tailFrom, candles.size());
+        if (!tail.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_CANDLE_SQL, tail, tail.size(), (ps, candle) -> {
+                ps.setObject(1, pairUuid);
+                ps.setBoolean(2, longTicker);
+                ps.setLong(3, candle.getTimestamp());
+                ps.setDouble(4, candle.getOpen());
+                ps.setDouble(5, candle.getHigh());
+                ps.setDouble(6, candle.getLow());
+                ps.setDouble(7, candle.getClose());
+                ps.setDouble(8, candle.getVolume());
+            });
+        }
+        track.markSaved();
+    }
+
+    /**
+     * Удаляет сохраненные свечи вне окна candles и возвращает индекс последней сохраненной свечи в окне
+     * (ее перезаписываем - она могла обновиться), либо -1, если сохраненные свечи не совпадают с началом окна
+     */
+    private int storedPrefixLength(List<Candle> candles, UUID pairUuid, boolean longTicker) {
+        for (int i = 1; i < candles.size(); i++) {
+            if (candles.get(i).getTimestamp() <= candles.get(i - 1).getTimestamp()) {
+                return -1;
+            }
+        }
+
+        long first = candles.get(0).getTimestamp();
+        long last = candles.get(candles.size() - 1).getTimestamp();
+        jdbcTemplate.update("DELETE FROM pair_candles WHERE pair_uuid = ? AND long_ticker = ? " +
+                "AND (timestamp < ? OR timestamp > ?)", pairUuid, longTicker, first, last);
+
+        Map<String, Object> stored = jdbcTemplate.queryForMap("SELECT count(*) AS stored, max(timestamp) AS last_timestamp " +
+                "FROM pair_candles WHERE pair_uuid = ? AND long_ticker = ?", pairUuid, longTicker);
+        long storedCount = ((Number) stored.get("stored")).longValue();
+        if (storedCount == 0) {
+            return 0;
+        }
+
+        long lastStored = ((Number) stored.get("last_timestamp")).longValue();
+        int index = 0;
+        while (index < candles.size() && candles.get(index).getTimestamp() < lastStored) {
+            index++;
+        }
+        boolean prefixMatches = index < candles.size()
+                && candles.get(index).getTimestamp() == lastStored
+                && storedCount == index + 1;
+        return prefixMatches ? index : -1;
+    }
+
+    private <T> T findLast(String sql, RowMapper<T> mapper, UUID pairUuid) {
+        List<T> found = jdbcTemplate.query(sql, mapper, pairUuid);
+        return found.isEmpty() ? null : found.get(0);
+    }
+}
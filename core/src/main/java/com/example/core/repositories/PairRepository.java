@@ -1,5 +1,6 @@
 package com.example.core.repositories;
 
+import com.example.shared.dto.PairListItem;
 import com.example.shared.enums.PairType;
 import com.example.shared.enums.StabilityRating;
 import com.example.shared.enums.TradeStatus;
@@ -10,6 +11,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -18,6 +20,23 @@ import java.util.UUID;
 @Repository
 public interface PairRepository extends JpaRepository<Pair, Long> {
 
+    /**
+     * Выборка строк списка пар для таблиц UI: только отображаемые скалярные колонки,
+     * без сущности Pair, TEXT колонок и временных рядов (порядок аргументов = порядок полей PairListItem)
+     */
+    String LIST_ITEM_SELECT = "SELECT new com.example.shared.dto.PairListItem(" +
+            "p.id, p.uuid, p.pairName, p.tickerA, p.tickerB, p.status, " +
+            "p.zScoreEntry, p.zScoreCurrent, p.pValueEntry, p.pValueCurrent, " +
+            "p.adfPvalueEntry, p.adfPvalueCurrent, p.correlationEntry, p.correlationCurrent, " +
+            "p.totalScoreEntry, p.totalScore, p.stabilityRating, " +
+            "p.timeframe, p.settingsCandleLimit, p.minVolMln, " +
+            "p.timestamp, p.entryTime, p.updatedTime, " +
+            "p.portfolioBeforeTradeUSDT, p.portfolioAfterTradeUSDT, " +
+            "p.formattedProfitLong, p.formattedProfitShort, p.formattedProfitCommon, " +
+            "p.formattedTimeToMinProfit, p.formattedTimeToMaxProfit, " +
+            "p.averagingCount, p.maxZ, p.minZ, p.exitReason, p.errorDescription, p.closeAtBreakeven) " +
+            "FROM Pair p ";
+
     // ======== БАЗОВЫЕ МЕТОДЫ ПОИСКА ========
 
     /**
@@ -214,6 +233,12 @@ public interface PairRepository extends JpaRepository<Pair, Long> {
     List<Pair> findInTradingPairsByStatusAndEntryTimeAfter(@Param("status") TradeStatus status,
                                                            @Param("afterDate") LocalDateTime afterDate);
 
+    /**
+     * Тикеры пар в активной торговле по статусу (без загрузки пар)
+     */
+    @Query("SELECT p.tickerA, p.tickerB FROM Pair p WHERE p.type = 'IN_TRADING' AND p.status = :status")
+    List<Object[]> findInTradingTickersByStatus(@Param("status") TradeStatus status);
+
     // ======== МЕТОДЫ ДЛЯ ЗАВЕРШЕННЫХ ПАР (COMPLETED) ========
 
     /**
@@ -249,6 +274,28 @@ public interface PairRepository extends JpaRepository<Pair, Long> {
     @Query("SELECT p FROM Pair p WHERE p.type = 'TRADING' AND p.status = 'TRADING' ORDER BY p.entryTime DESC")
     List<Pair> findActiveTradingPairs();
 
+    // ======== СТРОКИ СПИСКОВ ДЛЯ UI (PairListItem) ========
+
+    /**
+     * Строки списка пар в активной торговле по статусу (порядок как в findInTradingPairsByStatus)
+     */
+    @Query(LIST_ITEM_SELECT + "WHERE p.type = 'IN_TRADING' AND p.status = :status ORDER BY p.updatedTime DESC")
+    List<PairListItem> findInTradingListItemsByStatus(@Param("status") TradeStatus status);
+
+    /**
+     * Строки списка закрытых пар (порядок как в findAllClosedPairsByStatus)
+     */
+    @Query(LIST_ITEM_SELECT + "WHERE p.status = :status " +
+            "AND p.type IN ('TRADING', 'IN_TRADING', 'COMPLETED') ORDER BY p.updatedTime DESC")
+    List<PairListItem> findAllClosedListItemsByStatus(@Param("status") TradeStatus status);
+
+    /**
+     * Строки списка пар с ошибками, которые действительно торговались (порядок как в findTradedPairsByStatusOrderByUpdatedTime)
+     */
+    @Query(LIST_ITEM_SELECT + "WHERE p.status = :status " +
+            "AND p.profitPercentChanges IS NOT NULL ORDER BY p.updatedTime DESC")
+    List<PairListItem> findTradedListItemsByStatusOrderByUpdatedTime(@Param("status") TradeStatus status);
+
     // ======== ОПЕРАЦИИ УДАЛЕНИЯ И ОЧИСТКИ ========
 
     /**
@@ -318,6 +365,12 @@ public interface PairRepository extends JpaRepository<Pair, Long> {
     @Query("SELECT p.type, p.status, COUNT(p) FROM Pair p GROUP BY p.type, p.status")
     List<Object[]> countPairsByTypeAndStatus();
 
+    /**
+     * Сумма профита в USDT пар в активной торговле по статусу
+     */
+    @Query("SELECT COALESCE(SUM(p.profitUSDTChanges), 0) FROM Pair p WHERE p.type = 'IN_TRADING' AND p.status = :status")
+    BigDecimal sumInTradingProfitUSDTByStatus(@Param("status") TradeStatus status);
+
     /**
      * Найти пары с лучшей производительностью за период
      */
@@ -0,0 +1,195 @@
+package com.example.core.repositories;
+
+import com.example.shared.dto.PairAggregatedStatisticsDto;
+import com.example.shared.dto.TradePairsStatisticsDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Агрегаты страницы статистики, посчитанные в БД (pairs и trade_history).
+ * <p>
+ * Каждый блок статистики - один запрос с FILTER/GROUP BY вместо загрузки пар и подсчета в Java:
+ * итоги по trade_history, итоги по pairs, количество выходов по причинам, нереализованный профит
+ * и статистика закрытых трейдов по каждой паре (pair_name).
+ * "Сегодня" считается так же, как в TradeHistoryRepository: счетчики - по дате entry_time в БД,
+ * суммы профита пар - по entry_time >= начала дня.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TradeStatisticsRepository {
+
+    private static final String TRADE_HISTORY_TOTALS_SQL =
+            "SELECT count(*) FILTER (WHERE t.today) AS trades_today, " +
+                    "count(*) AS trades_total, " +
+                    "avg(t.current_profit_usdt) FILTER (WHERE t.closed AND t.today) AS avg_profit_usdt_today, " +
+                    "avg(t.current_profit_usdt) FILTER (WHERE t.closed) AS avg_profit_usdt_total, " +
+                    "avg(t.current_profit_percent) FILTER (WHERE t.closed AND t.today) AS avg_profit_percent_today, " +
+                    "avg(t.current_profit_percent) FILTER (WHERE t.closed) AS avg_profit_percent_total, " +
+                    "sum(t.current_profit_usdt) FILTER (WHERE t.closed AND t.today) AS sum_profit_usdt_today, " +
+                    "sum(t.current_profit_usdt) FILTER (WHERE t.closed) AS sum_profit_usdt_total, " +
+                    "sum(t.current_profit_percent) FILTER (WHERE t.closed AND t.today) AS sum_profit_percent_today, " +
+                    "sum(t.current_profit_percent) FILTER (WHERE t.closed) AS sum_profit_percent_total " +
+                    "FROM (SELECT current_profit_usdt, current_profit_percent, " +
+                    "exit_reason IS NOT NULL AS closed, " +
+                    "to_timestamp(entry_time / 1000.0)::date = current_date AS today " +
+                    "FROM trade_history) t";
+
+    private static final String PAIR_TOTALS_SQL =
+            "SELECT count(*) FILTER (WHERE status = 'ERROR' AND entry_time::date = current_date) AS errors_today, " +
+                    "count(*) FILTER (WHERE status = 'ERROR') AS errors_total, " +
+                    "COALESCE(sum(profit_usdt_changes) FILTER (WHERE status = 'CLOSED' AND entry_time >= ?), 0) AS realized_usdt_today, " +
+                    "COALESCE(sum(profit_usdt_changes) FILTER (WHERE status = 'CLOSED'), 0) AS realized_usdt_total, " +
+                    "COALESCE(sum(profit_percent_changes) FILTER (WHERE status = 'CLOSED' AND entry_time >= ?), 0) AS realized_percent_today, " +
+                    "COALESCE(sum(profit_percent_changes) FILTER (WHERE status = 'CLOSED'), 0) AS realized_percent_total " +
+                    "FROM pairs";
+
+    private static final String EXIT_REASON_COUNTS_SQL =
+            "SELECT exit_reason, " +
+                    "count(*) FILTER (WHERE entry_time::date = current_date) AS exits_today, " +
+                    "count(*) AS exits_total " +
+                    "FROM pairs WHERE exit_reason IS NOT NULL GROUP BY exit_reason";
+
+    private static final String UNREALIZED_PROFIT_SQL =
+            "SELECT COALESCE(sum(profit_usdt_changes) FILTER (WHERE entry_time >= ?), 0) AS usdt_today, " +
+                    "COALESCE(sum(profit_usdt_changes), 0) AS usdt_total, " +
+                    "COALESCE(sum(profit_percent_changes) FILTER (WHERE entry_time >= ?), 0) AS percent_today, " +
+                    "COALESCE(sum(profit_percent_changes), 0) AS percent_total " +
+                    "FROM pairs WHERE type = 'IN_TRADING' AND status = 'TRADING'";
+
+    // Закрытые пары - как в PairRepository.findAllClosedPairsByStatus
+    private static final String CLOSED_PAIR_STATISTICS_SQL =
+            "SELECT pair_name, " +
+                    "count(*) AS total_trades, " +
+                    "COALESCE(sum(profit_usdt_changes), 0) AS total_profit_usdt, " +
+                    "avg(profit_percent_changes) AS average_profit_percent, " +
+                    "avg(EXTRACT(EPOCH FROM (updated_time - entry_time))) " +
+                    "FILTER (WHERE entry_time IS NOT NULL AND updated_time IS NOT NULL) AS average_duration_seconds, " +
+                    "COALESCE(sum(averaging_count), 0) AS total_averaging_count, " +
+                    "avg(minutes_to_min_profit_percent) FILTER (WHERE minutes_to_min_profit_percent > 0) AS average_time_to_min_profit, " +
+                    "avg(minutes_to_max_profit_percent) FILTER (WHERE minutes_to_max_profit_percent > 0) AS average_time_to_max_profit, " +
+                    "avg(z_score_entry) AS average_z_score_entry, " +
+                    "avg(z_score_current) AS average_z_score_current, " +
+                    "avg(max_z) AS average_z_score_max, " +
+                    "avg(min_z) AS average_z_score_min, " +
+                    "avg(correlation_entry) AS average_correlation_entry, " +
+                    "avg(correlation_current) AS average_correlation_current, " +
+                    "mode() WITHIN GROUP (ORDER BY timeframe) AS most_used_timeframe, " +
+                    "mode() WITHIN GROUP (ORDER BY settings_candle_limit) AS most_used_candle_limit " +
+                    "FROM pairs " +
+                    "WHERE status = 'CLOSED' AND type IN ('TRADING', 'IN_TRADING', 'COMPLETED') AND pair_name IS NOT NULL ";
+
+    private static final RowMapper<PairAggregatedStatisticsDto> CLOSED_PAIR_STATISTICS_MAPPER = (rs, rowNum) -> {
+        BigDecimal averageDurationSeconds = rs.getBigDecimal("average_duration_seconds");
+        BigDecimal averageTimeToMinProfit = rs.getBigDecimal("average_time_to_min_profit");
+        BigDecimal averageTimeToMaxProfit = rs.getBigDecimal("average_time_to_max_profit");
+        BigDecimal mostUsedCandleLimit = rs.getBigDecimal("most_used_candle_limit");
+        return PairAggregatedStatisticsDto.builder()
+                .pairName(rs.getString("pair_name"))
+                .totalTrades(rs.getLong("total_trades"))
+                .totalProfitUSDT(rs.getBigDecimal("total_profit_usdt"))
+                .averageProfitPercent(orZero(rs.getBigDecimal("average_profit_percent")))
+                .averageTradeDuration(averageDurationSeconds != null ? averageDurationSeconds.longValue() / 60 : 0L)
+                .totalAveragingCount(rs.getLong("total_averaging_count"))
+                .averageTimeToMinProfit(averageTimeToMinProfit != null ? averageTimeToMinProfit.setScale(0, RoundingMode.HALF_UP).longValue() : -1L)
+                .averageTimeToMaxProfit(averageTimeToMaxProfit != null ? averageTimeToMaxProfit.setScale(0, RoundingMode.HALF_UP).longValue() : -1L)
+                .averageZScoreEntry(scale4(rs.getBigDecimal("average_z_score_entry")))
+                .averageZScoreCurrent(scale4(rs.getBigDecimal("average_z_score_current")))
+                .averageZScoreMax(scale4(rs.getBigDecimal("average_z_score_max")))
+                .averageZScoreMin(scale4(rs.getBigDecimal("average_z_score_min")))
+                .averageCorrelationEntry(scale4(rs.getBigDecimal("average_correlation_entry")))
+                .averageCorrelationCurrent(scale4(rs.getBigDecimal("average_correlation_current")))
+                .mostUsedTimeframe(rs.getString("most_used_timeframe"))
+                .mostUsedCandleCount(mostUsedCandleLimit != null ? mostUsedCandleLimit.intValue() : null)
+                .build();
+    };
+
+    /**
+     * Количество выходов по причине выхода (pairs.exit_reason)
+     */
+    public record ExitReasonCount(String exitReason, long today, long total) {
+    }
+
+    /**
+     * Нереализованный профит пар в активной торговле
+     */
+    public record UnrealizedProfit(BigDecimal usdtToday, BigDecimal usdtTotal,
+                                   BigDecimal percentToday, BigDecimal percentTotal) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Итоги по закрытым трейдам и ошибкам (без разбивки по причинам выхода и без нереализованного профита)
+     */
+    public TradePairsStatisticsDto findTradeTotals(LocalDateTime startOfDay) {
+        TradePairsStatisticsDto stats = jdbcTemplate.queryForObject(TRADE_HISTORY_TOTALS_SQL, (rs, rowNum) ->
+                TradePairsStatisticsDto.builder()
+                        .tradePairsToday(rs.getLong("trades_today"))
+                        .tradePairsTotal(rs.getLong("trades_total"))
+                        .avgProfitUSDTToday(rs.getBigDecimal("avg_profit_usdt_today"))
+                        .avgProfitUSDTTotal(rs.getBigDecimal("avg_profit_usdt_total"))
+                        .avgProfitPercentToday(rs.getBigDecimal("avg_profit_percent_today"))
+                        .avgProfitPercentTotal(rs.getBigDecimal("avg_profit_percent_total"))
+                        .sumProfitUSDTToday(rs.getBigDecimal("sum_profit_usdt_today"))
+                        .sumProfitUSDTTotal(rs.getBigDecimal("sum_profit_usdt_total"))
+                        .sumProfitPercentToday(rs.getBigDecimal("sum_profit_percent_today"))
+                        .sumProfitPercentTotal(rs.getBigDecimal("sum_profit_percent_total"))
+                        .build());
+
+        Timestamp startOfDayTimestamp = Timestamp.valueOf(startOfDay);
+        jdbcTemplate.query(PAIR_TOTALS_SQL, rs -> {
+            stats.setTradePairsWithErrorToday(rs.getLong("errors_today"));
+            stats.setTradePairsWithErrorTotal(rs.getLong("errors_total"));
+            stats.setSumProfitRealizedUSDTToday(rs.getBigDecimal("realized_usdt_today"));
+            stats.setSumProfitRealizedUSDTTotal(rs.getBigDecimal("realized_usdt_total"));
+            stats.setSumProfitRealizedPercentToday(rs.getBigDecimal("realized_percent_today"));
+            stats.setSumProfitRealizedPercentTotal(rs.getBigDecimal("realized_percent_total"));
+        }, startOfDayTimestamp, startOfDayTimestamp);
+        return stats;
+    }
+
+    public List<ExitReasonCount> findExitReasonCounts() {
+        return jdbcTemplate.query(EXIT_REASON_COUNTS_SQL, (rs, rowNum) -> new ExitReasonCount(
+                rs.getString("exit_reason"), rs.getLong("exits_today"), rs.getLong("exits_total")));
+    }
+
+    public UnrealizedProfit findUnrealizedProfit(LocalDateTime startOfDay) {
+        Timestamp startOfDayTimestamp = Timestamp.valueOf(startOfDay);
+        return jdbcTemplate.queryForObject(UNREALIZED_PROFIT_SQL, (rs, rowNum) -> new UnrealizedProfit(
+                rs.getBigDecimal("usdt_today"), rs.getBigDecimal("usdt_total"),
+                rs.getBigDecimal("percent_today"), rs.getBigDecimal("percent_total")),
+                startOfDayTimestamp, startOfDayTimestamp);
+    }
+
+    /**
+     * Статистика закрытых трейдов по всем парам - один GROUP BY pair_name
+     */
+    public List<PairAggregatedStatisticsDto> findClosedPairStatistics() {
+        return jdbcTemplate.query(CLOSED_PAIR_STATISTICS_SQL + "GROUP BY pair_name", CLOSED_PAIR_STATISTICS_MAPPER);
+    }
+
+    /**
+     * Статистика закрытых трейдов одной пары (пересчет после закрытия ее трейда)
+     */
+    public Optional<PairAggregatedStatisticsDto> findClosedPairStatistics(String pairName) {
+        return jdbcTemplate.query(CLOSED_PAIR_STATISTICS_SQL + "AND pair_name = ? GROUP BY pair_name",
+                CLOSED_PAIR_STATISTICS_MAPPER, pairName).stream().findFirst();
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal scale4(BigDecimal value) {
+        return value != null ? value.setScale(4, RoundingMode.HALF_UP) : BigDecimal.ZERO;
+    }
+}
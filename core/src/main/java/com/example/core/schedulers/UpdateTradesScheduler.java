@@ -3,18 +3,29 @@ package com.example.core.schedulers;
 import com.example.core.processors.UpdateTradeProcessor;
 import com.example.core.services.EventSendService;
 import com.example.core.services.PairService;
+import com.example.core.services.CycleCandlesSnapshotService;
 import com.example.core.services.SchedulerControlService;
+import com.example.core.services.SettingsService;
+import com.example.core.services.TickerLockService;
 import com.example.shared.dto.UpdateTradeRequest;
 import com.example.shared.enums.TradeStatus;
 import com.example.shared.events.UpdateUiEvent;
 import com.example.shared.models.Pair;
+import com.example.shared.models.Settings;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Component
@@ -29,8 +40,30 @@ public class UpdateTradesScheduler {
     private final UpdateTradeProcessor updateTradeProcessor;
     private final EventSendService eventSendService;
     private final SchedulerControlService schedulerControlService;
+    private final SettingsService settingsService;
+    private final CycleCandlesSnapshotService cycleCandlesSnapshotService;
+    private final TickerLockService tickerLockService;
+
+    private static final long CYCLE_PERIOD_MS = 60000;
+
+    // Пул для параллельного обновления пар, размер берется из настроек перед каждым циклом
+    private final AtomicInteger updateThreadNumber = new AtomicInteger();
+    private final ThreadPoolExecutor updateExecutor = new ThreadPoolExecutor(1, 1,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            r -> {
+                Thread t = new Thread(r, "UpdateTrades-" + updateThreadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private volatile Map<String, Object> lastCycleMetrics = Map.of();
+
+    @PreDestroy
+    public void shutdown() {
+        updateExecutor.shutdownNow();
+    }
 
-    @Scheduled(initialDelay = 15000, fixedRate = 60000) // Каждую минуту в 0 секунд
+    @Scheduled(initialDelay = 15000, fixedRate = CYCLE_PERIOD_MS) // Каждую минуту в 0 секунд
     public void updateTrades() {
         // Проверяем включен ли шедуллер через настройки
         if (!schedulerControlService.isUpdateTradesSchedulerEnabled()) {
@@ -92,11 +125,70 @@ public class UpdateTradesScheduler {
         }
     }
 
+    /**
+     * Пары обновляются параллельно (не больше schedulerUpdateTradesConcurrency одновременно).
+     * Каждая пара обновляется ровно одной задачей за цикл, а циклы не пересекаются (updateTradesRunning),
+     * поэтому порядок обновлений внутри пары сохраняется.
+     */
     private void processTradeUpdates(List<Pair> updatablePairs) {
-        updatablePairs.forEach(this::updateSingleTrade);
+        Settings settings = settingsService.getSettings();
+        int concurrency = resizeExecutor(settings);
+        long cycleStart = System.nanoTime();
+
+        // Свечи всех тикеров цикла загружаются один раз, пары берут их из снимка
+        cycleCandlesSnapshotService.openCycle(updatablePairs, settings);
+
+        AtomicInteger successfulUpdates = new AtomicInteger();
+        AtomicInteger failedUpdates = new AtomicInteger();
+        AtomicLong totalPairNanos = new AtomicLong();
+        AtomicLong maxPairNanos = new AtomicLong();
+        long lockWaitNanosBefore = tickerLockService.getLockWaitNanos();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(updatablePairs.size());
+        for (Pair pair : updatablePairs) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                long pairStart = System.nanoTime();
+                // Блокировки тикеров торговой пары берет UpdateTradeProcessor.updateTrade
+                boolean success = updateSingleTrade(pair);
+                long pairNanos = System.nanoTime() - pairStart;
+
+                (success ? successfulUpdates : failedUpdates).incrementAndGet();
+                totalPairNanos.addAndGet(pairNanos);
+                maxPairNanos.accumulateAndGet(pairNanos, Math::max);
+            }, updateExecutor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            cycleCandlesSnapshotService.closeCycle();
+        }
+
+        long cycleMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cycleStart);
+        int pairsCount = updatablePairs.size();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pairs", pairsCount);
+        metrics.put("successful", successfulUpdates.get());
+        metrics.put("failed", failedUpdates.get());
+        metrics.put("concurrency", concurrency);
+        metrics.put("cycleMs", cycleMs);
+        metrics.put("avgPairMs", TimeUnit.NANOSECONDS.toMillis(totalPairNanos.get()) / (double) pairsCount);
+        metrics.put("maxPairMs", TimeUnit.NANOSECONDS.toMillis(maxPairNanos.get()));
+        // Ожидание блокировок тикеров за время цикла (включая операции из UI и автотрейдинга)
+        metrics.put("lockWaitMs", TimeUnit.NANOSECONDS.toMillis(tickerLockService.getLockWaitNanos() - lockWaitNanosBefore));
+        lastCycleMetrics = metrics;
+
+        log.info("⏱️ Цикл обновления пар: {} пар ({} ошибок) за {} мс в {} потоков, в среднем {} мс на пару, максимум {} мс",
+                pairsCount, failedUpdates.get(), cycleMs, concurrency,
+                String.format("%.0f", (double) metrics.get("avgPairMs")), metrics.get("maxPairMs"));
+        if (cycleMs > CYCLE_PERIOD_MS) {
+            log.warn("⚠️ Цикл обновления пар ({} мс) дольше интервала шедуллера ({} мс) - увеличьте количество потоков",
+                    cycleMs, CYCLE_PERIOD_MS);
+        }
     }
 
-    private void updateSingleTrade(Pair tradingPair) {
+    private boolean updateSingleTrade(Pair tradingPair) {
         try {
             if (tradingPair.getStatus() == TradeStatus.TRADING) {
                 updateTradeProcessor.updateTrade(UpdateTradeRequest.builder()
@@ -107,11 +199,36 @@ public class UpdateTradesScheduler {
                 // Here we will call a new method to only update cointegration data
                 updateTradeProcessor.updateObservedPair(tradingPair);
             }
+            return true;
         } catch (Exception e) {
             log.warn("⚠️ Ошибка при обновлении пары {}: {}", tradingPair.getPairName(), e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * Подстраивает размер пула под настройку schedulerUpdateTradesConcurrency
+     */
+    private int resizeExecutor(Settings settings) {
+        int concurrency = Math.max(1, settings.getSchedulerUpdateTradesConcurrency());
+
+        if (concurrency > updateExecutor.getMaximumPoolSize()) {
+            updateExecutor.setMaximumPoolSize(concurrency);
+            updateExecutor.setCorePoolSize(concurrency);
+        } else if (concurrency < updateExecutor.getMaximumPoolSize()) {
+            updateExecutor.setCorePoolSize(concurrency);
+            updateExecutor.setMaximumPoolSize(concurrency);
+        }
+        return concurrency;
+    }
+
+    /**
+     * Метрики последнего цикла обновления пар
+     */
+    public Map<String, Object> getLastCycleMetrics() {
+        return lastCycleMetrics;
+    }
+
     private void updateUI() {
         try {
             eventSendService.updateUI(UpdateUiEvent.builder().build());
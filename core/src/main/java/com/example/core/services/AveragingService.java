@@ -26,6 +26,7 @@ public class AveragingService {
     private final TradingIntegrationService tradingIntegrationService;
     private final TradingProviderFactory tradingProviderFactory;
     private final PairRepository tradingPairRepository;
+    private final TickerLockService tickerLockService;
 
     /**
      * Выполняет ручное усреднение позиции для указанной пары
@@ -39,7 +40,9 @@ public class AveragingService {
         log.info("");
         log.info("🔄 Начало ручного усреднения для пары: {}", tradingPair.getPairName());
 
-        return executeAveraging(tradingPair, settings, "MANUAL");
+        // Ручное усреднение идет из UI мимо updateTrade - берем те же блокировки тикеров
+        return tickerLockService.callWithTickerLocks(tradingPair.getLongTicker(), tradingPair.getShortTicker(),
+                () -> executeAveraging(tradingPair, settings, "MANUAL"));
     }
 
     /**
@@ -2,6 +2,7 @@ package com.example.core.services;
 
 import com.example.core.client.CandlesFeignClient;
 import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleSeries;
 import com.example.shared.dto.ExtendedCandlesRequest;
 import com.example.shared.models.Settings;
 import com.example.shared.utils.StringUtils;
@@ -143,9 +144,7 @@ public class BtcVolatilityService {
         }
 
         // Сортируем свечи по времени (от старых к новым)
-        List<Candle> sortedCandles = candles.stream()
-                .sorted(Comparator.comparing(Candle::getTimestamp))
-                .toList();
+        CandleSeries sortedCandles = CandleSeries.of(candles);
 
         double currentAtr = calculateATR(sortedCandles, 14);
         double averageAtr = calculateATR(sortedCandles, Math.min(sortedCandles.size(), 50));
@@ -167,24 +166,22 @@ public class BtcVolatilityService {
     /**
      * Расчет ATR (Average True Range)
      */
-    private double calculateATR(List<Candle> candles, int period) {
+    private double calculateATR(CandleSeries candles, int period) {
         if (candles.size() < period + 1) {
             return 0;
         }
 
         double atrSum = 0;
         for (int i = candles.size() - period; i < candles.size(); i++) {
-            Candle current = candles.get(i);
-            
             double trueRange;
             if (i == 0) {
                 // Для первой свечи TR = High - Low
-                trueRange = current.getHigh() - current.getLow();
+                trueRange = candles.high(i) - candles.low(i);
             } else {
-                Candle previous = candles.get(i - 1);
-                double highLow = current.getHigh() - current.getLow();
-                double highClosePrev = Math.abs(current.getHigh() - previous.getClose());
-                double lowClosePrev = Math.abs(current.getLow() - previous.getClose());
+                double previousClose = candles.close(i - 1);
+                double highLow = candles.high(i) - candles.low(i);
+                double highClosePrev = Math.abs(candles.high(i) - previousClose);
+                double lowClosePrev = Math.abs(candles.low(i) - previousClose);
                 
                 trueRange = Math.max(highLow, Math.max(highClosePrev, lowClosePrev));
             }
@@ -198,17 +195,17 @@ public class BtcVolatilityService {
     /**
      * Расчет дневного диапазона (разница между максимумом и минимумом дня)
      */
-    private double calculateDailyRange(List<Candle> candles) {
+    private double calculateDailyRange(CandleSeries candles) {
         if (candles.isEmpty()) return 0;
         
-        Candle lastCandle = candles.get(candles.size() - 1);
-        return lastCandle.getHigh() - lastCandle.getLow();
+        int last = candles.size() - 1;
+        return candles.high(last) - candles.low(last);
     }
 
     /**
      * Расчет среднего дневного диапазона за период
      */
-    private double calculateAverageDailyRange(List<Candle> candles, int period) {
+    private double calculateAverageDailyRange(CandleSeries candles, int period) {
         if (candles.size() < period) {
             period = candles.size();
         }
@@ -217,8 +214,7 @@ public class BtcVolatilityService {
         int count = 0;
         
         for (int i = candles.size() - period; i < candles.size(); i++) {
-            Candle candle = candles.get(i);
-            rangeSum += (candle.getHigh() - candle.getLow());
+            rangeSum += (candles.high(i) - candles.low(i));
             count++;
         }
 
@@ -228,15 +224,15 @@ public class BtcVolatilityService {
     /**
      * Расчет дневного изменения в процентах
      */
-    private double calculateDailyChangePercent(List<Candle> candles) {
+    private double calculateDailyChangePercent(CandleSeries candles) {
         if (candles.size() < 2) return 0;
         
-        Candle current = candles.get(candles.size() - 1);
-        Candle previous = candles.get(candles.size() - 2);
+        double currentClose = candles.close(candles.size() - 1);
+        double previousClose = candles.close(candles.size() - 2);
         
-        if (previous.getClose() == 0) return 0;
+        if (previousClose == 0) return 0;
         
-        return ((current.getClose() - previous.getClose()) / previous.getClose()) * 100;
+        return ((currentClose - previousClose) / previousClose) * 100;
     }
 
     /**
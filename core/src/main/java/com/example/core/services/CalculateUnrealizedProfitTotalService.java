@@ -14,7 +14,6 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
-import java.util.Objects;
 
 @Slf4j
 @Service
@@ -132,10 +131,6 @@ public class CalculateUnrealizedProfitTotalService {
     }
 
     public BigDecimal getUnrealizedProfitUSDTTotal() {
-        List<Pair> tradingPairs = tradingPairRepository.findInTradingPairsByStatus(TradeStatus.TRADING);
-        return tradingPairs.stream()
-                .map(Pair::getProfitUSDTChanges)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return tradingPairRepository.sumInTradingProfitUSDTByStatus(TradeStatus.TRADING);
     }
 }
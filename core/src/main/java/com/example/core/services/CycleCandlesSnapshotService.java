@@ -0,0 +1,163 @@
+package com.example.core.services;
+
+import com.example.core.client.CandlesFeignClient;
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.ExtendedCandlesRequest;
+import com.example.shared.models.Pair;
+import com.example.shared.models.Settings;
+import com.example.shared.utils.StringUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Снимок свечей на один цикл обновления пар.
+ * <p>
+ * В начале цикла собираются все уникальные тикеры обновляемых пар и загружаются
+ * одним запросом к candles микросервису (инкрементально, через IncrementalCandlesService).
+ * Пары цикла берут свои свечи из снимка, поэтому загрузка и валидация на стороне candles
+ * идут один раз на тикер, а не на пару.
+ * <p>
+ * Снимок неизменяем: каждой паре отдается своя копия списка (ссылки на те же свечи),
+ * так как дальше по цепочке списки сортируются на месте, а пары обновляются параллельно.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CycleCandlesSnapshotService {
+
+    private final CandlesFeignClient candlesFeignClient;
+    private final IncrementalCandlesService incrementalCandlesService;
+
+    private volatile Snapshot current;
+
+    /**
+     * Запрос свечей для обновления уже отобранных пар - без фильтра по объему (минималка).
+     * Строгая полнота: по открытой паре нельзя пропустить цикл из-за пропуска в свечах -
+     * без окна не проверяются выход и стоп-лосс, поэтому candles дожидается догрузки.
+     */
+    public static ExtendedCandlesRequest buildRequest(List<String> tickers, Settings settings) {
+        return ExtendedCandlesRequest.builder()
+                .timeframe(settings.getTimeframe())
+                .candleLimit((int) settings.getCandleLimit())
+                .minVolume(0.001) //todo для уже торгуемой пары просто обновляем без фильтра по объему - сетим минималку
+                .tickers(tickers)
+                .period(settings.calculateCurrentPeriod())
+                .untilDate(StringUtils.getCurrentDateTimeWithZ())
+                .excludeTickers(null)
+                .exchange("OKX")
+                .useCache(true)
+                .useMinVolumeFilter(true)
+                .minimumLotBlacklist(null)
+                .sorted(true)
+                .strictCompleteness(true)
+                .build();
+    }
+
+    /**
+     * Загружает свечи всех тикеров пар цикла одним запросом.
+     * При ошибке снимок не создается и пары загрузят свечи сами.
+     */
+    public void openCycle(Collection<Pair> pairs, Settings settings) {
+        Set<String> tickers = new TreeSet<>();
+        for (Pair pair : pairs) {
+            tickers.add(pair.getLongTicker());
+            tickers.add(pair.getShortTicker());
+        }
+        if (tickers.isEmpty()) {
+            current = null;
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            Map<String, List<Candle>> candlesMap = loadWindows(tickers, settings);
+
+            Map<String, List<Candle>> frozen = new HashMap<>();
+            if (candlesMap != null) {
+                candlesMap.forEach((ticker, candles) -> {
+                    if (candles != null && !candles.isEmpty()) {
+                        frozen.put(ticker, List.copyOf(candles));
+                    }
+                });
+            }
+            current = new Snapshot(settings.getTimeframe(), (int) settings.getCandleLimit(), frozen);
+
+            log.info("📦 Снимок свечей цикла: {} уникальных тикеров для {} пар загружено за {} мс (получено {})",
+                    tickers.size(), pairs.size(), System.currentTimeMillis() - startTime, frozen.size());
+        } catch (Exception e) {
+            current = null;
+            log.warn("⚠️ Не удалось загрузить снимок свечей цикла ({} тикеров): {} - пары загрузят свечи сами",
+                    tickers.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Окна свечей через инкрементальный протокол; если он недоступен - полный запрос
+     */
+    private Map<String, List<Candle>> loadWindows(Set<String> tickers, Settings settings) {
+        try {
+            return incrementalCandlesService.getWindows(tickers, settings);
+        } catch (Exception e) {
+            log.warn("⚠️ Инкрементальная загрузка свечей не удалась: {} - загружаем окна целиком", e.getMessage());
+            incrementalCandlesService.invalidate();
+            return candlesFeignClient.getValidatedCacheExtended(buildRequest(new ArrayList<>(tickers), settings));
+        }
+    }
+
+    /**
+     * Завершает цикл: снимок больше не отдается
+     */
+    public void closeCycle() {
+        Snapshot snapshot = current;
+        current = null;
+        if (snapshot != null) {
+            log.debug("📦 Снимок свечей цикла закрыт: выдано {}, промахов {}", snapshot.hits.get(), snapshot.misses.get());
+        }
+    }
+
+    /**
+     * Свечи обоих тикеров пары из снимка текущего цикла
+     *
+     * @return тикер -> изменяемая копия списка свечей; пусто, если снимка нет, он собран для других
+     * настроек или в нем нет одного из тикеров
+     */
+    public Optional<Map<String, List<Candle>>> getPairCandles(String longTicker, String shortTicker, Settings settings) {
+        Snapshot snapshot = current;
+        if (snapshot == null
+                || !Objects.equals(snapshot.timeframe, settings.getTimeframe())
+                || snapshot.candleLimit != (int) settings.getCandleLimit()) {
+            return Optional.empty();
+        }
+
+        List<Candle> longCandles = snapshot.candles.get(longTicker);
+        List<Candle> shortCandles = snapshot.candles.get(shortTicker);
+        if (longCandles == null || shortCandles == null) {
+            snapshot.misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        snapshot.hits.incrementAndGet();
+        Map<String, List<Candle>> result = new HashMap<>();
+        result.put(longTicker, new ArrayList<>(longCandles));
+        result.put(shortTicker, new ArrayList<>(shortCandles));
+        return Optional.of(result);
+    }
+
+    private static final class Snapshot {
+        final String timeframe;
+        final int candleLimit;
+        final Map<String, List<Candle>> candles;
+        final AtomicInteger hits = new AtomicInteger();
+        final AtomicInteger misses = new AtomicInteger();
+
+        Snapshot(String timeframe, int candleLimit, Map<String, List<Candle>> candles) {
+            this.timeframe = timeframe;
+            this.candleLimit = candleLimit;
+            this.candles = candles;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.core.services;
+
+import com.example.core.client.CandlesFeignClient;
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandlesDelta;
+import com.example.shared.dto.CandlesDeltaRequest;
+import com.example.shared.models.Settings;
+import com.example.shared.utils.CandlesUtil;
+import com.example.shared.utils.StringUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Инкрементальное обновление окон свечей из candles микросервиса.
+ * <p>
+ * Хранит последнее окно по каждому тикеру и запрашивает только свечи новее последней известной
+ * (validated-cache-delta). Новые свечи дописываются в окно, начало окна отрезается до размера окна
+ * на стороне candles, после чего границы и контрольная сумма сверяются с ответом.
+ * Разошедшиеся окна перезапрашиваются целиком вторым запросом.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IncrementalCandlesService {
+
+    private static final String EXCHANGE = "OKX";
+
+    private final CandlesFeignClient candlesFeignClient;
+
+    private final Map<String, List<Candle>> windows = new HashMap<>();
+    private String windowsProfile; // таймфрейм и период, для которых собраны окна
+
+    /**
+     * Актуальные окна свечей для тикеров
+     *
+     * @return тикер -> неизменяемое окно по возрастанию времени (тикеры, не прошедшие валидацию, отсутствуют)
+     */
+    public synchronized Map<String, List<Candle>> getWindows(Collection<String> tickers, Settings settings) {
+        String period = settings.calculateCurrentPeriod();
+        String profile = settings.getTimeframe() + "|" + period;
+        if (!profile.equals(windowsProfile)) {
+            windows.clear();
+            windowsProfile = profile;
+        }
+
+        Map<String, Long> lastTimestamps = new HashMap<>();
+        for (String ticker : tickers) {
+            List<Candle> window = windows.get(ticker);
+            lastTimestamps.put(ticker, window == null ? null : window.get(window.size() - 1).getTimestamp());
+        }
+
+        Map<String, List<Candle>> result = new HashMap<>();
+        List<String> diverged = applyDeltas(requestDeltas(lastTimestamps, settings.getTimeframe(), period), result);
+
+        if (!diverged.isEmpty()) {
+            log.warn("⚠️ DELTA: окна {} тикеров разошлись с candles - запрашиваем полные окна: {}", diverged.size(), diverged);
+            Map<String, Long> fullRequest = new HashMap<>();
+            diverged.forEach(ticker -> fullRequest.put(ticker, null));
+            applyDeltas(requestDeltas(fullRequest, settings.getTimeframe(), period), result);
+        }
+
+        // Тикеры без ответа не прошли валидацию на стороне candles - их окна больше не актуальны
+        for (String ticker : tickers) {
+            if (!result.containsKey(ticker)) {
+                windows.remove(ticker);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Сбрасывает все окна - следующий запрос загрузит их целиком
+     */
+    public synchronized void invalidate() {
+        windows.clear();
+    }
+
+    private Map<String, CandlesDelta> requestDeltas(Map<String, Long> lastTimestamps, String timeframe, String period) {
+        CandlesDeltaRequest request = CandlesDeltaRequest.builder()
+                .exchange(EXCHANGE)
+                .timeframe(timeframe)
+                .period(period)
+                .untilDate(StringUtils.getCurrentDateTimeWithZ())
+                .lastTimestamps(lastTimestamps)
+                .strictCompleteness(true) // окна открытых пар - ждем догрузку пропусков, как в CycleCandlesSnapshotService.buildRequest
+                .build();
+
+        Map<String, CandlesDelta> deltas = candlesFeignClient.getValidatedCacheDelta(request);
+        return deltas != null ? deltas : Map.of();
+    }
+
+    /**
+     * Применяет дельты к окнам, валидные окна кладет в result
+     *
+     * @return тикеры, окна которых после применения дельты не совпали с candles
+     */
+    private List<String> applyDeltas(Map<String, CandlesDelta> deltas, Map<String, List<Candle>> result) {
+        List<String> diverged = new ArrayList<>();
+        int receivedCandles = 0;
+
+        for (Map.Entry<String, CandlesDelta> entry : deltas.entrySet()) {
+            String ticker = entry.getKey();
+            CandlesDelta delta = entry.getValue();
+            List<Candle> candles = delta.getCandles() != null ? delta.getCandles() : List.of();
+            receivedCandles += candles.size();
+
+            List<Candle> window = delta.isFullWindow() ? candles : appendDelta(windows.get(ticker), candles, delta.getWindowSize());
+            if (window == null || window.isEmpty() || !matches(window, delta)) {
+                windows.remove(ticker);
+                diverged.add(ticker);
+                continue;
+            }
+
+            List<Candle> frozen = List.copyOf(window);
+            windows.put(ticker, frozen);
+            result.put(ticker, frozen);
+        }
+
+        log.debug("📥 DELTA: применено {} дельт, получено {} свечей", deltas.size(), receivedCandles);
+        return diverged;
+    }
+
+    private List<Candle> appendDelta(List<Candle> window, List<Candle> newCandles, int windowSize) {
+        if (window == null) {
+            return null;
+        }
+        List<Candle> merged = new ArrayList<>(window.size() + newCandles.size());
+        merged.addAll(window);
+        merged.addAll(newCandles);
+
+        int from = merged.size() - windowSize;
+        if (from < 0) {
+            return null; // окно на стороне candles больше нашего - дельтой его не восстановить
+        }
+        return merged.subList(from, merged.size());
+    }
+
+    private boolean matches(List<Candle> window, CandlesDelta delta) {
+        return window.size() == delta.getWindowSize()
+                && window.get(0).getTimestamp() == delta.getFirstTimestamp()
+                && window.get(window.size() - 1).getTimestamp() == delta.getLastTimestamp()
+                && CandlesUtil.windowChecksum(window) == delta.getChecksum();
+    }
+}
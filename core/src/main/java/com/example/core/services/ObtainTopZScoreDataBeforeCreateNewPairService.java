@@ -1,9 +1,12 @@
 package com.example.core.services;
 
+import com.example.core.services.chart.PixelSpreadKernel;
 import com.example.core.services.chart.PixelSpreadService;
 import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleSeries;
 import com.example.shared.dto.ZScoreData;
 import com.example.shared.dto.ZScoreParam;
+import com.example.shared.models.Pair;
 import com.example.shared.models.Settings;
 import com.example.shared.utils.NumberFormatter;
 import lombok.Data;
@@ -12,6 +15,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -31,10 +35,54 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
      * - Максимальный скор: сумма всех весов (настраивается)
      */
     public Optional<ZScoreData> getBestZScoreData(Settings settings, List<ZScoreData> dataList, Map<String, List<Candle>> candlesMap) {
-        if (dataList == null || dataList.isEmpty()) {
+        List<PairCandidate> candidates = rankCandidates(settings, dataList, candlesMap);
+        if (candidates.isEmpty()) {
             return Optional.empty();
         }
 
+        PairCandidate best = candidates.get(0);
+        log.debug("🏆 ОБЪЕДИНЕННАЯ СИСТЕМА: Выбрана лучшая пара {}/{} с полным скором {}! Детали: Z-Score={}, Корр={}, P-Value(corr)={}, P-Value(coint)={}, R²={}",
+                best.getData().getUnderValuedTicker(),
+                best.getData().getOverValuedTicker(),
+                NumberFormatter.format(best.getCompositeScore(), 2),
+                NumberFormatter.format(best.getZScore(), 2),
+                NumberFormatter.format(best.getCorrelation(), 3),
+                NumberFormatter.format(best.getPValue(), 4),
+                NumberFormatter.format(best.getAdfValue(), 4),
+                NumberFormatter.format(best.getRSquared(), 3)
+        );
+
+        // Логируем топ-3 для анализа
+        logTopCandidates(candidates);
+
+        return Optional.of(best.getData());
+    }
+
+    /**
+     * Все прошедшие фильтрацию пары по убыванию композитного скора (для отбора топ-N пар).
+     * <p>
+     * Каждая пара фильтруется и оценивается один раз, дальше ZScoreService берет пары сверху списка
+     * с уникальными тикерами - без повторной оценки оставшихся пар на каждой итерации отбора.
+     */
+    public List<ZScoreData> rankZScoreData(Settings settings, List<ZScoreData> dataList, Map<String, List<Candle>> candlesMap) {
+        List<PairCandidate> candidates = rankCandidates(settings, dataList, candlesMap);
+        if (!candidates.isEmpty()) {
+            logTopCandidates(candidates);
+        }
+        return candidates.stream()
+                .map(PairCandidate::getData)
+                .toList();
+    }
+
+    /**
+     * Фильтрация и оценка кандидатов за один проход: скор каждой пары считается один раз (параллельно),
+     * существующие пары для пиксельного спреда читаются одним запросом
+     */
+    private List<PairCandidate> rankCandidates(Settings settings, List<ZScoreData> dataList, Map<String, List<Candle>> candlesMap) {
+        if (dataList == null || dataList.isEmpty()) {
+            return Collections.emptyList();
+        }
+
         log.debug("🎯 ОБЪЕДИНЕННАЯ СИСТЕМА: Фильтруем и выбираем лучшую пару из {} кандидатов за один проход!", dataList.size());
 
         // Сначала фильтруем данные (встроенная фильтрация)
@@ -50,11 +98,8 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
                         data.getUnderValuedTicker(), data.getOverValuedTicker(), reason);
             } else {
                 filteredList.add(data);
-                // Рассчитываем качественный скор для лога
-                double qualityScore = calculatePairQualityScore(data, settings, candlesMap);
-                log.debug("📊 Пара {}/{} прошла фильтрацию. Качественный скор: {}",
-                        data.getUnderValuedTicker(), data.getOverValuedTicker(),
-                        NumberFormatter.format(qualityScore, 2));
+                log.debug("📊 Пара {}/{} прошла фильтрацию",
+                        data.getUnderValuedTicker(), data.getOverValuedTicker());
             }
         }
 
@@ -66,43 +111,31 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
 
         if (filteredList.isEmpty()) {
             log.debug("❌ Нет подходящих пар после фильтрации");
-            return Optional.empty();
+            return Collections.emptyList();
         }
 
-        // Теперь оцениваем отфильтрованные пары
-        List<PairCandidate> candidates = new ArrayList<>();
+        // Теперь оцениваем отфильтрованные пары. Скоринг читает только свечи и уже загруженные пары - считаем параллельно
+        Map<String, Pair> existingPairs = pairService.findTradingPairsByTickers();
+        long startNanos = System.nanoTime();
 
-        for (ZScoreData z : filteredList) {
-            PairCandidate candidate = evaluatePair(z, settings, candlesMap);
-            if (candidate != null) {
-                candidates.add(candidate);
-            }
-        }
+        List<PairCandidate> candidates = filteredList.parallelStream()
+                .map(z -> evaluatePair(z, settings, candlesMap, existingPairs))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        double elapsedMs = (System.nanoTime() - startNanos) / 1_000_000.0;
+        log.debug("⏱️ Оценено {} пар за {} мс ({} пар/с)", filteredList.size(),
+                NumberFormatter.format(elapsedMs, 1),
+                NumberFormatter.format(elapsedMs > 0 ? filteredList.size() * 1000.0 / elapsedMs : 0.0, 0));
 
         if (candidates.isEmpty()) {
             log.debug("❌ Нет подходящих пар после оценки");
-            return Optional.empty();
+            return Collections.emptyList();
         }
 
         // Сортируем по композитному скору (лучший первый)
         candidates.sort(Comparator.comparingDouble(PairCandidate::getCompositeScore).reversed());
-
-        PairCandidate best = candidates.get(0);
-        log.debug("🏆 ОБЪЕДИНЕННАЯ СИСТЕМА: Выбрана лучшая пара {}/{} с полным скором {}! Детали: Z-Score={}, Корр={}, P-Value(corr)={}, P-Value(coint)={}, R²={}",
-                best.getData().getUnderValuedTicker(),
-                best.getData().getOverValuedTicker(),
-                NumberFormatter.format(best.getCompositeScore(), 2),
-                NumberFormatter.format(best.getZScore(), 2),
-                NumberFormatter.format(best.getCorrelation(), 3),
-                NumberFormatter.format(best.getPValue(), 4),
-                NumberFormatter.format(best.getAdfValue(), 4),
-                NumberFormatter.format(best.getRSquared(), 3)
-        );
-
-        // Логируем топ-3 для анализа
-        logTopCandidates(candidates);
-
-        return Optional.of(best.getData());
+        return candidates;
     }
 
     /**
@@ -110,7 +143,8 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
      * Упрощенный метод - вся логика скоринга в FilterIncompleteZScoreParamsServiceV2
      * ДОБАВЛЕНА ПРОВЕРКА на минимальный Z-Score
      */
-    private PairCandidate evaluatePair(ZScoreData z, Settings settings, Map<String, List<Candle>> candlesMap) {
+    private PairCandidate evaluatePair(ZScoreData z, Settings settings, Map<String, List<Candle>> candlesMap,
+                                       Map<String, Pair> existingPairs) {
         List<ZScoreParam> params = z.getZScoreHistory();
 
         double zVal, pValue, adf, corr, rSquared;
@@ -141,7 +175,7 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
         // ====== ПОЛНЫЙ КАЛКУЛЯТОР СКОРА с ПИКСЕЛЬНЫМ СПРЕДОМ ======
         // Используем полную систему скоринга с настраиваемыми весами включая пиксельный спред!
 
-        double fullQualityScore = calculatePairQualityScore(z, settings, candlesMap);
+        double fullQualityScore = calculatePairQualityScore(z, settings, candlesMap, existingPairs);
 
         return new PairCandidate(z, fullQualityScore, zVal, corr, adf, pValue, rSquared);
     }
@@ -353,6 +387,14 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
      * Рассчитывает качественный скор пары с КОНФИГУРИРУЕМЫМИ ВЕСАМИ из Settings
      */
     public double calculatePairQualityScore(ZScoreData data, Settings settings, Map<String, List<Candle>> candlesMap) {
+        return calculatePairQualityScore(data, settings, candlesMap, null);
+    }
+
+    /**
+     * existingPairs - заранее загруженные пары по ключу "tickerA/tickerB", null - искать пару в БД
+     */
+    private double calculatePairQualityScore(ZScoreData data, Settings settings, Map<String, List<Candle>> candlesMap,
+                                             Map<String, Pair> existingPairs) {
         double totalScore = 0.0;
         List<ZScoreParam> params = data.getZScoreHistory();
         String pairName = data.getUnderValuedTicker() + "/" + data.getOverValuedTicker();
@@ -371,7 +413,7 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
 
         // ====== 2. ПИКСЕЛЬНЫЙ СПРЕД (настраиваемый вес, высокий приоритет!) ======
         if (settings.isUsePixelSpreadScoring()) {
-            double pixelSpreadScore = calculatePixelSpreadScoreComponent(data, settings, candlesMap);
+            double pixelSpreadScore = calculatePixelSpreadScoreComponent(data, settings, candlesMap, existingPairs);
             totalScore += pixelSpreadScore;
             log.debug("  📏 Пиксельный спред: {} очков (вес={})",
                     NumberFormatter.format(pixelSpreadScore, 1), settings.getPixelSpreadScoringWeight());
@@ -416,16 +458,18 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
     /**
      * Расчет скора пиксельного спреда (НОВАЯ ВЕРСИЯ: с расчетом из candlesMap и волатильностью)
      */
-    private double calculatePixelSpreadScoreComponent(ZScoreData data, Settings settings, Map<String, List<Candle>> candlesMap) {
+    private double calculatePixelSpreadScoreComponent(ZScoreData data, Settings settings, Map<String, List<Candle>> candlesMap,
+                                                      Map<String, Pair> existingPairs) {
         try {
             String longTicker = data.getUnderValuedTicker();  // undervalued = long
             String shortTicker = data.getOverValuedTicker(); // overvalued = short
 
             // Сначала пробуем найти существующую PairData (старая логика)
-            var existingPairs = pairService.findByTickers(longTicker, shortTicker);
+            Pair pairData = existingPairs != null
+                    ? existingPairs.get(longTicker + "/" + shortTicker)
+                    : pairService.findByTickers(longTicker, shortTicker).stream().findFirst().orElse(null);
 
-            if (!existingPairs.isEmpty()) {
-                var pairData = existingPairs.get(0);
+            if (pairData != null) {
 
                 // Получаем статистику пиксельного спреда из существующей пары
                 double avgSpread = pixelSpreadService.getAveragePixelSpread(pairData);
@@ -662,16 +706,20 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
                     longCandles.size(), shortCandles.size());
 
             // Используем PixelSpreadService для правильного расчета пиксельного спреда по всем свечам
-            List<Double> pixelSpreads = calculatePixelSpreadHistoryFromCandles(longCandles, shortCandles);
+            double[] pixelSpreads = calculatePixelSpreadHistoryFromCandles(longCandles, shortCandles);
 
-            if (pixelSpreads.size() < 10) {
-                log.debug("    🎯 Недостаточно данных для анализа волатильности ({} точек)", pixelSpreads.size());
+            if (pixelSpreads.length < 10) {
+                log.debug("    🎯 Недостаточно данных для анализа волатильности ({} точек)", pixelSpreads.length);
                 return 0.0;
             }
 
             // Определяем диапазоны для анализа циклов
-            double minSpread = pixelSpreads.stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-            double maxSpread = pixelSpreads.stream().mapToDouble(Double::doubleValue).max().orElse(0.0);
+            double minSpread = Double.POSITIVE_INFINITY;
+            double maxSpread = Double.NEGATIVE_INFINITY;
+            for (double spread : pixelSpreads) {
+                minSpread = Math.min(minSpread, spread);
+                maxSpread = Math.max(maxSpread, spread);
+            }
 
             if (maxSpread - minSpread < 50) {
                 log.debug("    🎯 Низкая волатильность пиксельного спреда: диапазон {}px", String.format("%.1f", maxSpread - minSpread));
@@ -679,7 +727,7 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
             }
 
             log.debug("    🎯 Диапазон пиксельного спреда: {}-{}px на {} точках",
-                    String.format("%.1f", minSpread), String.format("%.1f", maxSpread), pixelSpreads.size());
+                    String.format("%.1f", minSpread), String.format("%.1f", maxSpread), pixelSpreads.length);
 
             // Анализируем циклы между низким (10% от диапазона) и высоким (90% от диапазона)
             double lowThreshold = minSpread + (maxSpread - minSpread) * 0.1;   // 10% от диапазона
@@ -733,117 +781,17 @@ public class ObtainTopZScoreDataBeforeCreateNewPairService {
      * Вычисляет историю пиксельного спреда из свечей, используя логику PixelSpreadService
      * Но без создания PairData (упрощенная версия для анализа волатильности)
      */
-    private List<Double> calculatePixelSpreadHistoryFromCandles(List<Candle> longCandles, List<Candle> shortCandles) {
-        List<Double> pixelSpreads = new ArrayList<>();
+    private double[] calculatePixelSpreadHistoryFromCandles(List<Candle> longCandles, List<Candle> shortCandles) {
+        // Колонки времени и цен, отсортированные по времени
+        CandleSeries longSeries = CandleSeries.of(longCandles);
+        CandleSeries shortSeries = CandleSeries.of(shortCandles);
 
-        // Сортировка по времени
-        List<Candle> sortedLongCandles = new ArrayList<>(longCandles);
-        List<Candle> sortedShortCandles = new ArrayList<>(shortCandles);
-        sortedLongCandles.sort(Comparator.comparing(Candle::getTimestamp));
-        sortedShortCandles.sort(Comparator.comparing(Candle::getTimestamp));
-
-        // Извлекаем цены и времена
-        List<Date> longTimes = sortedLongCandles.stream().map(c -> new Date(c.getTimestamp())).toList();
-        List<Double> longPrices = sortedLongCandles.stream().map(Candle::getClose).toList();
-
-        List<Date> shortTimes = sortedShortCandles.stream().map(c -> new Date(c.getTimestamp())).toList();
-        List<Double> shortPrices = sortedShortCandles.stream().map(Candle::getClose).toList();
-
-        // Найти диапазон цен для нормализации (как в PixelSpreadService)
-        double minLongPrice = longPrices.stream().min(Double::compareTo).orElse(0.0);
-        double maxLongPrice = longPrices.stream().max(Double::compareTo).orElse(1.0);
-        double longPriceRange = maxLongPrice - minLongPrice;
-
-        double minShortPrice = shortPrices.stream().min(Double::compareTo).orElse(0.0);
-        double maxShortPrice = shortPrices.stream().max(Double::compareTo).orElse(1.0);
-        double shortPriceRange = maxShortPrice - minShortPrice;
-
-        if (longPriceRange == 0.0 || shortPriceRange == 0.0) {
-            return pixelSpreads; // Возвращаем пустой список
+        if (longSeries.maxClose() - longSeries.minClose() == 0.0 || shortSeries.maxClose() - shortSeries.minClose() == 0.0) {
+            return new double[0];
         }
 
-        // Используем стандартный диапазон Z-Score для нормализации (как в PixelSpreadService)
-        double minZScore = -3.0;
-        double maxZScore = 3.0;
-        double zRange = maxZScore - minZScore;
-
-        // Нормализация long цен в диапазон Z-Score
-        List<Double> scaledLongPrices = longPrices.stream()
-                .map(price -> minZScore + ((price - minLongPrice) / longPriceRange) * zRange)
-                .toList();
-
-        // Нормализация short цен в диапазон Z-Score  
-        List<Double> scaledShortPrices = shortPrices.stream()
-                .map(price -> minZScore + ((price - minShortPrice) / shortPriceRange) * zRange)
-                .toList();
-
-        // Создаем синхронизированные временные точки (как в PixelSpreadService)
-        Set<Long> allTimestamps = new HashSet<>();
-        longTimes.forEach(date -> allTimestamps.add(date.getTime()));
-        shortTimes.forEach(date -> allTimestamps.add(date.getTime()));
-
-        List<Long> sortedTimestamps = allTimestamps.stream().sorted().toList();
-
-        // Константы как в PixelSpreadService
-        int chartHeight = 720;
-
-        // Находим диапазон масштабированных значений
-        double minValue = Math.min(
-                scaledLongPrices.stream().min(Double::compareTo).orElse(-3.0),
-                scaledShortPrices.stream().min(Double::compareTo).orElse(-3.0)
-        );
-        double maxValue = Math.max(
-                scaledLongPrices.stream().max(Double::compareTo).orElse(3.0),
-                scaledShortPrices.stream().max(Double::compareTo).orElse(3.0)
-        );
-
-        // Вычисляем пиксельное расстояние для всех временных точек (как в PixelSpreadService)
-        for (Long timestamp : sortedTimestamps) {
-            Double longPrice = findNearestPriceForVolatility(longTimes, scaledLongPrices, timestamp);
-            Double shortPrice = findNearestPriceForVolatility(shortTimes, scaledShortPrices, timestamp);
-
-            if (longPrice != null && shortPrice != null) {
-                double longPixelY = convertValueToPixelForVolatility(longPrice, minValue, maxValue, chartHeight);
-                double shortPixelY = convertValueToPixelForVolatility(shortPrice, minValue, maxValue, chartHeight);
-                double pixelDistance = Math.abs(longPixelY - shortPixelY);
-                pixelSpreads.add(pixelDistance);
-            }
-        }
-
-        return pixelSpreads;
-    }
-
-    /**
-     * Находит ближайшую цену для заданного времени (копия метода из PixelSpreadService)
-     */
-    private Double findNearestPriceForVolatility(List<Date> timeAxis, List<Double> prices, long targetTimestamp) {
-        if (timeAxis.isEmpty() || prices.isEmpty()) return null;
-
-        int bestIndex = 0;
-        long bestDiff = Math.abs(timeAxis.get(0).getTime() - targetTimestamp);
-
-        for (int i = 1; i < timeAxis.size(); i++) {
-            long diff = Math.abs(timeAxis.get(i).getTime() - targetTimestamp);
-            if (diff < bestDiff) {
-                bestDiff = diff;
-                bestIndex = i;
-            }
-        }
-
-        return prices.get(bestIndex);
-    }
-
-    /**
-     * Конвертирует значение в пиксельную координату Y (копия метода из PixelSpreadService)
-     */
-    private double convertValueToPixelForVolatility(double value, double minValue, double maxValue, int chartHeight) {
-        if (maxValue - minValue == 0) return chartHeight / 2.0;
-
-        // Нормализуем значение в диапазон [0, 1]
-        double normalized = (value - minValue) / (maxValue - minValue);
-
-        // Конвертируем в пиксели (Y=0 вверху, Y=chartHeight внизу)
-        return chartHeight - (normalized * chartHeight);
+        // Стандартный диапазон Z-Score [-3, 3] и высота чарта как в PixelSpreadService
+        return PixelSpreadKernel.distances(longSeries, shortSeries, -3.0, 3.0, 720);
     }
 
     /**
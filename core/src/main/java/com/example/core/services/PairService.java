@@ -2,8 +2,10 @@ package com.example.core.services;
 
 import com.example.core.client.CandlesFeignClient;
 import com.example.core.experemental.stability.dto.StabilityResponseDto;
+import com.example.core.repositories.PairHistoryRepository;
 import com.example.core.repositories.PairRepository;
 import com.example.core.services.chart.ChartService;
+import com.example.core.services.zscore.ZScoreEngineService;
 import com.example.shared.dto.*;
 import com.example.shared.enums.PairType;
 import com.example.shared.enums.TradeStatus;
@@ -30,6 +32,7 @@ import java.util.stream.Stream;
 @RequiredArgsConstructor
 public class PairService {
     private final PairRepository pairRepository;
+    private final PairHistoryRepository pairHistoryRepository;
     private final CalculateChangesService calculateChangesServiceImpl;
     private final EntryPointService entryPointService;
     private final UpdateZScoreDataCurrentService updateZScoreDataCurrentService;
@@ -42,7 +45,7 @@ public class PairService {
     private final SearchStablePairService searchStablePairService;
     private final CandlesFeignClient candlesFeignClient;
     private final SettingsService settingsService;
-    private final PythonAnalysisService pythonAnalysisService;
+    private final ZScoreEngineService zScoreEngineService;
     private final ChartService chartService;
     private final StablePairsScreenerSettingsService stablePairsScreenerSettingsService;
     private final StablePairsService stablePairsService;
@@ -173,8 +176,8 @@ public class PairService {
             tradingPair.setShortTickerCandles(shortCandles);
 
             // Рассчитываем Z-Score данные
-            log.debug("🔍 Вызываем pythonAnalysisService.calculateZScoreData для пары {}", stablePair.getPairName());
-            ZScoreData zScoreData = pythonAnalysisService.calculateZScoreData(settings, candlesMap);
+            log.debug("🔍 Вызываем zScoreEngineService.calculateZScoreData для пары {}", stablePair.getPairName());
+            ZScoreData zScoreData = zScoreEngineService.calculateZScoreData(settings, candlesMap);
             log.debug("📊 Результат calculateZScoreData для пары {}: {}", stablePair.getPairName(), zScoreData != null ? "OK" : "NULL");
 
             if (zScoreData != null) {
@@ -397,14 +400,18 @@ public class PairService {
         updateZScoreDataCurrentService.updateCurrent(pair, zScoreData);
     }
 
+    @Transactional
     public void save(Pair pair) {
         pair.setUpdatedTime(LocalDateTime.now()); //перед сохранением обновляем время
         pairRepository.save(pair);
+        pairHistoryRepository.save(pair); // дописываем новые точки истории и свечи
     }
 
+    @Transactional
     public void saveAll(List<Pair> tradingPairList) {
         tradingPairList.forEach(pairData -> pairData.setUpdatedTime(LocalDateTime.now()));
         pairRepository.saveAll(tradingPairList);
+        pairHistoryRepository.saveAll(tradingPairList);
     }
 
     public Pair findById(Long id) {
@@ -436,6 +443,39 @@ public class PairService {
         return pairRepository.findTradedPairsByStatusOrderByUpdatedTime(TradeStatus.ERROR);
     }
 
+    // Строки списков для таблиц UI: без загрузки пар, полная пара - через findById при открытии чарта или действии
+
+    public List<PairListItem> findListItemsByStatusOrderByEntryTimeDesc(TradeStatus status) {
+        return pairRepository.findInTradingListItemsByStatus(status);
+    }
+
+    public List<PairListItem> findListItemsByStatusOrderByUpdatedTimeDesc(TradeStatus status) {
+        if (status == TradeStatus.CLOSED) {
+            return pairRepository.findAllClosedListItemsByStatus(status);
+        }
+        return pairRepository.findInTradingListItemsByStatus(status);
+    }
+
+    public List<PairListItem> findTradedErrorListItems() {
+        return pairRepository.findTradedListItemsByStatusOrderByUpdatedTime(TradeStatus.ERROR);
+    }
+
+    public int countByStatus(TradeStatus status) {
+        return pairRepository.countByTypeAndStatus(PairType.IN_TRADING, status);
+    }
+
+    /**
+     * Тикеры (long и short) пар в активной торговле по статусу
+     */
+    public List<String> findTickersByStatus(TradeStatus status) {
+        List<String> tickers = new ArrayList<>();
+        for (Object[] row : pairRepository.findInTradingTickersByStatus(status)) {
+            tickers.add((String) row[0]);
+            tickers.add((String) row[1]);
+        }
+        return tickers;
+    }
+
     public List<Pair> findAllByStatusIn(List<TradeStatus> statuses) {
         List<Pair> result = new ArrayList<>();
         for (TradeStatus status : statuses) {
@@ -451,6 +491,17 @@ public class PairService {
                 .toList();
     }
 
+    /**
+     * Пары типа TRADING по ключу "tickerA/tickerB" одним запросом (вместо findByTickers на каждую пару при скоринге)
+     */
+    public Map<String, Pair> findTradingPairsByTickers() {
+        Map<String, Pair> result = new HashMap<>();
+        for (Pair pair : pairRepository.findTradingPairs()) {
+            result.putIfAbsent(pair.getTickerA() + "/" + pair.getTickerB(), pair);
+        }
+        return result;
+    }
+
     @Transactional
     public int deleteAllByStatus(TradeStatus status) {
         return pairRepository.deleteByTypeAndStatus(PairType.TRADING, status);
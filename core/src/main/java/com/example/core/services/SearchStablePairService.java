@@ -11,6 +11,7 @@ import com.example.shared.dto.ExtendedCandlesRequest;
 import com.example.shared.models.Pair;
 import com.example.shared.models.Settings;
 import com.example.shared.services.TimeframeAndPeriodService;
+import com.example.shared.utils.CandleSeriesValidator;
 import com.example.shared.utils.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +20,7 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.function.LongUnaryOperator;
 
 /**
  * Сервис для работы с унифицированной моделью Pair
@@ -169,42 +171,43 @@ public class SearchStablePairService {
         String referenceTicker = candlesMap.containsKey("BTC-USDT-SWAP") ?
                 "BTC-USDT-SWAP" : candlesMap.keySet().iterator().next();
 
-        List<Candle> referenceCandles = candlesMap.get(referenceTicker);
-        int referenceCount = referenceCandles.size();
-        long referenceStart = referenceCandles.get(0).getTimestamp();
-        long referenceEnd = referenceCandles.get(referenceCandles.size() - 1).getTimestamp();
+        CandleSeriesValidator.Reference reference =
+                CandleSeriesValidator.Reference.of(candlesMap.get(referenceTicker), LongUnaryOperator.identity());
 
         log.debug("🎯 ЭТАЛОН: {} - {} свечей, {}-{}",
-                referenceTicker, referenceCount,
-                formatTimestamp(referenceStart), formatTimestamp(referenceEnd));
+                referenceTicker, reference.count(),
+                formatTimestamp(reference.first()), formatTimestamp(reference.last()));
+
+        // Проверяем все тикеры на соответствие эталону одним проходом
+        CandleSeriesValidator.Report report =
+                CandleSeriesValidator.validateAgainstReference(candlesMap, reference, LongUnaryOperator.identity());
 
         Map<String, List<Candle>> validatedCandles = new HashMap<>();
         List<String> invalidTickers = new ArrayList<>();
 
-        // Проверяем каждый тикер на соответствие эталону
-        for (Map.Entry<String, List<Candle>> entry : candlesMap.entrySet()) {
-            String ticker = entry.getKey();
-            List<Candle> candles = entry.getValue();
-
-            if (candles.size() == referenceCount &&
-                    candles.get(0).getTimestamp() == referenceStart &&
-                    candles.get(candles.size() - 1).getTimestamp() == referenceEnd) {
+        for (int i = 0; i < report.size(); i++) {
+            String ticker = report.tickers().get(i);
 
-                validatedCandles.put(ticker, candles);
+            if (report.isValid(i)) {
+                validatedCandles.put(ticker, candlesMap.get(ticker));
             } else {
                 // Формируем детальное описание только для различающихся параметров
                 List<String> differences = new ArrayList<>();
+                int mismatches = report.mismatches(i);
 
-                if (candles.size() != referenceCount) {
-                    differences.add(String.format("свечей:%d≠%d", candles.size(), referenceCount));
+                if ((mismatches & CandleSeriesValidator.MISMATCH_EMPTY) != 0) {
+                    differences.add("пустой");
+                }
+                if ((mismatches & CandleSeriesValidator.MISMATCH_COUNT) != 0) {
+                    differences.add(String.format("свечей:%d≠%d", report.count(i), reference.count()));
                 }
-                if (candles.get(0).getTimestamp() != referenceStart) {
+                if ((mismatches & CandleSeriesValidator.MISMATCH_FIRST) != 0) {
                     differences.add(String.format("начало:%s≠%s",
-                            formatTimestamp(candles.get(0).getTimestamp()), formatTimestamp(referenceStart)));
+                            formatTimestamp(report.firstTimestamp(i)), formatTimestamp(reference.first())));
                 }
-                if (candles.get(candles.size() - 1).getTimestamp() != referenceEnd) {
+                if ((mismatches & CandleSeriesValidator.MISMATCH_LAST) != 0) {
                     differences.add(String.format("конец:%s≠%s",
-                            formatTimestamp(candles.get(candles.size() - 1).getTimestamp()), formatTimestamp(referenceEnd)));
+                            formatTimestamp(report.lastTimestamp(i)), formatTimestamp(reference.last())));
                 }
 
                 String reason = !differences.isEmpty() ?
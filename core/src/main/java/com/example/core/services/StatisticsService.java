@@ -1,291 +1,169 @@
 package com.example.core.services;
 
-import com.example.core.repositories.TradeHistoryRepository;
+import com.example.core.repositories.TradeStatisticsRepository;
+import com.example.core.repositories.TradeStatisticsRepository.ExitReasonCount;
+import com.example.core.repositories.TradeStatisticsRepository.UnrealizedProfit;
 import com.example.shared.dto.PairAggregatedStatisticsDto;
 import com.example.shared.dto.TradePairsStatisticsDto;
 import com.example.shared.enums.TradeStatus;
 import com.example.shared.models.Pair;
-import com.example.shared.utils.TimeFormatterUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Статистика трейдов для страницы статистики.
+ * <p>
+ * Агрегаты считаются в БД (TradeStatisticsRepository) и кэшируются: итоги по закрытым трейдам,
+ * ошибкам и причинам выхода пересчитываются только после смены статуса пары (новый трейд, закрытие, ошибка)
+ * или смены дня, статистика по парам обновляется точечно - пересчетом группы закрытой пары.
+ * На каждый запрос считается только нереализованный профит открытых пар.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StatisticsService {
 
-    private final TradeHistoryRepository tradeHistoryRepository;
-    private final PairService pairService;
-    private final TradeHistoryService tradeHistoryService;
-
-    public TradePairsStatisticsDto collectStatistics() {
-        BigDecimal unrealizedProfitUSDTToday = pairService.findAllByStatusOrderByEntryTimeTodayDesc(TradeStatus.TRADING).stream()
-                .map(Pair::getProfitUSDTChanges)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal unrealizedProfitUSDTTotal = pairService.findAllByStatusOrderByEntryTimeDesc(TradeStatus.TRADING).stream()
-                .map(Pair::getProfitUSDTChanges)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal unrealizedProfitPercentToday = pairService.findAllByStatusOrderByEntryTimeTodayDesc(TradeStatus.TRADING).stream()
-                .map(Pair::getProfitPercentChanges)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal unrealizedProfitPercentTotal = pairService.findAllByStatusOrderByEntryTimeDesc(TradeStatus.TRADING).stream()
-                .map(Pair::getProfitPercentChanges)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal realizedProfitUSDTToday = Optional.ofNullable(tradeHistoryService.getSumRealizedProfitUSDTToday()).orElse(BigDecimal.ZERO);
-        BigDecimal realizedProfitUSDTTotal = Optional.ofNullable(tradeHistoryService.getSumRealizedProfitUSDTTotal()).orElse(BigDecimal.ZERO);
-
-        BigDecimal realizedProfitPercentToday = Optional.ofNullable(tradeHistoryService.getSumRealizedProfitPercentToday()).orElse(BigDecimal.ZERO);
-        BigDecimal realizedProfitPercentTotal = Optional.ofNullable(tradeHistoryService.getSumRealizedProfitPercentTotal()).orElse(BigDecimal.ZERO);
-
-        BigDecimal combinedProfitUSDTToday = unrealizedProfitUSDTToday.add(realizedProfitUSDTToday);
-        BigDecimal combinedProfitUSDTTotal = unrealizedProfitUSDTTotal.add(realizedProfitUSDTTotal);
-
-        BigDecimal combinedProfitPercentToday = unrealizedProfitPercentToday.add(realizedProfitPercentToday);
-        BigDecimal combinedProfitPercentTotal = unrealizedProfitPercentTotal.add(realizedProfitPercentTotal);
-
-        return TradePairsStatisticsDto.builder()
-
-                .tradePairsWithErrorToday(tradeHistoryRepository.getByStatusForToday(TradeStatus.ERROR.name()))
-                .tradePairsWithErrorTotal(tradeHistoryRepository.getByStatusTotal(TradeStatus.ERROR))
-
-                .tradePairsToday(tradeHistoryRepository.getTradesToday())
-                .tradePairsTotal(tradeHistoryRepository.getTradesTotal())
-
-                .avgProfitUSDTToday(tradeHistoryRepository.getAvgProfitUSDTToday())
-                .avgProfitUSDTTotal(tradeHistoryRepository.getAvgProfitUSDTTotal())
-
-                .avgProfitPercentToday(tradeHistoryRepository.getAvgProfitPercentToday())
-                .avgProfitPercentTotal(tradeHistoryRepository.getAvgProfitPercentTotal())
-
-                .sumProfitUSDTToday(tradeHistoryRepository.getSumProfitUSDTToday())
-                .sumProfitUSDTTotal(tradeHistoryRepository.getSumProfitUSDTTotal())
+    private final TradeStatisticsRepository tradeStatisticsRepository;
 
-                .sumProfitPercentToday(tradeHistoryRepository.getSumProfitPercentToday())
-                .sumProfitPercentTotal(tradeHistoryRepository.getSumProfitPercentTotal())
+    // Итоги без нереализованного профита. totalsVersion растет при смене статуса пары:
+    // итоги, посчитанные до смены, считаются устаревшими
+    private volatile TradeTotalsSnapshot tradeTotals;
+    private final AtomicLong totalsVersion = new AtomicLong();
 
-                .exitByStopToday(tradeHistoryRepository.getByExitReasonForToday(ExitReasonType.EXIT_REASON_BY_STOP.name()))
-                .exitByStopTotal(tradeHistoryRepository.getAllByExitReason(ExitReasonType.EXIT_REASON_BY_STOP.name()))
+    // Статистика закрытых трейдов по pair_name
+    private final Map<String, PairAggregatedStatisticsDto> closedPairStatistics = new ConcurrentHashMap<>();
+    private volatile boolean closedPairStatisticsLoaded;
 
-                .exitByTakeToday(tradeHistoryRepository.getByExitReasonForToday(ExitReasonType.EXIT_REASON_BY_TAKE.name()))
-                .exitByTakeTotal(tradeHistoryRepository.getAllByExitReason(ExitReasonType.EXIT_REASON_BY_TAKE.name()))
-
-                .exitByZMinToday(tradeHistoryRepository.getByExitReasonForToday(ExitReasonType.EXIT_REASON_BY_Z_MIN.name()))
-                .exitByZMinTotal(tradeHistoryRepository.getAllByExitReason(ExitReasonType.EXIT_REASON_BY_Z_MIN.name()))
-
-                .exitByZMaxToday(tradeHistoryRepository.getByExitReasonForToday(ExitReasonType.EXIT_REASON_BY_Z_MAX.name()))
-                .exitByZMaxTotal(tradeHistoryRepository.getAllByExitReason(ExitReasonType.EXIT_REASON_BY_Z_MAX.name()))
-
-                .exitByTimeToday(tradeHistoryRepository.getByExitReasonForToday(ExitReasonType.EXIT_REASON_BY_TIME.name()))
-                .exitByTimeTotal(tradeHistoryRepository.getAllByExitReason(ExitReasonType.EXIT_REASON_BY_TIME.name()))
-
-                .exitByBreakevenToday(tradeHistoryRepository.getByExitReasonForToday(ExitReasonType.EXIT_REASON_BY_BREAKEVEN.name()))
-                .exitByBreakevenTotal(tradeHistoryRepository.getAllByExitReason(ExitReasonType.EXIT_REASON_BY_BREAKEVEN.name()))
-
-                .exitByNegativeZMinProfitToday(tradeHistoryRepository.getByExitReasonForToday(ExitReasonType.EXIT_REASON_BY_NEGATIVE_Z_MIN_PROFIT.name()))
-                .exitByNegativeZMinProfitTotal(tradeHistoryRepository.getAllByExitReason(ExitReasonType.EXIT_REASON_BY_NEGATIVE_Z_MIN_PROFIT.name()))
-
-                .exitByManuallyToday(tradeHistoryRepository.getByExitReasonForToday(ExitReasonType.EXIT_REASON_MANUALLY.name()))
-                .exitByManuallyTotal(tradeHistoryRepository.getAllByExitReason(ExitReasonType.EXIT_REASON_MANUALLY.name()))
-
-
-                .sumProfitUnrealizedUSDTToday(unrealizedProfitUSDTToday)
-                .sumProfitUnrealizedUSDTTotal(unrealizedProfitUSDTTotal)
-
-                .sumProfitUnrealizedPercentToday(unrealizedProfitPercentToday)
-                .sumProfitUnrealizedPercentTotal(unrealizedProfitPercentTotal)
-
-                .sumProfitRealizedUSDTToday(realizedProfitUSDTToday)
-                .sumProfitRealizedUSDTTotal(realizedProfitUSDTTotal)
-
-                .sumProfitRealizedPercentToday(realizedProfitPercentToday)
-                .sumProfitRealizedPercentTotal(realizedProfitPercentTotal)
-
-                .sumProfitCombinedUSDTToday(combinedProfitUSDTToday)
-                .sumProfitCombinedUSDTTotal(combinedProfitUSDTTotal)
-
-                .sumProfitCombinedPercentToday(combinedProfitPercentToday)
-                .sumProfitCombinedPercentTotal(combinedProfitPercentTotal)
+    private record TradeTotalsSnapshot(LocalDate day, long version, TradePairsStatisticsDto stats) {
+    }
 
+    public TradePairsStatisticsDto collectStatistics() {
+        LocalDate today = LocalDate.now();
+        TradePairsStatisticsDto totals = getTradeTotals(today);
+
+        // Нереализованный профит меняется на каждом обновлении трейдов - не кэшируем
+        UnrealizedProfit unrealized = tradeStatisticsRepository.findUnrealizedProfit(today.atStartOfDay());
+
+        return totals.toBuilder()
+                .sumProfitUnrealizedUSDTToday(unrealized.usdtToday())
+                .sumProfitUnrealizedUSDTTotal(unrealized.usdtTotal())
+                .sumProfitUnrealizedPercentToday(unrealized.percentToday())
+                .sumProfitUnrealizedPercentTotal(unrealized.percentTotal())
+                .sumProfitCombinedUSDTToday(unrealized.usdtToday().add(totals.getSumProfitRealizedUSDTToday()))
+                .sumProfitCombinedUSDTTotal(unrealized.usdtTotal().add(totals.getSumProfitRealizedUSDTTotal()))
+                .sumProfitCombinedPercentToday(unrealized.percentToday().add(totals.getSumProfitRealizedPercentToday()))
+                .sumProfitCombinedPercentTotal(unrealized.percentTotal().add(totals.getSumProfitRealizedPercentTotal()))
                 .build();
     }
 
     public List<PairAggregatedStatisticsDto> getClosedPairsAggregatedStatistics() {
         try {
-            List<Pair> closedPairs = pairService.findAllByStatusOrderByUpdatedTimeDesc(TradeStatus.CLOSED);
-
-            Map<String, List<Pair>> pairGroups = closedPairs.stream()
-                    .collect(Collectors.groupingBy(Pair::getPairName));
-
-            return pairGroups.entrySet().stream()
-                    .map(entry -> {
-                        String pairName = entry.getKey();
-                        List<Pair> pairs = entry.getValue();
-
-                        return PairAggregatedStatisticsDto.builder()
-                                .pairName(pairName)
-                                .totalTrades(pairs.size())
-                                .totalProfitUSDT(calculateTotalProfit(pairs))
-                                .averageProfitPercent(calculateAverageProfitPercent(pairs))
-                                .averageTradeDuration(calculateAverageTradeDurationMinutes(pairs))
-                                .totalAveragingCount(calculateTotalAveragingCount(pairs))
-                                .averageTimeToMinProfit(calculateAverageTimeToMinProfitMinutes(pairs))
-                                .averageTimeToMaxProfit(calculateAverageTimeToMaxProfitMinutes(pairs))
-                                .averageZScoreEntry(calculateAverageZScoreEntry(pairs))
-                                .averageZScoreCurrent(calculateAverageZScoreCurrent(pairs))
-                                .averageZScoreMax(calculateAverageZScoreMax(pairs))
-                                .averageZScoreMin(calculateAverageZScoreMin(pairs))
-                                .averageCorrelationEntry(calculateAverageCorrelationEntry(pairs))
-                                .averageCorrelationCurrent(calculateAverageCorrelationCurrent(pairs))
-                                .build();
-                    })
-                    .sorted((a, b) -> Long.compare(b.getTotalTrades(), a.getTotalTrades()))
-                    .collect(Collectors.toList());
+            if (!closedPairStatisticsLoaded) {
+                loadClosedPairStatistics();
+            }
+            List<PairAggregatedStatisticsDto> result = new ArrayList<>(closedPairStatistics.values());
+            result.sort((a, b) -> Long.compare(b.getTotalTrades(), a.getTotalTrades()));
+            return result;
         } catch (Exception e) {
             log.error("❌ Ошибка получения агрегированной статистики по парам", e);
             return Collections.emptyList();
         }
     }
 
-    private BigDecimal calculateTotalProfit(List<Pair> pairs) {
-        return pairs.stream()
-                .map(Pair::getProfitUSDTChanges)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
-    private BigDecimal calculateAverageProfitPercent(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .map(Pair::getProfitPercentChanges)
-                .filter(Objects::nonNull)
-                .mapToDouble(value -> value.doubleValue())
-                .average();
-        return average.isPresent() ? BigDecimal.valueOf(average.getAsDouble()) : BigDecimal.ZERO;
-    }
-
-    private String calculateAverageTradeDuration(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .filter(p -> p.getEntryTime() != null && p.getUpdatedTime() != null)
-                .mapToLong(p -> p.getUpdatedTime().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli() -
-                        p.getEntryTime().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli())
-                .average();
+    /**
+     * Сбрасывает кэш итогов после смены статуса пары; после закрытия пары пересчитывает ее статистику
+     */
+    public void onPairStatusChanged(Pair pair) {
+        totalsVersion.incrementAndGet();
 
-        if (average.isPresent()) {
-            return TimeFormatterUtil.formatDurationFromMillis((long) average.getAsDouble());
+        if (pair.getStatus() != TradeStatus.CLOSED || pair.getPairName() == null || !closedPairStatisticsLoaded) {
+            return;
+        }
+        try {
+            tradeStatisticsRepository.findClosedPairStatistics(pair.getPairName())
+                    .ifPresentOrElse(stats -> closedPairStatistics.put(stats.getPairName(), stats),
+                            () -> closedPairStatistics.remove(pair.getPairName()));
+            log.debug("📊 Обновлена статистика закрытых трейдов пары {}", pair.getPairName());
+        } catch (Exception e) {
+            log.error("❌ Ошибка обновления статистики пары {}, статистика будет перечитана", pair.getPairName(), e);
+            closedPairStatisticsLoaded = false;
         }
-        return "N/A";
-    }
-
-    private long calculateAverageTradeDurationMinutes(List<Pair> pairs) {
-        return (long) pairs.stream()
-                .filter(p -> p.getEntryTime() != null && p.getUpdatedTime() != null)
-                .mapToLong(p -> p.getUpdatedTime().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli() -
-                        p.getEntryTime().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli()) // миллисекунды
-                .average()
-                .orElse(0.0) / 1000 / 60;
-    }
-
-    private long calculateTotalAveragingCount(List<Pair> pairs) {
-        return pairs.stream()
-                .filter(p -> p.getAveragingCount() != null)
-                .mapToInt(Pair::getAveragingCount)
-                .sum();
-    }
-
-    private long calculateAverageTimeToMinProfitMinutes(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .mapToLong(Pair::getMinutesToMinProfitPercent)
-                .filter(minutes -> minutes > 0)
-                .average();
-
-        return average.isPresent() ? Math.round(average.getAsDouble()) : -1L;
-    }
-
-    private long calculateAverageTimeToMaxProfitMinutes(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .mapToLong(Pair::getMinutesToMaxProfitPercent)
-                .filter(minutes -> minutes > 0)
-                .average();
-
-        return average.isPresent() ? Math.round(average.getAsDouble()) : -1L;
-    }
-
-    private BigDecimal calculateAverageZScoreEntry(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .map(Pair::getZScoreEntry)
-                .filter(Objects::nonNull)
-                .mapToDouble(value -> value.doubleValue())
-                .average();
-        return average.isPresent() ?
-                BigDecimal.valueOf(average.getAsDouble()).setScale(4, RoundingMode.HALF_UP) :
-                BigDecimal.ZERO;
     }
 
-    private BigDecimal calculateAverageZScoreCurrent(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .map(Pair::getZScoreCurrent)
-                .filter(Objects::nonNull)
-                .mapToDouble(value -> value.doubleValue())
-                .average();
-        return average.isPresent() ?
-                BigDecimal.valueOf(average.getAsDouble()).setScale(4, RoundingMode.HALF_UP) :
-                BigDecimal.ZERO;
-    }
+    private TradePairsStatisticsDto getTradeTotals(LocalDate today) {
+        long version = totalsVersion.get();
+        TradeTotalsSnapshot snapshot = tradeTotals;
+        if (snapshot != null && snapshot.version() == version && snapshot.day().equals(today)) {
+            return snapshot.stats();
+        }
 
-    private BigDecimal calculateAverageZScoreMax(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .map(Pair::getMaxZ)
-                .filter(Objects::nonNull)
-                .mapToDouble(value -> value.doubleValue())
-                .average();
-        return average.isPresent() ?
-                BigDecimal.valueOf(average.getAsDouble()).setScale(4, RoundingMode.HALF_UP) :
-                BigDecimal.ZERO;
+        TradePairsStatisticsDto stats = tradeStatisticsRepository.findTradeTotals(today.atStartOfDay());
+        for (ExitReasonCount count : tradeStatisticsRepository.findExitReasonCounts()) {
+            applyExitReasonCount(stats, count);
+        }
+        tradeTotals = new TradeTotalsSnapshot(today, version, stats);
+        return stats;
     }
 
-    private BigDecimal calculateAverageZScoreMin(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .map(Pair::getMinZ)
-                .filter(Objects::nonNull)
-                .mapToDouble(value -> value.doubleValue())
-                .average();
-        return average.isPresent() ?
-                BigDecimal.valueOf(average.getAsDouble()).setScale(4, RoundingMode.HALF_UP) :
-                BigDecimal.ZERO;
+    private synchronized void loadClosedPairStatistics() {
+        if (closedPairStatisticsLoaded) {
+            return;
+        }
+        closedPairStatistics.clear();
+        for (PairAggregatedStatisticsDto stats : tradeStatisticsRepository.findClosedPairStatistics()) {
+            closedPairStatistics.put(stats.getPairName(), stats);
+        }
+        closedPairStatisticsLoaded = true;
+        log.debug("📊 Загружена статистика закрытых трейдов по {} парам", closedPairStatistics.size());
     }
 
-    private BigDecimal calculateAverageCorrelationEntry(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .map(Pair::getCorrelationEntry)
-                .filter(Objects::nonNull)
-                .mapToDouble(value -> value.doubleValue())
-                .average();
-        return average.isPresent() ?
-                BigDecimal.valueOf(average.getAsDouble()).setScale(4, RoundingMode.HALF_UP) :
-                BigDecimal.ZERO;
-    }
+    private void applyExitReasonCount(TradePairsStatisticsDto stats, ExitReasonCount count) {
+        ExitReasonType reason;
+        try {
+            reason = ExitReasonType.valueOf(count.exitReason());
+        } catch (IllegalArgumentException e) {
+            return;
+        }
 
-    private BigDecimal calculateAverageCorrelationCurrent(List<Pair> pairs) {
-        OptionalDouble average = pairs.stream()
-                .map(Pair::getCorrelationCurrent)
-                .filter(Objects::nonNull)
-                .mapToDouble(value -> value.doubleValue())
-                .average();
-        return average.isPresent() ?
-                BigDecimal.valueOf(average.getAsDouble()).setScale(4, RoundingMode.HALF_UP) :
-                BigDecimal.ZERO;
+        switch (reason) {
+            case EXIT_REASON_BY_STOP -> {
+                stats.setExitByStopToday(count.today());
+                stats.setExitByStopTotal(count.total());
+            }
+            case EXIT_REASON_BY_TAKE -> {
+                stats.setExitByTakeToday(count.today());
+                stats.setExitByTakeTotal(count.total());
+            }
+            case EXIT_REASON_BY_Z_MIN -> {
+                stats.setExitByZMinToday(count.today());
+                stats.setExitByZMinTotal(count.total());
+            }
+            case EXIT_REASON_BY_Z_MAX -> {
+                stats.setExitByZMaxToday(count.today());
+                stats.setExitByZMaxTotal(count.total());
+            }
+            case EXIT_REASON_BY_TIME -> {
+                stats.setExitByTimeToday(count.today());
+                stats.setExitByTimeTotal(count.total());
+            }
+            case EXIT_REASON_BY_BREAKEVEN -> {
+                stats.setExitByBreakevenToday(count.today());
+                stats.setExitByBreakevenTotal(count.total());
+            }
+            case EXIT_REASON_BY_NEGATIVE_Z_MIN_PROFIT -> {
+                stats.setExitByNegativeZMinProfitToday(count.today());
+                stats.setExitByNegativeZMinProfitTotal(count.total());
+            }
+            case EXIT_REASON_MANUALLY -> {
+                stats.setExitByManuallyToday(count.today());
+                stats.setExitByManuallyTotal(count.total());
+            }
+        }
     }
 }
@@ -0,0 +1,84 @@
+package com.example.core.services;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Блокировки по тикерам для открытия/обновления/закрытия/усреднения пар.
+ * <p>
+ * Операции по одному тикеру из разных пар и разных точек входа (шедуллер, UI, автотрейдинг)
+ * идут последовательно. Блокировки обоих тикеров пары берутся в алфавитном порядке, чтобы пары
+ * с общими тикерами не взаимоблокировались. Блокировки реентерабельны: вложенные вызовы
+ * (например, автоусреднение внутри updateTrade) не ждут сами себя.
+ * <p>
+ * Если вызов идет внутри транзакции, блокировки снимаются после ее завершения (commit/rollback),
+ * чтобы следующая операция по тикеру видела уже закоммиченное состояние пары.
+ */
+@Service
+public class TickerLockService {
+
+    private final Map<String, ReentrantLock> tickerLocks = new ConcurrentHashMap<>();
+    private final AtomicLong lockWaitNanos = new AtomicLong();
+
+    public <T> T callWithTickerLocks(String firstTicker, String secondTicker, Supplier<T> action) {
+        if (firstTicker.compareTo(secondTicker) > 0) {
+            String tmp = firstTicker;
+            firstTicker = secondTicker;
+            secondTicker = tmp;
+        }
+        ReentrantLock firstLock = tickerLocks.computeIfAbsent(firstTicker, k -> new ReentrantLock());
+        ReentrantLock secondLock = tickerLocks.computeIfAbsent(secondTicker, k -> new ReentrantLock());
+
+        long waitStart = System.nanoTime();
+        firstLock.lock();
+        try {
+            secondLock.lock();
+        } catch (RuntimeException e) {
+            firstLock.unlock();
+            throw e;
+        }
+        lockWaitNanos.addAndGet(System.nanoTime() - waitStart);
+
+        boolean releaseAfterTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        try {
+            if (releaseAfterTransaction) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        unlock(firstLock, secondLock);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            unlock(firstLock, secondLock);
+            throw e;
+        }
+
+        try {
+            return action.get();
+        } finally {
+            if (!releaseAfterTransaction) {
+                unlock(firstLock, secondLock);
+            }
+        }
+    }
+
+    /**
+     * Суммарное ожидание блокировок с момента запуска (нс)
+     */
+    public long getLockWaitNanos() {
+        return lockWaitNanos.get();
+    }
+
+    private void unlock(ReentrantLock firstLock, ReentrantLock secondLock) {
+        secondLock.unlock();
+        firstLock.unlock();
+    }
+}
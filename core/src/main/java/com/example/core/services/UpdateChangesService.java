@@ -4,8 +4,6 @@ import com.example.shared.dto.ChangesData;
 import com.example.shared.dto.CorrelationHistoryItem;
 import com.example.shared.dto.ProfitHistoryItem;
 import com.example.shared.models.Pair;
-
-import java.util.List;
 import com.example.shared.utils.NumberFormatter;
 import com.example.shared.utils.TimeFormatterUtil;
 import lombok.RequiredArgsConstructor;
@@ -40,13 +38,12 @@ public class UpdateChangesService {
             long currentTimestamp = System.currentTimeMillis();
             double currentCorrelation = changes.getCorrelationCurrent().doubleValue();
             
-            // Получаем существующую историю для проверки дубликатов
-            List<CorrelationHistoryItem> existingHistory = pair.getCorrelationHistory();
+            // Последняя точка для проверки дубликатов (без загрузки всей истории)
+            CorrelationHistoryItem lastItem = pair.getLastCorrelationHistoryPoint();
             
             // Проверяем дубликаты по времени (избегаем добавления одинаковых записей)
             boolean shouldAdd = true;
-            if (!existingHistory.isEmpty()) {
-                CorrelationHistoryItem lastItem = existingHistory.get(existingHistory.size() - 1);
+            if (lastItem != null) {
                 long timeDiff = currentTimestamp - lastItem.getTimestamp();
                 
                 // Если прошло меньше 30 секунд - обновляем последнюю запись вместо добавления новой
@@ -54,23 +51,22 @@ public class UpdateChangesService {
                     log.debug("📊 Обновляем последнюю точку корреляции (прошло {} сек): {} -> {} для пары {}",
                             timeDiff / 1000, lastItem.getCorrelation(), currentCorrelation, pair.getPairName());
                     
-                    lastItem.setTimestamp(currentTimestamp);
-                    lastItem.setCorrelation(currentCorrelation);
-                    pair.setCorrelationHistory(existingHistory); // Пересохраняем для обновления JSON
+                    pair.replaceLastCorrelationHistoryPoint(CorrelationHistoryItem.builder()
+                            .timestamp(currentTimestamp)
+                            .correlation(currentCorrelation)
+                            .build());
                     shouldAdd = false;
                 }
             }
             
             if (shouldAdd) {
-                log.debug("📊 Добавляем НОВУЮ точку корреляции в историю: {} на время {} для пары {} (было {} точек)",
-                        currentCorrelation, currentTimestamp, pair.getPairName(), existingHistory.size());
+                log.debug("📊 Добавляем НОВУЮ точку корреляции в историю: {} на время {} для пары {}",
+                        currentCorrelation, currentTimestamp, pair.getPairName());
                 
                 pair.addCorrelationHistoryPoint(CorrelationHistoryItem.builder()
                         .timestamp(currentTimestamp)
                         .correlation(currentCorrelation)
                         .build());
-                        
-                log.debug("📊 После добавления стало {} точек корреляции", pair.getCorrelationHistory().size());
             }
         }
 
@@ -84,13 +80,12 @@ public class UpdateChangesService {
             long currentTimestamp = System.currentTimeMillis();
             double currentProfitPercent = changes.getProfitPercentChanges().doubleValue();
             
-            // Получаем существующую историю для проверки дубликатов
-            List<ProfitHistoryItem> existingHistory = pair.getProfitHistory();
+            // Последняя точка для проверки дубликатов (без загрузки всей истории)
+            ProfitHistoryItem lastItem = pair.getLastProfitHistoryPoint();
             
             // Проверяем дубликаты по времени (избегаем добавления одинаковых записей)
             boolean shouldAdd = true;
-            if (!existingHistory.isEmpty()) {
-                ProfitHistoryItem lastItem = existingHistory.get(existingHistory.size() - 1);
+            if (lastItem != null) {
                 long timeDiff = currentTimestamp - lastItem.getTimestamp();
                 
                 // Если прошло меньше 30 секунд - обновляем последнюю запись вместо добавления новой
@@ -98,23 +93,22 @@ public class UpdateChangesService {
                     log.debug("📊 Обновляем последнюю точку профита (прошло {} сек): {}% -> {}% для пары {}",
                             timeDiff / 1000, lastItem.getProfitPercent(), currentProfitPercent, pair.getPairName());
                     
-                    lastItem.setTimestamp(currentTimestamp);
-                    lastItem.setProfitPercent(currentProfitPercent);
-                    pair.setProfitHistory(existingHistory); // Пересохраняем для обновления JSON
+                    pair.replaceLastProfitHistoryPoint(ProfitHistoryItem.builder()
+                            .timestamp(currentTimestamp)
+                            .profitPercent(currentProfitPercent)
+                            .build());
                     shouldAdd = false;
                 }
             }
             
             if (shouldAdd) {
-                log.debug("📊 Добавляем НОВУЮ точку профита в историю: {}% на время {} для пары {} (было {} точек)",
-                        currentProfitPercent, currentTimestamp, pair.getPairName(), existingHistory.size());
+                log.debug("📊 Добавляем НОВУЮ точку профита в историю: {}% на время {} для пары {}",
+                        currentProfitPercent, currentTimestamp, pair.getPairName());
                 
                 pair.addProfitHistoryPoint(ProfitHistoryItem.builder()
                         .timestamp(currentTimestamp)
                         .profitPercent(currentProfitPercent)
                         .build());
-                        
-                log.debug("📊 После добавления стало {} точек профита", pair.getProfitHistory().size());
             }
         }
 
@@ -31,10 +31,10 @@ public class UpdateZScoreDataCurrentService {
         pair.setBetaCurrent(BigDecimal.valueOf(latestParam.getBeta()));
 
         // ИСПРАВЛЕНИЕ: Добавляем только новые точки в историю Z-Score, избегая дубликатов
-        List<ZScoreParam> existingHistory = pair.getZScoreHistory();
+        ZScoreParam lastPoint = pair.getLastZScorePoint();
         List<ZScoreParam> newHistory = zScoreData.getZScoreHistory();
         
-        if (existingHistory.isEmpty()) {
+        if (lastPoint == null) {
             // Если история пустая, добавляем всю новую историю (для новых пар)
             log.debug("📊 История Z-Score пустая для пары {} - добавляем {} новых точек",
                     pair.getPairName(), newHistory.size());
@@ -43,7 +43,7 @@ public class UpdateZScoreDataCurrentService {
             }
         } else {
             // Если история есть, добавляем только новые точки
-            long lastTimestamp = existingHistory.get(existingHistory.size() - 1).getTimestamp();
+            long lastTimestamp = lastPoint.getTimestamp();
             int addedCount = 0;
             
             for (ZScoreParam param : newHistory) {
@@ -53,9 +53,7 @@ public class UpdateZScoreDataCurrentService {
                 }
             }
             
-            log.debug("📊 Добавлено {} новых точек Z-Score для пары {} (было: {}, стало: {})",
-                    addedCount, pair.getPairName(), existingHistory.size(),
-                    pair.getZScoreHistory().size());
+            log.debug("📊 Добавлено {} новых точек Z-Score для пары {}", addedCount, pair.getPairName());
         }
     }
 }
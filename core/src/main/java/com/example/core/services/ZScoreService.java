@@ -1,5 +1,6 @@
 package com.example.core.services;
 
+import com.example.core.services.zscore.ZScoreEngineService;
 import com.example.shared.dto.Candle;
 import com.example.shared.dto.ZScoreData;
 import com.example.shared.dto.ZScoreParam;
@@ -17,6 +18,7 @@ import java.util.*;
 public class ZScoreService {
     private final PairService pairService;
     private final PythonAnalysisService pythonAnalysisService;
+    private final ZScoreEngineService zScoreEngineService;
     private final ObtainTopZScoreDataBeforeCreateNewPairService obtainTopZScoreDataBeforeCreateNewPairService;
     private final FilterZScoreDataForExistingPairBeforeNewTradeService filterZScoreDataForExistingPairBeforeNewTradeService;
 
@@ -172,7 +174,15 @@ public class ZScoreService {
 //    }
 
     public ZScoreData calculateZScoreData(Settings settings, Map<String, List<Candle>> candlesMap) {
-        return pythonAnalysisService.calculateZScoreData(settings, candlesMap);
+        return zScoreEngineService.calculateZScoreData(settings, candlesMap);
+    }
+
+    /**
+     * Расчет Z для торгуемой пары с сохранением ее ориентации (long - undervalued, short - overvalued)
+     */
+    public ZScoreData calculateZScoreDataForTradingPair(Settings settings, Map<String, List<Candle>> candlesMap,
+                                                        String longTicker, String shortTicker) {
+        return zScoreEngineService.calculateZScoreDataForTradingPair(settings, candlesMap, longTicker, shortTicker);
     }
 
     /**
@@ -195,7 +205,7 @@ public class ZScoreService {
     }
 
     public Optional<ZScoreData> updateZScoreDataForExistingPairBeforeNewTrade(Pair pair, Settings settings, Map<String, List<Candle>> candlesMap) {
-        ZScoreData zScoreData = pythonAnalysisService.calculateZScoreData(settings, candlesMap);
+        ZScoreData zScoreData = zScoreEngineService.calculateZScoreData(settings, candlesMap);
 
         if (zScoreData == null) {
             log.warn("⚠️ Обновление zScoreData перед созданием нового трейда! zScoreData is null");
@@ -296,58 +306,59 @@ public class ZScoreService {
         log.debug("   🔍 Лучший ADF: {}", minADF);
         log.debug("   🔗 Лучшая корреляция: {}", maxCorrelation);
 
+        // Один проход: все пары оценены один раз и отсортированы по скору, берем сверху пары с уникальными тикерами.
+        // Детальный пересчет - только для выбираемых пар
+        List<ZScoreData> rankedPairs = obtainTopZScoreDataBeforeCreateNewPairService.rankZScoreData(settings, zScoreDataList, candlesMap);
+        if (rankedPairs.isEmpty()) {
+            log.debug("❌ Нет пар для отбора (возможно, все пары не прошли фильтрацию)");
+        }
+
         List<ZScoreData> bestPairs = new ArrayList<>();
-        List<ZScoreData> remainingPairs = new ArrayList<>(zScoreDataList); // копия списка
-
-        for (int i = 0; i < topN; i++) {
-            log.debug("🔄 Итерация {}/{}: ищем лучшую пару из {} оставшихся", (i + 1), topN, remainingPairs.size());
-            Optional<ZScoreData> maybeBest = obtainTopZScoreDataBeforeCreateNewPairService.getBestZScoreData(settings, remainingPairs, candlesMap);
-            if (maybeBest.isPresent()) {
-                ZScoreData best = maybeBest.get();
-                log.info("✅ Найдена пара: {}/{} с Z-скором={}",
-                        best.getUnderValuedTicker(), best.getOverValuedTicker(), best.getLatestZScore());
-
-                //смотрим что мы отобрали по тикерам
-                List<String> actualBestTickers = new ArrayList<>();
-                bestPairs.forEach(b -> {
-                    actualBestTickers.add(b.getUnderValuedTicker());
-                    actualBestTickers.add(b.getOverValuedTicker());
-                });
-                //берем только те новые тикеры которых еще нет в торговле
-                if (actualBestTickers.contains(best.getUnderValuedTicker()) || actualBestTickers.contains(best.getOverValuedTicker())) {
-                    log.debug("⚠️ Пропускаем пару {}/{} т.к. такие тикеры уже есть в торговле! Поддерживаем только уникальные тикеры для простоты ведения сделок!",
-                            best.getUnderValuedTicker(), best.getOverValuedTicker());
-                    continue;
-                }
+        Set<String> usedTickers = new HashSet<>();
+        int attempts = 0;
 
-                logLastZ(best);
-
-                //детальная инфа
-                ZScoreData detailedZScoreData = getDetailedZScoreData(best, candlesMap, settings);
-
-                // Повторная проверка MinZ после пересчета через Python API
-                if (settings.isUseMinZFilter()) {
-                    double recalculatedZ = detailedZScoreData.getLatestZScore() != null ?
-                            detailedZScoreData.getLatestZScore() : 0.0;
-                    if (recalculatedZ < settings.getMinZ()) {
-                        log.warn("⚠️ Пара {}/{} исключена после пересчета: Z-скор {} < MinZ {}",
-                                best.getUnderValuedTicker(), best.getOverValuedTicker(),
-                                recalculatedZ, settings.getMinZ());
-                        remainingPairs.remove(best); // исключаем только из remainingPairs
-                        continue; // пропускаем добавление в bestPairs
-                    }
-                    log.debug("✅ Пара {}/{} прошла повторную проверку MinZ: {} >= {}",
+        for (ZScoreData best : rankedPairs) {
+            // Как и раньше, не больше topN детальных пересчетов (пара, исключенная по MinZ, тратит попытку)
+            if (bestPairs.size() >= topN || attempts >= topN) {
+                break;
+            }
+
+            //берем только те новые тикеры которых еще нет среди отобранных
+            if (usedTickers.contains(best.getUnderValuedTicker()) || usedTickers.contains(best.getOverValuedTicker())) {
+                log.debug("⚠️ Пропускаем пару {}/{} т.к. такие тикеры уже есть в торговле! Поддерживаем только уникальные тикеры для простоты ведения сделок!",
+                        best.getUnderValuedTicker(), best.getOverValuedTicker());
+                continue;
+            }
+
+            attempts++;
+            log.info("✅ Найдена пара: {}/{} с Z-скором={}",
+                    best.getUnderValuedTicker(), best.getOverValuedTicker(), best.getLatestZScore());
+
+            logLastZ(best);
+
+            //детальная инфа
+            ZScoreData detailedZScoreData = getDetailedZScoreData(best, candlesMap, settings);
+
+            // Повторная проверка MinZ после пересчета через Python API
+            if (settings.isUseMinZFilter()) {
+                double recalculatedZ = detailedZScoreData.getLatestZScore() != null ?
+                        detailedZScoreData.getLatestZScore() : 0.0;
+                if (recalculatedZ < settings.getMinZ()) {
+                    log.warn("⚠️ Пара {}/{} исключена после пересчета: Z-скор {} < MinZ {}",
                             best.getUnderValuedTicker(), best.getOverValuedTicker(),
                             recalculatedZ, settings.getMinZ());
+                    continue; // пропускаем добавление в bestPairs
                 }
-
-                bestPairs.add(detailedZScoreData);
-                remainingPairs.remove(best); // исключаем выбранную пару из дальнейшего отбора
-                log.debug("✅ Пара {}/{} добавлена в финальный список (всего: {})",
-                        best.getUnderValuedTicker(), best.getOverValuedTicker(), bestPairs.size());
-            } else {
-                log.debug("❌ Итерация {}: getBestZScoreData вернул пустой результат (возможно, все пары не прошли фильтрацию)", (i + 1));
+                log.debug("✅ Пара {}/{} прошла повторную проверку MinZ: {} >= {}",
+                        best.getUnderValuedTicker(), best.getOverValuedTicker(),
+                        recalculatedZ, settings.getMinZ());
             }
+
+            bestPairs.add(detailedZScoreData);
+            usedTickers.add(detailedZScoreData.getUnderValuedTicker());
+            usedTickers.add(detailedZScoreData.getOverValuedTicker());
+            log.debug("✅ Пара {}/{} добавлена в финальный список (всего: {})",
+                    best.getUnderValuedTicker(), best.getOverValuedTicker(), bestPairs.size());
         }
 
         return bestPairs;
@@ -380,8 +391,8 @@ public class ZScoreService {
 
         log.debug("📊 Отфильтрованная мапа свечей содержит тикеров: {{}} {}", filteredCandlesMap.size(), filteredCandlesMap.keySet());
 
-        // Передаём отфильтрованные данные в Python
-        ZScoreData zScoreData = pythonAnalysisService.calculateZScoreData(settings, filteredCandlesMap);
+        // Передаём отфильтрованные данные в движок расчета (Python или native)
+        ZScoreData zScoreData = zScoreEngineService.calculateZScoreData(settings, filteredCandlesMap);
 
         if (zScoreData.getLatestZScore() < 0) {
             String message = String.format("❌ Последний Z-скор {%.2f} < 0 после \"/analyze-pair\" для получения детальной инфы о паре %s - %s!!!", zScoreData.getLatestZScore(), undervalued, overvalued);
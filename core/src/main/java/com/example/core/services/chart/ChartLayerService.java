@@ -1,5 +1,6 @@
 package com.example.core.services.chart;
 
+import com.example.shared.dto.CandleSeries;
 import com.example.shared.dto.CorrelationHistoryItem;
 import com.example.shared.dto.ProfitHistoryItem;
 import com.example.shared.dto.ZScoreParam;
@@ -308,9 +309,9 @@ public class ChartLayerService {
             return;
         }
 
-        // Сортировка по времени
-        longCandles.sort(Comparator.comparing(candle -> candle.getTimestamp()));
-        shortCandles.sort(Comparator.comparing(candle -> candle.getTimestamp()));
+        // Колонки свечей, отсортированные по времени, для интерполяции бинарным поиском
+        CandleSeries longSeries = CandleSeries.of(longCandles);
+        CandleSeries shortSeries = CandleSeries.of(shortCandles);
 
         // Используем точные временные метки Z-Score как основу
         List<Long> zScoreTimestamps = history.stream()
@@ -321,8 +322,8 @@ public class ChartLayerService {
         log.debug("🎯 Синхронизируем цены строго по Z-Score таймштампам: {} точек", zScoreTimestamps.size());
 
         // Интерполируем цены на точные временные метки Z-Score
-        List<Double> interpolatedLongPrices = interpolatePricesForTimestamps(longCandles, zScoreTimestamps);
-        List<Double> interpolatedShortPrices = interpolatePricesForTimestamps(shortCandles, zScoreTimestamps);
+        List<Double> interpolatedLongPrices = interpolatePricesForTimestamps(longSeries, zScoreTimestamps);
+        List<Double> interpolatedShortPrices = interpolatePricesForTimestamps(shortSeries, zScoreTimestamps);
 
         List<Double> finalLongPrices;
         List<Double> finalShortPrices;
@@ -393,10 +394,10 @@ public class ChartLayerService {
     /**
      * 🔄 Интерполирует цены для списка таймштампов
      */
-    private List<Double> interpolatePricesForTimestamps(List<?> candles, List<Long> timestamps) {
-        List<Double> result = new ArrayList<>();
+    private List<Double> interpolatePricesForTimestamps(CandleSeries candles, List<Long> timestamps) {
+        List<Double> result = new ArrayList<>(timestamps.size());
         for (Long timestamp : timestamps) {
-            Double price = interpolationService.interpolatePrice((List) candles, timestamp);
+            Double price = interpolationService.interpolatePrice(candles, timestamp);
             result.add(price != null ? price : 0.0);
         }
         return result;
@@ -1,6 +1,7 @@
 package com.example.core.services.chart;
 
 import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleSeries;
 import com.example.shared.dto.CorrelationHistoryItem;
 import com.example.shared.dto.ProfitHistoryItem;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +22,52 @@ public class InterpolationService {
      * 🎯 Интерполирует цену свечи на точный таймштамп Z-Score
      * Использует линейную интерполяцию между ближайшими свечами
      */
+    public Double interpolatePrice(CandleSeries candles, long targetTimestamp) {
+        if (candles == null || candles.isEmpty()) {
+            log.trace("🎯 Нет свечей для интерполяции цены на {}", new Date(targetTimestamp));
+            return null;
+        }
+
+        // Ближайшие свечи до и после целевого времени бинарным поиском (первые в группе одинаковых таймштампов)
+        int after = candles.lowerBound(targetTimestamp);
+        int floor = targetTimestamp == Long.MAX_VALUE ? candles.size() - 1 : candles.lowerBound(targetTimestamp + 1) - 1;
+        int before = floor >= 0 ? candles.lowerBound(candles.timestamp(floor)) : -1;
+        if (after == candles.size()) {
+            after = -1;
+        }
+
+        // Если точное совпадение
+        if (before >= 0 && candles.timestamp(before) == targetTimestamp) {
+            log.trace("🎯 Точное совпадение свечи: {}", candles.close(before));
+            return candles.close(before);
+        }
+
+        // Линейная интерполяция между двумя свечами
+        if (before >= 0 && after >= 0) {
+            long timeDiff = candles.timestamp(after) - candles.timestamp(before);
+            double priceDiff = candles.close(after) - candles.close(before);
+            long targetDiff = targetTimestamp - candles.timestamp(before);
+
+            double interpolatedPrice = candles.close(before) + (priceDiff * targetDiff / (double) timeDiff);
+
+            log.trace("🎯 Интерполяция цены: {} -> {} (между {} и {})",
+                    new Date(targetTimestamp), interpolatedPrice, candles.close(before), candles.close(after));
+
+            return interpolatedPrice;
+        }
+
+        // Fallback: ближайшая доступная цена
+        if (before >= 0) {
+            log.trace("🎯 Используем цену предыдущей свечи: {}", candles.close(before));
+            return candles.close(before);
+        }
+        log.trace("🎯 Используем цену следующей свечи: {}", candles.close(after));
+        return candles.close(after);
+    }
+
+    /**
+     * 🎯 Интерполирует цену свечи на точный таймштамп Z-Score (линейный проход по списку)
+     */
     public Double interpolatePrice(List<Candle> candles, long targetTimestamp) {
         if (candles == null || candles.isEmpty()) {
             log.trace("🎯 Нет свечей для интерполяции цены на {}", new Date(targetTimestamp));
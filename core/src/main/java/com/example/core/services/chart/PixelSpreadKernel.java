@@ -0,0 +1,173 @@
+package com.example.core.services.chart;
+
+import com.example.shared.dto.CandleSeries;
+
+import java.util.Arrays;
+
+/**
+ * Расчет пиксельного спреда по двум рядам свечей за один проход.
+ * <p>
+ * Цены закрытия каждого ряда нормализуются в диапазон [minZScore, maxZScore] по min/max цен ряда,
+ * затем переводятся в пиксели по общему диапазону и для каждой временной точки обоих рядов
+ * считается |longY - shortY|. Ближайшая свеча для точки находится слиянием отсортированных
+ * таймштампов (O(n + m)) с тем же выбором, что и CandleSeries.nearestIndex.
+ * Промежуточные массивы переиспользуются в пределах потока, наружу отдаются массивы точного размера.
+ */
+public final class PixelSpreadKernel {
+
+    private static final ThreadLocal<long[]> TIMESTAMPS_SCRATCH = ThreadLocal.withInitial(() -> new long[0]);
+    private static final ThreadLocal<double[]> DISTANCES_SCRATCH = ThreadLocal.withInitial(() -> new double[0]);
+
+    /**
+     * Пиксельный спред: timestamps[i] - уникальная временная точка, distances[i] - расстояние в пикселях
+     */
+    public record PixelSpreadSeries(long[] timestamps, double[] distances) {
+        public int size() {
+            return timestamps.length;
+        }
+    }
+
+    private PixelSpreadKernel() {
+    }
+
+    public static PixelSpreadSeries calculate(CandleSeries longSeries, CandleSeries shortSeries,
+                                              double minZScore, double maxZScore, int chartHeight) {
+        int count = fill(longSeries, shortSeries, minZScore, maxZScore, chartHeight);
+        return new PixelSpreadSeries(
+                Arrays.copyOf(TIMESTAMPS_SCRATCH.get(), count),
+                Arrays.copyOf(DISTANCES_SCRATCH.get(), count));
+    }
+
+    /**
+     * Только расстояния (для анализа волатильности при скоринге, где таймштампы не нужны)
+     */
+    public static double[] distances(CandleSeries longSeries, CandleSeries shortSeries,
+                                     double minZScore, double maxZScore, int chartHeight) {
+        int count = fill(longSeries, shortSeries, minZScore, maxZScore, chartHeight);
+        return Arrays.copyOf(DISTANCES_SCRATCH.get(), count);
+    }
+
+    /**
+     * Заполняет буферы потока и возвращает количество точек
+     */
+    private static int fill(CandleSeries longSeries, CandleSeries shortSeries,
+                            double minZScore, double maxZScore, int chartHeight) {
+        int longSize = longSeries.size();
+        int shortSize = shortSeries.size();
+        if (longSize == 0 || shortSize == 0) {
+            return 0;
+        }
+
+        long[] timestamps = scratchTimestamps(longSize + shortSize);
+        double[] distances = scratchDistances(longSize + shortSize);
+
+        // Диапазон масштабированных значений: нормализация монотонна, поэтому min/max - образы min/max цен
+        double minValue = Math.min(
+                scaleToZScore(longSeries, longSeries.minClose(), minZScore, maxZScore),
+                scaleToZScore(shortSeries, shortSeries.minClose(), minZScore, maxZScore));
+        double maxValue = Math.max(
+                scaleToZScore(longSeries, longSeries.maxClose(), minZScore, maxZScore),
+                scaleToZScore(shortSeries, shortSeries.maxClose(), minZScore, maxZScore));
+
+        // Курсоры слияния (следующая свеча ряда) и ближайшего поиска (первая свеча с таймштампом >= точки,
+        // начало серии одинаковых таймштампов перед ней)
+        int i = 0;
+        int j = 0;
+        int longAfter = 0;
+        int longRunStart = 0;
+        int shortAfter = 0;
+        int shortRunStart = 0;
+        int count = 0;
+
+        while (i < longSize || j < shortSize) {
+            long timestamp;
+            if (j >= shortSize || (i < longSize && longSeries.timestamp(i) <= shortSeries.timestamp(j))) {
+                timestamp = longSeries.timestamp(i++);
+            } else {
+                timestamp = shortSeries.timestamp(j++);
+            }
+            if (count > 0 && timestamps[count - 1] == timestamp) {
+                continue;
+            }
+
+            while (longAfter < longSize && longSeries.timestamp(longAfter) < timestamp) {
+                if (longAfter == 0 || longSeries.timestamp(longAfter) != longSeries.timestamp(longAfter - 1)) {
+                    longRunStart = longAfter;
+                }
+                longAfter++;
+            }
+            while (shortAfter < shortSize && shortSeries.timestamp(shortAfter) < timestamp) {
+                if (shortAfter == 0 || shortSeries.timestamp(shortAfter) != shortSeries.timestamp(shortAfter - 1)) {
+                    shortRunStart = shortAfter;
+                }
+                shortAfter++;
+            }
+
+            double longPrice = scaleToZScore(longSeries,
+                    longSeries.close(nearest(longSeries, timestamp, longAfter, longRunStart)), minZScore, maxZScore);
+            double shortPrice = scaleToZScore(shortSeries,
+                    shortSeries.close(nearest(shortSeries, timestamp, shortAfter, shortRunStart)), minZScore, maxZScore);
+
+            double longPixelY = convertValueToPixel(longPrice, minValue, maxValue, chartHeight);
+            double shortPixelY = convertValueToPixel(shortPrice, minValue, maxValue, chartHeight);
+
+            timestamps[count] = timestamp;
+            distances[count] = Math.abs(longPixelY - shortPixelY);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Ближайшая по времени свеча (как CandleSeries.nearestIndex): при равном расстоянии - более ранняя,
+     * среди одинаковых таймштампов - первая
+     */
+    private static int nearest(CandleSeries series, long timestamp, int after, int runStart) {
+        if (after == 0) {
+            return 0;
+        }
+        if (after == series.size()) {
+            return runStart;
+        }
+        long beforeDiff = timestamp - series.timestamp(runStart);
+        long afterDiff = series.timestamp(after) - timestamp;
+        return beforeDiff <= afterDiff ? runStart : after;
+    }
+
+    /**
+     * Нормализует цену ряда в диапазон Z-Score по min/max цен закрытия ряда
+     */
+    private static double scaleToZScore(CandleSeries series, double price, double minZScore, double maxZScore) {
+        double priceRange = series.maxClose() - series.minClose();
+        return priceRange != 0 ?
+                minZScore + ((price - series.minClose()) / priceRange) * (maxZScore - minZScore) : minZScore;
+    }
+
+    /**
+     * Конвертирует значение в пиксельную координату Y (перевернутая система координат)
+     */
+    private static double convertValueToPixel(double value, double minValue, double maxValue, int chartHeight) {
+        if (maxValue - minValue == 0) return chartHeight / 2.0;
+
+        double normalized = (value - minValue) / (maxValue - minValue);
+        return chartHeight - (normalized * chartHeight);
+    }
+
+    private static long[] scratchTimestamps(int capacity) {
+        long[] buffer = TIMESTAMPS_SCRATCH.get();
+        if (buffer.length < capacity) {
+            buffer = new long[capacity];
+            TIMESTAMPS_SCRATCH.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static double[] scratchDistances(int capacity) {
+        double[] buffer = DISTANCES_SCRATCH.get();
+        if (buffer.length < capacity) {
+            buffer = new double[capacity];
+            DISTANCES_SCRATCH.set(buffer);
+        }
+        return buffer;
+    }
+}
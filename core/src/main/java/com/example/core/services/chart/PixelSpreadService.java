@@ -1,6 +1,7 @@
 package com.example.core.services.chart;
 
 import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleSeries;
 import com.example.shared.dto.PixelSpreadHistoryItem;
 import com.example.shared.dto.ZScoreParam;
 import com.example.shared.models.Pair;
@@ -45,19 +46,12 @@ public class PixelSpreadService {
 
         log.debug("📊 Z-Score временной диапазон: {} - {}", new Date(zScoreStartTime), new Date(zScoreEndTime));
 
-        // Сортировка по времени
-        longCandles.sort(Comparator.comparing(Candle::getTimestamp));
-        shortCandles.sort(Comparator.comparing(Candle::getTimestamp));
-
-        // Фильтруем свечи по временному диапазону Z-Score с небольшим буфером
+        // Фильтруем свечи по временному диапазону Z-Score с небольшим буфером (срез отсортированного ряда)
         long bufferTime = 300000; // 5 минут буфер
-        List<Candle> filteredLongCandles = longCandles.stream()
-                .filter(c -> c.getTimestamp() >= (zScoreStartTime - bufferTime) && c.getTimestamp() <= (zScoreEndTime + bufferTime))
-                .toList();
-
-        List<Candle> filteredShortCandles = shortCandles.stream()
-                .filter(c -> c.getTimestamp() >= (zScoreStartTime - bufferTime) && c.getTimestamp() <= (zScoreEndTime + bufferTime))
-                .toList();
+        CandleSeries filteredLongCandles = CandleSeries.of(longCandles)
+                .between(zScoreStartTime - bufferTime, zScoreEndTime + bufferTime);
+        CandleSeries filteredShortCandles = CandleSeries.of(shortCandles)
+                .between(zScoreStartTime - bufferTime, zScoreEndTime + bufferTime);
 
         if (filteredLongCandles.isEmpty() || filteredShortCandles.isEmpty()) {
             log.warn("⚠️ Нет свечей в временном диапазоне Z-Score: LONG filtered={}, SHORT filtered={}",
@@ -65,100 +59,46 @@ public class PixelSpreadService {
             return;
         }
 
-        // Получение времени и цен для отфильтрованных свечей
-        List<Date> timeLong = filteredLongCandles.stream().map(c -> new Date(c.getTimestamp())).toList();
-        List<Double> longPrices = filteredLongCandles.stream().map(Candle::getClose).toList();
-
-        List<Date> timeShort = filteredShortCandles.stream().map(c -> new Date(c.getTimestamp())).toList();
-        List<Double> shortPrices = filteredShortCandles.stream().map(Candle::getClose).toList();
-
         // Найти диапазон Z-Score для масштабирования цен
         double minZScore = history.stream().mapToDouble(ZScoreParam::getZscore).min().orElse(-3.0);
         double maxZScore = history.stream().mapToDouble(ZScoreParam::getZscore).max().orElse(3.0);
-        double zRange = maxZScore - minZScore;
-
-        // Найти диапазон цен для нормализации (используем только отфильтрованные цены)
-        double minLongPrice = longPrices.stream().min(Double::compareTo).orElse(0.0);
-        double maxLongPrice = longPrices.stream().max(Double::compareTo).orElse(1.0);
-        double longPriceRange = maxLongPrice - minLongPrice;
-
-        double minShortPrice = shortPrices.stream().min(Double::compareTo).orElse(0.0);
-        double maxShortPrice = shortPrices.stream().max(Double::compareTo).orElse(1.0);
-        double shortPriceRange = maxShortPrice - minShortPrice;
-
-        // Нормализация long цен в диапазон Z-Score
-        List<Double> scaledLongPrices = longPrices.stream()
-                .map(price -> longPriceRange != 0 ?
-                        minZScore + ((price - minLongPrice) / longPriceRange) * zRange : minZScore)
-                .toList();
-
-        // Нормализация short цен в диапазон Z-Score  
-        List<Double> scaledShortPrices = shortPrices.stream()
-                .map(price -> shortPriceRange != 0 ?
-                        minZScore + ((price - minShortPrice) / shortPriceRange) * zRange : minZScore)
-                .toList();
 
         log.debug("✅ Вычисляем пиксельный спред: LONG {} точек (диапазон: {}-{}), SHORT {} точек (диапазон: {}-{})",
-                scaledLongPrices.size(), minLongPrice, maxLongPrice,
-                scaledShortPrices.size(), minShortPrice, maxShortPrice);
+                filteredLongCandles.size(), filteredLongCandles.minClose(), filteredLongCandles.maxClose(),
+                filteredShortCandles.size(), filteredShortCandles.minClose(), filteredShortCandles.maxClose());
 
         // Вычисляем пиксельное расстояние между графиками long и short
-        calculateAndSavePixelSpread(tradingPair, timeLong, scaledLongPrices, timeShort, scaledShortPrices);
+        calculateAndSavePixelSpread(tradingPair, filteredLongCandles, filteredShortCandles, minZScore, maxZScore);
     }
 
     /**
-     * Вычисляет пиксельное расстояние между графиками Long и Short цен и сохраняет в историю
+     * Вычисляет пиксельное расстояние между графиками Long и Short цен (нормализованных в диапазон Z-Score)
+     * и сохраняет в историю
      */
-    private void calculateAndSavePixelSpread(Pair tradingPair, List<Date> timeLong, List<Double> scaledLongPrices,
-                                             List<Date> timeShort, List<Double> scaledShortPrices) {
+    private void calculateAndSavePixelSpread(Pair tradingPair, CandleSeries longSeries, CandleSeries shortSeries,
+                                             double minZScore, double maxZScore) {
         log.debug("🔢 Начинаем вычисление пиксельного спреда для пары {}", tradingPair.getPairName());
 
-        if (timeLong.isEmpty() || timeShort.isEmpty() || scaledLongPrices.isEmpty() || scaledShortPrices.isEmpty()) {
+        if (longSeries.isEmpty() || shortSeries.isEmpty()) {
             log.warn("⚠️ Недостаточно данных для вычисления пиксельного спреда");
             return;
         }
 
         int chartHeight = 720; // Высота чарта
 
-        // Находим диапазон масштабированных значений
-        double minValue = Math.min(
-                scaledLongPrices.stream().min(Double::compareTo).orElse(0.0),
-                scaledShortPrices.stream().min(Double::compareTo).orElse(0.0)
-        );
-        double maxValue = Math.max(
-                scaledLongPrices.stream().max(Double::compareTo).orElse(1.0),
-                scaledShortPrices.stream().max(Double::compareTo).orElse(1.0)
-        );
-
-        // Создаем синхронизированные временные точки
-        Set<Long> allTimestamps = new HashSet<>();
-        timeLong.forEach(date -> allTimestamps.add(date.getTime()));
-        timeShort.forEach(date -> allTimestamps.add(date.getTime()));
-
-        List<Long> sortedTimestamps = allTimestamps.stream().sorted().toList();
-
-        log.debug("🔢 Найдено {} уникальных временных точек для анализа пиксельного спреда", sortedTimestamps.size());
-
-        for (Long timestamp : sortedTimestamps) {
-            // Находим ближайшие значения для Long и Short в данный момент времени
-            Double longPrice = findNearestPrice(timeLong, scaledLongPrices, timestamp);
-            Double shortPrice = findNearestPrice(timeShort, scaledShortPrices, timestamp);
-
-            if (longPrice != null && shortPrice != null) {
-                // Конвертируем значения в пиксели относительно высоты чарта
-                double longPixelY = convertValueToPixel(longPrice, minValue, maxValue, chartHeight);
-                double shortPixelY = convertValueToPixel(shortPrice, minValue, maxValue, chartHeight);
-
-                // Вычисляем абсолютное пиксельное расстояние
-                double pixelDistance = Math.abs(longPixelY - shortPixelY);
-
-                // Сохраняем в историю пиксельного спреда
-                PixelSpreadHistoryItem pixelSpreadItem = new PixelSpreadHistoryItem(timestamp, pixelDistance);
-                tradingPair.addPixelSpreadPoint(pixelSpreadItem);
-
-                log.trace("🔢 Timestamp: {}, Long: {} px, Short: {} px, Distance: {} px",
-                        new Date(timestamp), Math.round(longPixelY), Math.round(shortPixelY), Math.round(pixelDistance));
-            }
+        // Пиксельное расстояние во всех временных точках обоих рядов (слияние отсортированных таймштампов)
+        PixelSpreadKernel.PixelSpreadSeries pixelSpread = PixelSpreadKernel.calculate(
+                longSeries, shortSeries, minZScore, maxZScore, chartHeight);
+
+        log.debug("🔢 Найдено {} уникальных временных точек для анализа пиксельного спреда", pixelSpread.size());
+
+        long[] timestamps = pixelSpread.timestamps();
+        double[] distances = pixelSpread.distances();
+        for (int i = 0; i < timestamps.length; i++) {
+            // Сохраняем в историю пиксельного спреда
+            tradingPair.addPixelSpreadPoint(new PixelSpreadHistoryItem(timestamps[i], distances[i]));
+
+            log.trace("🔢 Timestamp: {}, Distance: {} px", new Date(timestamps[i]), Math.round(distances[i]));
         }
 
         log.debug("✅ Пиксельный спред вычислен и сохранен. Всего точек: {}",
@@ -166,23 +106,12 @@ public class PixelSpreadService {
     }
 
     /**
-     * Находит ближайшую цену для заданного времени
+     * Нормализует цену ряда в диапазон Z-Score по min/max цен закрытия ряда
      */
-    private Double findNearestPrice(List<Date> timeAxis, List<Double> prices, long targetTimestamp) {
-        if (timeAxis.isEmpty() || prices.isEmpty()) return null;
-
-        int bestIndex = 0;
-        long bestDiff = Math.abs(timeAxis.get(0).getTime() - targetTimestamp);
-
-        for (int i = 1; i < timeAxis.size(); i++) {
-            long diff = Math.abs(timeAxis.get(i).getTime() - targetTimestamp);
-            if (diff < bestDiff) {
-                bestDiff = diff;
-                bestIndex = i;
-            }
-        }
-
-        return prices.get(bestIndex);
+    private double scaleToZScore(CandleSeries series, double price, double minZScore, double maxZScore) {
+        double priceRange = series.maxClose() - series.minClose();
+        return priceRange != 0 ?
+                minZScore + ((price - series.minClose()) / priceRange) * (maxZScore - minZScore) : minZScore;
     }
 
     /**
@@ -264,43 +193,20 @@ public class PixelSpreadService {
         ZScoreParam latestZScore = history.get(history.size() - 1);
         long currentTimestamp = latestZScore.getTimestamp();
 
-        // Получаем последние цены
-        Candle latestLongCandle = longCandles.stream()
-                .max(Comparator.comparing(Candle::getTimestamp))
-                .orElse(null);
-        Candle latestShortCandle = shortCandles.stream()
-                .max(Comparator.comparing(Candle::getTimestamp))
-                .orElse(null);
-
-        if (latestLongCandle == null || latestShortCandle == null) {
-            log.warn("⚠️ Не найдены последние свечи для добавления точки пиксельного спреда");
-            return;
-        }
+        // Получаем последние цены (ряды отсортированы по времени)
+        CandleSeries longSeries = CandleSeries.of(longCandles);
+        CandleSeries shortSeries = CandleSeries.of(shortCandles);
 
         // Получаем диапазон Z-Score для нормализации
         double minZScore = history.stream().mapToDouble(ZScoreParam::getZscore).min().orElse(-3.0);
         double maxZScore = history.stream().mapToDouble(ZScoreParam::getZscore).max().orElse(3.0);
-        double zRange = maxZScore - minZScore;
-
-        // Получаем диапазон цен для нормализации
-        double minLongPrice = longCandles.stream().mapToDouble(Candle::getClose).min().orElse(0.0);
-        double maxLongPrice = longCandles.stream().mapToDouble(Candle::getClose).max().orElse(1.0);
-        double longPriceRange = maxLongPrice - minLongPrice;
-
-        double minShortPrice = shortCandles.stream().mapToDouble(Candle::getClose).min().orElse(0.0);
-        double maxShortPrice = shortCandles.stream().mapToDouble(Candle::getClose).max().orElse(1.0);
-        double shortPriceRange = maxShortPrice - minShortPrice;
 
-        // Нормализуем текущие цены в диапазон Z-Score
-        double scaledLongPrice = longPriceRange != 0 ?
-                minZScore + ((latestLongCandle.getClose() - minLongPrice) / longPriceRange) * zRange : minZScore;
-        double scaledShortPrice = shortPriceRange != 0 ?
-                minZScore + ((latestShortCandle.getClose() - minShortPrice) / shortPriceRange) * zRange : minZScore;
+        // Нормализуем текущие цены в диапазон Z-Score (по min/max цен закрытия всего ряда)
+        double scaledLongPrice = scaleToZScore(longSeries, longSeries.lastClose(), minZScore, maxZScore);
+        double scaledShortPrice = scaleToZScore(shortSeries, shortSeries.lastClose(), minZScore, maxZScore);
 
         // Вычисляем пиксельное расстояние
         int chartHeight = 720;
-        double minValue = Math.min(scaledLongPrice, scaledShortPrice);
-        double maxValue = Math.max(scaledLongPrice, scaledShortPrice);
 
         double longPixelY = convertValueToPixelY(scaledLongPrice, minZScore, maxZScore, chartHeight);
         double shortPixelY = convertValueToPixelY(scaledShortPrice, minZScore, maxZScore, chartHeight);
@@ -356,32 +262,17 @@ public class PixelSpreadService {
         String pairName = longTicker + "/" + shortTicker;
         log.debug("🔢 Быстрый расчет пиксельного спреда для пары {} (только последние цены)", pairName);
 
-        // Берем только последние N свечей для быстрого анализа
+        // Берем только последние N свечей для быстрого анализа (срез отсортированного ряда)
         int quickAnalysisSize = 50; // Берем последние 50 свечей
-        List<Candle> sortedLongCandles = new ArrayList<>(longCandles);
-        List<Candle> sortedShortCandles = new ArrayList<>(shortCandles);
-        sortedLongCandles.sort(Comparator.comparing(Candle::getTimestamp));
-        sortedShortCandles.sort(Comparator.comparing(Candle::getTimestamp));
-
-        List<Candle> recentLongCandles = sortedLongCandles.size() > quickAnalysisSize ?
-                sortedLongCandles.subList(sortedLongCandles.size() - quickAnalysisSize, sortedLongCandles.size()) :
-                sortedLongCandles;
-        List<Candle> recentShortCandles = sortedShortCandles.size() > quickAnalysisSize ?
-                sortedShortCandles.subList(sortedShortCandles.size() - quickAnalysisSize, sortedShortCandles.size()) :
-                sortedShortCandles;
-
-        // Извлекаем цены
-        List<Double> longPrices = recentLongCandles.stream().map(Candle::getClose).toList();
-        List<Double> shortPrices = recentShortCandles.stream().map(Candle::getClose).toList();
+        CandleSeries recentLongCandles = CandleSeries.of(longCandles).tail(quickAnalysisSize);
+        CandleSeries recentShortCandles = CandleSeries.of(shortCandles).tail(quickAnalysisSize);
 
         // Найти диапазон цен для нормализации
-        double minLongPrice = longPrices.stream().min(Double::compareTo).orElse(0.0);
-        double maxLongPrice = longPrices.stream().max(Double::compareTo).orElse(1.0);
-        double longPriceRange = maxLongPrice - minLongPrice;
+        double minLongPrice = recentLongCandles.minClose();
+        double longPriceRange = recentLongCandles.maxClose() - minLongPrice;
 
-        double minShortPrice = shortPrices.stream().min(Double::compareTo).orElse(0.0);
-        double maxShortPrice = shortPrices.stream().max(Double::compareTo).orElse(1.0);
-        double shortPriceRange = maxShortPrice - minShortPrice;
+        double minShortPrice = recentShortCandles.minClose();
+        double shortPriceRange = recentShortCandles.maxClose() - minShortPrice;
 
         if (longPriceRange == 0.0 || shortPriceRange == 0.0) {
             log.debug("⚠️ Нулевой диапазон цен для пары {}: long={}, short={}",
@@ -392,15 +283,14 @@ public class PixelSpreadService {
         // Используем стандартный диапазон Z-Score для нормализации ([-3, 3])
         double minZScore = -3.0;
         double maxZScore = 3.0;
-        double zRange = maxZScore - minZScore;
 
         // Берем ТОЛЬКО последние цены для быстрого расчета
-        double lastLongPrice = longPrices.get(longPrices.size() - 1);
-        double lastShortPrice = shortPrices.get(shortPrices.size() - 1);
+        double lastLongPrice = recentLongCandles.lastClose();
+        double lastShortPrice = recentShortCandles.lastClose();
 
         // Нормализация последних цен в диапазон Z-Score
-        double scaledLongPrice = minZScore + ((lastLongPrice - minLongPrice) / longPriceRange) * zRange;
-        double scaledShortPrice = minZScore + ((lastShortPrice - minShortPrice) / shortPriceRange) * zRange;
+        double scaledLongPrice = scaleToZScore(recentLongCandles, lastLongPrice, minZScore, maxZScore);
+        double scaledShortPrice = scaleToZScore(recentShortCandles, lastShortPrice, minZScore, maxZScore);
 
         // Вычисляем пиксельное расстояние между последними точками
         int chartHeight = 720;
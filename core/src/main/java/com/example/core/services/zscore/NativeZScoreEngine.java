@@ -0,0 +1,322 @@
+package com.example.core.services.zscore;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.ZScoreData;
+import com.example.shared.dto.ZScoreParam;
+import com.example.shared.models.Settings;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Расчет коинтеграции и Z-Score пары внутри core - аналог /analyze-pair Python API.
+ * <p>
+ * Свечи пары выравниваются по времени (close), дальше все считается на массивах double:
+ * <ul>
+ *     <li>скользящая OLS регрессия overvalued = alpha + beta * undervalued на окне minWindowSize
+ *     (суммы окна обновляются за O(1) на свечу);</li>
+ *     <li>spread = overvalued - beta * undervalued, mean = alpha, std - СКО остатков окна, Z-Score;</li>
+ *     <li>корреляция Пирсона окна и ее p-value (t-распределение), R²;</li>
+ *     <li>ADF (Dickey-Fuller с константой, без лагов) по спреду окна, p-value по MacKinnon;</li>
+ *     <li>по всей выборке - корреляция Пирсона и ее p-value.</li>
+ * </ul>
+ * Точек истории - totalObservations - minWindowSize, как и у Python (Settings.getExpectedZParamsCount).
+ * Тест Johansen не считается - все johansen* поля остаются пустыми, и скоринг/фильтры
+ * оценивают коинтеграцию по avgAdfPvalue, как для любого результата без Johansen.
+ */
+@Slf4j
+@Service
+public class NativeZScoreEngine {
+
+    private static final int MIN_WINDOW_SIZE = 10;
+
+    private static final NormalDistribution STANDARD_NORMAL = new NormalDistribution(null, 0, 1);
+
+    /*
+     * Аппроксимация p-value ADF по MacKinnon (1994) для одного ряда, регрессия с константой
+     * (как statsmodels mackinnonp(regression="c", N=1))
+     */
+    private static final double TAU_MAX = 2.74;
+    private static final double TAU_MIN = -18.83;
+    private static final double TAU_STAR = -1.61;
+    private static final double[] TAU_SMALL_P = {2.1659, 1.4412, 0.038269};
+    private static final double[] TAU_LARGE_P = {1.7339, 0.93202, -0.12745, -0.010368};
+
+    /**
+     * Анализ пары с автоматической ориентацией: overvalued - тикер, который сейчас дороже
+     * своей справедливой цены относительно второго (последний Z-Score >= 0)
+     *
+     * @return null, если данных недостаточно для окна minWindowSize
+     */
+    public ZScoreData analyzePair(Map<String, List<Candle>> candlesMap, Settings settings) {
+        if (candlesMap == null || candlesMap.size() != 2) {
+            log.warn("⚠️ NATIVE: для анализа пары нужны свечи ровно двух тикеров, получено: {}",
+                    candlesMap != null ? candlesMap.keySet() : "null");
+            return null;
+        }
+
+        Iterator<Map.Entry<String, List<Candle>>> iterator = candlesMap.entrySet().iterator();
+        Map.Entry<String, List<Candle>> first = iterator.next();
+        Map.Entry<String, List<Candle>> second = iterator.next();
+
+        ZScoreData result = analyzePair(first.getKey(), first.getValue(), second.getKey(), second.getValue(), settings);
+        if (result == null || result.getLatestZScore() >= 0) {
+            return result;
+        }
+
+        ZScoreData swapped = analyzePair(second.getKey(), second.getValue(), first.getKey(), first.getValue(), settings);
+        return swapped != null && swapped.getLatestZScore() > result.getLatestZScore() ? swapped : result;
+    }
+
+    /**
+     * Анализ пары с заданной ориентацией: Z-Score > 0 - overvalued дорогой относительно undervalued
+     *
+     * @return null, если данных недостаточно для окна minWindowSize
+     */
+    public ZScoreData analyzePair(String undervaluedTicker, List<Candle> undervaluedCandles,
+                                  String overvaluedTicker, List<Candle> overvaluedCandles,
+                                  Settings settings) {
+        AlignedSeries series = align(undervaluedCandles, overvaluedCandles);
+        int n = series.timestamps().length;
+        int window = (int) settings.getMinWindowSize();
+
+        if (window < MIN_WINDOW_SIZE || n <= window) {
+            log.warn("⚠️ NATIVE: недостаточно данных для пары {}/{}: общих свечей {}, окно {}",
+                    undervaluedTicker, overvaluedTicker, n, window);
+            return null;
+        }
+
+        double[] x = series.x();
+        double[] y = series.y();
+        long[] timestamps = series.timestamps();
+
+        List<ZScoreParam> history = new ArrayList<>(n - window);
+        double rSquaredSum = 0;
+        double adfPValueSum = 0;
+        int stablePeriods = 0;
+
+        TDistribution windowTDistribution = new TDistribution(null, window - 2);
+
+        // Суммы окна считаются от первых значений рядов - меньше потеря точности на больших ценах
+        double x0 = x[0];
+        double y0 = y[0];
+        double sx = 0, sy = 0, sxx = 0, syy = 0, sxy = 0;
+        for (int i = 1; i <= window; i++) {
+            double dx = x[i] - x0;
+            double dy = y[i] - y0;
+            sx += dx;
+            sy += dy;
+            sxx += dx * dx;
+            syy += dy * dy;
+            sxy += dx * dy;
+        }
+
+        for (int t = window; t < n; t++) {
+            if (t > window) {
+                double dx = x[t] - x0;
+                double dy = y[t] - y0;
+                double oldDx = x[t - window] - x0;
+                double oldDy = y[t - window] - y0;
+                sx += dx - oldDx;
+                sy += dy - oldDy;
+                sxx += dx * dx - oldDx * oldDx;
+                syy += dy * dy - oldDy * oldDy;
+                sxy += dx * dy - oldDx * oldDy;
+            }
+
+            double mx = sx / window;
+            double my = sy / window;
+            double cxx = sxx - sx * mx;
+            double cyy = syy - sy * my;
+            double cxy = sxy - sx * my;
+
+            ZScoreParam param;
+            if (cxx <= 0 || cyy <= 0) {
+                // Цена одного из тикеров не менялась на всем окне - регрессия не определена
+                param = ZScoreParam.builder()
+                        .zscore(0).pvalue(1).adfpvalue(1).correlation(0)
+                        .alpha(0).beta(0).spread(y[t]).mean(y[t]).std(0)
+                        .timestamp(timestamps[t])
+                        .build();
+                adfPValueSum += 1;
+            } else {
+                double beta = cxy / cxx;
+                double alpha = (my + y0) - beta * (mx + x0);
+                double std = Math.sqrt(Math.max(cyy - beta * cxy, 0) / window);
+                double spread = y[t] - beta * x[t];
+                double zScore = std > 0 ? (spread - alpha) / std : 0;
+                double correlation = cxy / Math.sqrt(cxx * cyy);
+                double adfPValue = windowAdfPValue(x, y, t - window + 1, t, alpha, beta);
+
+                param = ZScoreParam.builder()
+                        .zscore(zScore)
+                        .pvalue(correlationPValue(correlation, window, windowTDistribution))
+                        .adfpvalue(adfPValue)
+                        .correlation(correlation)
+                        .alpha(alpha)
+                        .beta(beta)
+                        .spread(spread)
+                        .mean(alpha)
+                        .std(std)
+                        .timestamp(timestamps[t])
+                        .build();
+
+                rSquaredSum += correlation * correlation;
+                adfPValueSum += adfPValue;
+                if (adfPValue < settings.getMaxAdfValue()) {
+                    stablePeriods++;
+                }
+            }
+            history.add(param);
+        }
+
+        double correlation = pearson(x, y);
+        int points = history.size();
+
+        return ZScoreData.builder()
+                .underValuedTicker(undervaluedTicker)
+                .overValuedTicker(overvaluedTicker)
+                .pearsonCorr(correlation)
+                .pearsonCorrPValue(correlationPValue(correlation, n, new TDistribution(null, n - 2)))
+                .latestZScore(history.get(points - 1).getZscore())
+                .totalObservations(n)
+                .avgRSquared(rSquaredSum / points)
+                .avgAdfPvalue(adfPValueSum / points)
+                .stablePeriods(stablePeriods)
+                .zScoreHistory(history)
+                .build();
+    }
+
+    private double windowAdfPValue(double[] x, double[] y, int from, int to, double alpha, double beta) {
+        return mackinnonPValue(windowAdfStatistic(x, y, from, to, alpha, beta));
+    }
+
+    /**
+     * Статистика ADF с константой по спреду окна [from, to]: Δs_i = a + gamma * s_{i-1}, tau = gamma / se(gamma).
+     * Спред берется без alpha (центрирован), на статистику это не влияет.
+     * Для вырожденного окна - NaN (p-value 1) или -∞ (спред без остатков сходится, p-value 0)
+     */
+    static double windowAdfStatistic(double[] x, double[] y, int from, int to, double alpha, double beta) {
+        int m = to - from;
+        double su = 0, sv = 0, suu = 0, suv = 0, svv = 0;
+        double previous = y[from] - beta * x[from] - alpha;
+        for (int i = from + 1; i <= to; i++) {
+            double current = y[i] - beta * x[i] - alpha;
+            double delta = current - previous;
+            su += previous;
+            sv += delta;
+            suu += previous * previous;
+            suv += previous * delta;
+            svv += delta * delta;
+            previous = current;
+        }
+
+        double cuu = suu - su * su / m;
+        double cuv = suv - su * sv / m;
+        double cvv = svv - sv * sv / m;
+        if (m <= 3 || cuu <= 0) {
+            return Double.NaN;
+        }
+        double gamma = cuv / cuu;
+        double sigma2 = (cvv - gamma * cuv) / (m - 2);
+        if (sigma2 <= 0) {
+            return gamma < 0 ? Double.NEGATIVE_INFINITY : Double.NaN;
+        }
+        return gamma / Math.sqrt(sigma2 / cuu);
+    }
+
+    static double mackinnonPValue(double tau) {
+        if (Double.isNaN(tau) || tau > TAU_MAX) {
+            return 1.0;
+        }
+        if (tau < TAU_MIN) {
+            return 0.0;
+        }
+        double[] coefficients = tau <= TAU_STAR ? TAU_SMALL_P : TAU_LARGE_P;
+        double polynomial = 0;
+        for (int k = coefficients.length - 1; k >= 0; k--) {
+            polynomial = polynomial * tau + coefficients[k];
+        }
+        return STANDARD_NORMAL.cumulativeProbability(polynomial);
+    }
+
+    private double correlationPValue(double correlation, int observations, TDistribution tDistribution) {
+        double r2 = correlation * correlation;
+        if (r2 >= 1) {
+            return 0.0;
+        }
+        double tStatistic = Math.abs(correlation) * Math.sqrt((observations - 2) / (1 - r2));
+        return 2 * (1 - tDistribution.cumulativeProbability(tStatistic));
+    }
+
+    private double pearson(double[] x, double[] y) {
+        double mx = mean(x);
+        double my = mean(y);
+        double cxx = 0, cyy = 0, cxy = 0;
+        for (int i = 0; i < x.length; i++) {
+            double dx = x[i] - mx;
+            double dy = y[i] - my;
+            cxx += dx * dx;
+            cyy += dy * dy;
+            cxy += dx * dy;
+        }
+        return cxx > 0 && cyy > 0 ? cxy / Math.sqrt(cxx * cyy) : 0.0;
+    }
+
+    private double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Цены close обоих тикеров на общих таймштампах (слияние двух отсортированных списков)
+     */
+    private AlignedSeries align(List<Candle> xCandles, List<Candle> yCandles) {
+        List<Candle> xs = sortedByTime(xCandles);
+        List<Candle> ys = sortedByTime(yCandles);
+        int capacity = Math.min(xs.size(), ys.size());
+        long[] timestamps = new long[capacity];
+        double[] x = new double[capacity];
+        double[] y = new double[capacity];
+
+        int i = 0, j = 0, k = 0;
+        while (i < xs.size() && j < ys.size()) {
+            long xTime = xs.get(i).getTimestamp();
+            long yTime = ys.get(j).getTimestamp();
+            if (xTime < yTime) {
+                i++;
+            } else if (xTime > yTime) {
+                j++;
+            } else {
+                timestamps[k] = xTime;
+                x[k] = xs.get(i++).getClose();
+                y[k] = ys.get(j++).getClose();
+                k++;
+            }
+        }
+        return new AlignedSeries(Arrays.copyOf(timestamps, k), Arrays.copyOf(x, k), Arrays.copyOf(y, k));
+    }
+
+    private List<Candle> sortedByTime(List<Candle> candles) {
+        if (candles == null) {
+            return List.of();
+        }
+        for (int i = 1; i < candles.size(); i++) {
+            if (candles.get(i - 1).getTimestamp() > candles.get(i).getTimestamp()) {
+                List<Candle> sorted = new ArrayList<>(candles);
+                sorted.sort(Comparator.comparingLong(Candle::getTimestamp));
+                return sorted;
+            }
+        }
+        return candles;
+    }
+
+    private record AlignedSeries(long[] timestamps, double[] x, double[] y) {
+    }
+}
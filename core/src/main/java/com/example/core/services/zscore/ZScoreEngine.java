@@ -0,0 +1,16 @@
+package com.example.core.services.zscore;
+
+/**
+ * Движок расчета коинтеграции и Z-Score для пары
+ */
+public enum ZScoreEngine {
+    /**
+     * Python API (/analyze-pair) - эталонный расчет
+     */
+    PYTHON,
+
+    /**
+     * Расчет внутри core (NativeZScoreEngine) без HTTP и сериализации свечей
+     */
+    NATIVE
+}
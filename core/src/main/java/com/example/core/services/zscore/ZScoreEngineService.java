@@ -0,0 +1,93 @@
+package com.example.core.services.zscore;
+
+import com.example.core.services.PythonAnalysisService;
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.ZScoreData;
+import com.example.shared.models.Settings;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выбор движка расчета Z-Score для одной пары: Python API или NativeZScoreEngine.
+ * <p>
+ * Движок по умолчанию - cointegration.engine.default, в каждом вызове его можно указать явно.
+ * При cointegration.engine.parity-check = true результат NATIVE дополнительно сверяется с Python
+ * (эталон) и расхождения пишутся в лог.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ZScoreEngineService {
+
+    private final PythonAnalysisService pythonAnalysisService;
+    private final NativeZScoreEngine nativeZScoreEngine;
+
+    @Value("${cointegration.engine.default:PYTHON}")
+    private ZScoreEngine defaultEngine;
+
+    @Value("${cointegration.engine.parity-check:false}")
+    private boolean parityCheck;
+
+    public ZScoreData calculateZScoreData(Settings settings, Map<String, List<Candle>> candlesMap) {
+        return calculateZScoreData(settings, candlesMap, defaultEngine);
+    }
+
+    /**
+     * Анализ пары; ориентацию (undervalued/overvalued) определяет движок
+     */
+    public ZScoreData calculateZScoreData(Settings settings, Map<String, List<Candle>> candlesMap, ZScoreEngine engine) {
+        if (engine != ZScoreEngine.NATIVE) {
+            return pythonAnalysisService.calculateZScoreData(settings, candlesMap);
+        }
+
+        long startNanos = System.nanoTime();
+        ZScoreData zScoreData = nativeZScoreEngine.analyzePair(candlesMap, settings);
+        log.debug("🧮 NATIVE: пара {} рассчитана за {} мкс", candlesMap.keySet(), (System.nanoTime() - startNanos) / 1000);
+
+        checkParity(settings, candlesMap, zScoreData);
+        return zScoreData;
+    }
+
+    /**
+     * Анализ уже торгуемой пары: NATIVE сохраняет ориентацию пары (long - undervalued, short - overvalued),
+     * чтобы Z-Score открытой позиции мог переходить через ноль
+     */
+    public ZScoreData calculateZScoreDataForTradingPair(Settings settings, Map<String, List<Candle>> candlesMap,
+                                                        String longTicker, String shortTicker) {
+        if (defaultEngine != ZScoreEngine.NATIVE) {
+            return pythonAnalysisService.calculateZScoreData(settings, candlesMap);
+        }
+
+        ZScoreData zScoreData = nativeZScoreEngine.analyzePair(
+                longTicker, candlesMap.get(longTicker), shortTicker, candlesMap.get(shortTicker), settings);
+        checkParity(settings, candlesMap, zScoreData);
+        return zScoreData;
+    }
+
+    private void checkParity(Settings settings, Map<String, List<Candle>> candlesMap, ZScoreData nativeData) {
+        if (!parityCheck || nativeData == null) {
+            return;
+        }
+        try {
+            ZScoreData pythonData = pythonAnalysisService.calculateZScoreData(settings, candlesMap);
+            if (pythonData == null) {
+                log.warn("🔬 PARITY {}: Python вернул null", candlesMap.keySet());
+                return;
+            }
+            boolean sameOrientation = nativeData.getOverValuedTicker().equals(pythonData.getOverValuedTicker());
+            log.info("🔬 PARITY {}: ориентация {}, z native={} python={}, avgAdfP native={} python={}, corr native={} python={}, наблюдений native={} python={}",
+                    candlesMap.keySet(), sameOrientation ? "совпадает" : "РАЗНАЯ",
+                    nativeData.getLatestZScore(), pythonData.getLatestZScore(),
+                    nativeData.getAvgAdfPvalue(), pythonData.getAvgAdfPvalue(),
+                    nativeData.getPearsonCorr(), pythonData.getPearsonCorr(),
+                    nativeData.getTotalObservations(), pythonData.getTotalObservations());
+        } catch (Exception e) {
+            log.warn("🔬 PARITY {}: ошибка сверки с Python: {}", candlesMap.keySet(), e.getMessage());
+        }
+    }
+}
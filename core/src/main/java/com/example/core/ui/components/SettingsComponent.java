@@ -1595,6 +1595,14 @@ public class SettingsComponent extends VerticalLayout {
         candleCacheUpdateSchedulerCheckbox.setValue(currentSettings.getSchedulerCandleCacheUpdateEnabled() != null ? currentSettings.getSchedulerCandleCacheUpdateEnabled() : true);
         candleCacheStatsSchedulerCheckbox.setValue(currentSettings.getSchedulerCandleCacheStatsEnabled() != null ? currentSettings.getSchedulerCandleCacheStatsEnabled() : true);
 
+        NumberField updateTradesConcurrencyField = new NumberField("UpdateTrades: пар параллельно");
+        updateTradesConcurrencyField.setHelperText("Сколько пар обновляется одновременно (1 = последовательно)");
+        setNumberFieldProperties(updateTradesConcurrencyField, 1, 1);
+        settingsBinder.forField(updateTradesConcurrencyField)
+                .withValidator(value -> value != null && value >= 1, "Количество должно быть не меньше 1")
+                .bind(settings -> (double) settings.getSchedulerUpdateTradesConcurrency(),
+                        (settings, value) -> settings.setSchedulerUpdateTradesConcurrency(value.intValue()));
+
         // Создаем вертикальные компоновки для шедуллеров с CRON
         VerticalLayout stablePairsLayout = new VerticalLayout();
         stablePairsLayout.setSpacing(false);
@@ -1614,6 +1622,7 @@ public class SettingsComponent extends VerticalLayout {
         // Добавляем компоненты в форму
         schedulerForm.add(
                 updateTradesSchedulerCheckbox,
+                updateTradesConcurrencyField,
                 stablePairsLayout,
                 monitoringPairsUpdateLayout,
                 portfolioSnapshotSchedulerCheckbox,
@@ -5,6 +5,7 @@ import com.example.core.processors.UpdateTradeProcessor;
 import com.example.core.services.AveragingService;
 import com.example.core.services.PairService;
 import com.example.core.services.SettingsService;
+import com.example.shared.dto.PairListItem;
 import com.example.shared.dto.StartNewTradeRequest;
 import com.example.shared.dto.UpdateTradeRequest;
 import com.example.shared.enums.TradeStatus;
@@ -46,11 +47,11 @@ public class TradingPairsComponent extends VerticalLayout {
     private final AveragingService averagingService;
     private final SettingsService settingsService;
 
-    private final Grid<Pair> selectedPairsGrid;
-    private final Grid<Pair> tradingPairsGrid;
-    private final Grid<Pair> closedPairsGrid;
-    private final Grid<Pair> errorPairsGrid;
-    private final Grid<Pair> observedPairsGrid;
+    private final Grid<PairListItem> selectedPairsGrid;
+    private final Grid<PairListItem> tradingPairsGrid;
+    private final Grid<PairListItem> closedPairsGrid;
+    private final Grid<PairListItem> errorPairsGrid;
+    private final Grid<PairListItem> observedPairsGrid;
     private final VerticalLayout unrealizedProfitLayout;
 
     private Consumer<Void> uiUpdateCallback;
@@ -70,11 +71,11 @@ public class TradingPairsComponent extends VerticalLayout {
         this.averagingService = averagingService;
         this.settingsService = settingsService;
 
-        this.selectedPairsGrid = new Grid<>(Pair.class, false);
-        this.tradingPairsGrid = new Grid<>(Pair.class, false);
-        this.closedPairsGrid = new Grid<>(Pair.class, false);
-        this.errorPairsGrid = new Grid<>(Pair.class, false);
-        this.observedPairsGrid = new Grid<>(Pair.class, false);
+        this.selectedPairsGrid = new Grid<>(PairListItem.class, false);
+        this.tradingPairsGrid = new Grid<>(PairListItem.class, false);
+        this.closedPairsGrid = new Grid<>(PairListItem.class, false);
+        this.errorPairsGrid = new Grid<>(PairListItem.class, false);
+        this.observedPairsGrid = new Grid<>(PairListItem.class, false);
         this.unrealizedProfitLayout = new VerticalLayout();
 
         initializeComponent();
@@ -105,8 +106,8 @@ public class TradingPairsComponent extends VerticalLayout {
     }
 
     private void setupSelectedPairsGrid() {
-        selectedPairsGrid.addColumn(Pair::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        selectedPairsGrid.addColumn(Pair::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        selectedPairsGrid.addColumn(PairListItem::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        selectedPairsGrid.addColumn(PairListItem::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         selectedPairsGrid.addColumn(p -> NumberFormatter.formatBigDecimal(p.getZScoreCurrent() != null ? p.getZScoreCurrent().doubleValue() : 0.0)).setHeader("Z-скор").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         selectedPairsGrid.addColumn(p -> NumberFormatter.formatBigDecimal(p.getPValueCurrent() != null ? p.getPValueCurrent().doubleValue() : 0.0)).setHeader("PValue (curr)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
@@ -118,7 +119,7 @@ public class TradingPairsComponent extends VerticalLayout {
         selectedPairsGrid.addColumn(p -> p.getTotalScore() != null ? p.getTotalScore().toString() : "").setHeader("Скор факт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         selectedPairsGrid.addColumn(p -> p.getStabilityRating() != null ? p.getStabilityRating() : "").setHeader("Рейтинг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        selectedPairsGrid.addColumn(Pair::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        selectedPairsGrid.addColumn(PairListItem::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         selectedPairsGrid.addColumn(p -> String.valueOf(p.getSettingsCandleLimit() != null ? p.getSettingsCandleLimit().intValue() : 0)).setHeader("Свечей").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         selectedPairsGrid.addColumn(p -> {
             if (p.getMinVolMln() != null) {
@@ -139,14 +140,14 @@ public class TradingPairsComponent extends VerticalLayout {
     }
 
     private void setupPairsGrid() {
-        tradingPairsGrid.addColumn(Pair::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        tradingPairsGrid.addColumn(Pair::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        tradingPairsGrid.addColumn(PairListItem::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        tradingPairsGrid.addColumn(PairListItem::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         tradingPairsGrid.addColumn(new ComponentRenderer<>(this::createPairsChartActionButtons)).setHeader("Чарт").setSortable(true).setAutoWidth(true);
 
         tradingPairsGrid.addColumn(p -> safeScale(p.getPortfolioBeforeTradeUSDT(), 2) + "$").setHeader("Баланс ДО").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        tradingPairsGrid.addColumn(Pair::getFormattedProfitCommon).setHeader("Профит Общий").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        tradingPairsGrid.addColumn(PairListItem::getFormattedProfitCommon).setHeader("Профит Общий").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         tradingPairsGrid.addColumn(p -> p.getAveragingCount() != null ? String.valueOf(p.getAveragingCount()) : "0").setHeader("Усреднений").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
@@ -164,11 +165,11 @@ public class TradingPairsComponent extends VerticalLayout {
         tradingPairsGrid.addColumn(p -> safeScale(p.getMaxZ(), 2)).setHeader("Z-скор (Max)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         tradingPairsGrid.addColumn(p -> safeScale(p.getMinZ(), 2)).setHeader("Z-скор (Min)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        tradingPairsGrid.addColumn(Pair::getFormattedTimeToMinProfit).setHeader("Минут до min профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        tradingPairsGrid.addColumn(Pair::getFormattedTimeToMaxProfit).setHeader("Минут до max профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        tradingPairsGrid.addColumn(PairListItem::getFormattedTimeToMinProfit).setHeader("Минут до min профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        tradingPairsGrid.addColumn(PairListItem::getFormattedTimeToMaxProfit).setHeader("Минут до max профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        tradingPairsGrid.addColumn(Pair::getFormattedProfitLong).setHeader("Профит Long").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        tradingPairsGrid.addColumn(Pair::getFormattedProfitShort).setHeader("Профит Short").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        tradingPairsGrid.addColumn(PairListItem::getFormattedProfitLong).setHeader("Профит Long").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        tradingPairsGrid.addColumn(PairListItem::getFormattedProfitShort).setHeader("Профит Short").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         tradingPairsGrid.addColumn(p -> NumberFormatter.formatBigDecimal(p.getPValueEntry() != null ? p.getPValueEntry().doubleValue() : 0.0)).setHeader("Pvalue (entry)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         tradingPairsGrid.addColumn(p -> NumberFormatter.formatBigDecimal(p.getPValueCurrent() != null ? p.getPValueCurrent().doubleValue() : 0.0)).setHeader("Pvalue (curr)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
@@ -182,7 +183,7 @@ public class TradingPairsComponent extends VerticalLayout {
         tradingPairsGrid.addColumn(p -> p.getTotalScore() != null ? p.getTotalScore().toString() : "").setHeader("Скор факт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         tradingPairsGrid.addColumn(p -> p.getStabilityRating() != null ? p.getStabilityRating() : "").setHeader("Рейтинг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        tradingPairsGrid.addColumn(Pair::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        tradingPairsGrid.addColumn(PairListItem::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         tradingPairsGrid.addColumn(p -> String.valueOf(p.getSettingsCandleLimit() != null ? p.getSettingsCandleLimit().intValue() : 0)).setHeader("Свечей").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         tradingPairsGrid.addColumn(p -> {
@@ -197,15 +198,15 @@ public class TradingPairsComponent extends VerticalLayout {
     }
 
     private void setupClosedPairsGrid() {
-        closedPairsGrid.addColumn(Pair::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        closedPairsGrid.addColumn(Pair::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        closedPairsGrid.addColumn(Pair::getExitReason).setHeader("Причина выхода").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getExitReason).setHeader("Причина выхода").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         closedPairsGrid.addColumn(new ComponentRenderer<>(this::createClosedPairsActionButtons)).setHeader("Чарт").setSortable(true).setAutoWidth(true);
 
         closedPairsGrid.addColumn(p -> safeScale(p.getPortfolioBeforeTradeUSDT(), 2) + "$").setHeader("Баланс ДО").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        closedPairsGrid.addColumn(Pair::getFormattedProfitCommon).setHeader("Профит Общий").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getFormattedProfitCommon).setHeader("Профит Общий").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         closedPairsGrid.addColumn(p -> p.getAveragingCount() != null ? String.valueOf(p.getAveragingCount()) : "0").setHeader("Усреднений").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
@@ -225,11 +226,11 @@ public class TradingPairsComponent extends VerticalLayout {
         closedPairsGrid.addColumn(p -> safeScale(p.getMaxZ(), 2)).setHeader("Z-скор (Max)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         closedPairsGrid.addColumn(p -> safeScale(p.getMinZ(), 2)).setHeader("Z-скор (Min)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        closedPairsGrid.addColumn(Pair::getFormattedTimeToMinProfit).setHeader("Минут до min профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        closedPairsGrid.addColumn(Pair::getFormattedTimeToMaxProfit).setHeader("Минут до max профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getFormattedTimeToMinProfit).setHeader("Минут до min профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getFormattedTimeToMaxProfit).setHeader("Минут до max профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        closedPairsGrid.addColumn(Pair::getFormattedProfitLong).setHeader("Профит Long").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        closedPairsGrid.addColumn(Pair::getFormattedProfitShort).setHeader("Профит Short").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getFormattedProfitLong).setHeader("Профит Long").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getFormattedProfitShort).setHeader("Профит Short").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         closedPairsGrid.addColumn(p -> NumberFormatter.formatBigDecimal(p.getPValueEntry() != null ? p.getPValueEntry().doubleValue() : 0.0)).setHeader("Pvalue (entry)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         closedPairsGrid.addColumn(p -> NumberFormatter.formatBigDecimal(p.getPValueCurrent() != null ? p.getPValueCurrent().doubleValue() : 0.0)).setHeader("Pvalue (curr)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
@@ -243,7 +244,7 @@ public class TradingPairsComponent extends VerticalLayout {
         closedPairsGrid.addColumn(p -> p.getTotalScore() != null ? p.getTotalScore().toString() : "").setHeader("Скор факт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         closedPairsGrid.addColumn(p -> p.getStabilityRating() != null ? p.getStabilityRating() : "").setHeader("Рейтинг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        closedPairsGrid.addColumn(Pair::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        closedPairsGrid.addColumn(PairListItem::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         closedPairsGrid.addColumn(p -> String.valueOf(p.getSettingsCandleLimit() != null ? p.getSettingsCandleLimit().intValue() : 0)).setHeader("Свечей").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         closedPairsGrid.addColumn(p -> {
@@ -261,15 +262,15 @@ public class TradingPairsComponent extends VerticalLayout {
     }
 
     private void setupErrorPairsGrid() {
-        errorPairsGrid.addColumn(Pair::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        errorPairsGrid.addColumn(Pair::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        errorPairsGrid.addColumn(Pair::getErrorDescription).setHeader("Ошибка").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getErrorDescription).setHeader("Ошибка").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         errorPairsGrid.addColumn(new ComponentRenderer<>(this::createErrorPairsActionButtons)).setHeader("Чарт").setSortable(true).setAutoWidth(true);
 
         errorPairsGrid.addColumn(p -> safeScale(p.getPortfolioBeforeTradeUSDT(), 2) + "$").setHeader("Баланс ДО").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        errorPairsGrid.addColumn(Pair::getFormattedProfitCommon).setHeader("Профит Общий").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getFormattedProfitCommon).setHeader("Профит Общий").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         errorPairsGrid.addColumn(p -> p.getAveragingCount() != null ? String.valueOf(p.getAveragingCount()) : "0").setHeader("Усреднений").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
@@ -280,11 +281,11 @@ public class TradingPairsComponent extends VerticalLayout {
         errorPairsGrid.addColumn(p -> safeScale(p.getMaxZ(), 2)).setHeader("Z-скор (Max)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         errorPairsGrid.addColumn(p -> safeScale(p.getMinZ(), 2)).setHeader("Z-скор (Min)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        errorPairsGrid.addColumn(Pair::getFormattedTimeToMinProfit).setHeader("Минут до min профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        errorPairsGrid.addColumn(Pair::getFormattedTimeToMaxProfit).setHeader("Минут до max профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getFormattedTimeToMinProfit).setHeader("Минут до min профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getFormattedTimeToMaxProfit).setHeader("Минут до max профит").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        errorPairsGrid.addColumn(Pair::getFormattedProfitLong).setHeader("Профит Long").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        errorPairsGrid.addColumn(Pair::getFormattedProfitShort).setHeader("Профит Short").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getFormattedProfitLong).setHeader("Профит Long").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getFormattedProfitShort).setHeader("Профит Short").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         errorPairsGrid.addColumn(p -> NumberFormatter.formatBigDecimal(p.getPValueEntry() != null ? p.getPValueEntry().doubleValue() : 0.0)).setHeader("Pvalue (entry)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         errorPairsGrid.addColumn(p -> NumberFormatter.formatBigDecimal(p.getPValueCurrent() != null ? p.getPValueCurrent().doubleValue() : 0.0)).setHeader("Pvalue (curr)").setSortable(true).setAutoWidth(true).setFlexGrow(0);
@@ -298,7 +299,7 @@ public class TradingPairsComponent extends VerticalLayout {
         errorPairsGrid.addColumn(p -> p.getTotalScore() != null ? p.getTotalScore().toString() : "").setHeader("Скор факт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         errorPairsGrid.addColumn(p -> p.getStabilityRating() != null ? p.getStabilityRating() : "").setHeader("Рейтинг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        errorPairsGrid.addColumn(Pair::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        errorPairsGrid.addColumn(PairListItem::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         errorPairsGrid.addColumn(p -> String.valueOf(p.getSettingsCandleLimit() != null ? p.getSettingsCandleLimit().intValue() : 0)).setHeader("Свечей").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
 //        errorPairsGrid.addColumn(p -> TimeFormatterUtil.formatFromMillis(p.getEntryTime())).setHeader("Начало трейда").setSortable(true).setAutoWidth(true).setFlexGrow(0);
@@ -314,8 +315,8 @@ public class TradingPairsComponent extends VerticalLayout {
     }
 
     private void setupObservedPairsGrid() {
-        observedPairsGrid.addColumn(Pair::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
-        observedPairsGrid.addColumn(Pair::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        observedPairsGrid.addColumn(PairListItem::getLongTicker).setHeader("Лонг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        observedPairsGrid.addColumn(PairListItem::getShortTicker).setHeader("Шорт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
         observedPairsGrid.addColumn(new ComponentRenderer<>(this::createChartButton)).setHeader("Чарт");
 
@@ -329,7 +330,7 @@ public class TradingPairsComponent extends VerticalLayout {
         observedPairsGrid.addColumn(p -> p.getTotalScore() != null ? p.getTotalScore().toString() : "").setHeader("Скор факт").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         observedPairsGrid.addColumn(p -> p.getStabilityRating() != null ? p.getStabilityRating() : "").setHeader("Рейтинг").setSortable(true).setAutoWidth(true).setFlexGrow(0);
 
-        observedPairsGrid.addColumn(Pair::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
+        observedPairsGrid.addColumn(PairListItem::getSettingsTimeframe).setHeader("ТФ").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         observedPairsGrid.addColumn(p -> String.valueOf(p.getSettingsCandleLimit() != null ? p.getSettingsCandleLimit().intValue() : 0)).setHeader("Свечей").setSortable(true).setAutoWidth(true).setFlexGrow(0);
         observedPairsGrid.addColumn(p -> {
             if (p.getMinVolMln() != null) {
@@ -364,13 +365,17 @@ public class TradingPairsComponent extends VerticalLayout {
         observedPairsGrid.setWidthFull();
     }
 
-    private Button createStartTradingButton(Pair tradingPair) {
+    private Button createStartTradingButton(PairListItem tradingPair) {
         Button actionButton = new Button("Торговать", event -> {
             ConfirmationDialog dialog = new ConfirmationDialog("Подтверждение", "Вы уверены, что хотите начать торговлю для пары " + tradingPair.getPairName() + "?", e -> {
                 try {
+                    Pair pair = loadPair(tradingPair);
+                    if (pair == null) {
+                        return;
+                    }
                     // Ручной запуск - НЕ проверяем автотрейдинг
                     Pair newPair = startNewTradeProcessor.startNewTrade(StartNewTradeRequest.builder()
-                            .tradingPair(tradingPair)
+                            .tradingPair(pair)
                             .checkAutoTrading(false)
                             .build());
                     if (newPair != null) {
@@ -398,12 +403,16 @@ public class TradingPairsComponent extends VerticalLayout {
         return actionButton;
     }
 
-    private Button createStopTradingButton(Pair tradingPair) {
+    private Button createStopTradingButton(PairListItem tradingPair) {
         Button actionButton = new Button("Закрыть", event -> {
             ConfirmationDialog dialog = new ConfirmationDialog("Подтверждение", "Вы уверены, что хотите закрыть торговлю для пары " + tradingPair.getPairName() + "?", e -> {
                 try {
+                    Pair pair = loadPair(tradingPair);
+                    if (pair == null) {
+                        return;
+                    }
                     Pair updatedPair = updateTradeProcessor.updateTrade(UpdateTradeRequest.builder()
-                            .tradingPair(tradingPair)
+                            .tradingPair(pair)
                             .closeManually(true)
                             .build());
                     Notification.show(String.format(
@@ -423,12 +432,16 @@ public class TradingPairsComponent extends VerticalLayout {
         return actionButton;
     }
 
-    private Button createAveragingButton(Pair tradingPair) {
+    private Button createAveragingButton(PairListItem tradingPair) {
         Button actionButton = new Button("Усреднить", event -> {
             ConfirmationDialog dialog = new ConfirmationDialog("Подтверждение", "Вы уверены, что хотите усреднить пару " + tradingPair.getPairName() + "?", e -> {
                 try {
+                    Pair pair = loadPair(tradingPair);
+                    if (pair == null) {
+                        return;
+                    }
                     var settings = settingsService.getSettings();
-                    var result = averagingService.performManualAveraging(tradingPair, settings);
+                    var result = averagingService.performManualAveraging(pair, settings);
 
                     if (result.isSuccess()) {
                         Notification.show(result.getMessage());
@@ -453,7 +466,7 @@ public class TradingPairsComponent extends VerticalLayout {
 
     public void updateSelectedPairs() {
         try {
-            List<Pair> pairs = pairService.findAllByStatusOrderByEntryTimeDesc(TradeStatus.SELECTED);
+            List<PairListItem> pairs = pairService.findListItemsByStatusOrderByEntryTimeDesc(TradeStatus.SELECTED);
             selectedPairsGrid.setItems(pairs);
         } catch (Exception e) {
             log.error("Error updating selected pairs", e);
@@ -462,7 +475,7 @@ public class TradingPairsComponent extends VerticalLayout {
 
     public void updatePairs() {
         try {
-            List<Pair> pairs = pairService.findAllByStatusOrderByEntryTimeDesc(TradeStatus.TRADING);
+            List<PairListItem> pairs = pairService.findListItemsByStatusOrderByEntryTimeDesc(TradeStatus.TRADING);
             tradingPairsGrid.setItems(pairs);
         } catch (Exception e) {
             log.error("Error updating trading pairs", e);
@@ -471,7 +484,7 @@ public class TradingPairsComponent extends VerticalLayout {
 
     public void updateClosedPairs() {
         try {
-            List<Pair> pairs = pairService.findAllByStatusOrderByUpdatedTimeDesc(TradeStatus.CLOSED);
+            List<PairListItem> pairs = pairService.findListItemsByStatusOrderByUpdatedTimeDesc(TradeStatus.CLOSED);
             closedPairsGrid.setItems(pairs);
         } catch (Exception e) {
             log.error("Error updating closed pairs", e);
@@ -495,7 +508,7 @@ public class TradingPairsComponent extends VerticalLayout {
     public void updateErrorPairs() {
         try {
             // Отображаем только пары которые торговались и получили ошибку (имеют profitPercentChanges)
-            List<Pair> pairs = pairService.findTradedErrorPairs();
+            List<PairListItem> pairs = pairService.findTradedErrorListItems();
             errorPairsGrid.setItems(pairs);
         } catch (Exception e) {
             log.error("Error updating error pairs", e);
@@ -504,7 +517,7 @@ public class TradingPairsComponent extends VerticalLayout {
 
     public void updateObservedPairs() {
         try {
-            List<Pair> pairs = pairService.findAllByStatusOrderByEntryTimeDesc(TradeStatus.OBSERVED);
+            List<PairListItem> pairs = pairService.findListItemsByStatusOrderByEntryTimeDesc(TradeStatus.OBSERVED);
             observedPairsGrid.setItems(pairs);
         } catch (Exception e) {
             log.error("Error updating observed pairs", e);
@@ -521,7 +534,7 @@ public class TradingPairsComponent extends VerticalLayout {
     }
 
     public void setSelectedPairs(List<Pair> pairs) {
-        selectedPairsGrid.setItems(pairs);
+        selectedPairsGrid.setItems(pairs.stream().map(PairListItem::of).toList());
     }
 
     public void setUiUpdateCallback(Consumer<Void> callback) {
@@ -537,7 +550,7 @@ public class TradingPairsComponent extends VerticalLayout {
     /**
      * Создает кнопки действий для Selected Pairs Grid
      */
-    private HorizontalLayout createSelectedPairsChartActionButtons(Pair pair) {
+    private HorizontalLayout createSelectedPairsChartActionButtons(PairListItem pair) {
         HorizontalLayout buttonsLayout = new HorizontalLayout();
         buttonsLayout.setSpacing(true);
         buttonsLayout.setPadding(false);
@@ -551,7 +564,7 @@ public class TradingPairsComponent extends VerticalLayout {
     /**
      * Создает кнопки действий для Selected Pairs Grid
      */
-    private HorizontalLayout createSelectedPairsStartTradingActionButtons(Pair pair) {
+    private HorizontalLayout createSelectedPairsStartTradingActionButtons(PairListItem pair) {
         HorizontalLayout buttonsLayout = new HorizontalLayout();
         buttonsLayout.setSpacing(true);
         buttonsLayout.setPadding(false);
@@ -565,7 +578,7 @@ public class TradingPairsComponent extends VerticalLayout {
     /**
      * Создает кнопки действий для Trading Pairs Grid
      */
-    private HorizontalLayout createPairsChartActionButtons(Pair pair) {
+    private HorizontalLayout createPairsChartActionButtons(PairListItem pair) {
         HorizontalLayout buttonsLayout = new HorizontalLayout();
         buttonsLayout.setSpacing(true);
         buttonsLayout.setPadding(false);
@@ -576,7 +589,7 @@ public class TradingPairsComponent extends VerticalLayout {
     /**
      * Создает кнопки действий для Trading Pairs Grid
      */
-    private HorizontalLayout createPairsCloseActionButtons(Pair pair) {
+    private HorizontalLayout createPairsCloseActionButtons(PairListItem pair) {
         HorizontalLayout buttonsLayout = new HorizontalLayout();
         buttonsLayout.setSpacing(true);
         buttonsLayout.setPadding(false);
@@ -594,19 +607,24 @@ public class TradingPairsComponent extends VerticalLayout {
     /**
      * Создает кнопки действий для Closed Pairs Grid (только Chart)
      */
-    private Button createClosedPairsActionButtons(Pair pair) {
+    private Button createClosedPairsActionButtons(PairListItem pair) {
         return createChartButton(pair);
     }
 
-    private Button createErrorPairsActionButtons(Pair pair) {
+    private Button createErrorPairsActionButtons(PairListItem pair) {
         return createChartButton(pair);
     }
 
-    private Checkbox createCloseAtBreakevenCheckbox(Pair tradingPair) {
+    private Checkbox createCloseAtBreakevenCheckbox(PairListItem tradingPair) {
         Checkbox checkbox = new Checkbox(tradingPair.isCloseAtBreakeven());
         checkbox.addValueChangeListener(event -> {
+            Pair pair = loadPair(tradingPair);
+            if (pair == null) {
+                return;
+            }
+            pair.setCloseAtBreakeven(event.getValue());
+            pairService.save(pair);
             tradingPair.setCloseAtBreakeven(event.getValue());
-            pairService.save(tradingPair);
             Notification.show(String.format("Для пары %s закрытие в БУ %s",
                     tradingPair.getPairName(),
                     event.getValue() ? "включено" : "отключено"));
@@ -617,7 +635,7 @@ public class TradingPairsComponent extends VerticalLayout {
     /**
      * Создает кнопку Chart для отображения Z-Score графика
      */
-    private Button createChartButton(Pair pair) {
+    private Button createChartButton(PairListItem pair) {
         Button chartButton = new Button(VaadinIcon.LINE_CHART.create());
         chartButton.getElement().setAttribute("title", "Показать график");
         chartButton.getStyle().set("color", "#2196F3");
@@ -625,7 +643,10 @@ public class TradingPairsComponent extends VerticalLayout {
         chartButton.addClickListener(event -> {
             try {
                 log.debug("📊 Открываем чарт для пары: {}", pair.getPairName());
-                zScoreChartDialog.showChart(pair);
+                Pair fullPair = loadPair(pair);
+                if (fullPair != null) {
+                    zScoreChartDialog.showChart(fullPair);
+                }
             } catch (Exception e) {
                 log.error("❌ Ошибка при показе чарта для пары: {}", pair.getPairName(), e);
                 Notification.show("Ошибка при загрузке чарта: " + e.getMessage());
@@ -635,6 +656,18 @@ public class TradingPairsComponent extends VerticalLayout {
         return chartButton;
     }
 
+    /**
+     * Загружает полную пару для чарта или действия: строки таблиц содержат только отображаемые поля
+     */
+    private Pair loadPair(PairListItem item) {
+        Pair pair = pairService.findById(item.getId());
+        if (pair == null) {
+            log.warn("⚠️ Пара {} (id={}) не найдена", item.getPairName(), item.getId());
+            Notification.show("Пара " + item.getPairName() + " не найдена");
+        }
+        return pair;
+    }
+
     // Методы для фильтрации отображения различных типов пар
 
     public void showOnlySelectedPairs() {
@@ -723,15 +756,15 @@ public class TradingPairsComponent extends VerticalLayout {
 
     public void closeAllTradesWithConfirmation() {
         try {
-            List<Pair> tradingPairs = pairService.findAllByStatusOrderByEntryTimeDesc(TradeStatus.TRADING);
-            if (tradingPairs.isEmpty()) {
+            int tradingPairsCount = pairService.countByStatus(TradeStatus.TRADING);
+            if (tradingPairsCount == 0) {
                 Notification.show("Нет активных торговых пар для закрытия");
                 return;
             }
 
             ConfirmationDialog dialog = new ConfirmationDialog(
                     "Подтверждение",
-                    String.format("Вы уверены, что хотите закрыть все торговые пары (%d шт.)?", tradingPairs.size()),
+                    String.format("Вы уверены, что хотите закрыть все торговые пары (%d шт.)?", tradingPairsCount),
                     e -> closeAllTrades()
             );
             dialog.open();
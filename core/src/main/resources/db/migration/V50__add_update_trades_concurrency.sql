@@ -0,0 +1,6 @@
+-- Параллельное обновление пар в UpdateTradesScheduler: сколько пар обновляется одновременно
+
+ALTER TABLE settings
+    ADD COLUMN IF NOT EXISTS scheduler_update_trades_concurrency INTEGER DEFAULT 4 NOT NULL;
+
+COMMENT ON COLUMN settings.scheduler_update_trades_concurrency IS 'Максимум пар, обновляемых UpdateTradesScheduler параллельно (1 = последовательно)';
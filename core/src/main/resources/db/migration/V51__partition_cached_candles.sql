@@ -0,0 +1,235 @@
+-- Декларативное секционирование cached_candles:
+--   cached_candles                      PARTITION BY LIST (timeframe)
+--   ├── cached_candles_15min            PARTITION BY RANGE (timestamp)
+--   │   ├── cached_candles_15min_202501   месяц (для 1D/1W/1M - год)
+--   │   └── cached_candles_15min_default  свечи вне созданных периодов
+--   └── cached_candles_default          таймфреймы без своей секции
+-- Секции создает и удаляет по сроку хранения candles (CandlePartitionService) через функции ниже.
+-- Существующая несекционированная таблица (созданная Hibernate) переносится в новую структуру.
+
+-- id берется из отдельной последовательности: identity-последовательность старой таблицы удаляется вместе с ней
+CREATE SEQUENCE IF NOT EXISTS cached_candles_pk_seq;
+
+-- Имя секции таймфрейма: регистр в имени таблицы не сохраняется, поэтому 1m -> 1min, 1M -> 1mon, 4H -> 4h
+CREATE OR REPLACE FUNCTION cached_candles_partition_name(p_timeframe text)
+    RETURNS text
+    LANGUAGE sql
+    IMMUTABLE
+AS
+$$
+SELECT 'cached_candles_' || regexp_replace(
+        replace(replace(replace(replace(replace(p_timeframe, 'm', 'min'), 'M', 'mon'), 'H', 'h'), 'D', 'd'), 'W', 'w'),
+        '[^a-z0-9]', '_', 'g')
+$$;
+
+-- Период секции: крупные таймфреймы дают мало свечей в месяц - для них секция на год
+CREATE OR REPLACE FUNCTION cached_candles_partition_period(p_timeframe text)
+    RETURNS text
+    LANGUAGE sql
+    IMMUTABLE
+AS
+$$
+SELECT CASE WHEN p_timeframe IN ('1D', '1W', '1M') THEN 'year' ELSE 'month' END
+$$;
+
+-- Создает секцию таймфрейма и секцию периода, содержащего p_timestamp (мс UTC).
+-- Свечи, уже попавшие в DEFAULT секции, переносятся в новую секцию.
+-- Возвращает true, если секция периода была создана.
+CREATE OR REPLACE FUNCTION cached_candles_ensure_partition(p_timeframe text, p_timestamp bigint)
+    RETURNS boolean
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    period_unit  text      := cached_candles_partition_period(p_timeframe);
+    tf_table     text      := cached_candles_partition_name(p_timeframe);
+    period_start timestamp := date_trunc(period_unit, to_timestamp(p_timestamp / 1000.0) AT TIME ZONE 'UTC');
+    period_table text      := tf_table || '_' || to_char(period_start, CASE period_unit WHEN 'year' THEN 'YYYY' ELSE 'YYYYMM' END);
+    from_ms      bigint    := (extract(EPOCH FROM period_start AT TIME ZONE 'UTC') * 1000)::bigint;
+    to_ms        bigint    := (extract(EPOCH FROM (period_start + ('1 ' || period_unit)::interval) AT TIME ZONE 'UTC') * 1000)::bigint;
+BEGIN
+    IF to_regclass(period_table) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+
+    -- Секции создаются только под блокировкой, повторная проверка - после ее получения
+    PERFORM pg_advisory_xact_lock(hashtext('cached_candles_partitions'));
+    IF to_regclass(period_table) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+
+    IF to_regclass(tf_table) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I (LIKE cached_candles INCLUDING DEFAULTS) PARTITION BY RANGE (timestamp)', tf_table);
+        EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', tf_table || '_default', tf_table);
+        LOCK TABLE cached_candles_default IN ACCESS EXCLUSIVE MODE;
+        EXECUTE format('WITH moved AS (DELETE FROM cached_candles_default WHERE timeframe = %L RETURNING *) ' ||
+                       'INSERT INTO %I SELECT * FROM moved', p_timeframe, tf_table);
+        EXECUTE format('ALTER TABLE cached_candles ATTACH PARTITION %I FOR VALUES IN (%L)', tf_table, p_timeframe);
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE cached_candles INCLUDING DEFAULTS)', period_table);
+    EXECUTE format('LOCK TABLE %I IN ACCESS EXCLUSIVE MODE', tf_table || '_default');
+    EXECUTE format('WITH moved AS (DELETE FROM %I WHERE timestamp >= %s AND timestamp < %s RETURNING *) ' ||
+                   'INSERT INTO %I SELECT * FROM moved', tf_table || '_default', from_ms, to_ms, period_table);
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%s) TO (%s)', tf_table, period_table, from_ms, to_ms);
+    RETURN true;
+END
+$$;
+
+-- Удаляет секции периодов таймфрейма, целиком лежащие до p_before (мс UTC). Возвращает количество удаленных секций.
+CREATE OR REPLACE FUNCTION cached_candles_drop_partitions_before(p_timeframe text, p_before bigint)
+    RETURNS integer
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    part      record;
+    upper_ms  bigint;
+    dropped   integer := 0;
+BEGIN
+    IF to_regclass(cached_candles_partition_name(p_timeframe)) IS NULL THEN
+        RETURN 0;
+    END IF;
+
+    PERFORM pg_advisory_xact_lock(hashtext('cached_candles_partitions'));
+    FOR part IN
+        SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = to_regclass(cached_candles_partition_name(p_timeframe))
+        LOOP
+            -- FOR VALUES FROM ('1704067200000') TO ('1706745600000'); у DEFAULT секции границ нет
+            upper_ms := (regexp_match(part.bound, 'TO \(''?(-?[0-9]+)''?\)'))[1]::bigint;
+            IF upper_ms IS NOT NULL AND upper_ms <= p_before THEN
+                EXECUTE format('DROP TABLE %I', part.relname);
+                dropped := dropped + 1;
+            END IF;
+        END LOOP;
+    RETURN dropped;
+END
+$$;
+
+-- Удаляет свечи таймфрейма биржи: если в секции нет других бирж - секция удаляется целиком,
+-- иначе обычный DELETE. Возвращает количество удаленных свечей (для DROP - оценку по статистике).
+CREATE OR REPLACE FUNCTION cached_candles_drop_timeframe(p_exchange text, p_timeframe text)
+    RETURNS bigint
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    tf_table       text := cached_candles_partition_name(p_timeframe);
+    other_exchange boolean;
+    removed        bigint;
+BEGIN
+    IF to_regclass(tf_table) IS NULL THEN
+        DELETE FROM cached_candles WHERE exchange = p_exchange AND timeframe = p_timeframe;
+        GET DIAGNOSTICS removed = ROW_COUNT;
+        RETURN removed;
+    END IF;
+
+    PERFORM pg_advisory_xact_lock(hashtext('cached_candles_partitions'));
+    EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE exchange <> %L)', tf_table, p_exchange) INTO other_exchange;
+    IF other_exchange THEN
+        EXECUTE format('DELETE FROM %I WHERE exchange = %L', tf_table, p_exchange);
+        GET DIAGNOSTICS removed = ROW_COUNT;
+        RETURN removed;
+    END IF;
+
+    SELECT coalesce(sum(greatest(c.reltuples, 0)), 0)::bigint
+    INTO removed
+    FROM pg_partition_tree(tf_table::regclass) t
+             JOIN pg_class c ON c.oid = t.relid
+    WHERE t.isleaf;
+    EXECUTE format('DROP TABLE %I', tf_table);
+    RETURN removed;
+END
+$$;
+
+-- Несекционированная таблица освобождает имя и имена своих индексов
+DO
+$$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('cached_candles') AND relkind = 'r') THEN
+        ALTER TABLE cached_candles RENAME TO cached_candles_legacy;
+        ALTER TABLE cached_candles_legacy DROP CONSTRAINT IF EXISTS uk_cached_candles_ticker_timeframe_exchange_timestamp;
+        DROP INDEX IF EXISTS idx_cached_candles_ticker_timeframe_exchange;
+        DROP INDEX IF EXISTS idx_cached_candles_timestamp;
+        DROP INDEX IF EXISTS idx_cached_candles_ticker_timeframe_timestamp;
+        DROP INDEX IF EXISTS idx_cached_candles_exchange;
+        DROP INDEX IF EXISTS idx_cached_candles_last_before;
+        IF EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'cached_candles_pkey') THEN
+            ALTER TABLE cached_candles_legacy RENAME CONSTRAINT cached_candles_pkey TO cached_candles_legacy_pkey;
+        END IF;
+    END IF;
+END
+$$;
+
+-- Ключи секционированной таблицы обязаны содержать ключи секционирования (timeframe, timestamp)
+CREATE TABLE IF NOT EXISTS cached_candles
+(
+    id          BIGINT           NOT NULL DEFAULT nextval('cached_candles_pk_seq'),
+    ticker      VARCHAR(50)      NOT NULL,
+    timeframe   VARCHAR(10)      NOT NULL,
+    exchange    VARCHAR(20)      NOT NULL,
+    timestamp   BIGINT           NOT NULL,
+    open_price  DOUBLE PRECISION NOT NULL,
+    high_price  DOUBLE PRECISION NOT NULL,
+    low_price   DOUBLE PRECISION NOT NULL,
+    close_price DOUBLE PRECISION NOT NULL,
+    volume      DOUBLE PRECISION NOT NULL,
+    created_at  TIMESTAMP(6)     NOT NULL,
+    updated_at  TIMESTAMP(6)     NOT NULL,
+    is_valid    BOOLEAN          NOT NULL,
+    CONSTRAINT cached_candles_pkey PRIMARY KEY (id, timeframe, timestamp),
+    CONSTRAINT uk_cached_candles_ticker_timeframe_exchange_timestamp UNIQUE (ticker, timeframe, exchange, timestamp)
+) PARTITION BY LIST (timeframe);
+
+ALTER SEQUENCE cached_candles_pk_seq OWNED BY cached_candles.id;
+
+CREATE TABLE IF NOT EXISTS cached_candles_default PARTITION OF cached_candles DEFAULT;
+
+-- Покрывающий индекс для чтения последних N свечей до момента T (создается на каждой секции)
+CREATE INDEX IF NOT EXISTS idx_cached_candles_last_before
+    ON cached_candles (exchange, ticker, timeframe, timestamp DESC)
+    INCLUDE (open_price, high_price, low_price, close_price, volume);
+
+-- Перенос данных старой таблицы: сначала секции под все встречающиеся периоды, затем копирование
+DO
+$$
+DECLARE
+    legacy_period record;
+BEGIN
+    IF to_regclass('cached_candles_legacy') IS NULL THEN
+        RETURN;
+    END IF;
+
+    FOR legacy_period IN
+        SELECT DISTINCT timeframe, date_trunc('month', to_timestamp(timestamp / 1000.0) AT TIME ZONE 'UTC') AS month_start
+        FROM cached_candles_legacy
+        LOOP
+            PERFORM cached_candles_ensure_partition(legacy_period.timeframe,
+                                                    (extract(EPOCH FROM legacy_period.month_start AT TIME ZONE 'UTC') * 1000)::bigint);
+        END LOOP;
+
+    INSERT INTO cached_candles (id, ticker, timeframe, exchange, timestamp, open_price, high_price, low_price,
+                                close_price, volume, created_at, updated_at, is_valid)
+    SELECT id,
+           ticker,
+           timeframe,
+           exchange,
+           timestamp,
+           open_price,
+           high_price,
+           low_price,
+           close_price,
+           volume,
+           coalesce(created_at, now()),
+           coalesce(updated_at, now()),
+           coalesce(is_valid, true)
+    FROM cached_candles_legacy
+    ON CONFLICT DO NOTHING;
+
+    PERFORM setval('cached_candles_pk_seq', greatest((SELECT max(id) FROM cached_candles), 1));
+    DROP TABLE cached_candles_legacy;
+END
+$$;
@@ -0,0 +1,239 @@
+-- Компактное хранение свечей:
+--   candle_series - словарь серий (exchange, ticker, timeframe) -> целочисленный id
+--   candle_bars   - строки свечей (timestamp, OHLCV, series_id, timeframe) без строк-повторов и служебных колонок,
+--                   секционирование то же, что в V51: LIST (timeframe) -> RANGE (timestamp) по месяцу/году
+--   cached_candles - представление в прежнем виде (ticker, timeframe, exchange, timestamp, OHLCV) для JPA-запросов
+-- timeframe остается в строке как ключ секционирования (3-4 байта), цены - float8 без потерь.
+
+CREATE TABLE IF NOT EXISTS candle_series
+(
+    id         SERIAL PRIMARY KEY,
+    exchange   VARCHAR(20)  NOT NULL,
+    ticker     VARCHAR(50)  NOT NULL,
+    timeframe  VARCHAR(10)  NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL DEFAULT now(),
+    CONSTRAINT uk_candle_series_exchange_ticker_timeframe UNIQUE (exchange, ticker, timeframe)
+);
+
+-- id серии, серия создается при первом обращении
+CREATE OR REPLACE FUNCTION candle_series_id(p_exchange text, p_ticker text, p_timeframe text)
+    RETURNS integer
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    series integer;
+BEGIN
+    SELECT id INTO series FROM candle_series WHERE exchange = p_exchange AND ticker = p_ticker AND timeframe = p_timeframe;
+    IF series IS NULL THEN
+        INSERT INTO candle_series (exchange, ticker, timeframe)
+        VALUES (p_exchange, p_ticker, p_timeframe)
+        ON CONFLICT DO NOTHING
+        RETURNING id INTO series;
+        -- серию параллельно создала другая транзакция
+        IF series IS NULL THEN
+            SELECT id INTO series FROM candle_series WHERE exchange = p_exchange AND ticker = p_ticker AND timeframe = p_timeframe;
+        END IF;
+    END IF;
+    RETURN series;
+END
+$$;
+
+-- Порядок колонок без выравнивающих пропусков: сначала 8-байтовые, затем int4 и varchar.
+-- Первичный ключ покрывающий (INCLUDE) - чтение последних N свечей идет index-only scan
+CREATE TABLE IF NOT EXISTS candle_bars
+(
+    timestamp   BIGINT           NOT NULL,
+    open_price  DOUBLE PRECISION NOT NULL,
+    high_price  DOUBLE PRECISION NOT NULL,
+    low_price   DOUBLE PRECISION NOT NULL,
+    close_price DOUBLE PRECISION NOT NULL,
+    volume      DOUBLE PRECISION NOT NULL,
+    series_id   INTEGER          NOT NULL,
+    timeframe   VARCHAR(10)      NOT NULL,
+    CONSTRAINT candle_bars_pkey PRIMARY KEY (series_id, timeframe, timestamp)
+        INCLUDE (open_price, high_price, low_price, close_price, volume)
+) PARTITION BY LIST (timeframe);
+
+CREATE TABLE IF NOT EXISTS candle_bars_default PARTITION OF candle_bars DEFAULT;
+
+CREATE OR REPLACE FUNCTION candle_bars_partition_name(p_timeframe text)
+    RETURNS text
+    LANGUAGE sql
+    IMMUTABLE
+AS
+$$
+SELECT 'candle_bars_' || regexp_replace(
+        replace(replace(replace(replace(replace(p_timeframe, 'm', 'min'), 'M', 'mon'), 'H', 'h'), 'D', 'd'), 'W', 'w'),
+        '[^a-z0-9]', '_', 'g')
+$$;
+
+CREATE OR REPLACE FUNCTION candle_bars_partition_period(p_timeframe text)
+    RETURNS text
+    LANGUAGE sql
+    IMMUTABLE
+AS
+$$
+SELECT CASE WHEN p_timeframe IN ('1D', '1W', '1M') THEN 'year' ELSE 'month' END
+$$;
+
+-- Создает секцию таймфрейма и секцию периода, содержащего p_timestamp (мс UTC),
+-- перенося свечи из DEFAULT секций. Возвращает true, если секция периода была создана.
+CREATE OR REPLACE FUNCTION candle_bars_ensure_partition(p_timeframe text, p_timestamp bigint)
+    RETURNS boolean
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    period_unit  text      := candle_bars_partition_period(p_timeframe);
+    tf_table     text      := candle_bars_partition_name(p_timeframe);
+    period_start timestamp := date_trunc(period_unit, to_timestamp(p_timestamp / 1000.0) AT TIME ZONE 'UTC');
+    period_table text      := tf_table || '_' || to_char(period_start, CASE period_unit WHEN 'year' THEN 'YYYY' ELSE 'YYYYMM' END);
+    from_ms      bigint    := (extract(EPOCH FROM period_start AT TIME ZONE 'UTC') * 1000)::bigint;
+    to_ms        bigint    := (extract(EPOCH FROM (period_start + ('1 ' || period_unit)::interval) AT TIME ZONE 'UTC') * 1000)::bigint;
+BEGIN
+    IF to_regclass(period_table) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+
+    PERFORM pg_advisory_xact_lock(hashtext('candle_bars_partitions'));
+    IF to_regclass(period_table) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+
+    IF to_regclass(tf_table) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I (LIKE candle_bars) PARTITION BY RANGE (timestamp)', tf_table);
+        EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', tf_table || '_default', tf_table);
+        LOCK TABLE candle_bars_default IN ACCESS EXCLUSIVE MODE;
+        EXECUTE format('WITH moved AS (DELETE FROM candle_bars_default WHERE timeframe = %L RETURNING *) ' ||
+                       'INSERT INTO %I SELECT * FROM moved', p_timeframe, tf_table);
+        EXECUTE format('ALTER TABLE candle_bars ATTACH PARTITION %I FOR VALUES IN (%L)', tf_table, p_timeframe);
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE candle_bars)', period_table);
+    EXECUTE format('LOCK TABLE %I IN ACCESS EXCLUSIVE MODE', tf_table || '_default');
+    EXECUTE format('WITH moved AS (DELETE FROM %I WHERE timestamp >= %s AND timestamp < %s RETURNING *) ' ||
+                   'INSERT INTO %I SELECT * FROM moved', tf_table || '_default', from_ms, to_ms, period_table);
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%s) TO (%s)', tf_table, period_table, from_ms, to_ms);
+    RETURN true;
+END
+$$;
+
+-- Удаляет секции периодов таймфрейма, целиком лежащие до p_before (мс UTC). Возвращает количество удаленных секций.
+CREATE OR REPLACE FUNCTION candle_bars_drop_partitions_before(p_timeframe text, p_before bigint)
+    RETURNS integer
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    part     record;
+    upper_ms bigint;
+    dropped  integer := 0;
+BEGIN
+    IF to_regclass(candle_bars_partition_name(p_timeframe)) IS NULL THEN
+        RETURN 0;
+    END IF;
+
+    PERFORM pg_advisory_xact_lock(hashtext('candle_bars_partitions'));
+    FOR part IN
+        SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = to_regclass(candle_bars_partition_name(p_timeframe))
+        LOOP
+            upper_ms := (regexp_match(part.bound, 'TO \(''?(-?[0-9]+)''?\)'))[1]::bigint;
+            IF upper_ms IS NOT NULL AND upper_ms <= p_before THEN
+                EXECUTE format('DROP TABLE %I', part.relname);
+                dropped := dropped + 1;
+            END IF;
+        END LOOP;
+    RETURN dropped;
+END
+$$;
+
+-- Удаляет свечи таймфрейма биржи: секцией целиком, если в словаре нет серий этого таймфрейма
+-- других бирж, иначе DELETE по id серий. Возвращает количество удаленных свечей (для DROP - оценку).
+CREATE OR REPLACE FUNCTION candle_bars_drop_timeframe(p_exchange text, p_timeframe text)
+    RETURNS bigint
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    tf_table text := candle_bars_partition_name(p_timeframe);
+    removed  bigint;
+BEGIN
+    IF to_regclass(tf_table) IS NULL
+        OR EXISTS (SELECT 1 FROM candle_series WHERE timeframe = p_timeframe AND exchange <> p_exchange) THEN
+        DELETE
+        FROM candle_bars
+        WHERE timeframe = p_timeframe
+          AND series_id IN (SELECT id FROM candle_series WHERE exchange = p_exchange AND timeframe = p_timeframe);
+        GET DIAGNOSTICS removed = ROW_COUNT;
+        RETURN removed;
+    END IF;
+
+    PERFORM pg_advisory_xact_lock(hashtext('candle_bars_partitions'));
+    SELECT coalesce(sum(greatest(c.reltuples, 0)), 0)::bigint
+    INTO removed
+    FROM pg_partition_tree(tf_table::regclass) t
+             JOIN pg_class c ON c.oid = t.relid
+    WHERE t.isleaf;
+    EXECUTE format('DROP TABLE %I', tf_table);
+    RETURN removed;
+END
+$$;
+
+-- Перенос свечей из cached_candles (V51 или таблица, созданная Hibernate) в словарь и candle_bars
+DO
+$$
+DECLARE
+    source_period record;
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('cached_candles') AND relkind IN ('r', 'p')) THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO candle_series (exchange, ticker, timeframe)
+    SELECT DISTINCT exchange, ticker, timeframe
+    FROM cached_candles
+    ON CONFLICT DO NOTHING;
+
+    FOR source_period IN
+        SELECT DISTINCT timeframe, date_trunc('month', to_timestamp(timestamp / 1000.0) AT TIME ZONE 'UTC') AS month_start
+        FROM cached_candles
+        LOOP
+            PERFORM candle_bars_ensure_partition(source_period.timeframe,
+                                                 (extract(EPOCH FROM source_period.month_start AT TIME ZONE 'UTC') * 1000)::bigint);
+        END LOOP;
+
+    INSERT INTO candle_bars (timestamp, open_price, high_price, low_price, close_price, volume, series_id, timeframe)
+    SELECT c.timestamp, c.open_price, c.high_price, c.low_price, c.close_price, c.volume, s.id, c.timeframe
+    FROM cached_candles c
+             JOIN candle_series s ON s.exchange = c.exchange AND s.ticker = c.ticker AND s.timeframe = c.timeframe
+    ON CONFLICT DO NOTHING;
+
+    DROP TABLE cached_candles CASCADE;
+END
+$$;
+
+DROP FUNCTION IF EXISTS cached_candles_ensure_partition(text, bigint);
+DROP FUNCTION IF EXISTS cached_candles_drop_partitions_before(text, bigint);
+DROP FUNCTION IF EXISTS cached_candles_drop_timeframe(text, text);
+DROP FUNCTION IF EXISTS cached_candles_partition_period(text);
+DROP FUNCTION IF EXISTS cached_candles_partition_name(text);
+DROP SEQUENCE IF EXISTS cached_candles_pk_seq;
+
+-- Прежний вид строк для чтения через JPA (CachedCandle). Условия по ticker/exchange уходят в словарь,
+-- по timeframe - отсекают секции candle_bars
+CREATE OR REPLACE VIEW cached_candles AS
+SELECT s.ticker,
+       b.timeframe,
+       s.exchange,
+       b.timestamp,
+       b.open_price,
+       b.high_price,
+       b.low_price,
+       b.close_price,
+       b.volume
+FROM candle_bars b
+         JOIN candle_series s ON s.id = b.series_id;
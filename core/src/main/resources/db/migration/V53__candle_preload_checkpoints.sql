@@ -0,0 +1,19 @@
+-- Контрольные точки конвейерной предзагрузки свечей (CandlePreloadPipeline в candles):
+-- до какого timestamp серия уже загружена в candle_bars, чтобы прерванная предзагрузка
+-- продолжалась с места остановки, а завершенная - догружала только свежие свечи.
+
+CREATE TABLE IF NOT EXISTS candle_preload_checkpoints
+(
+    series_id        INTEGER      NOT NULL PRIMARY KEY REFERENCES candle_series (id) ON DELETE CASCADE,
+    from_timestamp   BIGINT       NOT NULL,
+    oldest_timestamp BIGINT,
+    newest_timestamp BIGINT,
+    completed        BOOLEAN      NOT NULL DEFAULT FALSE,
+    updated_at       TIMESTAMP(6) NOT NULL DEFAULT now()
+);
+
+COMMENT ON TABLE candle_preload_checkpoints IS 'Прогресс предзагрузки свечей по сериям candle_series';
+COMMENT ON COLUMN candle_preload_checkpoints.from_timestamp IS 'Нижняя граница (мс), до которой запрошена история серии';
+COMMENT ON COLUMN candle_preload_checkpoints.oldest_timestamp IS 'Самая старая сохраненная свеча непрерывного участка (мс)';
+COMMENT ON COLUMN candle_preload_checkpoints.newest_timestamp IS 'Самая новая сохраненная свеча непрерывного участка (мс)';
+COMMENT ON COLUMN candle_preload_checkpoints.completed IS 'История загружена до from_timestamp (или до листинга тикера)';
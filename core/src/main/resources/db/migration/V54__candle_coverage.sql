@@ -0,0 +1,13 @@
+-- Карта покрытия серий свечей для фоновой догрузки пропусков (CandleGapRepairService в candles):
+-- интервалы времени, которые уже загружены с биржи или подтверждены непрерывными в candle_bars.
+-- Пропуск внутри покрытого интервала есть и на бирже - повторно его не запрашиваем.
+
+CREATE TABLE IF NOT EXISTS candle_coverage
+(
+    series_id       INTEGER NOT NULL REFERENCES candle_series (id) ON DELETE CASCADE,
+    start_timestamp BIGINT  NOT NULL,
+    end_timestamp   BIGINT  NOT NULL,
+    PRIMARY KEY (series_id, start_timestamp)
+);
+
+COMMENT ON TABLE candle_coverage IS 'Покрытые интервалы серий candle_series (timestamp начала свечи в мс, границы включительно)';
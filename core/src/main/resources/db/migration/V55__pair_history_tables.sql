@@ -0,0 +1,123 @@
+-- Временные ряды пар в отдельных таблицах вместо JSON TEXT колонок pairs (PairHistoryRepository в core):
+-- точка истории - одна строка по (pair_uuid, timestamp), обновление пары дописывает только новые строки
+-- вместо перезаписи всего JSON документа. Существующие JSON истории переносятся в таблицы, колонки удаляются.
+
+CREATE TABLE IF NOT EXISTS pair_zscore_history
+(
+    pair_uuid   UUID             NOT NULL REFERENCES pairs (uuid) ON DELETE CASCADE,
+    timestamp   BIGINT           NOT NULL,
+    zscore      DOUBLE PRECISION NOT NULL,
+    pvalue      DOUBLE PRECISION NOT NULL,
+    adf_pvalue  DOUBLE PRECISION NOT NULL,
+    correlation DOUBLE PRECISION NOT NULL,
+    alpha       DOUBLE PRECISION NOT NULL,
+    beta        DOUBLE PRECISION NOT NULL,
+    spread      DOUBLE PRECISION NOT NULL,
+    mean        DOUBLE PRECISION NOT NULL,
+    std         DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (pair_uuid, timestamp)
+);
+
+CREATE TABLE IF NOT EXISTS pair_profit_history
+(
+    pair_uuid      UUID             NOT NULL REFERENCES pairs (uuid) ON DELETE CASCADE,
+    timestamp      BIGINT           NOT NULL,
+    profit_percent DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (pair_uuid, timestamp)
+);
+
+CREATE TABLE IF NOT EXISTS pair_correlation_history
+(
+    pair_uuid   UUID             NOT NULL REFERENCES pairs (uuid) ON DELETE CASCADE,
+    timestamp   BIGINT           NOT NULL,
+    correlation DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (pair_uuid, timestamp)
+);
+
+CREATE TABLE IF NOT EXISTS pair_candles
+(
+    pair_uuid   UUID             NOT NULL REFERENCES pairs (uuid) ON DELETE CASCADE,
+    long_ticker BOOLEAN          NOT NULL,
+    timestamp   BIGINT           NOT NULL,
+    open        DOUBLE PRECISION NOT NULL,
+    high        DOUBLE PRECISION NOT NULL,
+    low         DOUBLE PRECISION NOT NULL,
+    close       DOUBLE PRECISION NOT NULL,
+    volume      DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (pair_uuid, long_ticker, timestamp)
+);
+
+COMMENT ON TABLE pair_zscore_history IS 'История Z-Score пар (timestamp в мс)';
+COMMENT ON TABLE pair_profit_history IS 'История профита пар в % (timestamp в мс)';
+COMMENT ON TABLE pair_correlation_history IS 'История корреляции пар (timestamp в мс)';
+COMMENT ON TABLE pair_candles IS 'Текущее окно свечей long (long_ticker = true) и short тикеров пары';
+
+-- Перенос существующих JSON историй. Битый JSON пропускаем, а не валим миграцию
+CREATE OR REPLACE FUNCTION pg_temp.safe_jsonb_array(value TEXT) RETURNS JSONB AS
+$$
+BEGIN
+    IF value IS NULL OR left(ltrim(value), 1) <> '[' THEN
+        RETURN '[]'::jsonb;
+    END IF;
+    RETURN value::jsonb;
+EXCEPTION
+    WHEN others THEN
+        RETURN '[]'::jsonb;
+END;
+$$ LANGUAGE plpgsql;
+
+INSERT INTO pair_zscore_history (pair_uuid, timestamp, zscore, pvalue, adf_pvalue, correlation, alpha, beta, spread, mean, std)
+SELECT p.uuid,
+       (e ->> 'timestamp')::BIGINT,
+       COALESCE((e ->> 'zscore')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'pvalue')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'adfpvalue')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'correlation')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'alpha')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'beta')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'spread')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'mean')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'std')::DOUBLE PRECISION, 0)
+FROM pairs p,
+     jsonb_array_elements(pg_temp.safe_jsonb_array(p.z_score_history_json)) e
+WHERE e ->> 'timestamp' IS NOT NULL
+ON CONFLICT (pair_uuid, timestamp) DO NOTHING;
+
+INSERT INTO pair_profit_history (pair_uuid, timestamp, profit_percent)
+SELECT p.uuid, (e ->> 'timestamp')::BIGINT, COALESCE((e ->> 'profitPercent')::DOUBLE PRECISION, 0)
+FROM pairs p,
+     jsonb_array_elements(pg_temp.safe_jsonb_array(p.profit_history_json)) e
+WHERE e ->> 'timestamp' IS NOT NULL
+ON CONFLICT (pair_uuid, timestamp) DO NOTHING;
+
+INSERT INTO pair_correlation_history (pair_uuid, timestamp, correlation)
+SELECT p.uuid, (e ->> 'timestamp')::BIGINT, COALESCE((e ->> 'correlation')::DOUBLE PRECISION, 0)
+FROM pairs p,
+     jsonb_array_elements(pg_temp.safe_jsonb_array(p.correlation_history_json)) e
+WHERE e ->> 'timestamp' IS NOT NULL
+ON CONFLICT (pair_uuid, timestamp) DO NOTHING;
+
+INSERT INTO pair_candles (pair_uuid, long_ticker, timestamp, open, high, low, close, volume)
+SELECT p.uuid,
+       c.long_ticker,
+       (e ->> 'timestamp')::BIGINT,
+       COALESCE((e ->> 'open')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'high')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'low')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'close')::DOUBLE PRECISION, 0),
+       COALESCE((e ->> 'volume')::DOUBLE PRECISION, 0)
+FROM pairs p
+         CROSS JOIN LATERAL (VALUES (TRUE, p.long_ticker_candles_json),
+                                    (FALSE, p.short_ticker_candles_json)) AS c (long_ticker, candles_json),
+     jsonb_array_elements(pg_temp.safe_jsonb_array(c.candles_json)) e
+WHERE e ->> 'timestamp' IS NOT NULL
+ON CONFLICT (pair_uuid, long_ticker, timestamp) DO NOTHING;
+
+-- pixel_spread_history_json никогда не заполнялась: пиксельный спред пересчитывается PixelSpreadService
+ALTER TABLE pairs
+    DROP COLUMN IF EXISTS long_ticker_candles_json,
+    DROP COLUMN IF EXISTS short_ticker_candles_json,
+    DROP COLUMN IF EXISTS z_score_history_json,
+    DROP COLUMN IF EXISTS profit_history_json,
+    DROP COLUMN IF EXISTS correlation_history_json,
+    DROP COLUMN IF EXISTS pixel_spread_history_json;
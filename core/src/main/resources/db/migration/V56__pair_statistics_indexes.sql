@@ -0,0 +1,3 @@
+-- Индекс для агрегатов статистики закрытых трейдов (TradeStatisticsRepository в core):
+-- GROUP BY pair_name по закрытым парам и точечный пересчет статистики одной пары после закрытия трейда
+CREATE INDEX IF NOT EXISTS idx_pair_status_pair_name ON pairs (status, pair_name);
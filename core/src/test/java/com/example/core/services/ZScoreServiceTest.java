@@ -0,0 +1,141 @@
+package com.example.core.services;
+
+import com.example.core.services.zscore.ZScoreEngineService;
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.ZScoreData;
+import com.example.shared.models.Settings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Отбор топ-N пар: один проход по ранжированному списку, пары с уже занятыми тикерами пропускаются
+ * (а не выбираются повторно), детальный пересчет и повторная проверка MinZ - только для выбираемых пар
+ */
+class ZScoreServiceTest {
+
+    private PythonAnalysisService pythonAnalysisService;
+    private ZScoreEngineService zScoreEngineService;
+    private ObtainTopZScoreDataBeforeCreateNewPairService obtainTopService;
+    private ZScoreService zScoreService;
+
+    private final Map<String, List<Candle>> candlesMap = new LinkedHashMap<>();
+    private final Map<String, Double> recalculatedZ = new HashMap<>();
+    private Settings settings;
+
+    @BeforeEach
+    void setUp() {
+        pythonAnalysisService = mock(PythonAnalysisService.class);
+        zScoreEngineService = mock(ZScoreEngineService.class);
+        obtainTopService = mock(ObtainTopZScoreDataBeforeCreateNewPairService.class);
+        zScoreService = new ZScoreService(mock(PairService.class), pythonAnalysisService, zScoreEngineService,
+                obtainTopService, mock(FilterZScoreDataForExistingPairBeforeNewTradeService.class));
+
+        for (String ticker : List.of("AAA", "BBB", "CCC", "DDD", "EEE", "FFF")) {
+            candlesMap.put(ticker, List.of(new Candle(0, 1.0, 1.0, 1.0, 1.0, 1.0)));
+        }
+        settings = new Settings();
+        settings.setUseMinZFilter(false);
+
+        // Детальный пересчет пары: свечи приходят в порядке undervalued, overvalued
+        when(zScoreEngineService.calculateZScoreData(eq(settings), anyMap())).thenAnswer(invocation -> {
+            List<String> tickers = new ArrayList<>(invocation.<Map<String, List<Candle>>>getArgument(1).keySet());
+            String pairName = tickers.get(0) + "/" + tickers.get(1);
+            return pair(tickers.get(0), tickers.get(1), recalculatedZ.getOrDefault(pairName, 3.0));
+        });
+    }
+
+    @Test
+    void tickerConflictIsSkippedAndNextRankedPairIsTaken() {
+        List<ZScoreData> ranked = List.of(pair("AAA", "BBB", 4.0), pair("AAA", "CCC", 3.9), pair("DDD", "BBB", 3.8),
+                pair("CCC", "DDD", 3.5), pair("EEE", "FFF", 3.0));
+        givenRanking(ranked);
+
+        List<ZScoreData> top = zScoreService.getTopNZScoreData(settings, candlesMap, 3);
+
+        assertEquals(List.of("AAA/BBB", "CCC/DDD", "EEE/FFF"), pairNames(top));
+        verify(obtainTopService, times(1)).rankZScoreData(eq(settings), anyList(), eq(candlesMap));
+        verify(zScoreEngineService, times(3)).calculateZScoreData(eq(settings), anyMap());
+    }
+
+    @Test
+    void stopsAfterTopNPairs() {
+        givenRanking(List.of(pair("AAA", "BBB", 4.0), pair("CCC", "DDD", 3.5), pair("EEE", "FFF", 3.0)));
+
+        List<ZScoreData> top = zScoreService.getTopNZScoreData(settings, candlesMap, 1);
+
+        assertEquals(List.of("AAA/BBB"), pairNames(top));
+        verify(zScoreEngineService, times(1)).calculateZScoreData(eq(settings), anyMap());
+    }
+
+    @Test
+    void minZRejectionAfterRecalculationSpendsAnAttempt() {
+        settings.setUseMinZFilter(true);
+        settings.setMinZ(2.0);
+        recalculatedZ.put("CCC/DDD", 1.0);
+        givenRanking(List.of(pair("AAA", "BBB", 4.0), pair("CCC", "DDD", 3.5), pair("EEE", "FFF", 3.0)));
+
+        List<ZScoreData> top = zScoreService.getTopNZScoreData(settings, candlesMap, 2);
+
+        // Как и раньше, не больше topN детальных пересчетов: CCC/DDD отсеяна по MinZ и израсходовала попытку
+        assertEquals(List.of("AAA/BBB"), pairNames(top));
+        verify(zScoreEngineService, times(2)).calculateZScoreData(eq(settings), anyMap());
+    }
+
+    @Test
+    void rejectedPairDoesNotLockItsTickers() {
+        settings.setUseMinZFilter(true);
+        settings.setMinZ(2.0);
+        recalculatedZ.put("AAA/BBB", 1.0);
+        givenRanking(List.of(pair("AAA", "BBB", 4.0), pair("AAA", "CCC", 3.5), pair("DDD", "EEE", 3.0)));
+
+        List<ZScoreData> top = zScoreService.getTopNZScoreData(settings, candlesMap, 3);
+
+        assertEquals(List.of("AAA/CCC", "DDD/EEE"), pairNames(top));
+    }
+
+    @Test
+    void emptyRankingOrInvalidTopNGivesNoPairs() {
+        givenRanking(List.of());
+        assertTrue(zScoreService.getTopNZScoreData(settings, candlesMap, 3).isEmpty());
+
+        givenRanking(List.of(pair("AAA", "BBB", 4.0)));
+        assertTrue(zScoreService.getTopNZScoreData(settings, candlesMap, 0).isEmpty());
+        verify(zScoreEngineService, times(0)).calculateZScoreData(any(), anyMap());
+    }
+
+    private void givenRanking(List<ZScoreData> ranked) {
+        List<ZScoreData> raw = new ArrayList<>(ranked);
+        raw.add(pair("FFF", "AAA", 0.5)); // отсеяна при ранжировании
+        when(pythonAnalysisService.fetchZScoreData(settings, candlesMap)).thenReturn(raw);
+        when(obtainTopService.rankZScoreData(eq(settings), anyList(), eq(candlesMap))).thenReturn(ranked);
+    }
+
+    private static ZScoreData pair(String undervalued, String overvalued, double latestZScore) {
+        return ZScoreData.builder()
+                .underValuedTicker(undervalued)
+                .overValuedTicker(overvalued)
+                .latestZScore(latestZScore)
+                .build();
+    }
+
+    private static List<String> pairNames(List<ZScoreData> pairs) {
+        return pairs.stream().map(data -> data.getUnderValuedTicker() + "/" + data.getOverValuedTicker()).toList();
+    }
+}
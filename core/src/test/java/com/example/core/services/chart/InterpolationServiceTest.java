@@ -0,0 +1,95 @@
+package com.example.core.services.chart;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Паритет interpolatePrice по CandleSeries (бинарный поиск) с прежним линейным проходом по List&lt;Candle&gt;:
+ * совпадение и одинаковые таймштампы, цели до первой и после последней свечи, Long.MAX_VALUE
+ */
+class InterpolationServiceTest {
+
+    private final InterpolationService interpolationService = new InterpolationService();
+
+    @Test
+    void duplicateTimestampsUseFirstCandleOfRun() {
+        List<Candle> candles = List.of(candle(100, 1.0), candle(100, 5.0), candle(200, 2.0), candle(200, 8.0), candle(300, 3.0));
+        CandleSeries series = CandleSeries.of(candles);
+
+        assertEquals(1.0, interpolationService.interpolatePrice(series, 100));
+        assertEquals(2.0, interpolationService.interpolatePrice(series, 200));
+        assertEquals(1.5, interpolationService.interpolatePrice(series, 150));
+        assertEquals(2.5, interpolationService.interpolatePrice(series, 250));
+        for (long target = 50; target <= 350; target += 10) {
+            assertEquals(interpolationService.interpolatePrice(candles, target),
+                    interpolationService.interpolatePrice(series, target), "target " + target);
+        }
+    }
+
+    @Test
+    void targetsOutsideSeriesFallBackToNearestCandle() {
+        List<Candle> candles = List.of(candle(100, 1.0), candle(100, 4.0), candle(200, 2.0), candle(200, 6.0));
+        CandleSeries series = CandleSeries.of(candles);
+
+        assertEquals(1.0, interpolationService.interpolatePrice(series, 0));
+        assertEquals(1.0, interpolationService.interpolatePrice(series, Long.MIN_VALUE));
+        assertEquals(2.0, interpolationService.interpolatePrice(series, 1_000));
+        assertEquals(2.0, interpolationService.interpolatePrice(series, Long.MAX_VALUE));
+        assertEquals(interpolationService.interpolatePrice(candles, Long.MAX_VALUE),
+                interpolationService.interpolatePrice(series, Long.MAX_VALUE));
+        assertEquals(interpolationService.interpolatePrice(candles, Long.MIN_VALUE),
+                interpolationService.interpolatePrice(series, Long.MIN_VALUE));
+    }
+
+    @Test
+    void candleAtLongMaxValueMatchesExactly() {
+        List<Candle> candles = List.of(candle(100, 1.0), candle(Long.MAX_VALUE, 9.0), candle(Long.MAX_VALUE, 7.0));
+        CandleSeries series = CandleSeries.of(candles);
+
+        assertEquals(9.0, interpolationService.interpolatePrice(series, Long.MAX_VALUE));
+        assertEquals(interpolationService.interpolatePrice(candles, Long.MAX_VALUE),
+                interpolationService.interpolatePrice(series, Long.MAX_VALUE));
+    }
+
+    @Test
+    void emptyOrMissingSeriesReturnsNull() {
+        assertNull(interpolationService.interpolatePrice(CandleSeries.empty(), 100));
+        assertNull(interpolationService.interpolatePrice((CandleSeries) null, 100));
+    }
+
+    @Test
+    void randomUnsortedCandlesMatchLinearScan() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 2_000; iteration++) {
+            int size = 1 + random.nextInt(25);
+            List<Candle> candles = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                candles.add(candle(random.nextInt(100) * 10L, 1.0 + random.nextInt(1_000) / 10.0));
+            }
+            CandleSeries series = CandleSeries.of(candles);
+            for (long target = -20; target <= 1_020; target += 5) {
+                assertEquals(interpolationService.interpolatePrice(candles, target),
+                        interpolationService.interpolatePrice(series, target), "target " + target);
+            }
+        }
+    }
+
+    private static Candle candle(long timestamp, double close) {
+        return Candle.builder()
+                .timestamp(timestamp)
+                .open(close)
+                .high(close)
+                .low(close)
+                .close(close)
+                .volume(1.0)
+                .build();
+    }
+}
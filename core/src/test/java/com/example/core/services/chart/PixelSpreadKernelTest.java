@@ -0,0 +1,167 @@
+package com.example.core.services.chart;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Паритет PixelSpreadKernel с прежним расчетом: объединение таймштампов + CandleSeries.nearestIndex для каждой точки
+ */
+class PixelSpreadKernelTest {
+
+    private static final double MIN_Z = -3.0;
+    private static final double MAX_Z = 3.0;
+    private static final int HEIGHT = 720;
+
+    @Test
+    void randomSeriesMatchNearestIndexReference() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 2_000; iteration++) {
+            CandleSeries longSeries = randomSeries(random, random.nextInt(60), 1_000L);
+            CandleSeries shortSeries = randomSeries(random, random.nextInt(60), 1_000L);
+            assertParity(longSeries, shortSeries);
+        }
+    }
+
+    @Test
+    void duplicateTimestampsPickFirstCandleOfRun() {
+        CandleSeries longSeries = series(new long[]{100, 100, 100, 200, 300, 300},
+                new double[]{1.0, 5.0, 9.0, 2.0, 3.0, 7.0});
+        CandleSeries shortSeries = series(new long[]{50, 150, 150, 250, 300, 400},
+                new double[]{10.0, 11.0, 4.0, 12.0, 8.0, 6.0});
+        assertParity(longSeries, shortSeries);
+
+        Random random = new Random(7);
+        for (int iteration = 0; iteration < 1_000; iteration++) {
+            // Узкий диапазон времени - много одинаковых таймштампов внутри и между рядами
+            assertParity(randomSeries(random, 1 + random.nextInt(40), 8L),
+                    randomSeries(random, 1 + random.nextInt(40), 8L));
+        }
+    }
+
+    @Test
+    void equalDistanceTiesPickEarlierCandle() {
+        // Точки 150 и 250 ровно посередине между свечами соседнего ряда
+        CandleSeries longSeries = series(new long[]{100, 200, 300}, new double[]{1.0, 2.0, 3.0});
+        CandleSeries shortSeries = series(new long[]{150, 250}, new double[]{5.0, 1.0});
+        assertParity(longSeries, shortSeries);
+
+        CandleSeries withDuplicates = series(new long[]{100, 100, 200, 200}, new double[]{1.0, 4.0, 2.0, 8.0});
+        assertParity(withDuplicates, shortSeries);
+        assertParity(shortSeries, withDuplicates);
+    }
+
+    @Test
+    void nonOverlappingRanges() {
+        CandleSeries early = series(new long[]{1, 2, 3, 4}, new double[]{1.0, 3.0, 2.0, 5.0});
+        CandleSeries late = series(new long[]{10, 11, 12}, new double[]{7.0, 6.0, 9.0});
+        assertParity(early, late);
+        assertParity(late, early);
+    }
+
+    @Test
+    void slicedSeriesMatchReference() {
+        Random random = new Random(11);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            CandleSeries longSeries = randomSeries(random, 20 + random.nextInt(40), 500L);
+            CandleSeries shortSeries = randomSeries(random, 20 + random.nextInt(40), 500L);
+            assertParity(longSeries.slice(3, longSeries.size() - 2), shortSeries.tail(15));
+        }
+    }
+
+    @Test
+    void emptyInputsGiveEmptyResult() {
+        CandleSeries nonEmpty = series(new long[]{1, 2}, new double[]{1.0, 2.0});
+
+        assertEquals(0, PixelSpreadKernel.calculate(CandleSeries.empty(), nonEmpty, MIN_Z, MAX_Z, HEIGHT).size());
+        assertEquals(0, PixelSpreadKernel.calculate(nonEmpty, CandleSeries.empty(), MIN_Z, MAX_Z, HEIGHT).size());
+        assertEquals(0, PixelSpreadKernel.distances(CandleSeries.empty(), CandleSeries.empty(), MIN_Z, MAX_Z, HEIGHT).length);
+    }
+
+    @Test
+    void flatSeriesUseChartMiddle() {
+        CandleSeries flat = series(new long[]{1, 2, 3}, new double[]{5.0, 5.0, 5.0});
+        assertParity(flat, flat);
+        assertParity(flat, series(new long[]{2, 4}, new double[]{1.0, 2.0}));
+    }
+
+    private static void assertParity(CandleSeries longSeries, CandleSeries shortSeries) {
+        PixelSpreadKernel.PixelSpreadSeries expected = reference(longSeries, shortSeries);
+
+        PixelSpreadKernel.PixelSpreadSeries actual =
+                PixelSpreadKernel.calculate(longSeries, shortSeries, MIN_Z, MAX_Z, HEIGHT);
+        assertArrayEquals(expected.timestamps(), actual.timestamps());
+        assertArrayEquals(expected.distances(), actual.distances());
+
+        double[] distances = PixelSpreadKernel.distances(longSeries, shortSeries, MIN_Z, MAX_Z, HEIGHT);
+        assertArrayEquals(expected.distances(), distances);
+    }
+
+    /**
+     * Прежний алгоритм: для каждой точки объединения таймштампов - бинарный поиск ближайшей свечи каждого ряда
+     */
+    private static PixelSpreadKernel.PixelSpreadSeries reference(CandleSeries longSeries, CandleSeries shortSeries) {
+        if (longSeries.isEmpty() || shortSeries.isEmpty()) {
+            return new PixelSpreadKernel.PixelSpreadSeries(new long[0], new double[0]);
+        }
+
+        double minValue = Math.min(scale(longSeries, longSeries.minClose()), scale(shortSeries, shortSeries.minClose()));
+        double maxValue = Math.max(scale(longSeries, longSeries.maxClose()), scale(shortSeries, shortSeries.maxClose()));
+
+        long[] timestamps = CandleSeries.unionTimestamps(longSeries, shortSeries);
+        double[] distances = new double[timestamps.length];
+        for (int k = 0; k < timestamps.length; k++) {
+            double longPrice = scale(longSeries, longSeries.close(longSeries.nearestIndex(timestamps[k])));
+            double shortPrice = scale(shortSeries, shortSeries.close(shortSeries.nearestIndex(timestamps[k])));
+            distances[k] = Math.abs(toPixel(longPrice, minValue, maxValue) - toPixel(shortPrice, minValue, maxValue));
+        }
+        return new PixelSpreadKernel.PixelSpreadSeries(timestamps, distances);
+    }
+
+    private static double scale(CandleSeries series, double price) {
+        double priceRange = series.maxClose() - series.minClose();
+        return priceRange != 0 ?
+                MIN_Z + ((price - series.minClose()) / priceRange) * (MAX_Z - MIN_Z) : MIN_Z;
+    }
+
+    private static double toPixel(double value, double minValue, double maxValue) {
+        if (maxValue - minValue == 0) return HEIGHT / 2.0;
+
+        double normalized = (value - minValue) / (maxValue - minValue);
+        return HEIGHT - (normalized * HEIGHT);
+    }
+
+    private static CandleSeries randomSeries(Random random, int size, long timeRange) {
+        List<Candle> candles = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            candles.add(candle(random.nextLong(timeRange), 1.0 + random.nextInt(100) / 10.0));
+        }
+        return CandleSeries.of(candles);
+    }
+
+    private static CandleSeries series(long[] timestamps, double[] closes) {
+        List<Candle> candles = new ArrayList<>(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            candles.add(candle(timestamps[i], closes[i]));
+        }
+        return CandleSeries.of(candles);
+    }
+
+    private static Candle candle(long timestamp, double close) {
+        return Candle.builder()
+                .timestamp(timestamp)
+                .open(close)
+                .high(close)
+                .low(close)
+                .close(close)
+                .volume(1.0)
+                .build();
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.core.services.zscore;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.ZScoreData;
+import com.example.shared.dto.ZScoreParam;
+import com.example.shared.models.Settings;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сверка NativeZScoreEngine с эталонным расчетом /analyze-pair.
+ * <p>
+ * Эталон - прямой (без скользящих сумм) пересчет каждого окна по формулам Python API: OLS overvalued на undervalued,
+ * spread/mean/std/Z-Score, корреляция и ее p-value, ADF с константой по спреду окна и p-value по MacKinnon,
+ * плюс опорные точки MacKinnon/statsmodels (критические значения 1%/5%/10%).
+ */
+class NativeZScoreEngineTest {
+
+    private static final double TOLERANCE = 1e-6;
+    private static final int WINDOW = 30;
+    private static final long STEP = 60_000L;
+
+    private final NativeZScoreEngine engine = new NativeZScoreEngine();
+
+    @Test
+    void rollingWindowMatchesDirectRecalculation() {
+        double[][] prices = cointegratedPrices(new Random(1), 240, 100.0, 2.0, 3.0);
+        List<Candle> undervalued = candles(prices[0]);
+        List<Candle> overvalued = candles(prices[1]);
+
+        ZScoreData data = engine.analyzePair("AAA", undervalued, "BBB", overvalued, settings());
+
+        assertNotNull(data);
+        assertEquals(240, data.getTotalObservations());
+        List<ZScoreParam> history = data.getZScoreHistory();
+        assertEquals(240 - WINDOW, history.size());
+
+        double[] x = prices[0];
+        double[] y = prices[1];
+        TDistribution tDistribution = new TDistribution(null, WINDOW - 2);
+        for (int t = WINDOW; t < x.length; t++) {
+            ZScoreParam actual = history.get(t - WINDOW);
+            ZScoreParam expected = referenceParam(x, y, t, tDistribution);
+
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertClose(expected.getBeta(), actual.getBeta(), "beta", t);
+            assertClose(expected.getAlpha(), actual.getAlpha(), "alpha", t);
+            assertClose(expected.getSpread(), actual.getSpread(), "spread", t);
+            assertClose(expected.getStd(), actual.getStd(), "std", t);
+            assertClose(expected.getZscore(), actual.getZscore(), "zscore", t);
+            assertClose(expected.getCorrelation(), actual.getCorrelation(), "correlation", t);
+            assertClose(expected.getPvalue(), actual.getPvalue(), "pvalue", t);
+            assertClose(expected.getAdfpvalue(), actual.getAdfpvalue(), "adfpvalue", t);
+        }
+        assertEquals(history.get(history.size() - 1).getZscore(), data.getLatestZScore());
+    }
+
+    @Test
+    void exactLinearFixtureRecoversAlphaAndBeta() {
+        double[][] prices = cointegratedPrices(new Random(5), 120, 50.0, 2.0, 3.0, 0.0);
+
+        ZScoreData data = engine.analyzePair("AAA", candles(prices[0]), "BBB", candles(prices[1]), settings());
+
+        for (ZScoreParam param : data.getZScoreHistory()) {
+            assertEquals(3.0, param.getBeta(), TOLERANCE);
+            assertEquals(2.0, param.getAlpha(), 1e-4);
+            assertEquals(1.0, param.getCorrelation(), TOLERANCE);
+        }
+        assertEquals(1.0, data.getPearsonCorr(), TOLERANCE);
+        assertEquals(1.0, data.getAvgRSquared(), TOLERANCE);
+    }
+
+    @Test
+    void adfStatisticMatchesDirectRegression() {
+        double[][] prices = cointegratedPrices(new Random(3), 200, 80.0, 1.0, 1.5);
+        double[] x = prices[0];
+        double[] y = prices[1];
+
+        for (int t = WINDOW; t < x.length; t += 7) {
+            int from = t - WINDOW + 1;
+            double[] ols = ols(x, y, from, t);
+            double expected = referenceAdfStatistic(x, y, from, t, ols[1]);
+            double actual = NativeZScoreEngine.windowAdfStatistic(x, y, from, t, ols[0], ols[1]);
+            assertClose(expected, actual, "adf statistic", t);
+        }
+    }
+
+    @Test
+    void mackinnonPValueMatchesPublishedCriticalValues() {
+        // Асимптотические критические значения ADF с константой (MacKinnon 2010) и p-value statsmodels mackinnonp
+        assertEquals(0.01, NativeZScoreEngine.mackinnonPValue(-3.43035), 1e-3);
+        assertEquals(0.05, NativeZScoreEngine.mackinnonPValue(-2.86154), 1e-3);
+        assertEquals(0.10, NativeZScoreEngine.mackinnonPValue(-2.56677), 1e-3);
+        assertEquals(0.753264, NativeZScoreEngine.mackinnonPValue(-1.0), 1e-5);
+        assertEquals(0.984873, NativeZScoreEngine.mackinnonPValue(0.5), 1e-5);
+
+        assertEquals(1.0, NativeZScoreEngine.mackinnonPValue(Double.NaN));
+        assertEquals(1.0, NativeZScoreEngine.mackinnonPValue(3.0));
+        assertEquals(0.0, NativeZScoreEngine.mackinnonPValue(-20.0));
+        assertEquals(0.0, NativeZScoreEngine.mackinnonPValue(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    void johansenFieldsStayEmpty() {
+        double[][] prices = cointegratedPrices(new Random(9), 100, 100.0, 2.0, 3.0);
+
+        ZScoreData data = engine.analyzePair("AAA", candles(prices[0]), "BBB", candles(prices[1]), settings());
+
+        assertNull(data.getJohansenCointPValue());
+        assertFalse(data.isJohansenIsCoint());
+        assertNull(data.getJohansenTraceStatistic());
+        assertNull(data.getJohansenCriticalValue95());
+        assertNull(data.getJohansenEigenValues());
+        assertNotNull(data.getAvgAdfPvalue());
+    }
+
+    @Test
+    void autoOrientationMakesLatestZScoreNonNegative() {
+        double[][] prices = cointegratedPrices(new Random(13), 150, 100.0, 2.0, 3.0);
+        Map<String, List<Candle>> candlesMap = new LinkedHashMap<>();
+        candlesMap.put("AAA", candles(prices[0]));
+        candlesMap.put("BBB", candles(prices[1]));
+
+        ZScoreData data = engine.analyzePair(candlesMap, settings());
+        ZScoreData direct = engine.analyzePair("AAA", candles(prices[0]), "BBB", candles(prices[1]), settings());
+        ZScoreData swapped = engine.analyzePair("BBB", candles(prices[1]), "AAA", candles(prices[0]), settings());
+
+        ZScoreData expected = direct.getLatestZScore() >= 0 ? direct : swapped;
+        assertEquals(expected.getOverValuedTicker(), data.getOverValuedTicker());
+        assertEquals(expected.getLatestZScore(), data.getLatestZScore());
+    }
+
+    @Test
+    void candlesAreAlignedOnCommonTimestamps() {
+        double[][] prices = cointegratedPrices(new Random(17), 120, 100.0, 2.0, 3.0);
+        List<Candle> undervalued = candles(prices[0]);
+        List<Candle> overvalued = new ArrayList<>(candles(prices[1]));
+        overvalued.remove(50);
+        overvalued.remove(10);
+        // Лишняя свеча, которой нет у второго тикера
+        overvalued.add(candle(STEP * 1_000, 1.0));
+
+        ZScoreData data = engine.analyzePair("AAA", undervalued, "BBB", overvalued, settings());
+
+        assertEquals(118, data.getTotalObservations());
+        assertEquals(118 - WINDOW, data.getZScoreHistory().size());
+    }
+
+    @Test
+    void notEnoughCandlesGiveNull() {
+        double[][] prices = cointegratedPrices(new Random(21), WINDOW, 100.0, 2.0, 3.0);
+
+        assertNull(engine.analyzePair("AAA", candles(prices[0]), "BBB", candles(prices[1]), settings()));
+        assertNull(engine.analyzePair(Map.of("AAA", candles(prices[0])), settings()));
+    }
+
+    /**
+     * Окно [t - window + 1, t], все суммы считаются заново от средних окна
+     */
+    private static ZScoreParam referenceParam(double[] x, double[] y, int t, TDistribution tDistribution) {
+        int from = t - WINDOW + 1;
+        double[] ols = ols(x, y, from, t);
+        double alpha = ols[0];
+        double beta = ols[1];
+
+        double mx = 0, my = 0;
+        for (int i = from; i <= t; i++) {
+            mx += x[i];
+            my += y[i];
+        }
+        mx /= WINDOW;
+        my /= WINDOW;
+        double cxx = 0, cyy = 0, cxy = 0, rss = 0;
+        for (int i = from; i <= t; i++) {
+            cxx += (x[i] - mx) * (x[i] - mx);
+            cyy += (y[i] - my) * (y[i] - my);
+            cxy += (x[i] - mx) * (y[i] - my);
+            double residual = y[i] - alpha - beta * x[i];
+            rss += residual * residual;
+        }
+
+        double std = Math.sqrt(rss / WINDOW);
+        double spread = y[t] - beta * x[t];
+        double correlation = cxy / Math.sqrt(cxx * cyy);
+        double tStatistic = Math.abs(correlation) * Math.sqrt((WINDOW - 2) / (1 - correlation * correlation));
+
+        return ZScoreParam.builder()
+                .zscore((spread - alpha) / std)
+                .pvalue(2 * (1 - tDistribution.cumulativeProbability(tStatistic)))
+                .adfpvalue(NativeZScoreEngine.mackinnonPValue(referenceAdfStatistic(x, y, from, t, beta)))
+                .correlation(correlation)
+                .alpha(alpha)
+                .beta(beta)
+                .spread(spread)
+                .mean(alpha)
+                .std(std)
+                .timestamp(t * STEP)
+                .build();
+    }
+
+    /**
+     * OLS y = alpha + beta * x на [from, to]: {alpha, beta}
+     */
+    private static double[] ols(double[] x, double[] y, int from, int to) {
+        int n = to - from + 1;
+        double mx = 0, my = 0;
+        for (int i = from; i <= to; i++) {
+            mx += x[i];
+            my += y[i];
+        }
+        mx /= n;
+        my /= n;
+        double cxx = 0, cxy = 0;
+        for (int i = from; i <= to; i++) {
+            cxx += (x[i] - mx) * (x[i] - mx);
+            cxy += (x[i] - mx) * (y[i] - my);
+        }
+        double beta = cxy / cxx;
+        return new double[]{my - beta * mx, beta};
+    }
+
+    /**
+     * Dickey-Fuller с константой без лагов (adfuller(maxlag=0, regression="c")): Δs_i = a + gamma * s_{i-1}
+     */
+    private static double referenceAdfStatistic(double[] x, double[] y, int from, int to, double beta) {
+        int m = to - from;
+        double[] lagged = new double[m];
+        double[] delta = new double[m];
+        for (int i = 0; i < m; i++) {
+            double previous = y[from + i] - beta * x[from + i];
+            double current = y[from + i + 1] - beta * x[from + i + 1];
+            lagged[i] = previous;
+            delta[i] = current - previous;
+        }
+
+        double mu = 0, mv = 0;
+        for (int i = 0; i < m; i++) {
+            mu += lagged[i];
+            mv += delta[i];
+        }
+        mu /= m;
+        mv /= m;
+        double cuu = 0, cuv = 0;
+        for (int i = 0; i < m; i++) {
+            cuu += (lagged[i] - mu) * (lagged[i] - mu);
+            cuv += (lagged[i] - mu) * (delta[i] - mv);
+        }
+        double gamma = cuv / cuu;
+        double intercept = mv - gamma * mu;
+        double rss = 0;
+        for (int i = 0; i < m; i++) {
+            double residual = delta[i] - intercept - gamma * lagged[i];
+            rss += residual * residual;
+        }
+        double sigma2 = rss / (m - 2);
+        return gamma / Math.sqrt(sigma2 / cuu);
+    }
+
+    /**
+     * Undervalued - случайное блуждание, overvalued = alpha + beta * undervalued + стационарный AR(1) шум
+     */
+    private static double[][] cointegratedPrices(Random random, int n, double start, double alpha, double beta) {
+        return cointegratedPrices(random, n, start, alpha, beta, 0.3);
+    }
+
+    private static double[][] cointegratedPrices(Random random, int n, double start, double alpha, double beta,
+                                                 double noiseScale) {
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double price = start;
+        double noise = 0;
+        for (int i = 0; i < n; i++) {
+            price = Math.max(1.0, price + random.nextGaussian());
+            noise = 0.5 * noise + noiseScale * random.nextGaussian();
+            x[i] = price;
+            y[i] = alpha + beta * price + noise;
+        }
+        return new double[][]{x, y};
+    }
+
+    private static void assertClose(double expected, double actual, String field, int t) {
+        double tolerance = TOLERANCE * Math.max(1.0, Math.abs(expected));
+        assertEquals(expected, actual, tolerance, field + " в точке " + t);
+    }
+
+    private static List<Candle> candles(double[] closes) {
+        List<Candle> candles = new ArrayList<>(closes.length);
+        for (int i = 0; i < closes.length; i++) {
+            candles.add(candle(i * STEP, closes[i]));
+        }
+        return candles;
+    }
+
+    private static Candle candle(long timestamp, double close) {
+        return Candle.builder()
+                .timestamp(timestamp)
+                .open(close)
+                .high(close)
+                .low(close)
+                .close(close)
+                .volume(1.0)
+                .build();
+    }
+
+    private static Settings settings() {
+        Settings settings = new Settings();
+        settings.setMinWindowSize(WINDOW);
+        settings.setMaxAdfValue(0.05);
+        return settings;
+    }
+}
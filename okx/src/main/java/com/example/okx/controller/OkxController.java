@@ -2,6 +2,7 @@ package com.example.okx.controller;
 
 import com.example.okx.service.OkxClient;
 import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleBatch;
 import com.example.shared.dto.okx.OkxTickerDto;
 import com.example.shared.models.Settings;
 import lombok.RequiredArgsConstructor;
@@ -41,10 +42,10 @@ public class OkxController {
     }
 
     /**
-     * Получить карту свечей для списка тикеров
+     * Получить карту свечей для списка тикеров (бинарным пакетом свечей или JSON - по Accept)
      */
     @PostMapping("/candles/map")
-    public Map<String, List<Candle>> getCandlesMap(
+    public CandleBatch getCandlesMap(
             @RequestBody List<String> symbols,
             @RequestParam(defaultValue = "15m") String timeFrame,
             @RequestParam(defaultValue = "100") int limit,
@@ -53,7 +54,7 @@ public class OkxController {
         Settings settings = new Settings();
         settings.setTimeframe(timeFrame);
         settings.setCandleLimit(limit);
-        return okxClient.getCandlesMap(symbols, settings, sorted);
+        return new CandleBatch(okxClient.getCandlesMap(symbols, settings, sorted));
     }
 
     /**
@@ -113,4 +114,12 @@ public class OkxController {
     ) {
         return okxClient.getCandlesWithBefore(symbol, timeFrame, limit, before);
     }
+
+    /**
+     * Метрики лимитера запросов к OKX
+     */
+    @GetMapping("/rate-limit/metrics")
+    public Map<String, Object> getRateLimitMetrics() {
+        return okxClient.getRateLimitMetrics();
+    }
 }
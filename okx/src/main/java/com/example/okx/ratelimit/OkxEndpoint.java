@@ -0,0 +1,34 @@
+package com.example.okx.ratelimit;
+
+/**
+ * Семейства публичных эндпоинтов OKX со своими лимитами запросов (по IP).
+ * Лимиты взяты из документации OKX API v5.
+ */
+public enum OkxEndpoint {
+    CANDLES("/api/v5/market/candles", 40, 2000),
+    HISTORY_CANDLES("/api/v5/market/history-candles", 20, 2000),
+    INSTRUMENTS("/api/v5/public/instruments", 20, 2000),
+    TICKER("/api/v5/market/ticker", 20, 2000);
+
+    private final String path;
+    private final int requestsPerPeriod;
+    private final long periodMillis;
+
+    OkxEndpoint(String path, int requestsPerPeriod, long periodMillis) {
+        this.path = path;
+        this.requestsPerPeriod = requestsPerPeriod;
+        this.periodMillis = periodMillis;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getRequestsPerPeriod() {
+        return requestsPerPeriod;
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.okx.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная отправка запросов к OKX с лимитами по семействам эндпоинтов.
+ * <p>
+ * Каждое семейство (OkxEndpoint) имеет свой token bucket и очередь ожидающих запросов.
+ * Очереди разбирает один поток-планировщик: пока есть токены - запросы уходят в OkHttp через enqueue()
+ * и выполняются параллельно, когда токены кончились - разбор откладывается ровно до появления следующего.
+ * Потоки вызывающих при этом не спят, а ждут CompletableFuture (или вообще не ждут в пакетных методах).
+ * <p>
+ * На ответ 429 запас токенов семейства обнуляется, а запрос возвращается в очередь с паузой.
+ */
+@Slf4j
+@Component
+public class OkxRequestDispatcher {
+
+    private static final int MAX_RETRIES_ON_TOO_MANY_REQUESTS = 3;
+    private static final long TOO_MANY_REQUESTS_BACKOFF_MS = 1000;
+
+    private final OkHttpClient client;
+    private final ScheduledExecutorService scheduler;
+    private final Map<OkxEndpoint, Lane> lanes = new EnumMap<>(OkxEndpoint.class);
+
+    /**
+     * Обработчик ответа - вызывается в потоке OkHttp, ответ закрывается после обработки
+     */
+    @FunctionalInterface
+    public interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
+    public OkxRequestDispatcher(@Value("${okx.rate-limit.utilization:0.9}") double utilization,
+                                @Value("${okx.rate-limit.max-in-flight:64}") int maxInFlight) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxInFlight);
+        dispatcher.setMaxRequestsPerHost(maxInFlight); // все запросы идут на один хост www.okx.com
+
+        this.client = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(10, TimeUnit.SECONDS)
+                .connectionPool(new ConnectionPool(20, 5, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .build();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "okx-rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (OkxEndpoint endpoint : OkxEndpoint.values()) {
+            int requests = Math.max(1, (int) Math.floor(endpoint.getRequestsPerPeriod() * utilization));
+            lanes.put(endpoint, new Lane(endpoint, new TokenBucket(requests, endpoint.getPeriodMillis())));
+            log.info("🚦 OKX лимит {}: {} запросов за {} мс", endpoint, requests, endpoint.getPeriodMillis());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Ставит запрос в очередь семейства и возвращает future с результатом обработчика
+     */
+    public <T> CompletableFuture<T> submit(OkxEndpoint endpoint, Request request, ResponseHandler<T> handler) {
+        Lane lane = lanes.get(endpoint);
+        PendingCall<T> call = new PendingCall<>(request, handler);
+        lane.queue.add(call);
+        lane.queueDepth.incrementAndGet();
+        lane.submitted.incrementAndGet();
+        scheduleDrain(lane, 0);
+        return call.future;
+    }
+
+    /**
+     * Блокирующий вариант submit() для одиночных запросов
+     */
+    public <T> T execute(OkxEndpoint endpoint, Request request, ResponseHandler<T> handler) {
+        try {
+            return submit(endpoint, request, handler).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lanes.forEach((endpoint, lane) -> {
+            Map<String, Object> laneMetrics = new LinkedHashMap<>();
+            long dispatched = lane.dispatched.get();
+            laneMetrics.put("queueDepth", lane.queueDepth.get());
+            laneMetrics.put("availableTokens", lane.bucket.available());
+            laneMetrics.put("submitted", lane.submitted.get());
+            laneMetrics.put("dispatched", dispatched);
+            laneMetrics.put("avgWaitMs", dispatched == 0 ? 0.0 : lane.totalWaitNanos.get() / 1_000_000.0 / dispatched);
+            laneMetrics.put("maxWaitMs", lane.maxWaitNanos.get() / 1_000_000.0);
+            laneMetrics.put("tooManyRequests", lane.tooManyRequests.get());
+            laneMetrics.put("failures", lane.failures.get());
+            metrics.put(endpoint.name(), laneMetrics);
+        });
+        return metrics;
+    }
+
+    private void scheduleDrain(Lane lane, long delayNanos) {
+        if (lane.drainScheduled.getAndSet(true)) {
+            return; // разбор уже запланирован
+        }
+        try {
+            if (delayNanos <= 0) {
+                scheduler.execute(() -> drain(lane));
+            } else {
+                scheduler.schedule(() -> drain(lane), delayNanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ OKX планировщик остановлен, запрос не отправлен");
+        }
+    }
+
+    /**
+     * Выполняется только в потоке планировщика - единственный потребитель очередей
+     */
+    private void drain(Lane lane) {
+        lane.drainScheduled.set(false);
+
+        PendingCall<?> call;
+        while ((call = lane.queue.peek()) != null) {
+            long waitNanos = lane.bucket.tryAcquire();
+            if (waitNanos > 0) {
+                scheduleDrain(lane, waitNanos);
+                return;
+            }
+            lane.queue.poll();
+            lane.queueDepth.decrementAndGet();
+            dispatch(lane, call);
+        }
+    }
+
+    private <T> void dispatch(Lane lane, PendingCall<T> call) {
+        long waitNanos = System.nanoTime() - call.enqueuedNanos;
+        lane.dispatched.incrementAndGet();
+        lane.totalWaitNanos.addAndGet(waitNanos);
+        lane.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+        client.newCall(call.request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call httpCall, IOException e) {
+                lane.failures.incrementAndGet();
+                call.future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call httpCall, Response response) {
+                try (response) {
+                    if (response.code() == 429) {
+                        lane.tooManyRequests.incrementAndGet();
+                        lane.bucket.drain();
+                        if (call.attempts.incrementAndGet() <= MAX_RETRIES_ON_TOO_MANY_REQUESTS) {
+                            log.warn("⚠️ OKX 429 для {} - повтор через {} мс (попытка {})",
+                                    lane.endpoint, TOO_MANY_REQUESTS_BACKOFF_MS, call.attempts.get());
+                            requeue(lane, call);
+                        } else {
+                            lane.failures.incrementAndGet();
+                            call.future.completeExceptionally(new IOException("OKX 429 Too Many Requests: " + call.request.url()));
+                        }
+                        return;
+                    }
+                    call.future.complete(call.handler.handle(response));
+                } catch (Exception e) {
+                    lane.failures.incrementAndGet();
+                    call.future.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    private void requeue(Lane lane, PendingCall<?> call) {
+        try {
+            scheduler.schedule(() -> {
+                call.enqueuedNanos = System.nanoTime();
+                lane.queue.add(call);
+                lane.queueDepth.incrementAndGet();
+                drain(lane);
+            }, TOO_MANY_REQUESTS_BACKOFF_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            call.future.completeExceptionally(e);
+        }
+    }
+
+    private static final class Lane {
+        final OkxEndpoint endpoint;
+        final TokenBucket bucket;
+        final Queue<PendingCall<?>> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+        final AtomicInteger queueDepth = new AtomicInteger();
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong dispatched = new AtomicLong();
+        final AtomicLong totalWaitNanos = new AtomicLong();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final AtomicLong tooManyRequests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+
+        Lane(OkxEndpoint endpoint, TokenBucket bucket) {
+            this.endpoint = endpoint;
+            this.bucket = bucket;
+        }
+    }
+
+    private static final class PendingCall<T> {
+        final Request request;
+        final ResponseHandler<T> handler;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final AtomicInteger attempts = new AtomicInteger();
+        volatile long enqueuedNanos = System.nanoTime();
+
+        PendingCall(Request request, ResponseHandler<T> handler) {
+            this.request = request;
+            this.handler = handler;
+        }
+    }
+}
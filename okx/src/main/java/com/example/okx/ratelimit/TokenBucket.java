@@ -0,0 +1,53 @@
+package com.example.okx.ratelimit;
+
+/**
+ * Классический token bucket: емкость = лимит запросов за период,
+ * токены восполняются равномерно со скоростью лимит/период.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(int requestsPerPeriod, long periodMillis) {
+        this.capacity = requestsPerPeriod;
+        this.tokensPerNano = requestsPerPeriod / (periodMillis * 1_000_000.0);
+        this.tokens = requestsPerPeriod;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Пытается взять один токен
+     *
+     * @return 0 если токен получен, иначе сколько наносекунд ждать до появления следующего токена
+     */
+    synchronized long tryAcquire() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1.0 - tokens) / tokensPerNano));
+    }
+
+    /**
+     * Обнуляет запас токенов (после ответа 429 от биржи)
+     */
+    synchronized void drain() {
+        refill();
+        tokens = 0;
+    }
+
+    synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
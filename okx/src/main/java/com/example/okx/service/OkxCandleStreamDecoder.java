@@ -0,0 +1,82 @@
+package com.example.okx.service;
+
+import com.example.shared.dto.Candle;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Потоковый разбор ответа OKX со свечами вида
+ * {"code":"0","msg":"","data":[["ts","o","h","l","c","vol","volCcy","volCcyQuote","confirm"], ...]}.
+ * <p>
+ * Свечи читаются прямо из потока ответа через JsonReader - без промежуточной строки
+ * с телом ответа и без дерева JsonArray/JsonElement на каждое поле.
+ */
+final class OkxCandleStreamDecoder {
+
+    private static final String SUCCESS_CODE = "0";
+
+    private OkxCandleStreamDecoder() {
+    }
+
+    /**
+     * @return свечи по возрастанию времени (OKX отдает по убыванию); пустой список, если data пустой
+     * @throws IOException при ошибке чтения или если OKX вернул код ошибки
+     */
+    static List<Candle> decode(Reader reader) throws IOException {
+        try (JsonReader json = new JsonReader(reader)) {
+            List<Candle> candles = new ArrayList<>();
+            String code = null;
+            String msg = null;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "code" -> code = json.nextString();
+                    case "msg" -> msg = json.nextString();
+                    case "data" -> readData(json, candles);
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+
+            if (code != null && !SUCCESS_CODE.equals(code)) {
+                throw new IOException("OKX вернул ошибку: code=" + code + ", msg=" + msg);
+            }
+
+            Collections.reverse(candles);
+            return candles;
+        }
+    }
+
+    private static void readData(JsonReader json, List<Candle> candles) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return;
+        }
+
+        json.beginArray();
+        while (json.hasNext()) {
+            json.beginArray();
+            // Числа в ответе OKX - строки, nextLong()/nextDouble() разбирают их без промежуточных объектов Gson
+            long timestamp = json.nextLong();
+            double open = json.nextDouble();
+            double high = json.nextDouble();
+            double low = json.nextDouble();
+            double close = json.nextDouble();
+            double volume = json.nextDouble();
+            while (json.hasNext()) {
+                json.skipValue(); // volCcy, volCcyQuote, confirm
+            }
+            json.endArray();
+
+            candles.add(new Candle(timestamp, open, high, low, close, volume));
+        }
+        json.endArray();
+    }
+}
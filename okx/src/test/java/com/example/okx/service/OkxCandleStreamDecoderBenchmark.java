@@ -0,0 +1,94 @@
+package com.example.okx.service;
+
+import com.example.shared.dto.Candle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор страницы свечей OKX: потоковый OkxCandleStreamDecoder против прежнего пути
+ * (тело строкой -> JsonParser -> Candle.fromJsonArray).
+ * <p>
+ * Страница собирается из строк образца ответа OKX (okx-candles-BTC-USDT-SWAP-1H.json) до размера pageSize.
+ * Тело подается как поток байт, как из OkHttp ResponseBody: строку тела строит только прежний путь.
+ * Запуск (аллокации на операцию - gc.alloc.rate.norm):
+ * mvn -pl okx test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.okx.service.OkxCandleStreamDecoderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OkxCandleStreamDecoderBenchmark {
+
+    @Param({"100", "300"})
+    public int pageSize;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Candle> sample = OkxCandleStreamDecoder.decode(new StringReader(OkxCandleStreamDecoderTest.readSample()));
+        Candle last = sample.get(sample.size() - 1);
+        long step = last.getTimestamp() - sample.get(sample.size() - 2).getTimestamp();
+
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{\"code\":\"0\",\"msg\":\"\",\"data\":[");
+        for (int i = 0; i < pageSize; i++) {
+            Candle row = sample.get(i % sample.size());
+            double shift = random.nextInt(2_000) / 10.0 - 100.0;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT,
+                    "[\"%d\",\"%.1f\",\"%.1f\",\"%.1f\",\"%.1f\",\"%.2f\",\"%.4f\",\"%.2f\",\"%d\"]",
+                    last.getTimestamp() - i * step, row.getOpen() + shift, row.getHigh() + shift,
+                    row.getLow() + shift, row.getClose() + shift, row.getVolume(), row.getVolume() / 100,
+                    row.getVolume() * row.getClose(), i == 0 ? 0 : 1));
+        }
+        payload = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<Candle> streamDecoder() throws IOException {
+        return OkxCandleStreamDecoder.decode(
+                new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public List<Candle> gsonTree() throws IOException {
+        String body = new String(new ByteArrayInputStream(payload).readAllBytes(), StandardCharsets.UTF_8);
+        return OkxCandleStreamDecoderTest.parseWithGsonTree(body);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OkxCandleStreamDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
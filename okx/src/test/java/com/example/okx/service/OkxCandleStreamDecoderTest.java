@@ -0,0 +1,115 @@
+package com.example.okx.service;
+
+import com.example.shared.dto.Candle;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Разбор ответов OKX со свечами: порядок, строки из 9 полей, пустые/null data, код ошибки
+ * и паритет с прежним разбором через дерево Gson (JsonParser + Candle.fromJsonArray)
+ */
+class OkxCandleStreamDecoderTest {
+
+    static final String SAMPLE_RESOURCE = "/okx-candles-BTC-USDT-SWAP-1H.json";
+
+    @Test
+    void samplePayloadIsDecodedInAscendingOrder() throws IOException {
+        List<Candle> candles = OkxCandleStreamDecoder.decode(new StringReader(readSample()));
+
+        assertEquals(5, candles.size());
+        for (int i = 1; i < candles.size(); i++) {
+            assertTrue(candles.get(i - 1).getTimestamp() < candles.get(i).getTimestamp());
+        }
+        Candle first = candles.get(0);
+        assertEquals(1759032000000L, first.getTimestamp());
+        assertEquals(108977.6, first.getOpen());
+        assertEquals(109180.4, first.getHigh());
+        assertEquals(108912.3, first.getLow());
+        assertEquals(109118.0, first.getClose());
+        assertEquals(1761.48, first.getVolume());
+        assertEquals(1759046400000L, candles.get(4).getTimestamp());
+    }
+
+    @Test
+    void samplePayloadMatchesGsonTreeParsing() throws IOException {
+        String payload = readSample();
+        assertEquals(parseWithGsonTree(payload), OkxCandleStreamDecoder.decode(new StringReader(payload)));
+    }
+
+    @Test
+    void extraFieldsOfRowAreSkipped() throws IOException {
+        // 9 полей OKX (ts, o, h, l, c, vol, volCcy, volCcyQuote, confirm) и неизвестное поле верхнего уровня
+        String payload = "{\"code\":\"0\",\"msg\":\"\",\"data\":[" +
+                "[\"2000\",\"2.5\",\"3\",\"2\",\"2.75\",\"10\",\"25\",\"27.5\",\"0\"]," +
+                "[\"1000\",\"1.5\",\"2\",\"1\",\"1.75\",\"20\",\"30\",\"35\",\"1\"]],\"extra\":{\"a\":[1,2]}}";
+
+        List<Candle> candles = OkxCandleStreamDecoder.decode(new StringReader(payload));
+
+        assertEquals(List.of(new Candle(1000, 1.5, 2, 1, 1.75, 20), new Candle(2000, 2.5, 3, 2, 2.75, 10)), candles);
+    }
+
+    @Test
+    void emptyDataGivesEmptyList() throws IOException {
+        assertTrue(OkxCandleStreamDecoder.decode(new StringReader("{\"code\":\"0\",\"msg\":\"\",\"data\":[]}")).isEmpty());
+    }
+
+    @Test
+    void nullDataGivesEmptyList() throws IOException {
+        assertTrue(OkxCandleStreamDecoder.decode(new StringReader("{\"code\":\"0\",\"msg\":\"\",\"data\":null}")).isEmpty());
+    }
+
+    @Test
+    void errorCodeThrowsIOException() {
+        String payload = "{\"code\":\"51001\",\"msg\":\"Instrument ID does not exist\",\"data\":[]}";
+
+        IOException e = assertThrows(IOException.class, () -> OkxCandleStreamDecoder.decode(new StringReader(payload)));
+        assertTrue(e.getMessage().contains("51001"));
+        assertTrue(e.getMessage().contains("Instrument ID does not exist"));
+    }
+
+    @Test
+    void errorCodeAfterDataThrowsIOException() {
+        // Порядок полей в JSON не гарантирован - код проверяется после чтения всего объекта
+        String payload = "{\"data\":[[\"1000\",\"1\",\"1\",\"1\",\"1\",\"1\",\"1\",\"1\",\"1\"]],\"code\":\"50011\",\"msg\":\"Too Many Requests\"}";
+
+        assertThrows(IOException.class, () -> OkxCandleStreamDecoder.decode(new StringReader(payload)));
+    }
+
+    @Test
+    void malformedPayloadThrowsIOException() {
+        assertThrows(IOException.class, () -> OkxCandleStreamDecoder.decode(new StringReader("{\"code\":\"0\",\"data\":[[\"1000\"")));
+    }
+
+    static String readSample() throws IOException {
+        try (InputStream in = OkxCandleStreamDecoderTest.class.getResourceAsStream(SAMPLE_RESOURCE)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Прежний разбор OkxClient: тело строкой, дерево JsonParser, Candle.fromJsonArray на каждую строку
+     */
+    static List<Candle> parseWithGsonTree(String payload) {
+        JsonObject obj = JsonParser.parseString(payload).getAsJsonObject();
+        List<Candle> candles = new ArrayList<>();
+        for (JsonElement element : obj.getAsJsonArray("data")) {
+            candles.add(Candle.fromJsonArray(element.getAsJsonArray()));
+        }
+        Collections.reverse(candles);
+        return candles;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.shared.config;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleBatch;
+import com.example.shared.utils.CandleBatchCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Конвертер бинарного пакета свечей (CandleBatchCodec.MEDIA_TYPE).
+ * <p>
+ * Пишет только CandleBatch (ответы контроллеров с картой свечей), читает CandleBatch
+ * и Map&lt;String, List&lt;Candle&gt;&gt; (ответы Feign клиентов). Остальные карты и ошибки
+ * по-прежнему идут через JSON.
+ */
+@Slf4j
+public class CandleBatchHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public CandleBatchHttpMessageConverter() {
+        super(MediaType.parseMediaType(CandleBatchCodec.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CandleBatch.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return isCandlesType(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return CandleBatch.class.isAssignableFrom(clazz) && canWrite(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return canWrite(clazz, mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        Map<String, List<Candle>> candlesMap;
+        try {
+            candlesMap = CandleBatchCodec.decode(inputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("❌ Ошибка чтения пакета свечей: " + e.getMessage(), e, inputMessage);
+        }
+        return type == CandleBatch.class ? new CandleBatch(candlesMap) : candlesMap;
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Map<String, List<Candle>> candlesMap = ((CandleBatch) value).getCandles();
+        CandleBatchCodec.encode(candlesMap != null ? candlesMap : Map.of(), 0, outputMessage.getBody());
+        log.debug("📦 Отправлен пакет свечей: {} тикеров", candlesMap != null ? candlesMap.size() : 0);
+    }
+
+    /**
+     * CandleBatch или Map&lt;String, List&lt;Candle&gt;&gt; (дженерики проверяются, если известны)
+     */
+    private boolean isCandlesType(Type type) {
+        ResolvableType resolvable = ResolvableType.forType(type);
+        Class<?> raw = resolvable.resolve(Object.class);
+        if (CandleBatch.class.isAssignableFrom(raw)) {
+            return true;
+        }
+        if (!Map.class.isAssignableFrom(raw)) {
+            return false;
+        }
+        ResolvableType mapType = resolvable.asMap();
+        Class<?> keyClass = mapType.getGeneric(0).resolve(String.class);
+        ResolvableType valueType = mapType.getGeneric(1);
+        Class<?> valueClass = valueType.resolve(List.class);
+        Class<?> elementClass = valueType.asCollection().getGeneric(0).resolve(Candle.class);
+        return keyClass == String.class && List.class.isAssignableFrom(valueClass) && elementClass == Candle.class;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.shared.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Бинарная передача карт свечей между сервисами.
+ * <p>
+ * Конвертер объявлен бином - его подхватывают Feign клиенты (чтение ответов по Content-Type).
+ * В Spring MVC он переносится в конец списка: бинарный ответ отдается только клиентам,
+ * явно запросившим CandleBatchCodec.MEDIA_TYPE в Accept, на Accept: *&#47;* остается JSON.
+ */
+@Configuration
+public class CandleBatchTransportConfig implements WebMvcConfigurer {
+
+    @Bean
+    public CandleBatchHttpMessageConverter candleBatchHttpMessageConverter() {
+        return new CandleBatchHttpMessageConverter();
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof CandleBatchHttpMessageConverter);
+        converters.add(candleBatchHttpMessageConverter());
+    }
+}
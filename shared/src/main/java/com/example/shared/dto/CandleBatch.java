@@ -0,0 +1,25 @@
+package com.example.shared.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ответ с картой свечей (тикер -> свечи), который можно отдать в бинарном формате
+ * CandleBatchCodec.MEDIA_TYPE. В JSON сериализуется как сама карта - для клиентов
+ * без поддержки бинарного формата ответ не меняется.
+ */
+@Getter
+public class CandleBatch {
+
+    @JsonValue
+    private final Map<String, List<Candle>> candles;
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public CandleBatch(Map<String, List<Candle>> candles) {
+        this.candles = candles;
+    }
+}
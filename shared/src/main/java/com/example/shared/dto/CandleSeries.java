@@ -0,0 +1,292 @@
+package com.example.shared.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Неизменяемый ряд свечей в колонках long[]/double[], всегда отсортированный по времени.
+ * <p>
+ * Нужен аналитике, которая многократно проходит по ценам и времени (пиксельный спред, ATR, чарты):
+ * вместо копий List&lt;Candle&gt; в List&lt;Date&gt;/List&lt;Double&gt; и boxed-стримов здесь
+ * индексный доступ к примитивам, срезы без копирования, поиск свечи по времени бинарным поиском
+ * и кэшированные min/max цены закрытия. На границах сервисов переводится из/в List&lt;Candle&gt;.
+ */
+public final class CandleSeries {
+
+    private static final CandleSeries EMPTY = new CandleSeries(new long[0], new double[0], new double[0],
+            new double[0], new double[0], new double[0], 0, 0);
+
+    private final long[] timestamps;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+    private final int offset;
+    private final int size;
+
+    // Кэш {min, max} закрытия среза, считается при первом обращении
+    private volatile double[] closeRange;
+
+    private CandleSeries(long[] timestamps, double[] open, double[] high, double[] low, double[] close,
+                         double[] volume, int offset, int size) {
+        this.timestamps = timestamps;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public static CandleSeries empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Копирует свечи в колонки; неотсортированный список сортируется по времени (устойчиво, как List.sort)
+     */
+    public static CandleSeries of(List<Candle> candles) {
+        if (candles == null || candles.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<Candle> source = candles;
+        for (int i = 1; i < candles.size(); i++) {
+            if (candles.get(i).getTimestamp() < candles.get(i - 1).getTimestamp()) {
+                source = new ArrayList<>(candles);
+                source.sort(Comparator.comparingLong(Candle::getTimestamp));
+                break;
+            }
+        }
+
+        int n = source.size();
+        long[] timestamps = new long[n];
+        double[] open = new double[n];
+        double[] high = new double[n];
+        double[] low = new double[n];
+        double[] close = new double[n];
+        double[] volume = new double[n];
+        for (int i = 0; i < n; i++) {
+            Candle candle = source.get(i);
+            timestamps[i] = candle.getTimestamp();
+            open[i] = candle.getOpen();
+            high[i] = candle.getHigh();
+            low[i] = candle.getLow();
+            close[i] = candle.getClose();
+            volume[i] = candle.getVolume();
+        }
+        return new CandleSeries(timestamps, open, high, low, close, volume, 0, n);
+    }
+
+    public List<Candle> toCandles() {
+        List<Candle> candles = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int j = offset + i;
+            candles.add(Candle.builder()
+                    .timestamp(timestamps[j])
+                    .open(open[j])
+                    .high(high[j])
+                    .low(low[j])
+                    .close(close[j])
+                    .volume(volume[j])
+                    .build());
+        }
+        return candles;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long timestamp(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    public double open(int index) {
+        return open[checkIndex(index)];
+    }
+
+    public double high(int index) {
+        return high[checkIndex(index)];
+    }
+
+    public double low(int index) {
+        return low[checkIndex(index)];
+    }
+
+    public double close(int index) {
+        return close[checkIndex(index)];
+    }
+
+    public double volume(int index) {
+        return volume[checkIndex(index)];
+    }
+
+    public long firstTimestamp() {
+        return timestamp(0);
+    }
+
+    public long lastTimestamp() {
+        return timestamp(size - 1);
+    }
+
+    public double lastClose() {
+        return close(size - 1);
+    }
+
+    /**
+     * Таймштампы среза (копия)
+     */
+    public long[] timestamps() {
+        long[] copy = new long[size];
+        System.arraycopy(timestamps, offset, copy, 0, size);
+        return copy;
+    }
+
+    /**
+     * Цены закрытия среза (копия)
+     */
+    public double[] closes() {
+        double[] copy = new double[size];
+        System.arraycopy(close, offset, copy, 0, size);
+        return copy;
+    }
+
+    /**
+     * Срез [from, to) без копирования колонок
+     */
+    public CandleSeries slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("slice [" + from + ", " + to + ") вне ряда из " + size + " свечей");
+        }
+        if (from == 0 && to == size) {
+            return this;
+        }
+        return new CandleSeries(timestamps, open, high, low, close, volume, offset + from, to - from);
+    }
+
+    /**
+     * Последние count свечей (или весь ряд, если он короче)
+     */
+    public CandleSeries tail(int count) {
+        return slice(Math.max(0, size - count), size);
+    }
+
+    /**
+     * Свечи с таймштампом в [fromTimestamp, toTimestamp]
+     */
+    public CandleSeries between(long fromTimestamp, long toTimestamp) {
+        int from = lowerBound(fromTimestamp);
+        int to = toTimestamp == Long.MAX_VALUE ? size : lowerBound(toTimestamp + 1);
+        return slice(from, Math.max(from, to));
+    }
+
+    /**
+     * Уникальные таймштампы двух рядов по возрастанию (слияние отсортированных колонок)
+     */
+    public static long[] unionTimestamps(CandleSeries first, CandleSeries second) {
+        long[] merged = new long[first.size + second.size];
+        int i = first.offset;
+        int j = second.offset;
+        int firstEnd = first.offset + first.size;
+        int secondEnd = second.offset + second.size;
+        int count = 0;
+        while (i < firstEnd || j < secondEnd) {
+            long next;
+            if (j >= secondEnd || (i < firstEnd && first.timestamps[i] <= second.timestamps[j])) {
+                next = first.timestamps[i++];
+            } else {
+                next = second.timestamps[j++];
+            }
+            if (count == 0 || merged[count - 1] != next) {
+                merged[count++] = next;
+            }
+        }
+        return count == merged.length ? merged : Arrays.copyOf(merged, count);
+    }
+
+    public double minClose() {
+        return closeRange()[0];
+    }
+
+    public double maxClose() {
+        return closeRange()[1];
+    }
+
+    /**
+     * Индекс первой свечи с таймштампом >= timestamp (size, если таких нет)
+     */
+    public int lowerBound(long timestamp) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[offset + mid] < timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Индекс первой свечи с точно таким таймштампом или -1
+     */
+    public int indexOf(long timestamp) {
+        int index = lowerBound(timestamp);
+        return index < size && timestamps[offset + index] == timestamp ? index : -1;
+    }
+
+    /**
+     * Индекс ближайшей по времени свечи: при равном расстоянии - более ранней, среди свечей
+     * с одинаковым таймштампом - первой (как линейный поиск минимума |t - timestamp|). -1 для пустого ряда
+     */
+    public int nearestIndex(long timestamp) {
+        if (size == 0) {
+            return -1;
+        }
+        int after = lowerBound(timestamp);
+        if (after == 0) {
+            return 0;
+        }
+        int before = lowerBound(timestamps[offset + after - 1]);
+        if (after == size) {
+            return before;
+        }
+        long beforeDiff = timestamp - timestamps[offset + before];
+        long afterDiff = timestamps[offset + after] - timestamp;
+        return beforeDiff <= afterDiff ? before : after;
+    }
+
+    private double[] closeRange() {
+        double[] range = closeRange;
+        if (range != null) {
+            return range;
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + size; i++) {
+            min = Math.min(min, close[i]);
+            max = Math.max(max, close[i]);
+        }
+        range = new double[]{min, max};
+        closeRange = range;
+        return range;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " вне ряда из " + size + " свечей");
+        }
+        return offset + index;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.shared.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Ответ инкрементального запроса свечей по одному тикеру.
+ * <p>
+ * Если fullWindow = false, candles содержит только свечи новее lastTimestamp клиента:
+ * клиент дописывает их в свое окно, отрезает начало до windowSize свечей и сверяет
+ * firstTimestamp/lastTimestamp/checksum. При расхождении клиент запрашивает полное окно.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandlesDelta {
+
+    /**
+     * true - candles содержит все окно целиком (у клиента не было окна или оно разошлось с сервером)
+     */
+    private boolean fullWindow;
+
+    /**
+     * Новые свечи (или все окно при fullWindow) по возрастанию времени
+     */
+    private List<Candle> candles;
+
+    /**
+     * Размер актуального окна на стороне candles
+     */
+    private int windowSize;
+
+    /**
+     * Таймштамп первой свечи окна
+     */
+    private long firstTimestamp;
+
+    /**
+     * Таймштамп последней свечи окна - ревизия окна
+     */
+    private long lastTimestamp;
+
+    /**
+     * Контрольная сумма всего окна (CandlesUtil.windowChecksum)
+     */
+    private long checksum;
+}
@@ -0,0 +1,51 @@
+package com.example.shared.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * DTO для инкрементального запроса свечей: клиент передает последний известный ему
+ * таймштамп по каждому тикеру и получает только новые закрытые свечи
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandlesDeltaRequest {
+
+    /**
+     * Биржа (OKX)
+     */
+    private String exchange;
+
+    /**
+     * Таймфрейм (1m, 5m, 15m, 1H, 4H, 1D, 1W, 1M)
+     */
+    private String timeframe;
+
+    /**
+     * Период окна свечей (как в ExtendedCandlesRequest)
+     */
+    private String period;
+
+    /**
+     * Дата ДО которой нужно получить свечи в формате ISO 8601 (2025-09-28T00:00:00Z)
+     */
+    private String untilDate;
+
+    /**
+     * Тикер -> таймштамп последней свечи, которая уже есть у клиента.
+     * null для тикера - у клиента нет окна, нужно полное окно
+     */
+    private Map<String, Long> lastTimestamps;
+
+    /**
+     * Ждать ли догрузки недостающих свечей с биржи (как в ExtendedCandlesRequest).
+     * Если null - по настройке candles (app.candle-cache.gap-repair.strict-by-default)
+     */
+    private Boolean strictCompleteness;
+}
@@ -81,4 +81,11 @@ public class ExtendedCandlesRequest {
      * Если false - не сортировать
      */
     private Boolean sorted;
+
+    /**
+     * Ждать ли догрузки недостающих свечей с биржи.
+     * Если false - тикеры с пропусками пропускаются, а пропуски догружаются в фоне.
+     * Если null - по настройке candles (app.candle-cache.gap-repair.strict-by-default)
+     */
+    private Boolean strictCompleteness;
 }
\ No newline at end of file
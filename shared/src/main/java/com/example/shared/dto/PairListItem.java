@@ -0,0 +1,130 @@
+package com.example.shared.dto;
+
+import com.example.shared.enums.StabilityRating;
+import com.example.shared.enums.TradeStatus;
+import com.example.shared.models.Pair;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Строка списка пар для таблиц UI: только скалярные поля, которые показываются в колонках.
+ * <p>
+ * Читается одним JPQL запросом-конструктором (PairRepository.LIST_ITEM_SELECT) без загрузки сущности Pair,
+ * ее TEXT колонок и временных рядов. Полная пара загружается по id только при открытии чарта или действии над парой.
+ * Порядок полей совпадает с порядком аргументов в LIST_ITEM_SELECT.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PairListItem {
+
+    private Long id;
+    private UUID uuid;
+    private String pairName;
+    private String tickerA;
+    private String tickerB;
+    private TradeStatus status;
+
+    private BigDecimal zScoreEntry;
+    private BigDecimal zScoreCurrent;
+    private BigDecimal pValueEntry;
+    private BigDecimal pValueCurrent;
+    private BigDecimal adfPvalueEntry;
+    private BigDecimal adfPvalueCurrent;
+    private BigDecimal correlationEntry;
+    private BigDecimal correlationCurrent;
+
+    private Integer totalScoreEntry;
+    private Integer totalScore;
+    private StabilityRating stabilityRating;
+
+    private String timeframe;
+    private BigDecimal settingsCandleLimit;
+    private BigDecimal minVolMln;
+
+    private Long timestamp;
+    private LocalDateTime entryTime;
+    private LocalDateTime updatedTime;
+
+    private BigDecimal portfolioBeforeTradeUSDT;
+    private BigDecimal portfolioAfterTradeUSDT;
+    private String formattedProfitLong;
+    private String formattedProfitShort;
+    private String formattedProfitCommon;
+    private String formattedTimeToMinProfit;
+    private String formattedTimeToMaxProfit;
+
+    private Integer averagingCount;
+    private BigDecimal maxZ;
+    private BigDecimal minZ;
+    private String exitReason;
+    private String errorDescription;
+    private boolean closeAtBreakeven;
+
+    /**
+     * Строка списка из уже загруженной пары (например, только что найденные пары, которые еще не перечитывались)
+     */
+    public static PairListItem of(Pair pair) {
+        return new PairListItem(
+                pair.getId(),
+                pair.getUuid(),
+                pair.getPairName(),
+                pair.getTickerA(),
+                pair.getTickerB(),
+                pair.getStatus(),
+                pair.getZScoreEntry(),
+                pair.getZScoreCurrent(),
+                pair.getPValueEntry(),
+                pair.getPValueCurrent(),
+                pair.getAdfPvalueEntry(),
+                pair.getAdfPvalueCurrent(),
+                pair.getCorrelationEntry(),
+                pair.getCorrelationCurrent(),
+                pair.getTotalScoreEntry(),
+                pair.getTotalScore(),
+                pair.getStabilityRating(),
+                pair.getTimeframe(),
+                pair.getSettingsCandleLimit(),
+                pair.getMinVolMln(),
+                pair.getTimestamp(),
+                pair.getEntryTime(),
+                pair.getUpdatedTime(),
+                pair.getPortfolioBeforeTradeUSDT(),
+                pair.getPortfolioAfterTradeUSDT(),
+                pair.getFormattedProfitLong(),
+                pair.getFormattedProfitShort(),
+                pair.getFormattedProfitCommon(),
+                pair.getFormattedTimeToMinProfit(),
+                pair.getFormattedTimeToMaxProfit(),
+                pair.getAveragingCount(),
+                pair.getMaxZ(),
+                pair.getMinZ(),
+                pair.getExitReason(),
+                pair.getErrorDescription(),
+                pair.isCloseAtBreakeven()
+        );
+    }
+
+    /**
+     * Получить long тикер (как в Pair)
+     */
+    public String getLongTicker() {
+        return tickerA;
+    }
+
+    /**
+     * Получить short тикер (как в Pair)
+     */
+    public String getShortTicker() {
+        return tickerB;
+    }
+
+    public String getSettingsTimeframe() {
+        return timeframe;
+    }
+}
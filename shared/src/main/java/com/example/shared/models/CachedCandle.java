@@ -3,28 +3,19 @@ package com.example.shared.models;
 import com.example.shared.dto.Candle;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.CreationTimestamp;
-import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.annotations.Immutable;
 
-import java.time.LocalDateTime;
+import java.io.Serializable;
 
+/**
+ * Свеча в кэше в прежнем виде строки. cached_candles - представление (миграция V52__compact_candle_bars в core)
+ * над компактными candle_bars и словарем серий candle_series, поэтому сущность только для чтения:
+ * запись идет через CachedCandleBulkRepository и нативные запросы CachedCandleRepository.
+ */
 @Entity
-@Table(name = "cached_candles", 
-        indexes = {
-            @Index(name = "idx_cached_candles_ticker_timeframe_exchange",
-                    columnList = "ticker, timeframe, exchange"),
-            @Index(name = "idx_cached_candles_timestamp",
-                    columnList = "timestamp"),
-            @Index(name = "idx_cached_candles_ticker_timeframe_timestamp",
-                    columnList = "ticker, timeframe, timestamp"),
-            @Index(name = "idx_cached_candles_exchange",
-                    columnList = "exchange")
-        },
-        uniqueConstraints = {
-            @UniqueConstraint(name = "uk_cached_candles_ticker_timeframe_exchange_timestamp",
-                    columnNames = {"ticker", "timeframe", "exchange", "timestamp"})
-        }
-)
+@Immutable
+@Table(name = "cached_candles")
+@IdClass(CachedCandle.Key.class)
 @Data
 @Builder
 @AllArgsConstructor
@@ -33,18 +24,18 @@ import java.time.LocalDateTime;
 public class CachedCandle {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-
     @Column(name = "ticker", nullable = false, length = 50)
     private String ticker;
 
+    @Id
     @Column(name = "timeframe", nullable = false, length = 10)
     private String timeframe;
 
+    @Id
     @Column(name = "exchange", nullable = false, length = 20)
     private String exchange;
 
+    @Id
     @Column(name = "timestamp", nullable = false)
     private Long timestamp;
 
@@ -63,18 +54,6 @@ public class CachedCandle {
     @Column(name = "volume", nullable = false)
     private Double volume;
 
-    @CreationTimestamp
-    @Column(name = "created_at", nullable = false)
-    private LocalDateTime createdAt;
-
-    @UpdateTimestamp
-    @Column(name = "updated_at", nullable = false)
-    private LocalDateTime updatedAt;
-
-    @Column(name = "is_valid", nullable = false)
-    @Builder.Default
-    private Boolean isValid = true;
-
     public static CachedCandle fromCandle(Candle candle, String ticker, String timeframe, String exchange) {
         return CachedCandle.builder()
                 .ticker(ticker)
@@ -86,7 +65,6 @@ public class CachedCandle {
                 .lowPrice(candle.getLow())
                 .closePrice(candle.getClose())
                 .volume(candle.getVolume())
-                .isValid(true)
                 .build();
     }
 
@@ -105,8 +83,16 @@ public class CachedCandle {
         return String.format("%s_%s_%s_%d", exchange, ticker, timeframe, timestamp);
     }
 
-    public boolean isOutdated(int maxAgeHours) {
-        if (updatedAt == null) return true;
-        return updatedAt.isBefore(LocalDateTime.now().minusHours(maxAgeHours));
+    /**
+     * Естественный ключ свечи - строки представления не имеют суррогатного id
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String ticker;
+        private String timeframe;
+        private String exchange;
+        private Long timestamp;
     }
-}
\ No newline at end of file
+}
@@ -4,14 +4,19 @@ import com.example.shared.dto.*;
 import com.example.shared.enums.PairType;
 import com.example.shared.enums.StabilityRating;
 import com.example.shared.enums.TradeStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Field;
@@ -26,6 +31,7 @@ import java.util.*;
  * - TradingPair (активно торгуемые пары)
  */
 @Entity
+@EntityListeners(PairHistoryListener.class)
 @Table(name = "pairs",
         indexes = {
                 @Index(name = "idx_pair_uuid", columnList = "uuid", unique = true),
@@ -221,40 +227,39 @@ public class Pair {
     // ======== ДОПОЛНИТЕЛЬНЫЕ ПОЛЯ ДЛЯ ТОРГОВЫХ ПАР ========
     // Эти поля будут null для типа STABLE, но заполнены для COINTEGRATED и TRADING
 
-    // JSON поля для хранения исторических данных
-    @Column(name = "long_ticker_candles_json", columnDefinition = "TEXT")
-    private String longTickerCandlesJson;
-
-    @Column(name = "short_ticker_candles_json", columnDefinition = "TEXT")
-    private String shortTickerCandlesJson;
-
-    @Column(name = "z_score_history_json", columnDefinition = "TEXT")
-    private String zScoreHistoryJson;
-
-    @Column(name = "profit_history_json", columnDefinition = "TEXT")
-    private String profitHistoryJson;
-
-    @Column(name = "correlation_history_json", columnDefinition = "TEXT")
-    private String correlationHistoryJson;
-
-    @Column(name = "pixel_spread_history_json", columnDefinition = "TEXT")
-    private String pixelSpreadHistoryJson;
+    // Временные ряды пары хранятся в таблицах pair_*_history и pair_candles (V55) и читаются лениво,
+    // несохраненные точки записывает PairHistoryRepository при сохранении пары
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private PairHistoryTrack<Candle> longTickerCandles;
 
-    // Transient поля для работы с данными в коде
     @Transient
-    private List<Candle> longTickerCandles;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private PairHistoryTrack<Candle> shortTickerCandles;
 
     @Transient
-    private List<Candle> shortTickerCandles;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private PairHistoryTrack<ZScoreParam> zScoreHistory;
 
     @Transient
-    private List<ZScoreParam> zScoreHistory;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private PairHistoryTrack<ProfitHistoryItem> profitHistory;
 
     @Transient
-    private List<ProfitHistoryItem> profitHistory;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private PairHistoryTrack<CorrelationHistoryItem> correlationHistory;
 
     @Transient
-    private List<CorrelationHistoryItem> correlationHistory;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private PairHistorySource historySource;
 
     @Transient
     private List<PixelSpreadHistoryItem> pixelSpreadHistory;
@@ -614,67 +619,23 @@ public class Pair {
         }
     }
 
-    // Методы для работы с candles JSON
+    // Методы для работы со свечами (таблица pair_candles, окно свечей заменяется целиком)
     public void setLongTickerCandles(List<Candle> candles) {
-        this.longTickerCandles = candles;
-        if (candles != null) {
-            try {
-                this.longTickerCandlesJson = objectMapper.writeValueAsString(candles);
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при сериализации свечей long тикера", e);
-                this.longTickerCandlesJson = "[]";
-            }
-        } else {
-            this.longTickerCandlesJson = null;
-        }
+        longTickerCandlesTrack().replace(candles);
     }
 
     public List<Candle> getLongTickerCandles() {
-        if (longTickerCandles != null) {
-            return longTickerCandles;
-        }
-        if (longTickerCandlesJson != null && !longTickerCandlesJson.isEmpty()) {
-            try {
-                longTickerCandles = objectMapper.readValue(longTickerCandlesJson,
-                        new TypeReference<List<Candle>>() {
-                        });
-                return longTickerCandles;
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при десериализации свечей long тикера", e);
-            }
-        }
-        return new ArrayList<>();
+        return longTickerCandlesTrack().items(() -> hasHistorySource()
+                ? historySource.findCandles(uuid, true) : List.of());
     }
 
     public void setShortTickerCandles(List<Candle> candles) {
-        this.shortTickerCandles = candles;
-        if (candles != null) {
-            try {
-                this.shortTickerCandlesJson = objectMapper.writeValueAsString(candles);
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при сериализации свечей short тикера", e);
-                this.shortTickerCandlesJson = "[]";
-            }
-        } else {
-            this.shortTickerCandlesJson = null;
-        }
+        shortTickerCandlesTrack().replace(candles);
     }
 
     public List<Candle> getShortTickerCandles() {
-        if (shortTickerCandles != null) {
-            return shortTickerCandles;
-        }
-        if (shortTickerCandlesJson != null && !shortTickerCandlesJson.isEmpty()) {
-            try {
-                shortTickerCandles = objectMapper.readValue(shortTickerCandlesJson,
-                        new TypeReference<List<Candle>>() {
-                        });
-                return shortTickerCandles;
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при десериализации свечей short тикера", e);
-            }
-        }
-        return new ArrayList<>();
+        return shortTickerCandlesTrack().items(() -> hasHistorySource()
+                ? historySource.findCandles(uuid, false) : List.of());
     }
 
     // ======== УТИЛИТИ МЕТОДЫ ========
@@ -855,125 +816,143 @@ public class Pair {
     }
 
     public void addZScorePoint(ZScoreParam item) {
-        if (zScoreHistory == null) {
-            zScoreHistory = new ArrayList<>();
-        }
-        zScoreHistory.add(item);
-        // Автоматически сохраняем в JSON поле
-        setZScoreHistory(zScoreHistory);
+        zScoreHistoryTrack().append(item);
     }
 
     public List<ZScoreParam> getZScoreHistory() {
-        if (zScoreHistory != null) {
-            return zScoreHistory;
-        }
-        if (zScoreHistoryJson != null && !zScoreHistoryJson.isEmpty()) {
-            try {
-                zScoreHistory = objectMapper.readValue(zScoreHistoryJson,
-                        new TypeReference<List<ZScoreParam>>() {
-                        });
-                return zScoreHistory;
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при десериализации истории Z-Score", e);
-            }
-        }
-        return new ArrayList<>();
+        return zScoreHistoryTrack().items(() -> hasHistorySource()
+                ? historySource.findZScoreHistory(uuid, Long.MIN_VALUE, Long.MAX_VALUE) : List.of());
+    }
+
+    /**
+     * История Z-Score за [fromTimestamp, toTimestamp] без загрузки всей истории (для чартов)
+     */
+    public List<ZScoreParam> getZScoreHistory(long fromTimestamp, long toTimestamp) {
+        return zScoreHistoryTrack().between(fromTimestamp, toTimestamp, () -> hasHistorySource()
+                ? historySource.findZScoreHistory(uuid, fromTimestamp, toTimestamp) : List.of());
+    }
+
+    /**
+     * Последняя точка Z-Score (null, если истории нет) без загрузки всей истории
+     */
+    @JsonIgnore
+    public ZScoreParam getLastZScorePoint() {
+        return zScoreHistoryTrack().last(() -> hasHistorySource() ? historySource.findLastZScore(uuid) : null);
     }
 
     public void setZScoreHistory(List<ZScoreParam> history) {
-        this.zScoreHistory = history;
-        if (history != null) {
-            try {
-                this.zScoreHistoryJson = objectMapper.writeValueAsString(history);
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при сериализации истории Z-Score", e);
-                this.zScoreHistoryJson = "[]";
-            }
-        } else {
-            this.zScoreHistoryJson = null;
-        }
+        zScoreHistoryTrack().replace(history);
     }
 
     public void addProfitHistoryPoint(ProfitHistoryItem item) {
-        // КРИТИЧНО: Всегда загружаем существующую историю из JSON, если profitHistory == null (аналогично Z-Score)
-        if (profitHistory == null) {
-            profitHistory = getProfitHistory(); // Загружаем из JSON или создаем пустой список
-        }
-        profitHistory.add(item);
-        // Автоматически сохраняем в JSON поле
-        setProfitHistory(profitHistory);
+        profitHistoryTrack().append(item);
+    }
+
+    /**
+     * Заменяет последнюю точку профита (обновление точки вместо добавления новой)
+     */
+    public void replaceLastProfitHistoryPoint(ProfitHistoryItem item) {
+        profitHistoryTrack().replaceLast(item, () -> hasHistorySource() ? historySource.findLastProfit(uuid) : null);
+    }
+
+    @JsonIgnore
+    public ProfitHistoryItem getLastProfitHistoryPoint() {
+        return profitHistoryTrack().last(() -> hasHistorySource() ? historySource.findLastProfit(uuid) : null);
     }
 
     public void setProfitHistory(List<ProfitHistoryItem> history) {
-        this.profitHistory = history;
-        if (history != null) {
-            try {
-                this.profitHistoryJson = objectMapper.writeValueAsString(history);
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при сериализации истории Profit", e);
-                this.profitHistoryJson = "[]";
-            }
-        } else {
-            this.profitHistoryJson = null;
-        }
+        profitHistoryTrack().replace(history);
     }
 
     public List<ProfitHistoryItem> getProfitHistory() {
-        if (profitHistory != null) {
-            return profitHistory;
-        }
-        if (profitHistoryJson != null && !profitHistoryJson.isEmpty()) {
-            try {
-                profitHistory = objectMapper.readValue(profitHistoryJson,
-                        new TypeReference<>() {
-                        });
-                return profitHistory;
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при десериализации истории Profit", e);
-            }
-        }
-        return new ArrayList<>();
+        return profitHistoryTrack().items(() -> hasHistorySource()
+                ? historySource.findProfitHistory(uuid, Long.MIN_VALUE, Long.MAX_VALUE) : List.of());
+    }
+
+    /**
+     * История профита за [fromTimestamp, toTimestamp] без загрузки всей истории (для чартов)
+     */
+    public List<ProfitHistoryItem> getProfitHistory(long fromTimestamp, long toTimestamp) {
+        return profitHistoryTrack().between(fromTimestamp, toTimestamp, () -> hasHistorySource()
+                ? historySource.findProfitHistory(uuid, fromTimestamp, toTimestamp) : List.of());
     }
 
     public void addCorrelationHistoryPoint(CorrelationHistoryItem item) {
-        // КРИТИЧНО: Всегда загружаем существующую историю из JSON, если correlationHistory == null (аналогично Z-Score)
-        if (correlationHistory == null) {
-            correlationHistory = getCorrelationHistory(); // Загружаем из JSON или создаем пустой список
-        }
-        correlationHistory.add(item);
-        // Автоматически сохраняем в JSON поле
-        setCorrelationHistory(correlationHistory);
+        correlationHistoryTrack().append(item);
+    }
+
+    /**
+     * Заменяет последнюю точку корреляции (обновление точки вместо добавления новой)
+     */
+    public void replaceLastCorrelationHistoryPoint(CorrelationHistoryItem item) {
+        correlationHistoryTrack().replaceLast(item, () -> hasHistorySource() ? historySource.findLastCorrelation(uuid) : null);
+    }
+
+    @JsonIgnore
+    public CorrelationHistoryItem getLastCorrelationHistoryPoint() {
+        return correlationHistoryTrack().last(() -> hasHistorySource() ? historySource.findLastCorrelation(uuid) : null);
     }
 
     public void setCorrelationHistory(List<CorrelationHistoryItem> history) {
-        this.correlationHistory = history;
-        if (history != null) {
-            try {
-                this.correlationHistoryJson = objectMapper.writeValueAsString(history);
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при сериализации истории Correlation", e);
-                this.correlationHistoryJson = "[]";
-            }
-        } else {
-            this.correlationHistoryJson = null;
-        }
+        correlationHistoryTrack().replace(history);
     }
 
     public List<CorrelationHistoryItem> getCorrelationHistory() {
-        if (correlationHistory != null) {
-            return correlationHistory;
+        return correlationHistoryTrack().items(() -> hasHistorySource()
+                ? historySource.findCorrelationHistory(uuid, Long.MIN_VALUE, Long.MAX_VALUE) : List.of());
+    }
+
+    /**
+     * История корреляции за [fromTimestamp, toTimestamp] без загрузки всей истории (для чартов)
+     */
+    public List<CorrelationHistoryItem> getCorrelationHistory(long fromTimestamp, long toTimestamp) {
+        return correlationHistoryTrack().between(fromTimestamp, toTimestamp, () -> hasHistorySource()
+                ? historySource.findCorrelationHistory(uuid, fromTimestamp, toTimestamp) : List.of());
+    }
+
+    // ======== ВРЕМЕННЫЕ РЯДЫ ДЛЯ PairHistoryRepository ========
+
+    public PairHistoryTrack<Candle> longTickerCandlesTrack() {
+        if (longTickerCandles == null) {
+            longTickerCandles = new PairHistoryTrack<>(Candle::getTimestamp);
         }
-        if (correlationHistoryJson != null && !correlationHistoryJson.isEmpty()) {
-            try {
-                correlationHistory = objectMapper.readValue(correlationHistoryJson,
-                        new TypeReference<>() {
-                        });
-                return correlationHistory;
-            } catch (JsonProcessingException e) {
-                log.error("Ошибка при десериализации истории Correlation", e);
-            }
+        return longTickerCandles;
+    }
+
+    public PairHistoryTrack<Candle> shortTickerCandlesTrack() {
+        if (shortTickerCandles == null) {
+            shortTickerCandles = new PairHistoryTrack<>(Candle::getTimestamp);
+        }
+        return shortTickerCandles;
+    }
+
+    public PairHistoryTrack<ZScoreParam> zScoreHistoryTrack() {
+        if (zScoreHistory == null) {
+            zScoreHistory = new PairHistoryTrack<>(ZScoreParam::getTimestamp);
+        }
+        return zScoreHistory;
+    }
+
+    public PairHistoryTrack<ProfitHistoryItem> profitHistoryTrack() {
+        if (profitHistory == null) {
+            profitHistory = new PairHistoryTrack<>(ProfitHistoryItem::getTimestamp);
         }
-        return new ArrayList<>();
+        return profitHistory;
+    }
+
+    public PairHistoryTrack<CorrelationHistoryItem> correlationHistoryTrack() {
+        if (correlationHistory == null) {
+            correlationHistory = new PairHistoryTrack<>(CorrelationHistoryItem::getTimestamp);
+        }
+        return correlationHistory;
+    }
+
+    void attachHistorySource(PairHistorySource historySource) {
+        this.historySource = historySource;
+    }
+
+    private boolean hasHistorySource() {
+        return historySource != null && uuid != null;
     }
 
     // Метод для совместимости с TradingPair
@@ -0,0 +1,23 @@
+package com.example.shared.models;
+
+import jakarta.persistence.PostLoad;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Подключает к загруженной из БД паре источник ее временных рядов для ленивой загрузки.
+ * Экземпляр создает Hibernate через контейнер бинов Spring; в сервисах без PairHistorySource
+ * (cointegration) ряды пары остаются только в памяти
+ */
+public class PairHistoryListener {
+
+    private final ObjectProvider<PairHistorySource> historySource;
+
+    public PairHistoryListener(ObjectProvider<PairHistorySource> historySource) {
+        this.historySource = historySource;
+    }
+
+    @PostLoad
+    public void attachHistorySource(Pair pair) {
+        pair.attachHistorySource(historySource.getIfAvailable());
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.shared.models;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.CorrelationHistoryItem;
+import com.example.shared.dto.ProfitHistoryItem;
+import com.example.shared.dto.ZScoreParam;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Чтение временных рядов пары из таблиц истории (реализация - PairHistoryRepository в core).
+ * Диапазоны включительные, ряды по возрастанию таймштампа
+ */
+public interface PairHistorySource {
+
+    List<ZScoreParam> findZScoreHistory(UUID pairUuid, long fromTimestamp, long toTimestamp);
+
+    ZScoreParam findLastZScore(UUID pairUuid);
+
+    List<ProfitHistoryItem> findProfitHistory(UUID pairUuid, long fromTimestamp, long toTimestamp);
+
+    ProfitHistoryItem findLastProfit(UUID pairUuid);
+
+    List<CorrelationHistoryItem> findCorrelationHistory(UUID pairUuid, long fromTimestamp, long toTimestamp);
+
+    CorrelationHistoryItem findLastCorrelation(UUID pairUuid);
+
+    List<Candle> findCandles(UUID pairUuid, boolean longTicker);
+}
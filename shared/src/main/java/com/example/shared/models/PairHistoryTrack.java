@@ -0,0 +1,167 @@
+package com.example.shared.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Временной ряд пары (история Z-Score, профита, корреляции, свечи) с журналом несохраненных изменений.
+ * <p>
+ * Ряд хранится в отдельной таблице по (pair_uuid, timestamp) и читается только при первом обращении.
+ * Добавленные точки копятся в appended до сохранения пары: добавление не требует ни загрузки ряда,
+ * ни перезаписи всей истории - при сохранении вставляются только новые строки.
+ * Замена списка целиком помечает ряд для полной перезаписи.
+ */
+public final class PairHistoryTrack<T> {
+
+    private final ToLongFunction<T> timestampOf;
+
+    // Весь ряд (сохраненные строки + appended), null - еще не загружен
+    private List<T> items;
+    private final List<T> appended = new ArrayList<>();
+    private final List<Long> removedTimestamps = new ArrayList<>();
+    private boolean replaced;
+
+    public PairHistoryTrack(ToLongFunction<T> timestampOf) {
+        this.timestampOf = timestampOf;
+    }
+
+    /**
+     * Весь ряд: сохраненные строки загружаются через loader один раз, к ним добавляются несохраненные точки
+     */
+    public List<T> items(Supplier<List<T>> loader) {
+        if (items == null) {
+            List<T> stored = loader.get();
+            items = new ArrayList<>(stored.size() + appended.size());
+            addStored(items, stored);
+            items.addAll(appended);
+        }
+        return items;
+    }
+
+    /**
+     * Точки в [fromTimestamp, toTimestamp]: из памяти, если ряд уже загружен, иначе через rangeLoader
+     */
+    public List<T> between(long fromTimestamp, long toTimestamp, Supplier<List<T>> rangeLoader) {
+        List<T> result = new ArrayList<>();
+        if (items != null) {
+            for (T item : items) {
+                long timestamp = timestampOf.applyAsLong(item);
+                if (timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+                    result.add(item);
+                }
+            }
+            return result;
+        }
+        addStored(result, rangeLoader.get());
+        for (T item : appended) {
+            long timestamp = timestampOf.applyAsLong(item);
+            if (timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Последняя точка ряда без загрузки всего ряда (lastLoader - последняя сохраненная строка или null)
+     */
+    public T last(Supplier<T> lastLoader) {
+        if (items != null) {
+            return items.isEmpty() ? null : items.get(items.size() - 1);
+        }
+        if (!appended.isEmpty()) {
+            return appended.get(appended.size() - 1);
+        }
+        return lastLoader.get();
+    }
+
+    /**
+     * Сохраненные строки без уже замененных (удаляются при следующем сохранении)
+     */
+    private void addStored(List<T> target, List<T> stored) {
+        if (removedTimestamps.isEmpty()) {
+            target.addAll(stored);
+            return;
+        }
+        for (T item : stored) {
+            if (!removedTimestamps.contains(timestampOf.applyAsLong(item))) {
+                target.add(item);
+            }
+        }
+    }
+
+    public void append(T item) {
+        if (!replaced) {
+            appended.add(item);
+        }
+        if (items != null) {
+            items.add(item);
+        }
+    }
+
+    /**
+     * Заменяет последнюю точку ряда: сохраненная строка удаляется, новая точка вставляется при сохранении
+     */
+    public void replaceLast(T item, Supplier<T> lastLoader) {
+        T last = last(lastLoader);
+        if (last == null) {
+            append(item);
+            return;
+        }
+        if (items != null) {
+            items.set(items.size() - 1, item);
+        }
+        if (replaced) {
+            return;
+        }
+        if (!appended.isEmpty() && appended.get(appended.size() - 1) == last) {
+            appended.set(appended.size() - 1, item);
+        } else {
+            removedTimestamps.add(timestampOf.applyAsLong(last));
+            appended.add(item);
+        }
+    }
+
+    /**
+     * Заменяет ряд целиком (при сохранении таблица ряда перезаписывается)
+     */
+    public void replace(List<T> newItems) {
+        items = newItems != null ? new ArrayList<>(newItems) : new ArrayList<>();
+        appended.clear();
+        removedTimestamps.clear();
+        replaced = true;
+    }
+
+    public boolean hasChanges() {
+        return replaced || !appended.isEmpty();
+    }
+
+    public boolean isReplaced() {
+        return replaced;
+    }
+
+    /**
+     * Строки для вставки при сохранении: весь ряд после замены или только добавленные точки
+     */
+    public List<T> pending() {
+        return replaced ? items : appended;
+    }
+
+    /**
+     * Таймштампы сохраненных строк, которые нужно удалить перед вставкой pending()
+     */
+    public List<Long> removedTimestamps() {
+        return removedTimestamps;
+    }
+
+    /**
+     * Изменения записаны в таблицу
+     */
+    public void markSaved() {
+        appended.clear();
+        removedTimestamps.clear();
+        replaced = false;
+    }
+}
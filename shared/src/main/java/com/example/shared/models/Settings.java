@@ -319,6 +319,10 @@ public class Settings {
     @Column(name = "scheduler_update_trades_enabled")
     private Boolean schedulerUpdateTradesEnabled = true;
 
+    @Builder.Default
+    @Column(name = "scheduler_update_trades_concurrency")
+    private int schedulerUpdateTradesConcurrency = 4; // сколько пар обновляется параллельно
+
     // StablePairsScheduler (поиск стабильных пар ночью)
     @Builder.Default
     @Column(name = "scheduler_stable_pairs_enabled")
@@ -502,6 +506,7 @@ public class Settings {
 
         // Управление шедуллерами
         this.schedulerUpdateTradesEnabled = other.schedulerUpdateTradesEnabled;
+        this.schedulerUpdateTradesConcurrency = other.schedulerUpdateTradesConcurrency;
         this.schedulerStablePairsEnabled = other.schedulerStablePairsEnabled;
         this.schedulerStablePairsCron = other.schedulerStablePairsCron;
         this.schedulerPortfolioSnapshotEnabled = other.schedulerPortfolioSnapshotEnabled;
@@ -0,0 +1,260 @@
+package com.example.shared.utils;
+
+import com.example.shared.dto.Candle;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Бинарный формат пакета свечей (тикер -> свечи) для передачи между сервисами вместо JSON.
+ * <p>
+ * Формат (big-endian):
+ * <pre>
+ * magic "CB" | version (1 байт) | flags (1 байт)
+ * далее (при FLAG_DEFLATE - сжато Deflate):
+ * int количество тикеров
+ * по каждому тикеру: UTF имя | varint количество свечей N |
+ *   long первый timestamp | N-1 zigzag varint разностей шага времени (delta-of-delta) |
+ *   колонки double: close (FLAG_CLOSE_ONLY) или open, high, low, close, volume - по N значений
+ * </pre>
+ * Для равномерных свечей разность шага равна 0, поэтому время занимает ~1 байт на свечу,
+ * а цены передаются как есть (IEEE 754) - без потерь и без разбора десятичного текста.
+ */
+public final class CandleBatchCodec {
+
+    public static final String MEDIA_TYPE = "application/x-candle-batch";
+
+    /**
+     * Значение Accept для клиентов: бинарный формат, если сервер его умеет, иначе JSON
+     */
+    public static final String ACCEPT_WITH_JSON_FALLBACK = MEDIA_TYPE + ", application/json;q=0.9";
+
+    /**
+     * Только close (для расчетов по ценам закрытия), при чтении open/high/low = close, volume = 0
+     */
+    public static final int FLAG_CLOSE_ONLY = 1;
+
+    /**
+     * Тело после заголовка сжато Deflate
+     */
+    public static final int FLAG_DEFLATE = 1 << 1;
+
+    private static final int MAGIC = ('C' << 8) | 'B';
+    private static final int VERSION = 1;
+
+    private CandleBatchCodec() {
+    }
+
+    public static byte[] encode(Map<String, List<Candle>> candlesMap, int flags) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(estimateSize(candlesMap, flags));
+        try {
+            encode(candlesMap, flags, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream не бросает IOException
+        }
+        return out.toByteArray();
+    }
+
+    public static void encode(Map<String, List<Candle>> candlesMap, int flags, OutputStream out) throws IOException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeShort(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(flags);
+
+        boolean deflate = (flags & FLAG_DEFLATE) != 0;
+        Deflater deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            OutputStream bodyStream = deflate
+                    ? new DeflaterOutputStream(out, deflater, 64 * 1024)
+                    : new BufferedOutputStream(out, 64 * 1024);
+            DataOutputStream body = new DataOutputStream(bodyStream);
+
+            body.writeInt(candlesMap.size());
+            for (Map.Entry<String, List<Candle>> entry : candlesMap.entrySet()) {
+                writeSeries(body, entry.getKey(), entry.getValue(), (flags & FLAG_CLOSE_ONLY) != 0);
+            }
+
+            if (bodyStream instanceof DeflaterOutputStream deflaterStream) {
+                deflaterStream.finish();
+            }
+            body.flush();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * @return тикер -> свечи в порядке пакета
+     * @throws IllegalArgumentException если данные не являются пакетом свечей
+     */
+    public static Map<String, List<Candle>> decode(byte[] bytes) {
+        try {
+            return decode(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("❌ Некорректный пакет свечей: " + e.getMessage(), e);
+        }
+    }
+
+    public static Map<String, List<Candle>> decode(InputStream in) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        int magic = header.readUnsignedShort();
+        if (magic != MAGIC) {
+            throw new IOException("неизвестный формат пакета свечей: magic=" + Integer.toHexString(magic));
+        }
+        int version = header.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("неподдерживаемая версия пакета свечей: " + version);
+        }
+        int flags = header.readUnsignedByte();
+
+        Inflater inflater = (flags & FLAG_DEFLATE) != 0 ? new Inflater() : null;
+        try {
+            InputStream bodyStream = inflater != null
+                    ? new InflaterInputStream(in, inflater, 64 * 1024)
+                    : new BufferedInputStream(in, 64 * 1024);
+            DataInputStream body = new DataInputStream(bodyStream);
+
+            int tickerCount = body.readInt();
+            if (tickerCount < 0) {
+                throw new IOException("некорректное количество тикеров: " + tickerCount);
+            }
+            Map<String, List<Candle>> result = new LinkedHashMap<>(Math.max(16, tickerCount * 4 / 3 + 1));
+            for (int i = 0; i < tickerCount; i++) {
+                String ticker = body.readUTF();
+                result.put(ticker, readSeries(body, (flags & FLAG_CLOSE_ONLY) != 0));
+            }
+            return result;
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private static void writeSeries(DataOutputStream out, String ticker, List<Candle> candles, boolean closeOnly) throws IOException {
+        out.writeUTF(ticker);
+        int count = candles == null ? 0 : candles.size();
+        writeVarint(out, count);
+        if (count == 0) {
+            return;
+        }
+
+        long previous = candles.get(0).getTimestamp();
+        long previousStep = 0;
+        out.writeLong(previous);
+        for (int i = 1; i < count; i++) {
+            long timestamp = candles.get(i).getTimestamp();
+            long step = timestamp - previous;
+            writeVarint(out, zigzag(step - previousStep));
+            previous = timestamp;
+            previousStep = step;
+        }
+
+        if (!closeOnly) {
+            for (Candle candle : candles) {
+                out.writeDouble(candle.getOpen());
+            }
+            for (Candle candle : candles) {
+                out.writeDouble(candle.getHigh());
+            }
+            for (Candle candle : candles) {
+                out.writeDouble(candle.getLow());
+            }
+        }
+        for (Candle candle : candles) {
+            out.writeDouble(candle.getClose());
+        }
+        if (!closeOnly) {
+            for (Candle candle : candles) {
+                out.writeDouble(candle.getVolume());
+            }
+        }
+    }
+
+    private static List<Candle> readSeries(DataInputStream in, boolean closeOnly) throws IOException {
+        int count = (int) readVarint(in);
+        if (count < 0) {
+            throw new IOException("некорректное количество свечей: " + count);
+        }
+        List<Candle> candles = new ArrayList<>(count);
+        if (count == 0) {
+            return candles;
+        }
+
+        long[] timestamps = new long[count];
+        timestamps[0] = in.readLong();
+        long step = 0;
+        for (int i = 1; i < count; i++) {
+            step += unzigzag(readVarint(in));
+            timestamps[i] = timestamps[i - 1] + step;
+        }
+
+        double[] open = closeOnly ? null : readColumn(in, count);
+        double[] high = closeOnly ? null : readColumn(in, count);
+        double[] low = closeOnly ? null : readColumn(in, count);
+        double[] close = readColumn(in, count);
+        double[] volume = closeOnly ? null : readColumn(in, count);
+
+        for (int i = 0; i < count; i++) {
+            candles.add(closeOnly
+                    ? new Candle(timestamps[i], close[i], close[i], close[i], close[i], 0)
+                    : new Candle(timestamps[i], open[i], high[i], low[i], close[i], volume[i]));
+        }
+        return candles;
+    }
+
+    private static double[] readColumn(DataInputStream in, int count) throws IOException {
+        double[] column = new double[count];
+        for (int i = 0; i < count; i++) {
+            column[i] = in.readDouble();
+        }
+        return column;
+    }
+
+    private static int estimateSize(Map<String, List<Candle>> candlesMap, int flags) {
+        int columns = (flags & FLAG_CLOSE_ONLY) != 0 ? 1 : 5;
+        long size = 8;
+        for (Map.Entry<String, List<Candle>> entry : candlesMap.entrySet()) {
+            int count = entry.getValue() == null ? 0 : entry.getValue().size();
+            size += entry.getKey().length() + 16 + count * (1L + 8L * columns);
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE - 8);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("слишком длинный varint");
+    }
+}
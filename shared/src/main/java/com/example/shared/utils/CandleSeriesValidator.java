@@ -0,0 +1,197 @@
+package com.example.shared.utils;
+
+import com.example.shared.dto.Candle;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Общая валидация консистентности свечей для candles и core.
+ * <p>
+ * Работает по примитивным массивам таймштампов: каждый тикер сверяется с эталонной шкалой
+ * (количество свечей, первая и последняя свеча) за один проход по карте, а пропуски внутри ряда
+ * ищутся одним проходом по long[] без обращения к объектам Candle. Результат - компактная битовая
+ * маска валидных тикеров и флаги расхождений для логов вызывающего.
+ */
+public final class CandleSeriesValidator {
+
+    /**
+     * Флаги расхождения тикера с эталоном
+     */
+    public static final int MISMATCH_EMPTY = 1;
+    public static final int MISMATCH_COUNT = 1 << 1;
+    public static final int MISMATCH_FIRST = 1 << 2;
+    public static final int MISMATCH_LAST = 1 << 3;
+
+    private CandleSeriesValidator() {
+    }
+
+    /**
+     * Эталонная шкала: количество свечей и границы (уже приведенные тем же boundary, что и у тикеров)
+     */
+    public record Reference(int count, long first, long last) {
+
+        public static Reference of(List<Candle> candles, LongUnaryOperator boundary) {
+            return new Reference(candles.size(),
+                    boundary.applyAsLong(candles.get(0).getTimestamp()),
+                    boundary.applyAsLong(candles.get(candles.size() - 1).getTimestamp()));
+        }
+    }
+
+    /**
+     * Пропуск внутри ряда: свечи между startTimestamp и endTimestamp (позиции startIndex и endIndex) отсутствуют
+     */
+    public record Gap(long startTimestamp, long endTimestamp, int missedCandles, int startIndex, int endIndex) {
+    }
+
+    /**
+     * Результат сверки тикеров с эталоном. Индекс тикера - позиция в tickers()
+     */
+    public static final class Report {
+        private final List<String> tickers;
+        private final BitSet valid;
+        private final byte[] mismatches;
+        private final int[] counts;
+        private final long[] firstTimestamps;
+        private final long[] lastTimestamps;
+
+        private Report(List<String> tickers) {
+            int size = tickers.size();
+            this.tickers = tickers;
+            this.valid = new BitSet(size);
+            this.mismatches = new byte[size];
+            this.counts = new int[size];
+            this.firstTimestamps = new long[size];
+            this.lastTimestamps = new long[size];
+        }
+
+        public List<String> tickers() {
+            return tickers;
+        }
+
+        public int size() {
+            return tickers.size();
+        }
+
+        public boolean isValid(int index) {
+            return valid.get(index);
+        }
+
+        public int validCount() {
+            return valid.cardinality();
+        }
+
+        /**
+         * Маска валидных тикеров (копия)
+         */
+        public BitSet validMask() {
+            return (BitSet) valid.clone();
+        }
+
+        public int mismatches(int index) {
+            return mismatches[index];
+        }
+
+        public int count(int index) {
+            return counts[index];
+        }
+
+        /**
+         * Первая свеча тикера до приведения boundary
+         */
+        public long firstTimestamp(int index) {
+            return firstTimestamps[index];
+        }
+
+        /**
+         * Последняя свеча тикера до приведения boundary
+         */
+        public long lastTimestamp(int index) {
+            return lastTimestamps[index];
+        }
+    }
+
+    /**
+     * Сверяет каждый тикер с эталоном по количеству свечей и границам (списки должны быть отсортированы по времени)
+     *
+     * @param boundary приведение границ перед сравнением (например, обрезка до начала дня), identity - точное сравнение
+     */
+    public static Report validateAgainstReference(Map<String, List<Candle>> candlesMap, Reference reference,
+                                                  LongUnaryOperator boundary) {
+        Report report = new Report(new ArrayList<>(candlesMap.keySet()));
+        int index = 0;
+        for (String ticker : report.tickers) {
+            List<Candle> candles = candlesMap.get(ticker);
+            int mismatch = 0;
+            if (candles == null || candles.isEmpty()) {
+                mismatch = MISMATCH_EMPTY;
+            } else {
+                long first = candles.get(0).getTimestamp();
+                long last = candles.get(candles.size() - 1).getTimestamp();
+                report.counts[index] = candles.size();
+                report.firstTimestamps[index] = first;
+                report.lastTimestamps[index] = last;
+
+                if (candles.size() != reference.count()) {
+                    mismatch |= MISMATCH_COUNT;
+                }
+                if (boundary.applyAsLong(first) != reference.first()) {
+                    mismatch |= MISMATCH_FIRST;
+                }
+                if (boundary.applyAsLong(last) != reference.last()) {
+                    mismatch |= MISMATCH_LAST;
+                }
+            }
+            report.mismatches[index] = (byte) mismatch;
+            if (mismatch == 0) {
+                report.valid.set(index);
+            }
+            index++;
+        }
+        return report;
+    }
+
+    /**
+     * Таймштампы свечей в примитивном массиве
+     */
+    public static long[] timestamps(List<Candle> candles) {
+        long[] timestamps = new long[candles.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = candles.get(i).getTimestamp();
+        }
+        return timestamps;
+    }
+
+    /**
+     * Пропуски в отсортированном ряду: интервал между соседними свечами отличается от шага больше чем на 10%
+     * и вмещает хотя бы одну свечу
+     */
+    public static List<Gap> findGaps(long[] timestamps, long step) {
+        long tolerance = step / 10;
+        List<Gap> gaps = List.of();
+
+        // Быстрый проход без ветвлений на типичном непрерывном ряду, детали собираются только при расхождении
+        long deviation = 0;
+        for (int i = 1; i < timestamps.length; i++) {
+            deviation |= Math.max(0, Math.abs(timestamps[i] - timestamps[i - 1] - step) - tolerance);
+        }
+        if (deviation == 0) {
+            return gaps;
+        }
+
+        gaps = new ArrayList<>();
+        for (int i = 1; i < timestamps.length; i++) {
+            long interval = timestamps[i] - timestamps[i - 1];
+            if (Math.abs(interval - step) > tolerance) {
+                long missed = interval / step - 1;
+                if (missed > 0) {
+                    gaps.add(new Gap(timestamps[i - 1], timestamps[i], (int) missed, i - 1, i));
+                }
+            }
+        }
+        return gaps;
+    }
+}
@@ -15,4 +15,22 @@ public final class CandlesUtil {
     public static double getLastClose(List<Candle> candleList) {
         return getLastCandle(candleList).getClose();
     }
-}
\ No newline at end of file
+
+    /**
+     * Контрольная сумма окна свечей (таймштампы и OHLCV в порядке списка).
+     * Считается одинаково в candles и core - по ней core проверяет, что окно,
+     * собранное из дельт, совпадает с окном на стороне candles.
+     */
+    public static long windowChecksum(List<Candle> candleList) {
+        long hash = 1125899906842597L;
+        for (Candle candle : candleList) {
+            hash = 31 * hash + candle.getTimestamp();
+            hash = 31 * hash + Double.doubleToLongBits(candle.getOpen());
+            hash = 31 * hash + Double.doubleToLongBits(candle.getHigh());
+            hash = 31 * hash + Double.doubleToLongBits(candle.getLow());
+            hash = 31 * hash + Double.doubleToLongBits(candle.getClose());
+            hash = 31 * hash + Double.doubleToLongBits(candle.getVolume());
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.shared.config;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.dto.CandleBatch;
+import com.example.shared.utils.CandleBatchCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Конвертер пакета свечей: запись CandleBatch и чтение в CandleBatch или Map&lt;String, List&lt;Candle&gt;&gt;,
+ * чтение сжатого Deflate пакета, отказ на незнакомой версии, остальные типы уходят в JSON
+ */
+class CandleBatchHttpMessageConverterTest {
+
+    private static final MediaType CANDLE_BATCH = MediaType.parseMediaType(CandleBatchCodec.MEDIA_TYPE);
+    private static final Type CANDLES_MAP = new ParameterizedTypeReference<Map<String, List<Candle>>>() {
+    }.getType();
+
+    private final CandleBatchHttpMessageConverter converter = new CandleBatchHttpMessageConverter();
+
+    @Test
+    void writtenBatchReadsBackAsMapAndCandleBatch() throws IOException {
+        Map<String, List<Candle>> candlesMap = new LinkedHashMap<>();
+        candlesMap.put("BTC-USDT-SWAP", List.of(new Candle(1_700_000_000_000L, 1.0, 2.0, 0.5, 1.5, 10.0),
+                new Candle(1_700_003_600_000L, 1.5, Double.POSITIVE_INFINITY, 0.5, Double.NaN, 0.0)));
+        candlesMap.put("ETH-USDT-SWAP", List.of());
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(new CandleBatch(candlesMap), CandleBatch.class, CANDLE_BATCH, output);
+
+        assertEquals(CANDLE_BATCH, output.getHeaders().getContentType());
+        byte[] body = output.getBodyAsBytes();
+        assertEquals(candlesMap, converter.read(CANDLES_MAP, null, new MockHttpInputMessage(body)));
+        Object batch = converter.read(CandleBatch.class, null, new MockHttpInputMessage(body));
+        assertEquals(candlesMap, assertInstanceOf(CandleBatch.class, batch).getCandles());
+    }
+
+    @Test
+    void emptyAndNullBatchesAreWrittenAsEmptyMap() throws IOException {
+        for (CandleBatch batch : new CandleBatch[]{new CandleBatch(Map.of()), new CandleBatch(null)}) {
+            MockHttpOutputMessage output = new MockHttpOutputMessage();
+            converter.write(batch, CandleBatch.class, CANDLE_BATCH, output);
+
+            assertEquals(Map.of(), converter.read(CANDLES_MAP, null, new MockHttpInputMessage(output.getBodyAsBytes())));
+        }
+    }
+
+    @Test
+    void readsDeflatedBatch() throws IOException {
+        Map<String, List<Candle>> candlesMap = Map.of("SOL-USDT-SWAP", List.of(new Candle(0, 1.0, 1.0, 1.0, 1.0, 1.0)));
+        byte[] body = CandleBatchCodec.encode(candlesMap, CandleBatchCodec.FLAG_DEFLATE);
+
+        assertEquals(candlesMap, converter.read(CANDLES_MAP, null, new MockHttpInputMessage(body)));
+    }
+
+    @Test
+    void unknownVersionIsNotReadable() {
+        byte[] body = CandleBatchCodec.encode(Map.of("T", List.of()), 0);
+        body[2] = 99;
+
+        assertThrows(HttpMessageNotReadableException.class,
+                () -> converter.read(CANDLES_MAP, null, new MockHttpInputMessage(body)));
+    }
+
+    @Test
+    void onlyCandleTypesAreHandled() {
+        assertTrue(converter.canRead(CANDLES_MAP, null, CANDLE_BATCH));
+        assertTrue(converter.canRead(CandleBatch.class, null, CANDLE_BATCH));
+        assertTrue(converter.canWrite(CandleBatch.class, CANDLE_BATCH));
+
+        Type otherMap = new ParameterizedTypeReference<Map<String, Object>>() {
+        }.getType();
+        assertFalse(converter.canRead(otherMap, null, CANDLE_BATCH));
+        assertFalse(converter.canRead(CANDLES_MAP, null, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(Map.class, CANDLE_BATCH));
+        assertFalse(converter.canWrite(CandleBatch.class, MediaType.APPLICATION_JSON));
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.shared.dto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Синхронизация цен пары для пиксельного спреда: CandleSeries (объединение отсортированных колонок,
+ * nearestIndex, кэш min/max среза) против прежнего пути PixelSpreadService (List<Date>/List<Double> через стримы,
+ * HashSet таймштампов, линейный findNearestPrice на каждую точку, min/max стримом по боксам).
+ * <p>
+ * Два ряда по candles свечей 1H, у короткой ноги сдвиг на полчаса и каждая седьмая свеча пропущена.
+ * Запуск (аллокации на операцию - gc.alloc.rate.norm):
+ * mvn -pl shared test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.shared.dto.CandleSeriesBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CandleSeriesBenchmark {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final int QUICK_ANALYSIS_SIZE = 50;
+
+    @Param({"300", "1000"})
+    public int candles;
+
+    private List<Candle> longCandles;
+    private List<Candle> shortCandles;
+
+    @Setup
+    public void setUp() {
+        long start = 1_700_000_000_000L;
+        longCandles = new ArrayList<>(candles);
+        shortCandles = new ArrayList<>(candles);
+        for (int i = 0; i < candles; i++) {
+            double longPrice = 100.0 + Math.sin(i / 10.0) * 5;
+            double shortPrice = 50.0 + Math.cos(i / 7.0) * 3;
+            longCandles.add(new Candle(start + i * HOUR, longPrice, longPrice, longPrice, longPrice, 1.0));
+            if (i % 7 != 3) {
+                shortCandles.add(new Candle(start + i * HOUR + HOUR / 2, shortPrice, shortPrice, shortPrice, shortPrice, 1.0));
+            }
+        }
+    }
+
+    @Benchmark
+    public double pixelSpreadSeries() {
+        CandleSeries longSeries = CandleSeries.of(longCandles);
+        CandleSeries shortSeries = CandleSeries.of(shortCandles);
+        double minLong = longSeries.minClose();
+        double longRange = longSeries.maxClose() - minLong;
+        double minShort = shortSeries.minClose();
+        double shortRange = shortSeries.maxClose() - minShort;
+
+        double sum = 0;
+        for (long timestamp : CandleSeries.unionTimestamps(longSeries, shortSeries)) {
+            double longPrice = (longSeries.close(longSeries.nearestIndex(timestamp)) - minLong) / longRange;
+            double shortPrice = (shortSeries.close(shortSeries.nearestIndex(timestamp)) - minShort) / shortRange;
+            sum += Math.abs(longPrice - shortPrice);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double pixelSpreadCandleList() {
+        List<Date> timeLong = longCandles.stream().map(c -> new Date(c.getTimestamp())).toList();
+        List<Double> longPrices = longCandles.stream().map(Candle::getClose).toList();
+        List<Date> timeShort = shortCandles.stream().map(c -> new Date(c.getTimestamp())).toList();
+        List<Double> shortPrices = shortCandles.stream().map(Candle::getClose).toList();
+        double minLong = longPrices.stream().min(Double::compareTo).orElse(0.0);
+        double longRange = longPrices.stream().max(Double::compareTo).orElse(1.0) - minLong;
+        double minShort = shortPrices.stream().min(Double::compareTo).orElse(0.0);
+        double shortRange = shortPrices.stream().max(Double::compareTo).orElse(1.0) - minShort;
+
+        Set<Long> allTimestamps = new HashSet<>();
+        timeLong.forEach(date -> allTimestamps.add(date.getTime()));
+        timeShort.forEach(date -> allTimestamps.add(date.getTime()));
+        List<Long> sortedTimestamps = allTimestamps.stream().sorted().toList();
+
+        double sum = 0;
+        for (Long timestamp : sortedTimestamps) {
+            double longPrice = (findNearestPrice(timeLong, longPrices, timestamp) - minLong) / longRange;
+            double shortPrice = (findNearestPrice(timeShort, shortPrices, timestamp) - minShort) / shortRange;
+            sum += Math.abs(longPrice - shortPrice);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double quickRangeSeries() {
+        CandleSeries recentLong = CandleSeries.of(longCandles).tail(QUICK_ANALYSIS_SIZE);
+        CandleSeries recentShort = CandleSeries.of(shortCandles).tail(QUICK_ANALYSIS_SIZE);
+        return (recentLong.maxClose() - recentLong.minClose()) + (recentShort.maxClose() - recentShort.minClose());
+    }
+
+    @Benchmark
+    public double quickRangeCandleList() {
+        return quickRange(longCandles) + quickRange(shortCandles);
+    }
+
+    private static double quickRange(List<Candle> candles) {
+        List<Candle> sorted = new ArrayList<>(candles);
+        sorted.sort(Comparator.comparing(Candle::getTimestamp));
+        List<Candle> recent = sorted.size() > QUICK_ANALYSIS_SIZE ?
+                sorted.subList(sorted.size() - QUICK_ANALYSIS_SIZE, sorted.size()) : sorted;
+        List<Double> prices = recent.stream().map(Candle::getClose).toList();
+        return prices.stream().max(Double::compareTo).orElse(1.0) - prices.stream().min(Double::compareTo).orElse(0.0);
+    }
+
+    /**
+     * Прежний PixelSpreadService.findNearestPrice: линейный проход, первый минимум расстояния
+     */
+    private static Double findNearestPrice(List<Date> timeAxis, List<Double> prices, long targetTimestamp) {
+        int bestIndex = 0;
+        long bestDiff = Math.abs(timeAxis.get(0).getTime() - targetTimestamp);
+        for (int i = 1; i < timeAxis.size(); i++) {
+            long diff = Math.abs(timeAxis.get(i).getTime() - targetTimestamp);
+            if (diff < bestDiff) {
+                bestDiff = diff;
+                bestIndex = i;
+            }
+        }
+        return prices.get(bestIndex);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CandleSeriesBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.shared.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CandleSeries против прежних линейных проходов по List&lt;Candle&gt;: поиск ближайшей свечи при равных
+ * расстояниях и одинаковых таймштампах, between на открытой правой границе, min/max закрытия срезов
+ */
+class CandleSeriesTest {
+
+    @Test
+    void nearestIndexPicksEarlierCandleOnEqualDistance() {
+        CandleSeries series = series(new long[]{100, 200, 300}, new double[]{1.0, 2.0, 3.0});
+
+        assertEquals(0, series.nearestIndex(150));
+        assertEquals(1, series.nearestIndex(250));
+        assertEquals(0, series.nearestIndex(Long.MIN_VALUE / 2));
+        assertEquals(2, series.nearestIndex(Long.MAX_VALUE / 2));
+        assertEquals(-1, CandleSeries.empty().nearestIndex(100));
+    }
+
+    @Test
+    void nearestIndexPicksFirstCandleOfDuplicateRun() {
+        CandleSeries series = series(new long[]{100, 100, 100, 200, 200, 300}, new double[]{1.0, 5.0, 9.0, 2.0, 7.0, 3.0});
+
+        assertEquals(0, series.nearestIndex(100));
+        assertEquals(0, series.nearestIndex(120));
+        assertEquals(0, series.nearestIndex(150));
+        assertEquals(3, series.nearestIndex(151));
+        assertEquals(3, series.nearestIndex(200));
+        assertEquals(3, series.nearestIndex(250));
+        assertEquals(5, series.nearestIndex(301));
+        assertEquals(0, series.nearestIndex(0));
+    }
+
+    @Test
+    void nearestIndexMatchesLinearScan() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 2_000; iteration++) {
+            CandleSeries series = randomSeries(random, 1 + random.nextInt(30), 1 + random.nextInt(200));
+            CandleSeries view = random.nextBoolean() ? series : series.slice(random.nextInt(series.size()), series.size());
+            for (int probe = -10; probe < 220; probe++) {
+                assertEquals(linearNearest(view, probe), view.nearestIndex(probe), "probe " + probe);
+            }
+        }
+    }
+
+    @Test
+    void ofSortsStablyAndKeepsDuplicateOrder() {
+        List<Candle> candles = List.of(candle(300, 3.0), candle(100, 1.0), candle(200, 2.0), candle(100, 4.0));
+
+        CandleSeries series = CandleSeries.of(candles);
+
+        assertArrayEquals(new long[]{100, 100, 200, 300}, series.timestamps());
+        assertArrayEquals(new double[]{1.0, 4.0, 2.0, 3.0}, series.closes());
+        assertEquals(0, series.indexOf(100));
+        assertEquals(-1, series.indexOf(150));
+    }
+
+    @Test
+    void betweenWithOpenRightBoundIncludesLastCandle() {
+        CandleSeries series = series(new long[]{100, 200, 300, Long.MAX_VALUE - 1}, new double[]{1.0, 2.0, 3.0, 4.0});
+
+        assertArrayEquals(new long[]{200, 300, Long.MAX_VALUE - 1}, series.between(150, Long.MAX_VALUE).timestamps());
+        assertArrayEquals(series.timestamps(), series.between(Long.MIN_VALUE, Long.MAX_VALUE).timestamps());
+        assertSame(series, series.between(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        CandleSeries endsAtMax = series(new long[]{100, Long.MAX_VALUE}, new double[]{1.0, 2.0});
+        assertArrayEquals(new long[]{100, Long.MAX_VALUE}, endsAtMax.between(0, Long.MAX_VALUE).timestamps());
+        assertArrayEquals(new long[]{Long.MAX_VALUE}, endsAtMax.between(Long.MAX_VALUE, Long.MAX_VALUE).timestamps());
+    }
+
+    @Test
+    void betweenMatchesStreamFilter() {
+        Random random = new Random(3);
+        for (int iteration = 0; iteration < 1_000; iteration++) {
+            CandleSeries series = randomSeries(random, random.nextInt(30), 100);
+            long from = random.nextInt(120) - 10;
+            long to = random.nextInt(5) == 0 ? Long.MAX_VALUE : from + random.nextInt(60) - 10;
+
+            List<Long> expected = new ArrayList<>();
+            for (long timestamp : series.timestamps()) {
+                if (timestamp >= from && timestamp <= to) {
+                    expected.add(timestamp);
+                }
+            }
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), series.between(from, to).timestamps());
+        }
+    }
+
+    @Test
+    void minMaxCloseUseSliceOffsets() {
+        CandleSeries series = series(new long[]{1, 2, 3, 4, 5, 6}, new double[]{0.5, 4.0, 2.0, 3.0, 9.0, 1.0});
+
+        CandleSeries middle = series.slice(1, 4);
+        assertEquals(2.0, middle.minClose());
+        assertEquals(4.0, middle.maxClose());
+
+        CandleSeries tail = series.tail(2);
+        assertEquals(1.0, tail.minClose());
+        assertEquals(9.0, tail.maxClose());
+
+        // Кэш min/max у каждого среза свой
+        assertEquals(0.5, series.minClose());
+        assertEquals(9.0, series.maxClose());
+        CandleSeries nested = middle.slice(1, 3);
+        assertEquals(2.0, nested.minClose());
+        assertEquals(3.0, nested.maxClose());
+        assertEquals(2.0, nested.close(0));
+        assertEquals(3, nested.firstTimestamp());
+    }
+
+    @Test
+    void slicesMatchCopiedSubList() {
+        Random random = new Random(11);
+        for (int iteration = 0; iteration < 1_000; iteration++) {
+            int size = 1 + random.nextInt(30);
+            List<Candle> candles = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                candles.add(candle(i * 10L, random.nextInt(1_000) / 10.0));
+            }
+            CandleSeries series = CandleSeries.of(candles);
+            int from = random.nextInt(candles.size());
+            int to = from + 1 + random.nextInt(candles.size() - from);
+
+            CandleSeries slice = series.slice(from, to);
+            List<Candle> expected = candles.subList(from, to);
+            assertEquals(expected.stream().mapToDouble(Candle::getClose).min().orElseThrow(), slice.minClose());
+            assertEquals(expected.stream().mapToDouble(Candle::getClose).max().orElseThrow(), slice.maxClose());
+            assertEquals(expected, slice.toCandles());
+            assertEquals(from, series.lowerBound(slice.firstTimestamp()));
+        }
+    }
+
+    @Test
+    void unionTimestampsOfSlices() {
+        CandleSeries first = series(new long[]{1, 3, 3, 5, 7}, new double[]{1, 1, 1, 1, 1});
+        CandleSeries second = series(new long[]{2, 3, 6, 8}, new double[]{1, 1, 1, 1});
+
+        assertArrayEquals(new long[]{1, 2, 3, 5, 6, 7, 8}, CandleSeries.unionTimestamps(first, second));
+        assertArrayEquals(new long[]{3, 5, 6}, CandleSeries.unionTimestamps(first.slice(1, 4), second.slice(1, 3)));
+        assertArrayEquals(new long[0], CandleSeries.unionTimestamps(CandleSeries.empty(), CandleSeries.empty()));
+
+        Random random = new Random(5);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            CandleSeries a = randomSeries(random, random.nextInt(20), 30);
+            CandleSeries b = randomSeries(random, random.nextInt(20), 30);
+            TreeSet<Long> expected = new TreeSet<>();
+            for (long timestamp : a.timestamps()) expected.add(timestamp);
+            for (long timestamp : b.timestamps()) expected.add(timestamp);
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), CandleSeries.unionTimestamps(a, b));
+        }
+    }
+
+    @Test
+    void indexOutsideSliceIsRejected() {
+        CandleSeries slice = series(new long[]{1, 2, 3, 4}, new double[]{1, 2, 3, 4}).slice(1, 3);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.close(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.timestamp(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.slice(0, 3));
+        assertTrue(slice.slice(1, 1).isEmpty());
+    }
+
+    /**
+     * Прежний findNearestPrice: первый минимум |t - timestamp| при проходе по возрастанию времени
+     */
+    private static int linearNearest(CandleSeries series, long timestamp) {
+        int bestIndex = 0;
+        long bestDiff = Math.abs(series.timestamp(0) - timestamp);
+        for (int i = 1; i < series.size(); i++) {
+            long diff = Math.abs(series.timestamp(i) - timestamp);
+            if (diff < bestDiff) {
+                bestDiff = diff;
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    private static CandleSeries randomSeries(Random random, int size, int timeRange) {
+        List<Candle> candles = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            candles.add(candle(random.nextInt(timeRange), 1.0 + random.nextInt(100) / 10.0));
+        }
+        return CandleSeries.of(candles);
+    }
+
+    private static CandleSeries series(long[] timestamps, double[] closes) {
+        List<Candle> candles = new ArrayList<>(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            candles.add(candle(timestamps[i], closes[i]));
+        }
+        return CandleSeries.of(candles);
+    }
+
+    private static Candle candle(long timestamp, double close) {
+        return Candle.builder()
+                .timestamp(timestamp)
+                .open(close)
+                .high(close)
+                .low(close)
+                .close(close)
+                .volume(1.0)
+                .build();
+    }
+}
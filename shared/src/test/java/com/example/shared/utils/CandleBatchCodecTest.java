@@ -0,0 +1,178 @@
+package com.example.shared.utils;
+
+import com.example.shared.dto.Candle;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Пакет свечей CandleBatchCodec: кодирование и чтение без потерь (таймштампы с неравномерным шагом,
+ * NaN/Infinity в ценах, пустые пакеты), варианты close-only и Deflate, отказ на чужих и незнакомых версиях
+ */
+class CandleBatchCodecTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Test
+    void roundTripKeepsTickerOrderAndAllColumns() {
+        Map<String, List<Candle>> candlesMap = new LinkedHashMap<>();
+        candlesMap.put("XRP-USDT-SWAP", uniform(1_700_000_000_000L, 50, 0.5));
+        candlesMap.put("BTC-USDT-SWAP", uniform(1_700_000_000_000L, 3, 65_000.0));
+        candlesMap.put("ÄÖ-ТЕСТ", uniform(0, 1, 1.0));
+
+        for (int flags : new int[]{0, CandleBatchCodec.FLAG_DEFLATE}) {
+            Map<String, List<Candle>> decoded = CandleBatchCodec.decode(CandleBatchCodec.encode(candlesMap, flags));
+
+            assertEquals(List.copyOf(candlesMap.keySet()), List.copyOf(decoded.keySet()));
+            assertEquals(candlesMap, decoded);
+        }
+    }
+
+    @Test
+    void irregularTimestampsRoundTrip() {
+        long[] timestamps = {
+                1_700_000_000_000L,
+                1_700_000_000_000L + HOUR,
+                1_700_000_000_000L + 2 * HOUR,
+                1_700_000_000_000L + 7 * HOUR,            // пропуск
+                1_700_000_000_000L + 7 * HOUR,            // дубль
+                1_700_000_000_000L + 6 * HOUR,            // назад
+                1_700_000_000_001L + 8 * HOUR,            // сдвиг на 1 мс
+                0,
+                -1,
+                Long.MAX_VALUE,
+                Long.MIN_VALUE,
+                Long.MAX_VALUE - 1
+        };
+        List<Candle> candles = new ArrayList<>();
+        for (int i = 0; i < timestamps.length; i++) {
+            candles.add(new Candle(timestamps[i], i, i + 0.25, i - 0.25, i + 0.5, i * 10.0));
+        }
+
+        for (int flags : allFlags()) {
+            List<Candle> decoded = CandleBatchCodec.decode(CandleBatchCodec.encode(Map.of("T", candles), flags)).get("T");
+
+            assertArrayEquals(timestamps, decoded.stream().mapToLong(Candle::getTimestamp).toArray(), "flags " + flags);
+        }
+    }
+
+    @Test
+    void nonFinitePricesRoundTripBitForBit() {
+        double[] values = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0, 0.0,
+                Double.MIN_VALUE, Double.MAX_VALUE, 0.1 + 0.2};
+        List<Candle> candles = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            double value = values[i];
+            candles.add(new Candle(i * HOUR, value, value, value, value, value));
+        }
+
+        for (int flags : new int[]{0, CandleBatchCodec.FLAG_DEFLATE}) {
+            List<Candle> decoded = CandleBatchCodec.decode(CandleBatchCodec.encode(Map.of("T", candles), flags)).get("T");
+
+            for (int i = 0; i < values.length; i++) {
+                Candle candle = decoded.get(i);
+                long expected = Double.doubleToRawLongBits(values[i]);
+                assertEquals(expected, Double.doubleToRawLongBits(candle.getOpen()));
+                assertEquals(expected, Double.doubleToRawLongBits(candle.getHigh()));
+                assertEquals(expected, Double.doubleToRawLongBits(candle.getLow()));
+                assertEquals(expected, Double.doubleToRawLongBits(candle.getClose()));
+                assertEquals(expected, Double.doubleToRawLongBits(candle.getVolume()));
+            }
+        }
+    }
+
+    @Test
+    void closeOnlyFillsOhlcFromCloseAndZeroVolume() {
+        List<Candle> candles = List.of(new Candle(HOUR, 1.0, 3.0, 0.5, 2.0, 100.0), new Candle(2 * HOUR, 2.0, 4.0, 1.5, Double.NaN, 50.0));
+
+        for (int flags : new int[]{CandleBatchCodec.FLAG_CLOSE_ONLY, CandleBatchCodec.FLAG_CLOSE_ONLY | CandleBatchCodec.FLAG_DEFLATE}) {
+            List<Candle> decoded = CandleBatchCodec.decode(CandleBatchCodec.encode(Map.of("T", candles), flags)).get("T");
+
+            assertEquals(List.of(new Candle(HOUR, 2.0, 2.0, 2.0, 2.0, 0), new Candle(2 * HOUR, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 0)),
+                    decoded);
+        }
+    }
+
+    @Test
+    void emptyBatchesRoundTrip() {
+        Map<String, List<Candle>> withEmptySeries = new LinkedHashMap<>();
+        withEmptySeries.put("EMPTY", List.of());
+        withEmptySeries.put("NULL", null);
+        withEmptySeries.put("ONE", uniform(HOUR, 1, 5.0));
+
+        for (int flags : allFlags()) {
+            assertEquals(Map.of(), CandleBatchCodec.decode(CandleBatchCodec.encode(Map.of(), flags)));
+
+            Map<String, List<Candle>> decoded = CandleBatchCodec.decode(CandleBatchCodec.encode(withEmptySeries, flags));
+            assertEquals(List.of("EMPTY", "NULL", "ONE"), List.copyOf(decoded.keySet()));
+            assertEquals(List.of(), decoded.get("EMPTY"));
+            assertEquals(List.of(), decoded.get("NULL"));
+            assertEquals(1, decoded.get("ONE").size());
+        }
+    }
+
+    @Test
+    void deflateShrinksUniformBatchAndStreamsRoundTrip() throws IOException {
+        Map<String, List<Candle>> candlesMap = new LinkedHashMap<>();
+        for (int t = 0; t < 20; t++) {
+            candlesMap.put("T" + t + "-USDT-SWAP", uniform(1_700_000_000_000L, 500, 100.0));
+        }
+
+        byte[] plain = CandleBatchCodec.encode(candlesMap, 0);
+        byte[] deflated = CandleBatchCodec.encode(candlesMap, CandleBatchCodec.FLAG_DEFLATE);
+        assertTrue(deflated.length < plain.length, deflated.length + " >= " + plain.length);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CandleBatchCodec.encode(candlesMap, CandleBatchCodec.FLAG_DEFLATE, out);
+        assertArrayEquals(deflated, out.toByteArray());
+        assertEquals(candlesMap, CandleBatchCodec.decode(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        byte[] bytes = CandleBatchCodec.encode(Map.of("T", uniform(HOUR, 2, 1.0)), 0);
+        bytes[2] = 2;
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> CandleBatchCodec.decode(bytes));
+        assertTrue(error.getMessage().contains("версия"), error.getMessage());
+        assertThrows(IOException.class, () -> CandleBatchCodec.decode(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void foreignOrTruncatedDataIsRejected() {
+        byte[] bytes = CandleBatchCodec.encode(Map.of("T", uniform(HOUR, 10, 1.0)), 0);
+
+        assertThrows(IllegalArgumentException.class, () -> CandleBatchCodec.decode("{\"T\":[]}".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> CandleBatchCodec.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> CandleBatchCodec.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+
+        byte[] deflated = CandleBatchCodec.encode(Map.of("T", uniform(HOUR, 10, 1.0)), CandleBatchCodec.FLAG_DEFLATE);
+        assertThrows(IllegalArgumentException.class, () -> CandleBatchCodec.decode(Arrays.copyOf(deflated, deflated.length / 2)));
+    }
+
+    private static int[] allFlags() {
+        return new int[]{0, CandleBatchCodec.FLAG_CLOSE_ONLY, CandleBatchCodec.FLAG_DEFLATE,
+                CandleBatchCodec.FLAG_CLOSE_ONLY | CandleBatchCodec.FLAG_DEFLATE};
+    }
+
+    private static List<Candle> uniform(long start, int count, double basePrice) {
+        List<Candle> candles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double price = basePrice + i * 0.01;
+            candles.add(new Candle(start + i * HOUR, price, price * 1.01, price * 0.99, price + 0.005, 1_000.0 + i));
+        }
+        return candles;
+    }
+}
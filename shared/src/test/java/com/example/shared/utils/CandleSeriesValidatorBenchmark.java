@@ -0,0 +1,142 @@
+package com.example.shared.utils;
+
+import com.example.shared.dto.Candle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Валидация консистентности свечей: CandleSeriesValidator против прежних проверок по List<Candle>
+ * (поиск пропусков из CacheValidatedCandlesProcessor, сверка с эталоном из CandleCacheService).
+ * <p>
+ * Карта tickers тикеров по candles свечей 1H, каждый десятый тикер с пропуском или сдвигом границы.
+ * Запуск (аллокации на операцию - gc.alloc.rate.norm):
+ * mvn -pl shared test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.shared.utils.CandleSeriesValidatorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CandleSeriesValidatorBenchmark {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final LongUnaryOperator TRUNCATE_TO_DAY = timestamp -> timestamp / DAY * DAY;
+
+    @Param({"300"})
+    public int tickers;
+
+    @Param({"1000", "8760"})
+    public int candles;
+
+    private Map<String, List<Candle>> candlesMap;
+    private CandleSeriesValidator.Reference reference;
+
+    @Setup
+    public void setUp() {
+        long start = 20_000 * DAY;
+        candlesMap = new LinkedHashMap<>();
+        for (int t = 0; t < tickers; t++) {
+            List<Candle> series = new ArrayList<>(candles);
+            long shift = t % 10 == 9 ? DAY : 0;
+            for (int i = 0; i < candles; i++) {
+                if (t % 10 == 5 && i == candles / 2) {
+                    continue; // пропуск
+                }
+                double price = 100.0 + t + i * 0.01;
+                series.add(new Candle(start + shift + i * HOUR, price, price, price, price, 1.0));
+            }
+            candlesMap.put("T" + t + "-USDT-SWAP", series);
+        }
+        reference = CandleSeriesValidator.Reference.of(candlesMap.get("T0-USDT-SWAP"), TRUNCATE_TO_DAY);
+    }
+
+    @Benchmark
+    public int gapsValidator() {
+        int gaps = 0;
+        for (List<Candle> series : candlesMap.values()) {
+            gaps += CandleSeriesValidator.findGaps(CandleSeriesValidator.timestamps(series), HOUR).size();
+        }
+        return gaps;
+    }
+
+    @Benchmark
+    public int gapsCandleList() {
+        int gaps = 0;
+        for (List<Candle> series : candlesMap.values()) {
+            gaps += legacyGaps(series, HOUR).size();
+        }
+        return gaps;
+    }
+
+    @Benchmark
+    public int referenceValidator() {
+        return CandleSeriesValidator.validateAgainstReference(candlesMap, reference, TRUNCATE_TO_DAY).validCount();
+    }
+
+    @Benchmark
+    public int referenceCandleList() {
+        Map<String, List<Candle>> valid = new HashMap<>();
+        for (Map.Entry<String, List<Candle>> entry : candlesMap.entrySet()) {
+            List<Candle> series = entry.getValue();
+            if (series == null || series.isEmpty()) {
+                continue;
+            }
+            long first = TRUNCATE_TO_DAY.applyAsLong(series.get(0).getTimestamp());
+            long last = TRUNCATE_TO_DAY.applyAsLong(series.get(series.size() - 1).getTimestamp());
+            if (series.size() == reference.count() && first == reference.first() && last == reference.last()) {
+                valid.put(entry.getKey(), series);
+            }
+        }
+        return valid.size();
+    }
+
+    /**
+     * Прежний поиск пропусков: проход по List<Candle>, погрешность в double, объект пропуска на каждое расхождение
+     */
+    private static List<long[]> legacyGaps(List<Candle> candles, long timeframeDurationMs) {
+        List<long[]> gaps = new ArrayList<>();
+        for (int i = 1; i < candles.size(); i++) {
+            long previousTimestamp = candles.get(i - 1).getTimestamp();
+            long currentTimestamp = candles.get(i).getTimestamp();
+            long actualInterval = currentTimestamp - previousTimestamp;
+            if (Math.abs(actualInterval - timeframeDurationMs) > timeframeDurationMs * 0.1) {
+                long missedCandles = (actualInterval / timeframeDurationMs) - 1;
+                if (missedCandles > 0) {
+                    gaps.add(new long[]{previousTimestamp, currentTimestamp, missedCandles, i - 1, i});
+                }
+            }
+        }
+        return gaps;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CandleSeriesValidatorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.shared.utils;
+
+import com.example.shared.dto.Candle;
+import com.example.shared.utils.CandleSeriesValidator.Gap;
+import com.example.shared.utils.CandleSeriesValidator.Reference;
+import com.example.shared.utils.CandleSeriesValidator.Report;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Паритет CandleSeriesValidator с прежними проверками: поиск пропусков по List<Candle> с погрешностью 10%
+ * (CacheValidatedCandlesProcessor) и сверка с эталоном с обрезкой границ до начала дня (CandleCacheService)
+ */
+class CandleSeriesValidatorTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final LongUnaryOperator TRUNCATE_TO_DAY = timestamp -> timestamp / DAY * DAY;
+
+    @Test
+    void continuousSeriesHasNoGaps() {
+        assertTrue(CandleSeriesValidator.findGaps(series(0, HOUR, 100), HOUR).isEmpty());
+        assertTrue(CandleSeriesValidator.findGaps(new long[0], HOUR).isEmpty());
+        assertTrue(CandleSeriesValidator.findGaps(new long[]{42}, HOUR).isEmpty());
+    }
+
+    @Test
+    void intervalsWithinToleranceAreNotGaps() {
+        long tolerance = HOUR / 10;
+        long[] timestamps = {0, HOUR + tolerance, 2 * HOUR, 3 * HOUR - tolerance, 4 * HOUR};
+
+        assertTrue(CandleSeriesValidator.findGaps(timestamps, HOUR).isEmpty());
+        assertGapsMatchReference(timestamps, HOUR);
+    }
+
+    @Test
+    void intervalJustOutsideToleranceWithoutMissedCandleIsNotGap() {
+        long tolerance = HOUR / 10;
+        // Быстрый проход видит расхождение, но в интервал не помещается ни одной свечи (missed == 0)
+        long[] timestamps = {0, HOUR + tolerance + 1, 2 * HOUR + tolerance + 1, 3 * HOUR + tolerance + 1 + HOUR / 2};
+
+        assertTrue(CandleSeriesValidator.findGaps(timestamps, HOUR).isEmpty());
+        assertGapsMatchReference(timestamps, HOUR);
+    }
+
+    @Test
+    void gapReportsMissedCandlesAndPositions() {
+        long[] timestamps = {0, HOUR, 4 * HOUR, 5 * HOUR, 7 * HOUR + HOUR / 2};
+
+        List<Gap> gaps = CandleSeriesValidator.findGaps(timestamps, HOUR);
+
+        assertEquals(List.of(new Gap(HOUR, 4 * HOUR, 2, 1, 2), new Gap(5 * HOUR, 7 * HOUR + HOUR / 2, 1, 3, 4)), gaps);
+        assertGapsMatchReference(timestamps, HOUR);
+    }
+
+    @Test
+    void stepNotMultipleOfTenUsesSameToleranceAsDoubleComparison() {
+        // Прежняя погрешность step * 0.1 (double) против целочисленной step / 10
+        for (long step : new long[]{7, 15, 29, 30, 99, 1_001}) {
+            for (long delta = -step; delta <= 2 * step; delta++) {
+                long[] timestamps = {1_000, 1_000 + step, 1_000 + 2 * step + delta, 1_000 + 3 * step + delta};
+                assertGapsMatchReference(timestamps, step);
+            }
+        }
+    }
+
+    @Test
+    void duplicatesAndNegativeIntervalsAddNoGaps() {
+        long[] duplicates = {0, HOUR, HOUR, 2 * HOUR};
+        long[] backwards = {0, 2 * HOUR, HOUR, 3 * HOUR};
+
+        assertTrue(CandleSeriesValidator.findGaps(duplicates, HOUR).isEmpty());
+        assertGapsMatchReference(duplicates, HOUR);
+        assertGapsMatchReference(backwards, HOUR);
+        assertEquals(List.of(new Gap(0, 2 * HOUR, 1, 0, 1), new Gap(HOUR, 3 * HOUR, 1, 2, 3)),
+                CandleSeriesValidator.findGaps(backwards, HOUR));
+    }
+
+    @Test
+    void randomSeriesMatchReference() {
+        Random random = new Random(42);
+        long[] steps = {60_000L, 5 * 60_000L, HOUR, 4 * HOUR, DAY, 15, 7};
+        for (int iteration = 0; iteration < 5_000; iteration++) {
+            long step = steps[random.nextInt(steps.length)];
+            long tolerance = step / 10;
+            long[] timestamps = new long[random.nextInt(40)];
+            long timestamp = random.nextInt(1_000_000);
+            for (int i = 0; i < timestamps.length; i++) {
+                timestamps[i] = timestamp;
+                timestamp += switch (random.nextInt(8)) {
+                    case 0 -> step * (2 + random.nextInt(4));                  // пропуск
+                    case 1 -> step + tolerance + random.nextInt(3) - 1;        // граница погрешности
+                    case 2 -> step - tolerance + random.nextInt(3) - 1;
+                    case 3 -> 0;                                               // дубликат
+                    case 4 -> -step;                                           // назад
+                    case 5 -> step + step / 2;                                 // не кратно шагу
+                    default -> step;
+                };
+            }
+            assertGapsMatchReference(timestamps, step);
+        }
+    }
+
+    @Test
+    void dayTruncationMatchesOldConsistencyFilter() {
+        long dayStart = 20_000 * DAY;
+        long step = 4 * HOUR;
+        Map<String, List<Candle>> candlesMap = new LinkedHashMap<>();
+        candlesMap.put("BTC-USDT-SWAP", candles(dayStart + HOUR, step, 6));      // 01:00 - 21:00
+        candlesMap.put("SAME-DAY", candles(dayStart + 2 * HOUR, step, 6));       // другой час, тот же день
+        candlesMap.put("DAY-START", candles(dayStart, step, 6));                 // первая свеча ровно в 00:00
+        candlesMap.put("PREVIOUS-DAY", candles(dayStart - 1, step, 6));          // 23:59:59.999 - предыдущий день
+        candlesMap.put("LAST-NEXT-DAY", candles(dayStart + step, step, 6));      // последняя свеча в 00:00 следующего дня
+        candlesMap.put("SHORT", candles(dayStart + HOUR, step, 5));
+        candlesMap.put("EMPTY", List.of());
+        candlesMap.put("NULL", null);
+
+        Reference reference = Reference.of(candlesMap.get("BTC-USDT-SWAP"), TRUNCATE_TO_DAY);
+        assertEquals(new Reference(6, dayStart, dayStart), reference);
+
+        Report report = CandleSeriesValidator.validateAgainstReference(candlesMap, reference, TRUNCATE_TO_DAY);
+
+        assertReportMatchesOldFilter(candlesMap, reference.count(), reference.first(), reference.last(), report);
+        assertEquals(List.of("BTC-USDT-SWAP", "SAME-DAY", "DAY-START"), validTickers(report));
+        assertEquals(CandleSeriesValidator.MISMATCH_FIRST, report.mismatches(index(report, "PREVIOUS-DAY")));
+        assertEquals(CandleSeriesValidator.MISMATCH_LAST, report.mismatches(index(report, "LAST-NEXT-DAY")));
+        assertEquals(CandleSeriesValidator.MISMATCH_COUNT, report.mismatches(index(report, "SHORT")));
+        assertEquals(CandleSeriesValidator.MISMATCH_EMPTY, report.mismatches(index(report, "EMPTY")));
+        assertEquals(CandleSeriesValidator.MISMATCH_EMPTY, report.mismatches(index(report, "NULL")));
+        // Границы в отчете - до обрезки
+        assertEquals(dayStart - 1, report.firstTimestamp(index(report, "PREVIOUS-DAY")));
+    }
+
+    @Test
+    void invalidReferenceRejectsAllTickers() {
+        // Эталон без BTC в CandleCacheService: (expectedLimit, 0, Long.MAX_VALUE)
+        Map<String, List<Candle>> candlesMap = new HashMap<>();
+        candlesMap.put("ETH-USDT-SWAP", candles(DAY, HOUR, 24));
+        candlesMap.put("SOL-USDT-SWAP", candles(DAY, HOUR, 24));
+
+        Report report = CandleSeriesValidator.validateAgainstReference(candlesMap, new Reference(24, 0, Long.MAX_VALUE),
+                TRUNCATE_TO_DAY);
+
+        assertEquals(0, report.validCount());
+        assertReportMatchesOldFilter(candlesMap, 24, 0, Long.MAX_VALUE, report);
+    }
+
+    @Test
+    void randomMapsMatchOldFilter() {
+        Random random = new Random(7);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            long base = (19_000 + random.nextInt(1_000)) * DAY;
+            int count = 20 + random.nextInt(10);
+            Map<String, List<Candle>> candlesMap = new LinkedHashMap<>();
+            for (int t = 0; t < 20; t++) {
+                long start = base + (random.nextInt(5) - 2) * 6 * HOUR + random.nextInt(3) - 1;
+                int size = count + random.nextInt(3) - 1;
+                candlesMap.put("T" + t, random.nextInt(20) == 0 ? List.of() : candles(start, HOUR, size));
+            }
+
+            List<Candle> first = candlesMap.get("T0").isEmpty() ? candles(base, HOUR, count) : candlesMap.get("T0");
+            Reference reference = Reference.of(first, TRUNCATE_TO_DAY);
+            Report report = CandleSeriesValidator.validateAgainstReference(candlesMap, reference, TRUNCATE_TO_DAY);
+
+            assertReportMatchesOldFilter(candlesMap, reference.count(), reference.first(), reference.last(), report);
+        }
+    }
+
+    /**
+     * Прежний CandleCacheService.validateAndFilterCandlesConsistency: пустой тикер невалиден, иначе количество
+     * и обрезанные до дня границы должны совпасть с эталоном
+     */
+    private static void assertReportMatchesOldFilter(Map<String, List<Candle>> candlesMap, int expectedCount,
+                                                     long expectedFirst, long expectedLast, Report report) {
+        assertEquals(new ArrayList<>(candlesMap.keySet()), report.tickers());
+        for (int i = 0; i < report.size(); i++) {
+            List<Candle> candles = candlesMap.get(report.tickers().get(i));
+            boolean expectedValid = candles != null && !candles.isEmpty()
+                    && candles.size() == expectedCount
+                    && TRUNCATE_TO_DAY.applyAsLong(candles.get(0).getTimestamp()) == expectedFirst
+                    && TRUNCATE_TO_DAY.applyAsLong(candles.get(candles.size() - 1).getTimestamp()) == expectedLast;
+            assertEquals(expectedValid, report.isValid(i), report.tickers().get(i));
+            assertEquals(expectedValid, report.mismatches(i) == 0, report.tickers().get(i));
+            assertEquals(expectedValid, report.validMask().get(i), report.tickers().get(i));
+        }
+    }
+
+    /**
+     * Прежний CacheValidatedCandlesProcessor.validateCandlesConsistency: проход по List<Candle>,
+     * погрешность timeframeDurationMs * 0.1 в double
+     */
+    private static List<Gap> referenceGaps(List<Candle> candles, long timeframeDurationMs) {
+        List<Gap> gaps = new ArrayList<>();
+        for (int i = 1; i < candles.size(); i++) {
+            long previousTimestamp = candles.get(i - 1).getTimestamp();
+            long currentTimestamp = candles.get(i).getTimestamp();
+            long actualInterval = currentTimestamp - previousTimestamp;
+
+            if (Math.abs(actualInterval - timeframeDurationMs) > timeframeDurationMs * 0.1) {
+                long missedCandles = (actualInterval / timeframeDurationMs) - 1;
+                if (missedCandles > 0) {
+                    gaps.add(new Gap(previousTimestamp, currentTimestamp, (int) missedCandles, i - 1, i));
+                }
+            }
+        }
+        return gaps;
+    }
+
+    private static void assertGapsMatchReference(long[] timestamps, long step) {
+        List<Candle> candles = new ArrayList<>(timestamps.length);
+        for (long timestamp : timestamps) {
+            candles.add(candle(timestamp));
+        }
+        assertArrayEquals(timestamps, CandleSeriesValidator.timestamps(candles));
+        assertEquals(referenceGaps(candles, step), CandleSeriesValidator.findGaps(timestamps, step));
+    }
+
+    private static List<String> validTickers(Report report) {
+        List<String> valid = new ArrayList<>();
+        for (int i = 0; i < report.size(); i++) {
+            if (report.isValid(i)) {
+                valid.add(report.tickers().get(i));
+            }
+        }
+        return valid;
+    }
+
+    private static int index(Report report, String ticker) {
+        return report.tickers().indexOf(ticker);
+    }
+
+    private static long[] series(long start, long step, int size) {
+        long[] timestamps = new long[size];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = start + i * step;
+        }
+        return timestamps;
+    }
+
+    private static List<Candle> candles(long start, long step, int size) {
+        List<Candle> candles = new ArrayList<>(size);
+        for (long timestamp : series(start, step, size)) {
+            candles.add(candle(timestamp));
+        }
+        return candles;
+    }
+
+    private static Candle candle(long timestamp) {
+        return new Candle(timestamp, 1.0, 1.0, 1.0, 1.0, 1.0);
+    }
+}